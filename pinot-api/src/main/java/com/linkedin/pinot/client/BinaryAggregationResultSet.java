@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.client;
+
+/**
+ * Aggregation result set decoded from a binary broker response, with or without group by. There is one per
+ * aggregation function in the query.
+ */
+class BinaryAggregationResultSet extends AbstractResultSet {
+  private final String _function;
+  private final String[] _groupByColumns;
+  private final String[][] _groupKeys;
+  private final Object[] _values;
+
+  /**
+   * @param function Name of the aggregation function
+   * @param groupByColumns Group by columns, null without group by
+   * @param groupKeys Group key of each row, null without group by
+   * @param values Value of each row
+   */
+  BinaryAggregationResultSet(String function, String[] groupByColumns, String[][] groupKeys, Object[] values) {
+    _function = function;
+    _groupByColumns = groupByColumns;
+    _groupKeys = groupKeys;
+    _values = values;
+  }
+
+  @Override
+  public int getRowCount() {
+    return _values.length;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return 1;
+  }
+
+  @Override
+  public String getColumnName(int columnIndex) {
+    return _function;
+  }
+
+  @Override
+  public long getLong(int rowIndex, int columnIndex) {
+    Object value = getValue(rowIndex, columnIndex);
+    if (value instanceof Integer || value instanceof Long) {
+      return ((Number) value).longValue();
+    }
+    return super.getLong(rowIndex, columnIndex);
+  }
+
+  @Override
+  public double getDouble(int rowIndex, int columnIndex) {
+    Object value = getValue(rowIndex, columnIndex);
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    return super.getDouble(rowIndex, columnIndex);
+  }
+
+  @Override
+  public String getString(int rowIndex, int columnIndex) {
+    return String.valueOf(getValue(rowIndex, columnIndex));
+  }
+
+  private Object getValue(int rowIndex, int columnIndex) {
+    if (columnIndex != 0) {
+      throw new IllegalArgumentException("Column index must always be 0 for aggregation result sets");
+    }
+    return _values[rowIndex];
+  }
+
+  @Override
+  public int getGroupKeyLength() {
+    return _groupByColumns == null ? 0 : _groupByColumns.length;
+  }
+
+  @Override
+  public String getGroupKeyString(int rowIndex, int groupKeyColumnIndex) {
+    if (_groupKeys == null) {
+      throw new AssertionError("No grouping key for queries without a group by clause");
+    }
+    return _groupKeys[rowIndex][groupKeyColumnIndex];
+  }
+}
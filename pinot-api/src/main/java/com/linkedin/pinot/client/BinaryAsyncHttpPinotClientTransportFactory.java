@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.client;
+
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+
+
+/**
+ * Pinot client transport factory for binary encoded BrokerResults through HTTP. The HTTP connections are kept alive
+ * and pooled per broker.
+ */
+class BinaryAsyncHttpPinotClientTransportFactory implements PinotClientTransportFactory {
+  static final int DEFAULT_MAX_CONNECTIONS_PER_BROKER = 32;
+  private static final int POOLED_CONNECTION_IDLE_TIMEOUT_MS = 60000;
+
+  private final int _maxConnectionsPerBroker;
+
+  BinaryAsyncHttpPinotClientTransportFactory() {
+    this(DEFAULT_MAX_CONNECTIONS_PER_BROKER);
+  }
+
+  BinaryAsyncHttpPinotClientTransportFactory(int maxConnectionsPerBroker) {
+    _maxConnectionsPerBroker = maxConnectionsPerBroker;
+  }
+
+  @Override
+  public PinotClientTransport buildTransport() {
+    AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()
+        .setAllowPoolingConnections(true)
+        .setMaxConnectionsPerHost(_maxConnectionsPerBroker)
+        .setPooledConnectionIdleTimeout(POOLED_CONNECTION_IDLE_TIMEOUT_MS)
+        .build();
+    return new JsonAsyncHttpPinotClientTransport(new AsyncHttpClient(config), BinaryResponseFormat.CONTENT_TYPE,
+        JsonAsyncHttpPinotClientTransport.BINARY_DECODER);
+  }
+}
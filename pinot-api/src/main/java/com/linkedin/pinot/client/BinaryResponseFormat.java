@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.client;
+
+/**
+ * Constants of the compact binary broker response format, shared by the broker which writes it and the client which
+ * reads it. The clients ask for it with the {@link #CONTENT_TYPE} content type instead of JSON.
+ *
+ * All numbers are big endian. Strings are written as their number of UTF-8 bytes followed by the bytes, -1 for null.
+ * A response is laid out as:
+ * <pre>
+ * int magic, byte version
+ * long totalDocs, long timeUsedMs, long numDocsScanned
+ * int numExceptions, then for each: int errorCode, string message
+ * int numAggregationResults, then for each: byte kind, string function, and
+ *   AGGREGATION_VALUE: value
+ *   AGGREGATION_GROUP_BY: int numGroupByColumns, strings, int numGroups, then for each group:
+ *     int groupKeyLength, strings, value
+ * boolean hasSelectionResults, then if true:
+ *   int numColumns, then for each: string name, byte type
+ *   int numRows, then the values of each column for all the rows, column after column
+ * </pre>
+ * A value is a type byte followed by the value; the selection columns do not repeat their type before each value.
+ * Arrays are written as their length followed by the elements.
+ */
+public final class BinaryResponseFormat {
+  public static final String CONTENT_TYPE = "application/x-pinot-binary";
+  public static final int MAGIC = 0x50494E54;
+  public static final byte VERSION = 1;
+
+  public static final byte AGGREGATION_VALUE = 0;
+  public static final byte AGGREGATION_GROUP_BY = 1;
+
+  public static final byte TYPE_NULL = 0;
+  public static final byte TYPE_STRING = 1;
+  public static final byte TYPE_INT = 2;
+  public static final byte TYPE_LONG = 3;
+  public static final byte TYPE_FLOAT = 4;
+  public static final byte TYPE_DOUBLE = 5;
+  public static final byte TYPE_STRING_ARRAY = 17;
+  public static final byte TYPE_INT_ARRAY = 18;
+  public static final byte TYPE_LONG_ARRAY = 19;
+  public static final byte TYPE_FLOAT_ARRAY = 20;
+  public static final byte TYPE_DOUBLE_ARRAY = 21;
+
+  private BinaryResponseFormat() {
+  }
+}
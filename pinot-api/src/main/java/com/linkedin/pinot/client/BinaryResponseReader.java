@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+
+/**
+ * Reader of the binary broker response format described in {@link BinaryResponseFormat}, the counterpart of the
+ * BinaryResponseWriter of pinot-common.
+ *
+ * The selection columns are decoded into one primitive or String array per column, so that reading a value does not
+ * parse anything.
+ */
+class BinaryResponseReader {
+  private final DataInputStream _in;
+
+  private BinaryResponseReader(byte[] bytes) {
+    _in = new DataInputStream(new ByteArrayInputStream(bytes));
+  }
+
+  static BrokerResponse read(byte[] bytes) {
+    try {
+      return new BinaryResponseReader(bytes).readBrokerResponse();
+    } catch (PinotClientException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new PinotClientException(e);
+    }
+  }
+
+  private BrokerResponse readBrokerResponse() throws Exception {
+    if (_in.readInt() != BinaryResponseFormat.MAGIC) {
+      throw new PinotClientException("Not a binary broker response");
+    }
+    byte version = _in.readByte();
+    if (version != BinaryResponseFormat.VERSION) {
+      throw new PinotClientException("Unsupported binary broker response version " + version);
+    }
+    // totalDocs, timeUsedMs and numDocsScanned
+    _in.readLong();
+    _in.readLong();
+    _in.readLong();
+
+    JSONArray exceptions = new JSONArray();
+    int exceptionCount = _in.readInt();
+    for (int i = 0; i < exceptionCount; i++) {
+      JSONObject exception = new JSONObject();
+      exception.put("errorCode", _in.readInt());
+      exception.put("message", readString());
+      exceptions.put(exception);
+    }
+
+    List<ResultSet> resultSets = new ArrayList<ResultSet>();
+    int aggregationResultCount = _in.readInt();
+    for (int i = 0; i < aggregationResultCount; i++) {
+      resultSets.add(readAggregationResultSet());
+    }
+    if (_in.readBoolean()) {
+      resultSets.add(0, readSelectionResultSet());
+    }
+
+    return BrokerResponse.fromResultSets(exceptions, resultSets);
+  }
+
+  private ResultSet readAggregationResultSet() throws IOException {
+    byte kind = _in.readByte();
+    String function = readString();
+    if (kind == BinaryResponseFormat.AGGREGATION_VALUE) {
+      return new BinaryAggregationResultSet(function, null, null, new Object[] { readValue() });
+    } else if (kind == BinaryResponseFormat.AGGREGATION_GROUP_BY) {
+      String[] groupByColumns = new String[_in.readInt()];
+      for (int i = 0; i < groupByColumns.length; i++) {
+        groupByColumns[i] = readString();
+      }
+      int groupCount = _in.readInt();
+      String[][] groupKeys = new String[groupCount][];
+      Object[] values = new Object[groupCount];
+      for (int i = 0; i < groupCount; i++) {
+        groupKeys[i] = new String[_in.readInt()];
+        for (int j = 0; j < groupKeys[i].length; j++) {
+          groupKeys[i][j] = readString();
+        }
+        values[i] = readValue();
+      }
+      return new BinaryAggregationResultSet(function, groupByColumns, groupKeys, values);
+    } else {
+      throw new PinotClientException("Unrecognized result group kind " + kind);
+    }
+  }
+
+  private ResultSet readSelectionResultSet() throws IOException {
+    int columnCount = _in.readInt();
+    String[] columnNames = new String[columnCount];
+    byte[] columnTypes = new byte[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      columnNames[i] = readString();
+      columnTypes[i] = _in.readByte();
+    }
+    int rowCount = _in.readInt();
+    Object[] columns = new Object[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      columns[i] = readColumn(columnTypes[i], rowCount);
+    }
+    return new BinarySelectionResultSet(columnNames, columnTypes, columns, rowCount);
+  }
+
+  private Object readColumn(byte type, int rowCount) throws IOException {
+    switch (type) {
+      case BinaryResponseFormat.TYPE_INT:
+        int[] ints = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+          ints[row] = _in.readInt();
+        }
+        return ints;
+      case BinaryResponseFormat.TYPE_LONG:
+        long[] longs = new long[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+          longs[row] = _in.readLong();
+        }
+        return longs;
+      case BinaryResponseFormat.TYPE_FLOAT:
+        float[] floats = new float[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+          floats[row] = _in.readFloat();
+        }
+        return floats;
+      case BinaryResponseFormat.TYPE_DOUBLE:
+        double[] doubles = new double[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+          doubles[row] = _in.readDouble();
+        }
+        return doubles;
+      case BinaryResponseFormat.TYPE_STRING:
+        String[] strings = new String[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+          strings[row] = readString();
+        }
+        return strings;
+      case BinaryResponseFormat.TYPE_INT_ARRAY:
+      case BinaryResponseFormat.TYPE_LONG_ARRAY:
+      case BinaryResponseFormat.TYPE_FLOAT_ARRAY:
+      case BinaryResponseFormat.TYPE_DOUBLE_ARRAY:
+      case BinaryResponseFormat.TYPE_STRING_ARRAY:
+        final byte elementType =
+            (byte) (type - BinaryResponseFormat.TYPE_STRING_ARRAY + BinaryResponseFormat.TYPE_STRING);
+        Object[] arrays = new Object[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+          arrays[row] = readColumn(elementType, _in.readInt());
+        }
+        return arrays;
+      default:
+        throw new PinotClientException("Unrecognized column type " + type);
+    }
+  }
+
+  private Object readValue() throws IOException {
+    byte type = _in.readByte();
+    switch (type) {
+      case BinaryResponseFormat.TYPE_NULL:
+        return null;
+      case BinaryResponseFormat.TYPE_STRING:
+        return readString();
+      case BinaryResponseFormat.TYPE_INT:
+        return _in.readInt();
+      case BinaryResponseFormat.TYPE_LONG:
+        return _in.readLong();
+      case BinaryResponseFormat.TYPE_FLOAT:
+        return _in.readFloat();
+      case BinaryResponseFormat.TYPE_DOUBLE:
+        return _in.readDouble();
+      default:
+        throw new PinotClientException("Unrecognized value type " + type);
+    }
+  }
+
+  private String readString() throws IOException {
+    int length = _in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    _in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.client;
+
+import java.lang.reflect.Array;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import org.json.JSONArray;
+
+
+/**
+ * Selection result set decoded from a binary broker response, which keeps the values of each column in a primitive
+ * or String array. The typed getters of numeric columns read the arrays directly; their string values are formatted
+ * the same way as the values of JSON responses.
+ */
+class BinarySelectionResultSet extends AbstractResultSet {
+  private static final ThreadLocal<DecimalFormat> FLOAT_FORMAT = new ThreadLocal<DecimalFormat>() {
+    @Override
+    protected DecimalFormat initialValue() {
+      return new DecimalFormat("##########.#####", DecimalFormatSymbols.getInstance(Locale.US));
+    }
+  };
+  private static final ThreadLocal<DecimalFormat> DOUBLE_FORMAT = new ThreadLocal<DecimalFormat>() {
+    @Override
+    protected DecimalFormat initialValue() {
+      return new DecimalFormat("####################.##########", DecimalFormatSymbols.getInstance(Locale.US));
+    }
+  };
+
+  private final String[] _columnNames;
+  private final byte[] _columnTypes;
+  private final Object[] _columns;
+  private final int _rowCount;
+
+  BinarySelectionResultSet(String[] columnNames, byte[] columnTypes, Object[] columns, int rowCount) {
+    _columnNames = columnNames;
+    _columnTypes = columnTypes;
+    _columns = columns;
+    _rowCount = rowCount;
+  }
+
+  @Override
+  public int getRowCount() {
+    return _rowCount;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return _columnNames.length;
+  }
+
+  @Override
+  public String getColumnName(int columnIndex) {
+    return _columnNames[columnIndex];
+  }
+
+  @Override
+  public int getInt(int rowIndex, int columnIndex) {
+    switch (_columnTypes[columnIndex]) {
+      case BinaryResponseFormat.TYPE_INT:
+        return ((int[]) _columns[columnIndex])[rowIndex];
+      case BinaryResponseFormat.TYPE_LONG:
+        return (int) ((long[]) _columns[columnIndex])[rowIndex];
+      default:
+        return super.getInt(rowIndex, columnIndex);
+    }
+  }
+
+  @Override
+  public long getLong(int rowIndex, int columnIndex) {
+    switch (_columnTypes[columnIndex]) {
+      case BinaryResponseFormat.TYPE_INT:
+        return ((int[]) _columns[columnIndex])[rowIndex];
+      case BinaryResponseFormat.TYPE_LONG:
+        return ((long[]) _columns[columnIndex])[rowIndex];
+      default:
+        return super.getLong(rowIndex, columnIndex);
+    }
+  }
+
+  @Override
+  public float getFloat(int rowIndex, int columnIndex) {
+    switch (_columnTypes[columnIndex]) {
+      case BinaryResponseFormat.TYPE_INT:
+      case BinaryResponseFormat.TYPE_LONG:
+        return getLong(rowIndex, columnIndex);
+      case BinaryResponseFormat.TYPE_FLOAT:
+        return ((float[]) _columns[columnIndex])[rowIndex];
+      case BinaryResponseFormat.TYPE_DOUBLE:
+        return (float) ((double[]) _columns[columnIndex])[rowIndex];
+      default:
+        return super.getFloat(rowIndex, columnIndex);
+    }
+  }
+
+  @Override
+  public double getDouble(int rowIndex, int columnIndex) {
+    switch (_columnTypes[columnIndex]) {
+      case BinaryResponseFormat.TYPE_INT:
+      case BinaryResponseFormat.TYPE_LONG:
+        return getLong(rowIndex, columnIndex);
+      case BinaryResponseFormat.TYPE_FLOAT:
+        return ((float[]) _columns[columnIndex])[rowIndex];
+      case BinaryResponseFormat.TYPE_DOUBLE:
+        return ((double[]) _columns[columnIndex])[rowIndex];
+      default:
+        return super.getDouble(rowIndex, columnIndex);
+    }
+  }
+
+  @Override
+  public String getString(int rowIndex, int columnIndex) {
+    final byte type = _columnTypes[columnIndex];
+    if (type == BinaryResponseFormat.TYPE_STRING) {
+      return ((String[]) _columns[columnIndex])[rowIndex];
+    } else if (type < BinaryResponseFormat.TYPE_STRING_ARRAY) {
+      return toString(type, _columns[columnIndex], rowIndex);
+    } else {
+      // Multi value columns are given as the JSON array of their values, as in the JSON responses
+      final byte elementType =
+          (byte) (type - BinaryResponseFormat.TYPE_STRING_ARRAY + BinaryResponseFormat.TYPE_STRING);
+      final Object values = ((Object[]) _columns[columnIndex])[rowIndex];
+      JSONArray jsonArray = new JSONArray();
+      int length = Array.getLength(values);
+      for (int i = 0; i < length; i++) {
+        jsonArray.put(toString(elementType, values, i));
+      }
+      return jsonArray.toString();
+    }
+  }
+
+  private static String toString(byte type, Object values, int index) {
+    switch (type) {
+      case BinaryResponseFormat.TYPE_INT:
+        return Integer.toString(((int[]) values)[index]);
+      case BinaryResponseFormat.TYPE_LONG:
+        return Long.toString(((long[]) values)[index]);
+      case BinaryResponseFormat.TYPE_FLOAT:
+        return FLOAT_FORMAT.get().format(((float[]) values)[index]);
+      case BinaryResponseFormat.TYPE_DOUBLE:
+        return DOUBLE_FORMAT.get().format(((double[]) values)[index]);
+      default:
+        return ((String[]) values)[index];
+    }
+  }
+
+  @Override
+  public int getGroupKeyLength() {
+    return 0;
+  }
+
+  @Override
+  public String getGroupKeyString(int rowIndex, int groupKeyColumnIndex) {
+    throw new AssertionError("No group key string for selection results");
+  }
+}
@@ -28,6 +28,8 @@ class BrokerResponse {
   private JSONArray _aggregationResults;
   private JSONObject _selectionResults;
   private JSONArray _exceptions;
+  // Result sets already decoded from a binary response, null for JSON responses
+  private List<ResultSet> _resultSets;
 
   private BrokerResponse() {
   }
@@ -60,6 +62,10 @@ class BrokerResponse {
     return _aggregationResults;
   }
 
+  List<ResultSet> getResultSets() {
+    return _resultSets;
+  }
+
   JSONObject getSelectionResults() {
     return _selectionResults;
   }
@@ -76,6 +82,13 @@ class BrokerResponse {
     return new BrokerResponse(json);
   }
 
+  static BrokerResponse fromResultSets(JSONArray exceptions, List<ResultSet> resultSets) {
+    BrokerResponse brokerResponse = new BrokerResponse();
+    brokerResponse._exceptions = exceptions;
+    brokerResponse._resultSets = resultSets;
+    return brokerResponse;
+  }
+
   static BrokerResponse empty() {
     return new BrokerResponse();
   }
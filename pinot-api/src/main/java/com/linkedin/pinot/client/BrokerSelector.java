@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.client;
+
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Chooses the broker each query is sent to, given the outcome of the previous queries. Implementations must be
+ * thread safe, as a connection can be used by several threads at once.
+ */
+public interface BrokerSelector {
+  /**
+   * Returns the brokers this selector chooses from.
+   *
+   * @return The list of brokers
+   */
+  List<String> getBrokers();
+
+  /**
+   * Chooses the broker to send the next query to.
+   *
+   * @param excludedBrokers Brokers already tried for this query, only returned if there is no other broker
+   * @return The address of the broker, as host:port
+   */
+  String selectBroker(Collection<String> excludedBrokers);
+
+  /**
+   * Called when a broker answered a query.
+   *
+   * @param broker The broker that answered
+   * @param latencyNanos The time between sending the query and getting the answer
+   */
+  void onSuccess(String broker, long latencyNanos);
+
+  /**
+   * Called when a query could not be sent to a broker or got no valid answer.
+   *
+   * @param broker The broker that failed
+   */
+  void onFailure(String broker);
+}
@@ -15,10 +15,17 @@
  */
 package com.linkedin.pinot.client;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.slf4j.Logger;
@@ -27,17 +34,45 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A connection to Pinot, normally created through calls to the {@link ConnectionFactory}.
+ *
+ * Each query goes to the broker chosen by the {@link BrokerSelector} of the connection, which is told how long the
+ * broker took to answer or that it failed. Queries are read only, so a query whose broker could not be reached or did
+ * not answer is retried on another broker, up to maxRetries times. When a hedge delay is set, a query that did not
+ * get its answer within the delay is also sent to a second broker, and the first answer is used.
  */
 public class Connection {
   private static final Logger LOGGER = LoggerFactory.getLogger(Connection.class);
-  private final List<String> _brokerList;
+  static final int DEFAULT_MAX_RETRIES = 1;
+  static final long NO_HEDGING = 0L;
+
+  private final BrokerSelector _brokerSelector;
   private final PinotClientTransport _transport;
-  private final Random _random = new Random();
+  private final int _maxRetries;
+  private final long _hedgeDelayMillis;
+  private final ExecutorService _hedgeExecutor;
 
   Connection(List<String> brokerList, PinotClientTransport transport) {
-    LOGGER.info("Creating connection to broker list {}", brokerList);
-    _brokerList = brokerList;
+    this(new LatencyAwareBrokerSelector(brokerList), transport, DEFAULT_MAX_RETRIES, NO_HEDGING);
+  }
+
+  Connection(BrokerSelector brokerSelector, PinotClientTransport transport, int maxRetries, long hedgeDelayMillis) {
+    LOGGER.info("Creating connection to broker list {}", brokerSelector.getBrokers());
+    _brokerSelector = brokerSelector;
     _transport = transport;
+    _maxRetries = maxRetries;
+    _hedgeDelayMillis = hedgeDelayMillis;
+    if (0 < hedgeDelayMillis) {
+      _hedgeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "pinot-client-hedge");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    } else {
+      _hedgeExecutor = null;
+    }
   }
 
   /**
@@ -58,7 +93,7 @@ public class Connection {
    * @throws PinotClientException If an exception occurs while processing the query
    */
   public ResultSetGroup execute(String statement) throws PinotClientException {
-    BrokerResponse response = _transport.executeQuery(pickRandomBroker(), statement);
+    BrokerResponse response = executeWithRetries(statement, new ArrayList<String>(), _maxRetries);
 
     if (response.hasExceptions()) {
       throw new PinotClientException("Query had processing exceptions: \n" + response.getExceptions());
@@ -75,13 +110,33 @@ public class Connection {
    * @throws PinotClientException If an exception occurs while processing the query
    */
   public Future<ResultSetGroup> executeAsync(String statement) throws PinotClientException {
-    final Future<BrokerResponse> responseFuture = _transport.executeQueryAsync(pickRandomBroker(), statement);
+    final String broker = _brokerSelector.selectBroker(Collections.<String>emptyList());
+    final long startTime = System.nanoTime();
+    // The outcome is reported when the response arrives, not when the caller gets around to reading it
+    final Future<BrokerResponse> responseFuture =
+        _transport.executeQueryAsync(broker, statement, new PinotClientTransport.CompletionListener() {
+          @Override
+          public void onSuccess() {
+            _brokerSelector.onSuccess(broker, System.nanoTime() - startTime);
+          }
 
-    return new ResultSetGroupFuture(responseFuture);
+          @Override
+          public void onFailure(Throwable cause) {
+            _brokerSelector.onFailure(broker);
+          }
+        });
+
+    return new ResultSetGroupFuture(responseFuture, statement, broker);
   }
 
-  private String pickRandomBroker() {
-    return _brokerList.get(_random.nextInt(_brokerList.size()));
+  /**
+   * Releases the threads used to hedge queries. Hedged queries still running complete in the background, and the
+   * connection must not be used afterwards.
+   */
+  public void close() {
+    if (_hedgeExecutor != null) {
+      _hedgeExecutor.shutdown();
+    }
   }
 
   /**
@@ -90,14 +145,114 @@ public class Connection {
    * @return The list of brokers to which this connection can connect to.
    */
   List<String> getBrokerList() {
-    return _brokerList;
+    return _brokerSelector.getBrokers();
+  }
+
+  private BrokerResponse executeWithRetries(String statement, List<String> triedBrokers, int maxRetries) {
+    PinotClientException lastException = null;
+    for (int attempt = 0; attempt <= maxRetries; attempt++) {
+      try {
+        return executeOnce(statement, triedBrokers);
+      } catch (PinotClientException e) {
+        LOGGER.warn("Query failed on brokers {}, attempt {} out of {}", triedBrokers, attempt + 1, maxRetries + 1, e);
+        lastException = e;
+      }
+    }
+    throw lastException;
+  }
+
+  private BrokerResponse executeOnce(String statement, List<String> triedBrokers) {
+    String broker = _brokerSelector.selectBroker(triedBrokers);
+    triedBrokers.add(broker);
+    if (_hedgeExecutor == null) {
+      return executeOnBroker(broker, statement);
+    }
+    return executeHedged(broker, statement, triedBrokers);
   }
 
-  private static class ResultSetGroupFuture implements Future<ResultSetGroup> {
+  /**
+   * Sends the query to the broker and reports the outcome to the broker selector.
+   */
+  private BrokerResponse executeOnBroker(String broker, String statement) {
+    final long startTime = System.nanoTime();
+    try {
+      BrokerResponse response = _transport.executeQuery(broker, statement);
+      _brokerSelector.onSuccess(broker, System.nanoTime() - startTime);
+      return response;
+    } catch (PinotClientException e) {
+      _brokerSelector.onFailure(broker);
+      throw e;
+    } catch (RuntimeException e) {
+      _brokerSelector.onFailure(broker);
+      throw new PinotClientException(e);
+    }
+  }
+
+  /**
+   * Sends the query to the broker, and to a second one if the first did not answer within the hedge delay. The first
+   * answer is returned, the other query is left running so that its latency still gets reported.
+   */
+  private BrokerResponse executeHedged(String broker, String statement, List<String> triedBrokers) {
+    CompletionService<BrokerResponse> completionService =
+        new ExecutorCompletionService<BrokerResponse>(_hedgeExecutor);
+    completionService.submit(new BrokerQuery(broker, statement));
+    int pendingQueries = 1;
+
+    try {
+      Future<BrokerResponse> completedQuery = completionService.poll(_hedgeDelayMillis, TimeUnit.MILLISECONDS);
+      if (completedQuery == null) {
+        String hedgeBroker = _brokerSelector.selectBroker(triedBrokers);
+        if (!triedBrokers.contains(hedgeBroker)) {
+          triedBrokers.add(hedgeBroker);
+          completionService.submit(new BrokerQuery(hedgeBroker, statement));
+          pendingQueries++;
+        }
+        completedQuery = completionService.take();
+      }
+
+      while (true) {
+        pendingQueries--;
+        try {
+          return completedQuery.get();
+        } catch (ExecutionException e) {
+          if (pendingQueries == 0) {
+            throw e.getCause() instanceof PinotClientException ? (PinotClientException) e.getCause()
+                : new PinotClientException(e.getCause());
+          }
+          completedQuery = completionService.take();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PinotClientException(e);
+    }
+  }
+
+  private class BrokerQuery implements Callable<BrokerResponse> {
+    private final String _broker;
+    private final String _statement;
+
+    public BrokerQuery(String broker, String statement) {
+      _broker = broker;
+      _statement = statement;
+    }
+
+    @Override
+    public BrokerResponse call() {
+      return executeOnBroker(_broker, _statement);
+    }
+  }
+
+  private class ResultSetGroupFuture implements Future<ResultSetGroup> {
     private final Future<BrokerResponse> _responseFuture;
+    private final String _statement;
+    private final String _broker;
+    private BrokerResponse _response;
 
-    public ResultSetGroupFuture(Future<BrokerResponse> responseFuture) {
+    public ResultSetGroupFuture(Future<BrokerResponse> responseFuture, String statement, String broker) {
       _responseFuture = responseFuture;
+      _statement = statement;
+      _broker = broker;
     }
 
     @Override
@@ -125,10 +280,26 @@ public class Connection {
     }
 
     @Override
-    public ResultSetGroup get(long timeout, TimeUnit unit)
+    public synchronized ResultSetGroup get(long timeout, TimeUnit unit)
         throws InterruptedException, ExecutionException, TimeoutException {
-      BrokerResponse response = _responseFuture.get(timeout, unit);
-      return new ResultSetGroup(response);
+      if (_response == null) {
+        try {
+          _response = _responseFuture.get(timeout, unit);
+        } catch (ExecutionException e) {
+          if (_maxRetries == 0) {
+            throw e;
+          }
+          // The answer is needed now, so the retries are done on the calling thread
+          List<String> triedBrokers = new ArrayList<String>();
+          triedBrokers.add(_broker);
+          try {
+            _response = executeWithRetries(_statement, triedBrokers, _maxRetries - 1);
+          } catch (PinotClientException retryException) {
+            throw new ExecutionException(retryException);
+          }
+        }
+      }
+      return new ResultSetGroup(_response);
     }
   }
 }
@@ -27,9 +27,24 @@ import org.json.JSONObject;
 
 /**
  * Creates connections to Pinot, given various initialization methods.
+ *
+ * Queries are sent as JSON over HTTP, and the brokers answer in JSON unless the binary transport is chosen, through
+ * the pinot.client.transport system property or the transport connection property set to "binary".
+ *
+ * Connections built from a list of brokers prefer the brokers that answer faster and stop using failing brokers for a
+ * while, see {@link LatencyAwareBrokerSelector}; any other policy can be plugged in with {@link
+ * #fromBrokerSelector(BrokerSelector)}.
  */
 public class ConnectionFactory {
-  static PinotClientTransportFactory _transportFactory = new JsonAsyncHttpPinotClientTransportFactory();
+  private static final String TRANSPORT_SYSTEM_PROPERTY = "pinot.client.transport";
+  private static final String TRANSPORT_PROPERTY = "transport";
+  private static final String MAX_CONNECTIONS_PER_BROKER_PROPERTY = "maxConnectionsPerBroker";
+  private static final String BINARY_TRANSPORT = "binary";
+  private static final String MAX_RETRIES_PROPERTY = "maxRetries";
+  private static final String HEDGE_DELAY_MS_PROPERTY = "hedgeDelayMs";
+
+  static PinotClientTransportFactory _transportFactory =
+      getTransportFactory(System.getProperty(TRANSPORT_SYSTEM_PROPERTY), null);
 
   private ConnectionFactory() {
   }
@@ -80,11 +95,33 @@ public class ConnectionFactory {
    * @return A connection that connects to the brokers specified in the properties
    */
   public static Connection fromProperties(Properties properties) {
-    return new Connection(Arrays.asList(properties.getProperty("brokerList").split(",")), _transportFactory.buildTransport());
+    PinotClientTransportFactory transportFactory = _transportFactory;
+    if (properties.getProperty(TRANSPORT_PROPERTY) != null) {
+      transportFactory = getTransportFactory(properties.getProperty(TRANSPORT_PROPERTY),
+          properties.getProperty(MAX_CONNECTIONS_PER_BROKER_PROPERTY));
+    }
+    List<String> brokerList = Arrays.asList(properties.getProperty("brokerList").split(","));
+    int maxRetries = Integer.parseInt(
+        properties.getProperty(MAX_RETRIES_PROPERTY, Integer.toString(Connection.DEFAULT_MAX_RETRIES)));
+    long hedgeDelayMillis = Long.parseLong(
+        properties.getProperty(HEDGE_DELAY_MS_PROPERTY, Long.toString(Connection.NO_HEDGING)));
+    return new Connection(new LatencyAwareBrokerSelector(brokerList), transportFactory.buildTransport(), maxRetries,
+        hedgeDelayMillis);
   }
 
   /**
-   * Creates a connection which sends queries randomly between the specified brokers.
+   * Creates a connection which sends queries to the brokers chosen by a broker selector.
+   *
+   * @param brokerSelector The broker selector to use
+   * @return A connection which sends queries to the brokers chosen by the broker selector
+   */
+  public static Connection fromBrokerSelector(BrokerSelector brokerSelector) {
+    return new Connection(brokerSelector, _transportFactory.buildTransport(), Connection.DEFAULT_MAX_RETRIES,
+        Connection.NO_HEDGING);
+  }
+
+  /**
+   * Creates a connection which balances queries between the specified brokers.
    *
    * @param brokers The list of brokers to send queries to
    * @return A connection to the set of brokers specified
@@ -92,4 +129,14 @@ public class ConnectionFactory {
   public static Connection fromHostList(String... brokers) {
     return new Connection(Arrays.asList(brokers), _transportFactory.buildTransport());
   }
+
+  private static PinotClientTransportFactory getTransportFactory(String transport, String maxConnectionsPerBroker) {
+    if (BINARY_TRANSPORT.equalsIgnoreCase(transport)) {
+      if (maxConnectionsPerBroker != null) {
+        return new BinaryAsyncHttpPinotClientTransportFactory(Integer.parseInt(maxConnectionsPerBroker));
+      }
+      return new BinaryAsyncHttpPinotClientTransportFactory();
+    }
+    return new JsonAsyncHttpPinotClientTransportFactory();
+  }
 }
@@ -16,8 +16,10 @@
 package com.linkedin.pinot.client;
 
 import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Response;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -27,46 +29,132 @@ import org.slf4j.LoggerFactory;
 
 
 /**
- * JSON encoded Pinot client transport over AsyncHttpClient.
+ * Pinot client transport over AsyncHttpClient, JSON encoded by default.
+ *
+ * The response format is chosen with the Accept header sent to the brokers and the decoder of their responses, see
+ * {@link #BINARY_DECODER} for the binary format.
  */
 class JsonAsyncHttpPinotClientTransport implements PinotClientTransport {
   private static final Logger LOGGER = LoggerFactory.getLogger(JsonAsyncHttpPinotClientTransport.class);
-  AsyncHttpClient _httpClient = new AsyncHttpClient();
+  // Completion listeners are cheap and non blocking, they run on the I/O thread that completed the response
+  private static final Executor SAME_THREAD_EXECUTOR = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  /**
+   * Decodes the body of a successful broker response.
+   */
+  interface ResponseDecoder {
+    BrokerResponse decode(Response httpResponse) throws Exception;
+  }
+
+  static final ResponseDecoder JSON_DECODER = new ResponseDecoder() {
+    @Override
+    public BrokerResponse decode(Response httpResponse) throws Exception {
+      String responseBody = new String(httpResponse.getResponseBodyAsBytes(), "UTF-8");
+      return BrokerResponse.fromJson(new JSONObject(responseBody));
+    }
+  };
+
+  /**
+   * Decodes the binary response format into typed columns without going through JSON. Brokers that do not know the
+   * binary format answer in JSON, which is then parsed as usual.
+   */
+  static final ResponseDecoder BINARY_DECODER = new ResponseDecoder() {
+    @Override
+    public BrokerResponse decode(Response httpResponse) throws Exception {
+      String contentType = httpResponse.getContentType();
+      if (contentType != null && contentType.startsWith(BinaryResponseFormat.CONTENT_TYPE)) {
+        return BinaryResponseReader.read(httpResponse.getResponseBodyAsBytes());
+      } else {
+        return JSON_DECODER.decode(httpResponse);
+      }
+    }
+  };
+
+  private final AsyncHttpClient _httpClient;
+  private final String _acceptContentType;
+  private final ResponseDecoder _decoder;
+
+  JsonAsyncHttpPinotClientTransport() {
+    this(new AsyncHttpClient(), null, JSON_DECODER);
+  }
+
+  /**
+   * @param acceptContentType content type asked to the brokers in the Accept header, or null to not send the header
+   */
+  JsonAsyncHttpPinotClientTransport(AsyncHttpClient httpClient, String acceptContentType, ResponseDecoder decoder) {
+    _httpClient = httpClient;
+    _acceptContentType = acceptContentType;
+    _decoder = decoder;
+  }
 
   @Override
   public BrokerResponse executeQuery(String brokerAddress, String query) throws PinotClientException {
     try {
-      return executeQueryAsync(brokerAddress, query).get();
+      return executeQueryAsync(brokerAddress, query, null).get();
     } catch (Exception e) {
       throw new PinotClientException(e);
     }
   }
 
   @Override
-  public Future<BrokerResponse> executeQueryAsync(String brokerAddress, final String query) {
+  public Future<BrokerResponse> executeQueryAsync(String brokerAddress, final String query,
+      CompletionListener listener) {
     try {
       final JSONObject json = new JSONObject();
       json.put("pql", query);
 
       final String url = "http://" + brokerAddress + "/query";
 
-      final Future<Response> response = _httpClient.preparePost(url).setBody(json.toString().getBytes("UTF-8")).execute();
+      final AsyncHttpClient.BoundRequestBuilder request = _httpClient.preparePost(url);
+      if (_acceptContentType != null) {
+        request.addHeader("Accept", _acceptContentType);
+      }
+      final ListenableFuture<Response> response = request.setBody(json.toString().getBytes("UTF-8")).execute();
+      if (listener != null) {
+        addCompletionListener(response, listener);
+      }
 
-      return new BrokerResponseFuture(response, query, url);
+      return new BrokerResponseFuture(response, query, url, _decoder);
     } catch (Exception e) {
       throw new PinotClientException(e);
     }
   }
 
+  private static void addCompletionListener(final ListenableFuture<Response> response,
+      final CompletionListener listener) {
+    response.addListener(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          int statusCode = response.get().getStatusCode();
+          if (statusCode == 200) {
+            listener.onSuccess();
+          } else {
+            listener.onFailure(new PinotClientException("Pinot returned HTTP status " + statusCode + ", expected 200"));
+          }
+        } catch (Exception e) {
+          listener.onFailure(e);
+        }
+      }
+    }, SAME_THREAD_EXECUTOR);
+  }
+
   private static class BrokerResponseFuture implements Future<BrokerResponse> {
     private final Future<Response> _response;
     private final String _query;
     private final String _url;
+    private final ResponseDecoder _decoder;
 
-    public BrokerResponseFuture(Future<Response> response, String query, String url) {
+    public BrokerResponseFuture(Future<Response> response, String query, String url, ResponseDecoder decoder) {
       _response = response;
       _query = query;
       _url = url;
+      _decoder = decoder;
     }
 
     @Override
@@ -110,8 +198,7 @@ class JsonAsyncHttpPinotClientTransport implements PinotClientTransport {
               ", expected 200");
         }
 
-        String responseBody = new String(httpResponse.getResponseBodyAsBytes(), "UTF-8");
-        return BrokerResponse.fromJson(new JSONObject(responseBody));
+        return _decoder.decode(httpResponse);
       } catch (Exception e) {
         throw new ExecutionException(e);
       }
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Broker selector which prefers the brokers that answer faster and fail less.
+ *
+ * An exponentially weighted moving average of the latency and of the error rate is kept per broker. Each query picks
+ * two random brokers and goes to the one with the lower latency, inflated by its error rate; brokers that never
+ * answered yet have no latency, so they get tried. A broker that fails is ejected for a backoff period, which doubles
+ * with each consecutive failure up to a maximum, and it comes back once the period is over. When all the brokers are
+ * ejected, the one whose backoff ends first is used.
+ */
+class LatencyAwareBrokerSelector implements BrokerSelector {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LatencyAwareBrokerSelector.class);
+
+  static final long DEFAULT_BASE_BACKOFF_MILLIS = 1000L;
+  static final long DEFAULT_MAX_BACKOFF_MILLIS = 60000L;
+  // Weight of the latest sample in the moving averages
+  private static final double EWMA_WEIGHT = 0.2;
+  // A broker failing every query counts as this many times slower
+  private static final double ERROR_RATE_PENALTY = 10.0;
+
+  private final List<String> _brokers;
+  private final Map<String, BrokerStats> _brokerStats = new HashMap<String, BrokerStats>();
+  private final long _baseBackoffMillis;
+  private final long _maxBackoffMillis;
+  private final Random _random = new Random();
+
+  LatencyAwareBrokerSelector(List<String> brokers) {
+    this(brokers, DEFAULT_BASE_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+  }
+
+  LatencyAwareBrokerSelector(List<String> brokers, long baseBackoffMillis, long maxBackoffMillis) {
+    if (brokers.isEmpty()) {
+      throw new PinotClientException("No broker to send queries to");
+    }
+    _brokers = Collections.unmodifiableList(new ArrayList<String>(brokers));
+    for (String broker : _brokers) {
+      _brokerStats.put(broker, new BrokerStats());
+    }
+    _baseBackoffMillis = baseBackoffMillis;
+    _maxBackoffMillis = maxBackoffMillis;
+  }
+
+  @Override
+  public List<String> getBrokers() {
+    return _brokers;
+  }
+
+  @Override
+  public String selectBroker(Collection<String> excludedBrokers) {
+    final long now = System.currentTimeMillis();
+    List<String> candidates = new ArrayList<String>(_brokers.size());
+    for (String broker : _brokers) {
+      if (!excludedBrokers.contains(broker) && !_brokerStats.get(broker).isEjected(now)) {
+        candidates.add(broker);
+      }
+    }
+
+    if (candidates.isEmpty()) {
+      return selectLeastEjectedBroker(excludedBrokers);
+    }
+    if (candidates.size() == 1) {
+      return candidates.get(0);
+    }
+
+    // Power of two choices: good enough balance without herding all the clients onto the fastest broker
+    int first = _random.nextInt(candidates.size());
+    int second = _random.nextInt(candidates.size() - 1);
+    if (second >= first) {
+      second++;
+    }
+    String firstBroker = candidates.get(first);
+    String secondBroker = candidates.get(second);
+    if (_brokerStats.get(secondBroker).getScore() < _brokerStats.get(firstBroker).getScore()) {
+      return secondBroker;
+    }
+    return firstBroker;
+  }
+
+  private String selectLeastEjectedBroker(Collection<String> excludedBrokers) {
+    String selectedBroker = null;
+    long selectedEjectedUntil = Long.MAX_VALUE;
+    for (String broker : _brokers) {
+      long ejectedUntil = _brokerStats.get(broker).getEjectedUntil();
+      if (!excludedBrokers.contains(broker) && ejectedUntil < selectedEjectedUntil) {
+        selectedBroker = broker;
+        selectedEjectedUntil = ejectedUntil;
+      }
+    }
+    if (selectedBroker == null) {
+      // Every broker was already tried for this query
+      selectedBroker = _brokers.get(_random.nextInt(_brokers.size()));
+    }
+    return selectedBroker;
+  }
+
+  @Override
+  public void onSuccess(String broker, long latencyNanos) {
+    BrokerStats stats = _brokerStats.get(broker);
+    if (stats != null) {
+      stats.onSuccess(latencyNanos);
+    }
+  }
+
+  @Override
+  public void onFailure(String broker) {
+    BrokerStats stats = _brokerStats.get(broker);
+    if (stats != null) {
+      long backoffMillis = stats.onFailure(System.currentTimeMillis(), _baseBackoffMillis, _maxBackoffMillis);
+      LOGGER.warn("Query to broker {} failed, not using it for {} ms", broker, backoffMillis);
+    }
+  }
+
+  private static class BrokerStats {
+    private double _latencyNanos = 0;
+    private double _errorRate = 0;
+    private int _consecutiveFailures = 0;
+    private long _ejectedUntil = 0;
+
+    synchronized void onSuccess(long latencyNanos) {
+      _latencyNanos = (_latencyNanos == 0) ? latencyNanos
+          : EWMA_WEIGHT * latencyNanos + (1 - EWMA_WEIGHT) * _latencyNanos;
+      _errorRate = (1 - EWMA_WEIGHT) * _errorRate;
+      _consecutiveFailures = 0;
+      _ejectedUntil = 0;
+    }
+
+    /**
+     * @return the backoff period, in milliseconds
+     */
+    synchronized long onFailure(long now, long baseBackoffMillis, long maxBackoffMillis) {
+      _errorRate = EWMA_WEIGHT + (1 - EWMA_WEIGHT) * _errorRate;
+      long backoffMillis = baseBackoffMillis << Math.min(_consecutiveFailures, 30);
+      if (backoffMillis <= 0 || backoffMillis > maxBackoffMillis) {
+        backoffMillis = maxBackoffMillis;
+      }
+      _consecutiveFailures++;
+      _ejectedUntil = now + backoffMillis;
+      return backoffMillis;
+    }
+
+    synchronized boolean isEjected(long now) {
+      return _ejectedUntil > now;
+    }
+
+    synchronized long getEjectedUntil() {
+      return _ejectedUntil;
+    }
+
+    synchronized double getScore() {
+      return _latencyNanos * (1 + ERROR_RATE_PENALTY * _errorRate);
+    }
+  }
+}
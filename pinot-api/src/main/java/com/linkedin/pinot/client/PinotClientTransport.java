@@ -23,5 +23,22 @@ import java.util.concurrent.Future;
  */
 interface PinotClientTransport {
   BrokerResponse executeQuery(String brokerAddress, String query) throws PinotClientException;
-  Future<BrokerResponse> executeQueryAsync(String brokerAddress, String query) throws PinotClientException;
+
+  /**
+   * Sends the query without waiting for its response.
+   *
+   * @param listener Told as soon as the broker answers or the query fails, whether or not the returned future is ever
+   *                 read, may be null
+   */
+  Future<BrokerResponse> executeQueryAsync(String brokerAddress, String query, CompletionListener listener)
+      throws PinotClientException;
+
+  /**
+   * Listener of the completion of an asynchronous query, called on a transport thread so it must not block.
+   */
+  interface CompletionListener {
+    void onSuccess();
+
+    void onFailure(Throwable cause);
+  }
 }
@@ -30,6 +30,11 @@ public class ResultSetGroup {
   ResultSetGroup(BrokerResponse brokerResponse) {
     _resultSets = new ArrayList<ResultSet>();
 
+    if (brokerResponse.getResultSets() != null) {
+      _resultSets.addAll(brokerResponse.getResultSets());
+      return;
+    }
+
     if (brokerResponse.getSelectionResults() != null) {
       _resultSets.add(new SelectionResultSet(brokerResponse.getSelectionResults()));
     }
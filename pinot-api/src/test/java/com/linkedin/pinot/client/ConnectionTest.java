@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests for the broker selection, failover and hedging of connections
+ *
+ */
+public class ConnectionTest {
+  private static final String FAST_BROKER = "fast:1234";
+  private static final String SLOW_BROKER = "slow:1234";
+  private static final String FAILING_BROKER = "failing:1234";
+
+  @Test
+  public void testFailover() {
+    DummyPinotClientTransport transport = new DummyPinotClientTransport();
+    transport.setFailing(FAILING_BROKER);
+    Connection connection = new Connection(Arrays.asList(FAILING_BROKER, FAST_BROKER), transport);
+
+    // Every query succeeds, the ones sent to the failing broker being retried on the other one
+    for (int i = 0; i < 20; i++) {
+      connection.execute("SELECT foo FROM bar");
+    }
+
+    // The failing broker is ejected after its first failure, so it gets at most one query
+    Assert.assertTrue(transport.getQueryCount(FAILING_BROKER) <= 1);
+    Assert.assertEquals(transport.getQueryCount(FAST_BROKER), 20);
+  }
+
+  @Test
+  public void testNoRetries() {
+    DummyPinotClientTransport transport = new DummyPinotClientTransport();
+    transport.setFailing(FAILING_BROKER);
+    Connection connection = new Connection(new LatencyAwareBrokerSelector(Collections.singletonList(FAILING_BROKER)),
+        transport, 0, Connection.NO_HEDGING);
+
+    try {
+      connection.execute("SELECT foo FROM bar");
+      Assert.fail("Query should have failed");
+    } catch (PinotClientException e) {
+      // Expected
+    }
+    Assert.assertEquals(transport.getQueryCount(FAILING_BROKER), 1);
+  }
+
+  @Test
+  public void testEjection() throws Exception {
+    LatencyAwareBrokerSelector selector =
+        new LatencyAwareBrokerSelector(Arrays.asList(FAILING_BROKER, FAST_BROKER), 100L, 1000L);
+    List<String> noExcludedBrokers = Collections.emptyList();
+
+    selector.onFailure(FAILING_BROKER);
+    for (int i = 0; i < 20; i++) {
+      Assert.assertEquals(selector.selectBroker(noExcludedBrokers), FAST_BROKER);
+    }
+
+    // The only broker left is returned even if it is ejected
+    Assert.assertEquals(selector.selectBroker(Collections.singletonList(FAST_BROKER)), FAILING_BROKER);
+
+    // Once the backoff period is over, the broker gets queries again
+    Thread.sleep(200L);
+    Set<String> selectedBrokers = new HashSet<String>();
+    for (int i = 0; i < 100; i++) {
+      selectedBrokers.add(selector.selectBroker(noExcludedBrokers));
+    }
+    Assert.assertTrue(selectedBrokers.contains(FAILING_BROKER));
+  }
+
+  @Test
+  public void testLatencyPreference() {
+    LatencyAwareBrokerSelector selector = new LatencyAwareBrokerSelector(Arrays.asList(FAST_BROKER, SLOW_BROKER));
+    selector.onSuccess(FAST_BROKER, 1000000L);
+    selector.onSuccess(SLOW_BROKER, 100000000L);
+
+    // With two brokers, both are compared for every query
+    for (int i = 0; i < 20; i++) {
+      Assert.assertEquals(selector.selectBroker(Collections.<String>emptyList()), FAST_BROKER);
+    }
+  }
+
+  @Test
+  public void testHedging() {
+    DummyPinotClientTransport transport = new DummyPinotClientTransport();
+    transport.setDelay(SLOW_BROKER, 2000L);
+    BrokerSelector selector = new StaticBrokerSelector(SLOW_BROKER, FAST_BROKER);
+    Connection connection = new Connection(selector, transport, 0, 50L);
+
+    long startTime = System.currentTimeMillis();
+    connection.execute("SELECT foo FROM bar");
+    Assert.assertTrue(System.currentTimeMillis() - startTime < 2000L);
+    Assert.assertEquals(transport.getQueryCount(SLOW_BROKER), 1);
+    Assert.assertEquals(transport.getQueryCount(FAST_BROKER), 1);
+  }
+
+  @Test
+  public void testAsyncFailover() throws Exception {
+    DummyPinotClientTransport transport = new DummyPinotClientTransport();
+    transport.setFailing(FAILING_BROKER);
+    BrokerSelector selector = new StaticBrokerSelector(FAILING_BROKER, FAST_BROKER);
+    Connection connection = new Connection(selector, transport, 1, Connection.NO_HEDGING);
+
+    Future<ResultSetGroup> future = connection.executeAsync("SELECT foo FROM bar");
+    Assert.assertNotNull(future.get());
+    Assert.assertEquals(transport.getQueryCount(FAILING_BROKER), 1);
+    Assert.assertEquals(transport.getQueryCount(FAST_BROKER), 1);
+  }
+
+  @Test
+  public void testAsyncOutcomeReportedOnCompletion() throws Exception {
+    DummyPinotClientTransport transport = new DummyPinotClientTransport();
+    transport.setFailing(FAILING_BROKER);
+    RecordingBrokerSelector selector = new RecordingBrokerSelector(FAST_BROKER);
+    Connection connection = new Connection(selector, transport, 0, Connection.NO_HEDGING);
+
+    // The latency is reported once the response arrives, the time taken to read it does not count
+    Future<ResultSetGroup> future = connection.executeAsync("SELECT foo FROM bar");
+    Assert.assertEquals(selector._latencies.size(), 1);
+    Thread.sleep(100L);
+    future.get();
+    Assert.assertEquals(selector._latencies.size(), 1);
+    Assert.assertTrue(selector._latencies.get(0) < TimeUnit.MILLISECONDS.toNanos(100L));
+
+    // Failures are reported even if the future is never read
+    selector = new RecordingBrokerSelector(FAILING_BROKER);
+    connection = new Connection(selector, transport, 0, Connection.NO_HEDGING);
+    connection.executeAsync("SELECT foo FROM bar");
+    Assert.assertEquals(selector._failures, 1);
+  }
+
+  @Test
+  public void testClose() {
+    DummyPinotClientTransport transport = new DummyPinotClientTransport();
+    Connection connection = new Connection(new StaticBrokerSelector(FAST_BROKER), transport, 0, 50L);
+    connection.execute("SELECT foo FROM bar");
+    connection.close();
+  }
+
+  /**
+   * Selector of a single broker which records what it is told.
+   */
+  static class RecordingBrokerSelector extends StaticBrokerSelector {
+    final List<Long> _latencies = Collections.synchronizedList(new ArrayList<Long>());
+    volatile int _failures = 0;
+
+    RecordingBrokerSelector(String broker) {
+      super(broker);
+    }
+
+    @Override
+    public void onSuccess(String broker, long latencyNanos) {
+      _latencies.add(latencyNanos);
+    }
+
+    @Override
+    public void onFailure(String broker) {
+      _failures++;
+    }
+  }
+
+  /**
+   * Selector which always picks the first broker that was not tried yet.
+   */
+  static class StaticBrokerSelector implements BrokerSelector {
+    private final List<String> _brokers;
+
+    StaticBrokerSelector(String... brokers) {
+      _brokers = Arrays.asList(brokers);
+    }
+
+    @Override
+    public List<String> getBrokers() {
+      return _brokers;
+    }
+
+    @Override
+    public String selectBroker(Collection<String> excludedBrokers) {
+      for (String broker : _brokers) {
+        if (!excludedBrokers.contains(broker)) {
+          return broker;
+        }
+      }
+      return _brokers.get(0);
+    }
+
+    @Override
+    public void onSuccess(String broker, long latencyNanos) {
+    }
+
+    @Override
+    public void onFailure(String broker) {
+    }
+  }
+
+  static class DummyPinotClientTransport implements PinotClientTransport {
+    private final Set<String> _failingBrokers = new HashSet<String>();
+    private final Map<String, Long> _delays = new HashMap<String, Long>();
+    private final List<String> _queriedBrokers = Collections.synchronizedList(new ArrayList<String>());
+
+    void setFailing(String broker) {
+      _failingBrokers.add(broker);
+    }
+
+    void setDelay(String broker, long delayMillis) {
+      _delays.put(broker, delayMillis);
+    }
+
+    int getQueryCount(String broker) {
+      return Collections.frequency(new ArrayList<String>(_queriedBrokers), broker);
+    }
+
+    @Override
+    public BrokerResponse executeQuery(String brokerAddress, String query)
+        throws PinotClientException {
+      _queriedBrokers.add(brokerAddress);
+      if (_failingBrokers.contains(brokerAddress)) {
+        throw new PinotClientException("Connection refused by " + brokerAddress);
+      }
+      Long delay = _delays.get(brokerAddress);
+      if (delay != null) {
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException e) {
+          throw new PinotClientException(e);
+        }
+      }
+      return BrokerResponse.empty();
+    }
+
+    @Override
+    public Future<BrokerResponse> executeQueryAsync(String brokerAddress, String query, CompletionListener listener)
+        throws PinotClientException {
+      _queriedBrokers.add(brokerAddress);
+      final boolean failing = _failingBrokers.contains(brokerAddress);
+      final String broker = brokerAddress;
+      FutureTask<BrokerResponse> response = new FutureTask<BrokerResponse>(new Callable<BrokerResponse>() {
+        @Override
+        public BrokerResponse call() {
+          if (failing) {
+            throw new PinotClientException("Connection refused by " + broker);
+          }
+          return BrokerResponse.empty();
+        }
+      });
+      response.run();
+      if (listener != null) {
+        if (failing) {
+          listener.onFailure(new PinotClientException("Connection refused by " + broker));
+        } else {
+          listener.onSuccess();
+        }
+      }
+      return response;
+    }
+  }
+}
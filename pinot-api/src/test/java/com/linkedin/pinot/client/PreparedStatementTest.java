@@ -53,7 +53,7 @@ public class PreparedStatementTest {
     }
 
     @Override
-    public Future<BrokerResponse> executeQueryAsync(String brokerAddress, String query)
+    public Future<BrokerResponse> executeQueryAsync(String brokerAddress, String query, CompletionListener listener)
         throws PinotClientException {
       _lastQuery = query;
       return null;
@@ -15,6 +15,9 @@
  */
 package com.linkedin.pinot.client;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.Future;
 import org.json.JSONObject;
@@ -107,6 +110,142 @@ public class ResultSetGroupTest {
     }
   }
 
+  @Test
+  public void testDeserializeBinarySelectionResultSet() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = writeBinaryHeader(bytes, 0);
+    out.writeInt(0);
+    out.writeBoolean(true);
+    out.writeInt(4);
+    writeString(out, "intColumn");
+    out.writeByte(BinaryResponseFormat.TYPE_INT);
+    writeString(out, "doubleColumn");
+    out.writeByte(BinaryResponseFormat.TYPE_DOUBLE);
+    writeString(out, "stringColumn");
+    out.writeByte(BinaryResponseFormat.TYPE_STRING);
+    writeString(out, "intArrayColumn");
+    out.writeByte(BinaryResponseFormat.TYPE_INT_ARRAY);
+    out.writeInt(2);
+    out.writeInt(84);
+    out.writeInt(-202);
+    out.writeDouble(1.0);
+    out.writeDouble(2.25);
+    writeString(out, "first");
+    writeString(out, "second");
+    out.writeInt(2);
+    out.writeInt(1);
+    out.writeInt(2);
+    out.writeInt(0);
+    out.flush();
+
+    ResultSetGroup resultSetGroup = getBinaryResultSet(bytes.toByteArray());
+    Assert.assertEquals(resultSetGroup.getResultSetCount(), 1, "Expected one result set for selection query");
+    ResultSet resultSet = resultSetGroup.getResultSet(0);
+    Assert.assertEquals(resultSet.getRowCount(), 2);
+    Assert.assertEquals(resultSet.getColumnCount(), 4);
+    Assert.assertEquals(resultSet.getColumnName(1), "doubleColumn");
+
+    Assert.assertEquals(resultSet.getInt(0, 0), 84);
+    Assert.assertEquals(resultSet.getLong(1, 0), -202L);
+    Assert.assertEquals(resultSet.getString(1, 0), "-202");
+    Assert.assertEquals(resultSet.getDouble(1, 1), 2.25);
+    // Formatted the same way as the JSON responses
+    Assert.assertEquals(resultSet.getString(0, 1), "1");
+    Assert.assertEquals(resultSet.getString(1, 2), "second");
+    Assert.assertEquals(resultSet.getString(0, 3), "[\"1\",\"2\"]");
+    Assert.assertEquals(resultSet.getString(1, 3), "[]");
+  }
+
+  @Test
+  public void testDeserializeBinaryAggregationGroupByResultSet() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = writeBinaryHeader(bytes, 0);
+    out.writeInt(2);
+    out.writeByte(BinaryResponseFormat.AGGREGATION_VALUE);
+    writeString(out, "count_star");
+    out.writeByte(BinaryResponseFormat.TYPE_STRING);
+    writeString(out, "36542");
+    out.writeByte(BinaryResponseFormat.AGGREGATION_GROUP_BY);
+    writeString(out, "sum_metric");
+    out.writeInt(1);
+    writeString(out, "dimension");
+    out.writeInt(2);
+    out.writeInt(1);
+    writeString(out, "30194");
+    out.writeByte(BinaryResponseFormat.TYPE_STRING);
+    writeString(out, "3604.00000");
+    out.writeInt(1);
+    writeString(out, "31057");
+    out.writeByte(BinaryResponseFormat.TYPE_LONG);
+    out.writeLong(1804L);
+    out.writeBoolean(false);
+    out.flush();
+
+    ResultSetGroup resultSetGroup = getBinaryResultSet(bytes.toByteArray());
+    Assert.assertEquals(resultSetGroup.getResultSetCount(), 2, "Result set count mismatch");
+
+    ResultSet aggregation = resultSetGroup.getResultSet(0);
+    Assert.assertEquals(aggregation.getGroupKeyLength(), 0);
+    Assert.assertEquals(aggregation.getRowCount(), 1);
+    Assert.assertEquals(aggregation.getLong(0), 36542L);
+    Assert.assertEquals(aggregation.getColumnName(0), "count_star");
+
+    ResultSet groupBy = resultSetGroup.getResultSet(1);
+    Assert.assertEquals(groupBy.getGroupKeyLength(), 1);
+    Assert.assertEquals(groupBy.getRowCount(), 2);
+    Assert.assertEquals(groupBy.getGroupKeyInt(0, 0), 30194);
+    Assert.assertEquals(groupBy.getGroupKeyString(1, 0), "31057");
+    Assert.assertEquals(groupBy.getDouble(0), 3604.0);
+    Assert.assertEquals(groupBy.getLong(1), 1804L);
+    Assert.assertEquals(groupBy.getString(1), "1804");
+  }
+
+  @Test
+  public void testDeserializeBinaryExceptionResultSet() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = writeBinaryHeader(bytes, 1);
+    out.writeInt(0);
+    out.writeBoolean(false);
+    out.flush();
+    try {
+      getBinaryResultSet(bytes.toByteArray());
+      Assert.fail("Execute should have thrown an exception");
+    } catch (PinotClientException e) {
+      // We expect an exception here
+    }
+  }
+
+  private DataOutputStream writeBinaryHeader(ByteArrayOutputStream bytes, int exceptionCount) throws IOException {
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(BinaryResponseFormat.MAGIC);
+    out.writeByte(BinaryResponseFormat.VERSION);
+    out.writeLong(100L);
+    out.writeLong(5L);
+    out.writeLong(10L);
+    out.writeInt(exceptionCount);
+    for (int i = 0; i < exceptionCount; i++) {
+      out.writeInt(400);
+      writeString(out, "BrokerTimeout");
+    }
+    return out;
+  }
+
+  private void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private ResultSetGroup getBinaryResultSet(byte[] binaryResponse) {
+    _dummyJsonTransport._binaryResponse = binaryResponse;
+    try {
+      Connection connection = ConnectionFactory.fromHostList("dummy");
+      return connection.execute("dummy");
+    } finally {
+      _dummyJsonTransport._binaryResponse = null;
+    }
+  }
+
   private ResultSetGroup getResultSet(String resourceName) {
     _dummyJsonTransport._resource = resourceName;
     Connection connection = ConnectionFactory.fromHostList("dummy");
@@ -118,10 +257,14 @@ public class ResultSetGroupTest {
 
   class DummyJsonTransport implements PinotClientTransport {
     public String _resource;
+    public byte[] _binaryResponse;
 
     @Override
     public BrokerResponse executeQuery(String brokerAddress, String query)
         throws PinotClientException {
+      if (_binaryResponse != null) {
+        return BinaryResponseReader.read(_binaryResponse);
+      }
       try {
         StringBuilder builder = new StringBuilder();
         InputStream stream = getClass().getResourceAsStream(_resource);
@@ -139,7 +282,7 @@ public class ResultSetGroupTest {
     }
 
     @Override
-    public Future<BrokerResponse> executeQueryAsync(String brokerAddress, String query)
+    public Future<BrokerResponse> executeQueryAsync(String brokerAddress, String query, CompletionListener listener)
         throws PinotClientException {
       return null;
     }
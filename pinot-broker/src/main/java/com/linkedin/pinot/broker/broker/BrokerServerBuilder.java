@@ -52,6 +52,7 @@ import com.linkedin.pinot.transport.conf.TransportClientConf;
 import com.linkedin.pinot.transport.conf.TransportClientConf.RoutingMode;
 import com.linkedin.pinot.transport.config.ConnectionPoolConfig;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import com.linkedin.pinot.transport.netty.MultiplexedNettyClientConnectionPool;
 import com.linkedin.pinot.transport.netty.NettyClientConnection;
 import com.linkedin.pinot.transport.netty.PooledNettyClientResourceManager;
 import com.linkedin.pinot.transport.pool.KeyedPool;
@@ -69,6 +70,7 @@ public class BrokerServerBuilder {
   private static final String CLIENT_CONFIG_PREFIX = "pinot.broker.client";
   private static final String METRICS_CONFIG_PREFIX = "pinot.broker.metrics";
   private static final String BROKER_TIME_OUT_CONFIG = "pinot.broker.time.out";
+  private static final String REDUCE_THREADS_CONFIG = "pinot.broker.reduce.threads";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BrokerServerBuilder.class);
   private static final long DEFAULT_BROKER_TIME_OUT = 10 * 1000L;
@@ -78,6 +80,10 @@ public class BrokerServerBuilder {
   private ScheduledThreadPoolExecutor _poolTimeoutExecutor;
   private ExecutorService _requestSenderPool;
 
+  // Reduce of the responses and broker timeouts of the queries
+  private ExecutorService _reduceExecutor;
+  private HashedWheelTimer _brokerTimer;
+
   // Netty Specific
   private EventLoopGroup _eventLoopGroup;
   private PooledNettyClientResourceManager _resourceManager;
@@ -147,12 +153,18 @@ public class BrokerServerBuilder {
 
     ConnectionPoolConfig connPoolCfg = conf.getConnPool();
 
-    _connPool =
-        new KeyedPoolImpl<ServerInstance, NettyClientConnection>(connPoolCfg.getMinConnectionsPerServer(),
-            connPoolCfg.getMaxConnectionsPerServer(), connPoolCfg.getIdleTimeoutMs(),
-            connPoolCfg.getMaxBacklogPerServer(), _resourceManager, _poolTimeoutExecutor, _requestSenderPool, _registry);
-    // MoreExecutors.sameThreadExecutor(), _registry);
-    _resourceManager.setPool(_connPool);
+    if (connPoolCfg.isMultiplexed()) {
+      _connPool = new MultiplexedNettyClientConnectionPool(connPoolCfg.getMultiplexedConnectionsPerServer(),
+          _eventLoopGroup, new HashedWheelTimer(), clientMetrics, connPoolCfg.getMultiplexedConnectTimeoutMs());
+    } else {
+      _connPool =
+          new KeyedPoolImpl<ServerInstance, NettyClientConnection>(connPoolCfg.getMinConnectionsPerServer(),
+              connPoolCfg.getMaxConnectionsPerServer(), connPoolCfg.getIdleTimeoutMs(),
+              connPoolCfg.getMaxBacklogPerServer(), _resourceManager, _poolTimeoutExecutor, _requestSenderPool,
+              _registry);
+      // MoreExecutors.sameThreadExecutor(), _registry);
+      _resourceManager.setPool(_connPool);
+    }
 
     // Setup Routing Table
     if (conf.getRoutingMode() == RoutingMode.CONFIG) {
@@ -177,9 +189,14 @@ public class BrokerServerBuilder {
     }
     LOGGER.info("Broker timeout is - " + brokerTimeOut + " ms");
 
+    int numReduceThreads = _config.getInt(REDUCE_THREADS_CONFIG, Runtime.getRuntime().availableProcessors());
+    LOGGER.info("Broker reduce threads - " + numReduceThreads);
+    _reduceExecutor = Executors.newFixedThreadPool(numReduceThreads);
+    _brokerTimer = new HashedWheelTimer();
+
     _requestHandler =
         new BrokerRequestHandler(_routingTable, _timeBoundaryService, _scatterGather, new DefaultReduceService(),
-            _brokerMetrics, brokerTimeOut);
+            _brokerMetrics, brokerTimeOut, _reduceExecutor, _brokerTimer);
 
     //TODO: Start Broker Server : Code goes here. Broker Server part should use request handler to submit requests
 
@@ -194,7 +211,8 @@ public class BrokerServerBuilder {
     _server = new Server(clientConfig.getQueryPort());
 
     WebAppContext context = new WebAppContext();
-    context.addServlet(PinotClientRequestServlet.class, "/query");
+    // The queries are answered asynchronously, once the servers respond
+    context.addServlet(PinotClientRequestServlet.class, "/query").setAsyncSupported(true);
     context.addServlet(PinotBrokerDebugServlet.class, "/debug");
     
     if (clientConfig.enableConsole()) {
@@ -239,6 +257,8 @@ public class BrokerServerBuilder {
     _routingTable.shutdown();
     _poolTimeoutExecutor.shutdown();
     _requestSenderPool.shutdown();
+    _brokerTimer.stop();
+    _reduceExecutor.shutdown();
     _state.set(State.SHUTDOWN);
     LOGGER.info("Network shutdown!!");
 
@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.broker.servlet;
 
+import com.linkedin.pinot.pql.parsers.CachingPql2Compiler;
 import com.linkedin.pinot.pql.parsers.Pql2Compiler;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -22,10 +23,12 @@ import java.io.InputStreamReader;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Callable;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -35,6 +38,10 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.client.BinaryResponseFormat;
 import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.metrics.BrokerMeter;
 import com.linkedin.pinot.common.metrics.BrokerMetrics;
@@ -50,7 +57,7 @@ import com.linkedin.pinot.transport.common.SegmentId;
 
 public class PinotClientRequestServlet extends HttpServlet {
   private static final PQLCompiler requestCompiler = new PQLCompiler(new HashMap<>());
-  private static final Pql2Compiler pql2Compiler = new Pql2Compiler();
+  private static final Pql2Compiler pql2Compiler = new CachingPql2Compiler();
 
   private static final long serialVersionUID = -3516093545255816357L;
   private static final Logger LOGGER = LoggerFactory.getLogger(PinotClientRequestServlet.class);
@@ -68,9 +75,7 @@ public class PinotClientRequestServlet extends HttpServlet {
   protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
     try {
       resp.setCharacterEncoding("UTF-8");
-      resp.getOutputStream().write(handleRequest(new JSONObject(req.getParameter("bql"))).toJson().toString().getBytes("UTF-8"));
-      resp.getOutputStream().flush();
-      resp.getOutputStream().close();
+      handleRequest(req, resp, new JSONObject(req.getParameter("bql")), BrokerMeter.UNCAUGHT_GET_EXCEPTIONS);
     } catch (final Exception e) {
       resp.getOutputStream().print(e.getMessage());
       resp.getOutputStream().flush();
@@ -84,9 +89,7 @@ public class PinotClientRequestServlet extends HttpServlet {
   protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
     try {
       resp.setCharacterEncoding("UTF-8");
-      resp.getOutputStream().write(handleRequest(extractJSON(req)).toJson().toString().getBytes("UTF-8"));
-      resp.getOutputStream().flush();
-      resp.getOutputStream().close();
+      handleRequest(req, resp, extractJSON(req), BrokerMeter.UNCAUGHT_POST_EXCEPTIONS);
     } catch (final Exception e) {
       resp.getOutputStream().print(e.getMessage());
       resp.getOutputStream().flush();
@@ -96,9 +99,16 @@ public class PinotClientRequestServlet extends HttpServlet {
     }
   }
 
-  private BrokerResponse handleRequest(JSONObject request) throws Exception {
+  /**
+   * Compiles the query on the container thread, then executes it asynchronously: the request is put in async mode
+   * and the response is written by the thread completing the broker response, so that no container thread waits
+   * for the servers.
+   */
+  private void handleRequest(HttpServletRequest req, HttpServletResponse resp, JSONObject request,
+      final BrokerMeter uncaughtExceptionMeter) throws Exception {
     final String pql = request.getString("pql");
     LOGGER.info("Broker received Query String is: {}", pql);
+    final boolean isBinaryResponse = isBinaryResponseAccepted(req);
     boolean isTraceEnabled = false;
 
     if (request.has("trace")) {
@@ -126,7 +136,8 @@ public class PinotClientRequestServlet extends HttpServlet {
       BrokerResponse brokerResponse = new BrokerResponse();
       brokerResponse.setExceptions(Arrays.asList(QueryException.getException(QueryException.PQL_PARSING_ERROR, e)));
       brokerMetrics.addMeteredValue(null, BrokerMeter.REQUEST_COMPILATION_EXCEPTIONS, 1);
-      return brokerResponse;
+      writeResponse(resp, brokerResponse, isBinaryResponse);
+      return;
     }
 
     brokerMetrics.addMeteredValue(brokerRequest, BrokerMeter.QUERIES, 1);
@@ -135,18 +146,70 @@ public class PinotClientRequestServlet extends HttpServlet {
     brokerMetrics.addPhaseTiming(brokerRequest, BrokerQueryPhase.REQUEST_COMPILATION,
             requestCompilationTime);
 
-    final BrokerResponse resp = brokerMetrics.timePhase(brokerRequest, BrokerQueryPhase.QUERY_EXECUTION,
-            new Callable<BrokerResponse>() {
-              @Override
-              public BrokerResponse call()
-                      throws Exception {
-                final BucketingSelection bucketingSelection = getBucketingSelection(brokerRequest);
-                return (BrokerResponse) broker.processBrokerRequest(brokerRequest, bucketingSelection);
-              }
-            });
-
-    LOGGER.info("Broker Response : {}", resp);
-    return resp;
+    final AsyncContext asyncContext = req.startAsync();
+    // The broker times out the query itself, and always completes the response
+    asyncContext.setTimeout(0);
+
+    final long queryExecutionStartTime = System.nanoTime();
+    ListenableFuture<BrokerResponse> brokerResponse;
+    try {
+      brokerResponse = broker.processBrokerRequestAsync(brokerRequest, getBucketingSelection(brokerRequest));
+    } catch (Exception e) {
+      brokerResponse = Futures.immediateFailedFuture(e);
+    }
+
+    Futures.addCallback(brokerResponse, new FutureCallback<BrokerResponse>() {
+      @Override
+      public void onSuccess(BrokerResponse response) {
+        brokerMetrics.addPhaseTiming(brokerRequest, BrokerQueryPhase.QUERY_EXECUTION,
+            System.nanoTime() - queryExecutionStartTime);
+        LOGGER.info("Broker Response : {}", response);
+        try {
+          writeResponse(asyncContext.getResponse(), response, isBinaryResponse);
+        } catch (Exception e) {
+          LOGGER.error("Caught exception while writing the response", e);
+          brokerMetrics.addMeteredValue(null, uncaughtExceptionMeter, 1);
+        } finally {
+          asyncContext.complete();
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        LOGGER.error("Caught exception while processing request", t);
+        brokerMetrics.addMeteredValue(null, uncaughtExceptionMeter, 1);
+        try {
+          ServletOutputStream outputStream = asyncContext.getResponse().getOutputStream();
+          outputStream.print(t.getMessage());
+          outputStream.flush();
+          outputStream.close();
+        } catch (Exception e) {
+          LOGGER.error("Caught exception while writing the error", e);
+        } finally {
+          asyncContext.complete();
+        }
+      }
+    });
+  }
+
+  /**
+   * Clients asking for the {@link BinaryResponseFormat#CONTENT_TYPE} content type get the binary response, the others
+   * get JSON.
+   */
+  private static boolean isBinaryResponseAccepted(HttpServletRequest req) {
+    String accept = req.getHeader("Accept");
+    return accept != null && accept.contains(BinaryResponseFormat.CONTENT_TYPE);
+  }
+
+  private void writeResponse(ServletResponse resp, BrokerResponse brokerResponse, boolean isBinaryResponse)
+      throws Exception {
+    if (isBinaryResponse) {
+      resp.setContentType(BinaryResponseFormat.CONTENT_TYPE);
+      brokerResponse.writeBinary(resp.getOutputStream());
+    } else {
+      brokerResponse.writeJson(resp.getOutputStream());
+    }
+    resp.getOutputStream().close();
   }
 
   private BucketingSelection getBucketingSelection(BrokerRequest brokerRequest) {
@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.broker.servlet;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.HashedWheelTimer;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.query.ReduceService;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.InstanceResponse;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.requestHandler.BrokerRequestHandler;
+import com.linkedin.pinot.routing.RoutingTable;
+import com.linkedin.pinot.routing.RoutingTableLookupRequest;
+import com.linkedin.pinot.transport.common.AsyncResponseFuture;
+import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.CompositeFuture.GatherModeOnError;
+import com.linkedin.pinot.transport.common.KeyedFuture;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+import com.linkedin.pinot.transport.scattergather.ScatterGather;
+import com.linkedin.pinot.transport.scattergather.ScatterGatherRequest;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+/**
+ * Queries the servlet over HTTP while one of the two servers never responds, to check that the asynchronous request
+ * is completed with the partial response once the broker times out.
+ */
+public class PinotClientRequestServletTest {
+  private static final long BROKER_TIMEOUT_MS = 500L;
+
+  private final ServerInstance _respondingServer = new ServerInstance("localhost", 9001);
+  private final ServerInstance _silentServer = new ServerInstance("localhost", 9002);
+
+  private HashedWheelTimer _timer;
+  private ExecutorService _reduceExecutor;
+  private Server _server;
+  private int _port;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    _timer = new HashedWheelTimer();
+    _reduceExecutor = Executors.newSingleThreadExecutor();
+    BrokerRequestHandler requestHandler =
+        new BrokerRequestHandler(new TestRoutingTable(), null, new TestScatterGather(), new TestReduceService(),
+            new BrokerMetrics(new MetricsRegistry()), BROKER_TIMEOUT_MS, _reduceExecutor, _timer);
+
+    _server = new Server(0);
+    ServletContextHandler context = new ServletContextHandler();
+    context.setAttribute(BrokerRequestHandler.class.toString(), requestHandler);
+    context.setAttribute(BrokerMetrics.class.toString(), new BrokerMetrics(new MetricsRegistry()));
+    context.addServlet(PinotClientRequestServlet.class, "/query").setAsyncSupported(true);
+    _server.setHandler(context);
+    _server.start();
+    _port = _server.getConnectors()[0].getLocalPort();
+  }
+
+  @AfterClass
+  public void tearDown() throws Exception {
+    _server.stop();
+    _timer.stop();
+    _reduceExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testPartialResponseOnBrokerTimeout() throws Exception {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + _port + "/query").openConnection();
+    // Fails the test instead of hanging if the asynchronous request is never completed
+    connection.setReadTimeout((int) (BROKER_TIMEOUT_MS * 10));
+    connection.setDoOutput(true);
+    connection.setRequestMethod("POST");
+
+    long startTime = System.currentTimeMillis();
+    OutputStream outputStream = connection.getOutputStream();
+    outputStream.write(new JSONObject().put("pql", "select count(*) from testTable").toString().getBytes("UTF-8"));
+    outputStream.close();
+
+    StringBuilder responseString = new StringBuilder();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      responseString.append(line);
+    }
+    reader.close();
+    long elapsedTime = System.currentTimeMillis() - startTime;
+
+    Assert.assertEquals(connection.getResponseCode(), HttpURLConnection.HTTP_OK);
+    Assert.assertTrue(elapsedTime >= BROKER_TIMEOUT_MS, "Responded before the broker timeout: " + elapsedTime);
+
+    BrokerResponse response = BrokerResponse.fromJson(new JSONObject(responseString.toString()));
+    // Only the responding server is reduced
+    Assert.assertEquals(response.getNumDocsScanned(), 1L);
+    Assert.assertNotNull(response.getExceptions());
+    Assert.assertEquals(response.getExceptions().size(), 1);
+    Assert.assertEquals(response.getExceptions().get(0).getErrorCode(),
+        QueryException.BROKER_TIMEOUT_ERROR.getErrorCode());
+  }
+
+  private class TestRoutingTable implements RoutingTable {
+    @Override
+    public Map<ServerInstance, SegmentIdSet> findServers(RoutingTableLookupRequest request) {
+      if (!"testTable_OFFLINE".equals(request.getTableName())) {
+        return null;
+      }
+      Map<ServerInstance, SegmentIdSet> segmentServices = new HashMap<ServerInstance, SegmentIdSet>();
+      segmentServices.put(_respondingServer, createSegmentIdSet("segment0"));
+      segmentServices.put(_silentServer, createSegmentIdSet("segment1"));
+      return segmentServices;
+    }
+
+    private SegmentIdSet createSegmentIdSet(String segmentName) {
+      SegmentIdSet segmentIdSet = new SegmentIdSet();
+      segmentIdSet.addSegment(new SegmentId(segmentName));
+      return segmentIdSet;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public String dumpSnapShot() throws Exception {
+      return null;
+    }
+  }
+
+  /**
+   * Answers the requests to every server but the silent one, on the calling thread.
+   */
+  private class TestScatterGather implements ScatterGather {
+    @Override
+    public CompositeFuture<ServerInstance, ByteBuf> scatterGather(ScatterGatherRequest scatterRequest)
+        throws InterruptedException {
+      List<KeyedFuture<ServerInstance, ByteBuf>> futures = new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>();
+      AsyncResponseFuture<ServerInstance, ByteBuf> respondingServerFuture = null;
+      for (ServerInstance server : scatterRequest.getSegmentsServicesMap().keySet()) {
+        AsyncResponseFuture<ServerInstance, ByteBuf> future =
+            new AsyncResponseFuture<ServerInstance, ByteBuf>(server, "Request to " + server);
+        if (_respondingServer.equals(server)) {
+          respondingServerFuture = future;
+        }
+        futures.add(future);
+      }
+      CompositeFuture<ServerInstance, ByteBuf> response =
+          new CompositeFuture<ServerInstance, ByteBuf>("scatterGather", GatherModeOnError.AND);
+      response.start(futures);
+
+      Map<String, String> metadata = new HashMap<String, String>();
+      metadata.put("numDocsScanned", "1");
+      try {
+        respondingServerFuture.onSuccess(Unpooled.wrappedBuffer(new DataTable(metadata).toBytes()));
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return response;
+    }
+  }
+
+  /**
+   * Reports the number of servers reduced as the number of documents scanned.
+   */
+  private static class TestReduceService implements ReduceService {
+    @Override
+    public BrokerResponse reduce(BrokerRequest brokerRequest,
+        Map<ServerInstance, InstanceResponse> instanceResponseMap) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BrokerResponse reduceOnDataTable(BrokerRequest brokerRequest,
+        Map<ServerInstance, DataTable> instanceResponseMap) {
+      BrokerResponse brokerResponse = new BrokerResponse();
+      brokerResponse.setNumDocsScanned(instanceResponseMap.size());
+      return brokerResponse;
+    }
+  }
+}
@@ -17,10 +17,12 @@ package com.linkedin.pinot.common.metadata.segment;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.helix.ZNRecord;
 
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.metadata.ZKMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
@@ -44,6 +46,9 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
   private long _totalDocs = -1;
   private long _crc = -1;
   private long _creationTime = -1;
+  private Map<String, String> _columnDataTypes = new HashMap<String, String>();
+  private Map<String, String> _columnMinValues = new HashMap<String, String>();
+  private Map<String, String> _columnMaxValues = new HashMap<String, String>();
 
   public SegmentZKMetadata() {
   }
@@ -62,6 +67,20 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     _totalDocs = znRecord.getLongField(CommonConstants.Segment.TOTAL_DOCS, -1);
     _crc = znRecord.getLongField(CommonConstants.Segment.CRC, -1);
     _creationTime = znRecord.getLongField(CommonConstants.Segment.CREATION_TIME, -1);
+    Map<String, String> columnDataTypes = znRecord.getMapField(CommonConstants.Segment.COLUMN_DATA_TYPES);
+    Map<String, String> columnMinValues = znRecord.getMapField(CommonConstants.Segment.COLUMN_MIN_VALUES);
+    Map<String, String> columnMaxValues = znRecord.getMapField(CommonConstants.Segment.COLUMN_MAX_VALUES);
+    if (columnDataTypes != null && columnMinValues != null && columnMaxValues != null) {
+      // Only the columns with both of their bounds recorded have a range
+      for (Map.Entry<String, String> entry : columnDataTypes.entrySet()) {
+        String column = entry.getKey();
+        if (columnMinValues.get(column) != null && columnMaxValues.get(column) != null) {
+          _columnDataTypes.put(column, entry.getValue());
+          _columnMinValues.put(column, columnMinValues.get(column));
+          _columnMaxValues.put(column, columnMaxValues.get(column));
+        }
+      }
+    }
   }
 
   public String getSegmentName() {
@@ -144,6 +163,36 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     _creationTime = creationTime;
   }
 
+  /**
+   * Records the smallest and the largest value of a column of the segment, which lets the broker skip the segment for
+   * queries that cannot match any value in between.
+   */
+  public void setColumnValueRange(String column, DataType dataType, String minValue, String maxValue) {
+    _columnDataTypes.put(column, dataType.toString());
+    _columnMinValues.put(column, minValue);
+    _columnMaxValues.put(column, maxValue);
+  }
+
+  /**
+   * @return the columns whose range of values is recorded
+   */
+  public Set<String> getColumnsWithValueRange() {
+    return _columnDataTypes.keySet();
+  }
+
+  public DataType getColumnDataType(String column) {
+    String dataType = _columnDataTypes.get(column);
+    return dataType == null ? null : DataType.valueOf(dataType);
+  }
+
+  public String getColumnMinValue(String column) {
+    return _columnMinValues.get(column);
+  }
+
+  public String getColumnMaxValue(String column) {
+    return _columnMaxValues.get(column);
+  }
+
   @Override
   public boolean equals(Object segmentMetadata) {
     if (isSameReference(this, segmentMetadata)) {
@@ -164,7 +213,10 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
         isEqual(_segmentType, metadata._segmentType) &&
         isEqual(_totalDocs, metadata._totalDocs) &&
         isEqual(_crc, metadata._crc) &&
-        isEqual(_creationTime, metadata._creationTime);
+        isEqual(_creationTime, metadata._creationTime) &&
+        isEqual(_columnDataTypes, metadata._columnDataTypes) &&
+        isEqual(_columnMinValues, metadata._columnMinValues) &&
+        isEqual(_columnMaxValues, metadata._columnMaxValues);
   }
 
   @Override
@@ -179,6 +231,9 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     result = hashCodeOf(result, _totalDocs);
     result = hashCodeOf(result, _crc);
     result = hashCodeOf(result, _creationTime);
+    result = hashCodeOf(result, _columnDataTypes);
+    result = hashCodeOf(result, _columnMinValues);
+    result = hashCodeOf(result, _columnMaxValues);
     return result;
   }
 
@@ -200,6 +255,11 @@ public abstract class SegmentZKMetadata implements ZKMetadata {
     znRecord.setLongField(CommonConstants.Segment.TOTAL_DOCS, _totalDocs);
     znRecord.setLongField(CommonConstants.Segment.CRC, _crc);
     znRecord.setLongField(CommonConstants.Segment.CREATION_TIME, _creationTime);
+    if (!_columnDataTypes.isEmpty()) {
+      znRecord.setMapField(CommonConstants.Segment.COLUMN_DATA_TYPES, _columnDataTypes);
+      znRecord.setMapField(CommonConstants.Segment.COLUMN_MIN_VALUES, _columnMinValues);
+      znRecord.setMapField(CommonConstants.Segment.COLUMN_MAX_VALUES, _columnMaxValues);
+    }
     return znRecord;
   }
 
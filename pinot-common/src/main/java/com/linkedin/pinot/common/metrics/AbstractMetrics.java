@@ -22,6 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.yammer.metrics.core.Gauge;
 import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.MetricsRegistry;
 
@@ -128,6 +129,23 @@ public abstract class AbstractMetrics<QP extends AbstractMetrics.QueryPhase, M e
     MetricsHelper.newMeter(_metricsRegistry, metricName, meter.getUnit(), TimeUnit.SECONDS).mark(unitCount);
   }
 
+  /**
+   * Registers a gauge whose value is read each time the metrics are reported, such as the length of a queue.
+   *
+   * @param tableName The table the gauge applies to or null if this gauge applies globally
+   * @param gaugeName The name of the gauge
+   * @param gauge The gauge returning the current value
+   */
+  public <T> void addCallbackGauge(final String tableName, final String gaugeName, final Gauge<T> gauge) {
+    final String fullGaugeName;
+    if (tableName != null) {
+      fullGaugeName = _metricPrefix + tableName + "." + gaugeName;
+    } else {
+      fullGaugeName = _metricPrefix + gaugeName;
+    }
+    MetricsHelper.newGauge(_metricsRegistry, new MetricName(_clazz, fullGaugeName), gauge);
+  }
+
   /**
    * Initializes all global meters (such as exceptions count) to zero.
    */
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.response;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.json.JSONObject;
+
+import com.google.common.base.Charsets;
+import com.linkedin.pinot.client.BinaryResponseFormat;
+
+
+/**
+ * Writer of the compact binary broker response format described in {@link BinaryResponseFormat}, sent to the clients
+ * that ask for the {@link BinaryResponseFormat#CONTENT_TYPE} content type instead of JSON.
+ */
+public class BinaryResponseWriter implements Closeable, Flushable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final DataOutputStream _out;
+
+  public BinaryResponseWriter(OutputStream outputStream) {
+    _out = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+  }
+
+  public BinaryResponseWriter writeByte(int b) throws IOException {
+    _out.writeByte(b);
+    return this;
+  }
+
+  public BinaryResponseWriter writeBoolean(boolean b) throws IOException {
+    _out.writeBoolean(b);
+    return this;
+  }
+
+  public BinaryResponseWriter writeInt(int i) throws IOException {
+    _out.writeInt(i);
+    return this;
+  }
+
+  public BinaryResponseWriter writeLong(long l) throws IOException {
+    _out.writeLong(l);
+    return this;
+  }
+
+  public BinaryResponseWriter writeFloat(float f) throws IOException {
+    _out.writeFloat(f);
+    return this;
+  }
+
+  public BinaryResponseWriter writeDouble(double d) throws IOException {
+    _out.writeDouble(d);
+    return this;
+  }
+
+  public BinaryResponseWriter writeString(String s) throws IOException {
+    if (s == null) {
+      _out.writeInt(-1);
+    } else {
+      byte[] bytes = s.getBytes(Charsets.UTF_8);
+      _out.writeInt(bytes.length);
+      _out.write(bytes);
+    }
+    return this;
+  }
+
+  /**
+   * Writes a value preceded by its type. Values of other types than the ones of the format are written as strings.
+   */
+  public BinaryResponseWriter writeValue(Object value) throws IOException {
+    if (value == null || value == JSONObject.NULL) {
+      _out.writeByte(BinaryResponseFormat.TYPE_NULL);
+    } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      _out.writeByte(BinaryResponseFormat.TYPE_INT);
+      _out.writeInt(((Number) value).intValue());
+    } else if (value instanceof Long) {
+      _out.writeByte(BinaryResponseFormat.TYPE_LONG);
+      _out.writeLong((Long) value);
+    } else if (value instanceof Float) {
+      _out.writeByte(BinaryResponseFormat.TYPE_FLOAT);
+      _out.writeFloat((Float) value);
+    } else if (value instanceof Double) {
+      _out.writeByte(BinaryResponseFormat.TYPE_DOUBLE);
+      _out.writeDouble((Double) value);
+    } else {
+      _out.writeByte(BinaryResponseFormat.TYPE_STRING);
+      writeString(value.toString());
+    }
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    _out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    _out.close();
+  }
+}
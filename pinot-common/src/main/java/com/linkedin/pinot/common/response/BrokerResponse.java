@@ -15,6 +15,8 @@
  */
 package com.linkedin.pinot.common.response;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.Iterator;
@@ -25,12 +27,16 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.linkedin.pinot.client.BinaryResponseFormat;
 import com.linkedin.pinot.common.exception.QueryException;
 
 
 /**
  * BrokerResponse
  *
+ * Large results can be set as {@link JsonWritable}s, which {@link #writeJson(OutputStream)} streams to the client row
+ * by row. They are only built as JSON objects if one of the getters asks for them. Clients can also ask for the
+ * response in binary, see {@link #writeBinary(OutputStream)}.
  */
 public class BrokerResponse {
   private long _totalDocs = 0;
@@ -41,6 +47,9 @@ public class BrokerResponse {
   private List<ProcessingException> _exceptions;
   private Map<String, String> _traceInfo;
   private JSONObject _selectionResults;
+  // Results written to the client without building the JSON objects, set instead of the ones above
+  private JsonWritable _streamedAggregationResults;
+  private JsonWritable _streamedSelectionResults;
   public static BrokerResponse EMPTY_RESULT;
   public static BrokerResponse NO_TABLE_RESULT;
 
@@ -89,34 +98,74 @@ public class BrokerResponse {
   }
 
   public int getAggregationResultsSize() {
-    return (_aggregationResults == null) ? 0 : _aggregationResults.size();
+    List<JSONObject> aggregationResults = getAggregationResults();
+    return (aggregationResults == null) ? 0 : aggregationResults.size();
   }
 
   public java.util.Iterator<JSONObject> getAggregationResultsIterator() {
-    return (_aggregationResults == null) ? null : _aggregationResults.iterator();
+    List<JSONObject> aggregationResults = getAggregationResults();
+    return (aggregationResults == null) ? null : aggregationResults.iterator();
   }
 
   public void addToAggregationResults(JSONObject elem) {
-    if (_aggregationResults == null) {
+    if (getAggregationResults() == null) {
       _aggregationResults = new ArrayList<JSONObject>();
     }
     _aggregationResults.add(elem);
   }
 
   public List<JSONObject> getAggregationResults() {
+    if (_streamedAggregationResults != null) {
+      try {
+        JSONArray aggregationResults = new JSONArray(JsonResponseWriter.toJsonString(_streamedAggregationResults));
+        _aggregationResults = new ArrayList<JSONObject>(aggregationResults.length());
+        for (int i = 0; i < aggregationResults.length(); i++) {
+          _aggregationResults.add(aggregationResults.getJSONObject(i));
+        }
+      } catch (Exception e) {
+        throw new IllegalStateException("Could not build the aggregation results", e);
+      }
+      _streamedAggregationResults = null;
+    }
     return _aggregationResults;
   }
 
   public void setAggregationResults(List<JSONObject> aggregationResults) {
     _aggregationResults = aggregationResults;
+    _streamedAggregationResults = null;
+  }
+
+  /**
+   * Sets the aggregation results as a writable of the JSON array of results, one per aggregation function.
+   */
+  public void setStreamedAggregationResults(JsonWritable aggregationResults) {
+    _aggregationResults = null;
+    _streamedAggregationResults = aggregationResults;
   }
 
   public JSONObject getSelectionResults() {
+    if (_streamedSelectionResults != null) {
+      try {
+        _selectionResults = new JSONObject(JsonResponseWriter.toJsonString(_streamedSelectionResults));
+      } catch (Exception e) {
+        throw new IllegalStateException("Could not build the selection results", e);
+      }
+      _streamedSelectionResults = null;
+    }
     return _selectionResults;
   }
 
   public void setSelectionResults(JSONObject selectionResults) {
     _selectionResults = selectionResults;
+    _streamedSelectionResults = null;
+  }
+
+  /**
+   * Sets the selection results as a writable of the JSON object of results.
+   */
+  public void setStreamedSelectionResults(JsonWritable selectionResults) {
+    _selectionResults = null;
+    _streamedSelectionResults = selectionResults;
   }
 
   public int getSegmentStatisticsSize() {
@@ -200,14 +249,18 @@ public class BrokerResponse {
     sb.append(_timeUsedMs);
     sb.append(", ");
     sb.append("aggregationResults:");
-    if (_aggregationResults == null) {
+    if (_streamedAggregationResults != null) {
+      sb.append(_streamedAggregationResults);
+    } else if (_aggregationResults == null) {
       sb.append("null");
     } else {
       sb.append(_aggregationResults);
     }
     sb.append(", ");
     sb.append("selectionResults:");
-    if (_selectionResults == null) {
+    if (_streamedSelectionResults != null) {
+      sb.append(_streamedSelectionResults);
+    } else if (_selectionResults == null) {
       sb.append("null");
     } else {
       sb.append(_selectionResults);
@@ -242,8 +295,8 @@ public class BrokerResponse {
     retJsonObject.put("totalDocs", _totalDocs);
     retJsonObject.put("timeUsedMs", _timeUsedMs);
     retJsonObject.put("numDocsScanned", _numDocsScanned);
-    retJsonObject.put("aggregationResults", new JSONArray(_aggregationResults));
-    retJsonObject.put("selectionResults", _selectionResults);
+    retJsonObject.put("aggregationResults", new JSONArray(getAggregationResults()));
+    retJsonObject.put("selectionResults", getSelectionResults());
     retJsonObject.put("segmentStatistics", new JSONArray(_segmentStatistics));
     retJsonObject.put("exceptions", new JSONArray(_exceptions));
     JSONObject traceInfo = new JSONObject();
@@ -254,6 +307,136 @@ public class BrokerResponse {
     return retJsonObject;
   }
 
+  /**
+   * Writes the same JSON as {@link #toJson()}, without building it first. The stream is flushed but not closed.
+   */
+  public void writeJson(OutputStream outputStream) throws IOException, JSONException {
+    JsonResponseWriter writer = new JsonResponseWriter(outputStream);
+    writer.beginObject();
+    writer.name("totalDocs").value(_totalDocs);
+    writer.name("timeUsedMs").value(_timeUsedMs);
+    writer.name("numDocsScanned").value(_numDocsScanned);
+    writer.name("aggregationResults");
+    if (_streamedAggregationResults != null) {
+      _streamedAggregationResults.writeJson(writer);
+    } else {
+      writer.value(new JSONArray(_aggregationResults));
+    }
+    if (_streamedSelectionResults != null) {
+      writer.name("selectionResults");
+      _streamedSelectionResults.writeJson(writer);
+    } else if (_selectionResults != null) {
+      writer.name("selectionResults").value(_selectionResults);
+    }
+    writer.name("segmentStatistics").value(new JSONArray(_segmentStatistics));
+    writer.name("exceptions").value(new JSONArray(_exceptions));
+    writer.name("traceInfo").beginObject();
+    for (String key : _traceInfo.keySet()) {
+      writer.name(key).value(new JSONArray(_traceInfo.get(key)));
+    }
+    writer.endObject();
+    writer.endObject();
+    writer.flush();
+  }
+
+  /**
+   * Writes the response in the binary format of {@link BinaryResponseFormat}. The segment statistics and the trace
+   * info are only sent as JSON. The stream is flushed but not closed.
+   */
+  public void writeBinary(OutputStream outputStream) throws IOException, JSONException {
+    BinaryResponseWriter writer = new BinaryResponseWriter(outputStream);
+    writer.writeInt(BinaryResponseFormat.MAGIC).writeByte(BinaryResponseFormat.VERSION);
+    writer.writeLong(_totalDocs).writeLong(_timeUsedMs).writeLong(_numDocsScanned);
+
+    writer.writeInt(getExceptionsSize());
+    if (_exceptions != null) {
+      for (ProcessingException exception : _exceptions) {
+        writer.writeInt(exception.getErrorCode()).writeString(exception.getMessage());
+      }
+    }
+
+    if (_streamedAggregationResults instanceof BinaryWritable) {
+      ((BinaryWritable) _streamedAggregationResults).writeBinary(writer);
+    } else {
+      writeBinaryAggregationResults(writer, getAggregationResults());
+    }
+
+    if (_streamedSelectionResults instanceof BinaryWritable) {
+      writer.writeBoolean(true);
+      ((BinaryWritable) _streamedSelectionResults).writeBinary(writer);
+    } else if (getSelectionResults() != null) {
+      writer.writeBoolean(true);
+      writeBinarySelectionResults(writer, _selectionResults);
+    } else {
+      writer.writeBoolean(false);
+    }
+    writer.flush();
+  }
+
+  private static void writeBinaryAggregationResults(BinaryResponseWriter writer, List<JSONObject> aggregationResults)
+      throws IOException, JSONException {
+    if (aggregationResults == null) {
+      writer.writeInt(0);
+      return;
+    }
+    writer.writeInt(aggregationResults.size());
+    for (JSONObject aggregationResult : aggregationResults) {
+      if (aggregationResult.has("groupByResult")) {
+        writer.writeByte(BinaryResponseFormat.AGGREGATION_GROUP_BY);
+        writer.writeString(aggregationResult.getString("function"));
+        JSONArray groupByColumns = aggregationResult.getJSONArray("groupByColumns");
+        writer.writeInt(groupByColumns.length());
+        for (int i = 0; i < groupByColumns.length(); i++) {
+          writer.writeString(groupByColumns.getString(i));
+        }
+        JSONArray groupByResult = aggregationResult.getJSONArray("groupByResult");
+        writer.writeInt(groupByResult.length());
+        for (int i = 0; i < groupByResult.length(); i++) {
+          JSONArray group = groupByResult.getJSONObject(i).getJSONArray("group");
+          writer.writeInt(group.length());
+          for (int j = 0; j < group.length(); j++) {
+            writer.writeString(group.getString(j));
+          }
+          writer.writeValue(groupByResult.getJSONObject(i).opt("value"));
+        }
+      } else {
+        writer.writeByte(BinaryResponseFormat.AGGREGATION_VALUE);
+        writer.writeString(aggregationResult.optString("function", null));
+        writer.writeValue(aggregationResult.opt("value"));
+      }
+    }
+  }
+
+  /**
+   * Selection results set as a JSONObject only hold strings, the columns are sent as string or string array columns.
+   */
+  private static void writeBinarySelectionResults(BinaryResponseWriter writer, JSONObject selectionResults)
+      throws IOException, JSONException {
+    JSONArray columns = selectionResults.getJSONArray("columns");
+    JSONArray results = selectionResults.getJSONArray("results");
+    boolean[] isArray = new boolean[columns.length()];
+    writer.writeInt(columns.length());
+    for (int i = 0; i < columns.length(); i++) {
+      isArray[i] = results.length() > 0 && results.getJSONArray(0).opt(i) instanceof JSONArray;
+      writer.writeString(columns.getString(i));
+      writer.writeByte(isArray[i] ? BinaryResponseFormat.TYPE_STRING_ARRAY : BinaryResponseFormat.TYPE_STRING);
+    }
+    writer.writeInt(results.length());
+    for (int i = 0; i < columns.length(); i++) {
+      for (int row = 0; row < results.length(); row++) {
+        if (isArray[i]) {
+          JSONArray values = results.getJSONArray(row).getJSONArray(i);
+          writer.writeInt(values.length());
+          for (int j = 0; j < values.length(); j++) {
+            writer.writeString(values.getString(j));
+          }
+        } else {
+          writer.writeString(results.getJSONArray(row).getString(i));
+        }
+      }
+    }
+  }
+
   public static BrokerResponse fromJson(JSONObject retJsonObject) throws JSONException {
     BrokerResponse brokerResponse = new BrokerResponse();
     brokerResponse.setTotalDocs(retJsonObject.getLong("totalDocs"));
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.response;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.google.common.base.Charsets;
+
+
+/**
+ * Streaming JSON writer for the broker responses.
+ *
+ * Values are written to the underlying writer as soon as they are given, the only state kept is whether the enclosing
+ * objects and arrays already have a member. Strings are escaped the same way as {@link JSONObject#quote(String)}, so
+ * the output is the same as the one of the equivalent org.json objects. The writer does not validate the structure,
+ * the callers are expected to balance the begin and end calls and to give a name before each value of an object.
+ */
+public class JsonResponseWriter implements Closeable, Flushable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final Writer _writer;
+
+  // _hasMember[i] is true once the enclosing object or array at depth i has a member
+  private boolean[] _hasMember = new boolean[16];
+  private int _depth = 0;
+  private boolean _isAfterName = false;
+
+  public JsonResponseWriter(OutputStream outputStream) {
+    this(new BufferedWriter(new OutputStreamWriter(outputStream, Charsets.UTF_8), BUFFER_SIZE));
+  }
+
+  public JsonResponseWriter(Writer writer) {
+    _writer = writer;
+  }
+
+  /**
+   * @return the JSON text of the writable
+   */
+  public static String toJsonString(JsonWritable writable) throws IOException {
+    StringWriter stringWriter = new StringWriter();
+    JsonResponseWriter writer = new JsonResponseWriter(stringWriter);
+    writable.writeJson(writer);
+    writer.flush();
+    return stringWriter.toString();
+  }
+
+  public JsonResponseWriter beginObject() throws IOException {
+    beforeValue();
+    _writer.write('{');
+    push();
+    return this;
+  }
+
+  public JsonResponseWriter endObject() throws IOException {
+    _depth--;
+    _writer.write('}');
+    return this;
+  }
+
+  public JsonResponseWriter beginArray() throws IOException {
+    beforeValue();
+    _writer.write('[');
+    push();
+    return this;
+  }
+
+  public JsonResponseWriter endArray() throws IOException {
+    _depth--;
+    _writer.write(']');
+    return this;
+  }
+
+  /**
+   * Writes the name of the next member of the current object.
+   */
+  public JsonResponseWriter name(String name) throws IOException {
+    beforeValue();
+    writeQuoted(name);
+    _writer.write(':');
+    _isAfterName = true;
+    return this;
+  }
+
+  public JsonResponseWriter value(String value) throws IOException {
+    beforeValue();
+    if (value == null) {
+      _writer.write("null");
+    } else {
+      writeQuoted(value);
+    }
+    return this;
+  }
+
+  public JsonResponseWriter value(long value) throws IOException {
+    beforeValue();
+    _writer.write(Long.toString(value));
+    return this;
+  }
+
+  /**
+   * Writes a number, a boolean, a JSONObject or a JSONArray the same way org.json does. Other values are written as
+   * the string of their toString().
+   */
+  public JsonResponseWriter value(Object value) throws IOException {
+    if (value instanceof Number) {
+      try {
+        return rawValue(JSONObject.numberToString((Number) value));
+      } catch (JSONException e) {
+        throw new IOException("Could not write number " + value + " as JSON", e);
+      }
+    }
+    if (value instanceof Boolean || value instanceof JSONObject || value instanceof JSONArray) {
+      return rawValue(value.toString());
+    }
+    return value((value == null || value == JSONObject.NULL) ? null : value.toString());
+  }
+
+  /**
+   * Writes a value that is already serialized as JSON.
+   */
+  public JsonResponseWriter rawValue(String json) throws IOException {
+    beforeValue();
+    _writer.write(json);
+    return this;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    _writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    _writer.close();
+  }
+
+  private void push() {
+    if (_depth == _hasMember.length) {
+      _hasMember = Arrays.copyOf(_hasMember, _depth * 2);
+    }
+    _hasMember[_depth++] = false;
+  }
+
+  private void beforeValue() throws IOException {
+    if (_isAfterName) {
+      // Value of an object member, the separator was written before its name
+      _isAfterName = false;
+      return;
+    }
+    if (_depth > 0) {
+      if (_hasMember[_depth - 1]) {
+        _writer.write(',');
+      }
+      _hasMember[_depth - 1] = true;
+    }
+  }
+
+  private void writeQuoted(String string) throws IOException {
+    _writer.write('"');
+    final int length = string.length();
+    // Unescaped characters are written in runs
+    int start = 0;
+    char previous = 0;
+    for (int i = 0; i < length; i++) {
+      final char c = string.charAt(i);
+      final String escaped;
+      switch (c) {
+        case '\\':
+          escaped = "\\\\";
+          break;
+        case '"':
+          escaped = "\\\"";
+          break;
+        case '/':
+          escaped = (previous == '<') ? "\\/" : null;
+          break;
+        case '\b':
+          escaped = "\\b";
+          break;
+        case '\t':
+          escaped = "\\t";
+          break;
+        case '\n':
+          escaped = "\\n";
+          break;
+        case '\f':
+          escaped = "\\f";
+          break;
+        case '\r':
+          escaped = "\\r";
+          break;
+        default:
+          if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+            escaped = new String(new char[] { '\\', 'u', HEX_DIGITS[(c >> 12) & 0xF], HEX_DIGITS[(c >> 8) & 0xF],
+                HEX_DIGITS[(c >> 4) & 0xF], HEX_DIGITS[c & 0xF] });
+          } else {
+            escaped = null;
+          }
+          break;
+      }
+      if (escaped != null) {
+        _writer.write(string, start, i - start);
+        _writer.write(escaped);
+        start = i + 1;
+      }
+      previous = c;
+    }
+    _writer.write(string, start, length - start);
+    _writer.write('"');
+  }
+}
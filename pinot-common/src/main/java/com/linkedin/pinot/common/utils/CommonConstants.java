@@ -89,6 +89,12 @@ public class CommonConstants {
         public static final String REALTIME_SEGMENT_FLUSH_TIME = "realtime.segment.flush.threshold.time";
         // Num records threshold in the realtime segment
         public static final String REALTIME_SEGMENT_FLUSH_SIZE = "realtime.segment.flush.threshold.size";
+        // Sum the metrics of the events sharing all their dimension and time values into a single document
+        public static final String REALTIME_SEGMENT_ROLLUP = "realtime.segment.rollup";
+        // Maximum time in milliseconds rolled up rows wait before being visible to queries, a published row is never
+        // rolled up again
+        public static final String REALTIME_SEGMENT_ROLLUP_PUBLISH_INTERVAL =
+            "realtime.segment.rollup.publish.interval";
 
         public static enum StreamType {
           kafka
@@ -217,6 +223,10 @@ public class CommonConstants {
     public static final String TOTAL_DOCS = "segment.total.docs";
     public static final String CRC = "segment.crc";
     public static final String CREATION_TIME = "segment.creation.time";
+    // Map fields keyed by column, for the columns whose range of values is recorded
+    public static final String COLUMN_DATA_TYPES = "segment.column.data.types";
+    public static final String COLUMN_MIN_VALUES = "segment.column.min.values";
+    public static final String COLUMN_MAX_VALUES = "segment.column.max.values";
 
     public static enum SegmentType {
       OFFLINE,
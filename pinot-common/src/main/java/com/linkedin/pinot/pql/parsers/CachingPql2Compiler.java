@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.pql.parsers;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.EqualityUtils;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * PQL 2 compiler which compiles each query shape once.
+ *
+ * Queries are reduced to their {@link PqlQueryShape}, and the broker request compiled for a shape is kept in a bounded
+ * cache, so that queries differing only by the literals they filter on are bound to the cached request instead of
+ * being parsed again. The first query of a shape is compiled both ways and the shape is only cached if both requests
+ * match; otherwise the shape is remembered as uncacheable and its queries are always compiled.
+ */
+public class CachingPql2Compiler extends Pql2Compiler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachingPql2Compiler.class);
+  public static final int DEFAULT_MAX_CACHED_QUERY_SHAPES = 1000;
+
+  // Marker for the shapes that have to be compiled for each query
+  private static final BrokerRequest UNCACHEABLE = new BrokerRequest();
+
+  private final Cache<String, BrokerRequest> _compiledQueryShapes;
+
+  public CachingPql2Compiler() {
+    this(DEFAULT_MAX_CACHED_QUERY_SHAPES);
+  }
+
+  public CachingPql2Compiler(int maxCachedQueryShapes) {
+    _compiledQueryShapes = CacheBuilder.newBuilder().maximumSize(maxCachedQueryShapes).build();
+  }
+
+  @Override
+  public BrokerRequest compileToBrokerRequest(String expression) throws Pql2CompilationException {
+    PqlQueryShape queryShape = PqlQueryShape.parse(expression);
+    if (queryShape == null) {
+      return super.compileToBrokerRequest(expression);
+    }
+
+    BrokerRequest template = _compiledQueryShapes.getIfPresent(queryShape.getTemplate());
+    if (template == UNCACHEABLE) {
+      return super.compileToBrokerRequest(expression);
+    }
+    if (template != null) {
+      return queryShape.bind(template);
+    }
+
+    // Invalid queries throw here and their shape is not cached
+    BrokerRequest brokerRequest = super.compileToBrokerRequest(expression);
+    try {
+      template = super.compileToBrokerRequest(queryShape.getTemplate());
+      if (!isSameRequest(queryShape.bind(template), brokerRequest)) {
+        LOGGER.info("Query shape {} does not bind to the compiled query, not caching it", queryShape.getTemplate());
+        template = UNCACHEABLE;
+      }
+    } catch (Exception e) {
+      LOGGER.info("Query shape {} does not compile, not caching it", queryShape.getTemplate(), e);
+      template = UNCACHEABLE;
+    }
+    _compiledQueryShapes.put(queryShape.getTemplate(), template);
+    return brokerRequest;
+  }
+
+  /**
+   * Compares two broker requests, ignoring the ids of their filter queries which differ between compilations.
+   */
+  static boolean isSameRequest(BrokerRequest left, BrokerRequest right) {
+    BrokerRequest leftWithoutFilter = new BrokerRequest(left);
+    leftWithoutFilter.unsetFilterQuery();
+    leftWithoutFilter.unsetFilterSubQueryMap();
+    BrokerRequest rightWithoutFilter = new BrokerRequest(right);
+    rightWithoutFilter.unsetFilterQuery();
+    rightWithoutFilter.unsetFilterSubQueryMap();
+    return leftWithoutFilter.equals(rightWithoutFilter)
+        && isSameFilter(RequestUtils.generateFilterQueryTree(left), RequestUtils.generateFilterQueryTree(right));
+  }
+
+  private static boolean isSameFilter(FilterQueryTree left, FilterQueryTree right) {
+    if (left == null || right == null) {
+      return left == right;
+    }
+    if (!EqualityUtils.isEqual(left.getColumn(), right.getColumn()) || left.getOperator() != right.getOperator()
+        || !EqualityUtils.isEqual(left.getValue(), right.getValue())) {
+      return false;
+    }
+    List<FilterQueryTree> leftChildren = left.getChildren();
+    List<FilterQueryTree> rightChildren = right.getChildren();
+    int numLeftChildren = leftChildren == null ? 0 : leftChildren.size();
+    int numRightChildren = rightChildren == null ? 0 : rightChildren.size();
+    if (numLeftChildren != numRightChildren) {
+      return false;
+    }
+    for (int i = 0; i < numLeftChildren; i++) {
+      if (!isSameFilter(leftChildren.get(i), rightChildren.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
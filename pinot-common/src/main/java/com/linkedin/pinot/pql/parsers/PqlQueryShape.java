@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.pql.parsers;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.request.FilterQuery;
+import com.linkedin.pinot.common.utils.StringUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+
+/**
+ * Shape of a PQL query: the query with each literal of its WHERE clause replaced by a slot, along with the values of
+ * these literals. Queries that only differ by the literals they filter on share the same shape, so the broker request
+ * compiled for the shape can be bound to the literals of each query instead of compiling every query.
+ *
+ * The query is split in tokens the same way the PQL 2 lexer does, and the template is the tokens separated by spaces,
+ * the slots being string literals holding the index of the literal between two markers. Literal values are rendered
+ * the way the compiler renders them in filter values.
+ */
+class PqlQueryShape {
+  private static final char SLOT_MARKER = '\u0001';
+  private static final String VALUE_SEPARATOR = "\t\t";
+
+  private final String _template;
+  private final List<String> _literalValues;
+
+  private PqlQueryShape(String template, List<String> literalValues) {
+    _template = template;
+    _literalValues = literalValues;
+  }
+
+  /**
+   * @return the shape of the query, or null if the query cannot be split in tokens (it is then left to the compiler)
+   */
+  static PqlQueryShape parse(String pql) {
+    StringBuilder template = new StringBuilder(pql.length());
+    List<String> literalValues = new ArrayList<String>();
+    boolean isInWhereClause = false;
+    int depth = 0;
+    int length = pql.length();
+    int i = 0;
+
+    while (i < length) {
+      char c = pql.charAt(i);
+      int start = i;
+
+      if (c == ' ' || c == '\t' || c == '\n') {
+        i++;
+        continue;
+      }
+
+      if (c == '\'' || c == '"') {
+        // String literal, the quote is escaped by doubling it
+        i++;
+        while (true) {
+          if (i >= length) {
+            return null;
+          }
+          if (pql.charAt(i) == c) {
+            if (i + 1 < length && pql.charAt(i + 1) == c) {
+              i += 2;
+            } else {
+              i++;
+              break;
+            }
+          } else {
+            i++;
+          }
+        }
+        if (isInWhereClause) {
+          appendSlot(template, literalValues, pql.substring(start + 1, i - 1));
+        } else {
+          appendToken(template, pql.substring(start, i));
+        }
+      } else if (c == '-' && i + 1 < length && pql.charAt(i + 1) == '-') {
+        // Comments are left to the compiler
+        return null;
+      } else if (isNumberStart(pql, i)) {
+        if (c == '+' || c == '-') {
+          i++;
+        }
+        boolean hasDigits = false;
+        while (i < length && isDigit(pql.charAt(i))) {
+          i++;
+          hasDigits = true;
+        }
+        boolean isFloatingPoint = false;
+        if (i < length && pql.charAt(i) == '.' && (hasDigits || (i + 1 < length && isDigit(pql.charAt(i + 1))))) {
+          isFloatingPoint = true;
+          i++;
+          while (i < length && isDigit(pql.charAt(i))) {
+            i++;
+          }
+        }
+        String text = pql.substring(start, i);
+        if (isInWhereClause) {
+          try {
+            if (isFloatingPoint) {
+              appendSlot(template, literalValues, Double.toString(Double.valueOf(text)));
+            } else {
+              appendSlot(template, literalValues, Long.toString(Long.parseLong(text)));
+            }
+          } catch (NumberFormatException e) {
+            return null;
+          }
+        } else {
+          appendToken(template, text);
+        }
+      } else if (isLetter(c) || c == '_') {
+        i++;
+        while (i < length && (isLetter(pql.charAt(i)) || isDigit(pql.charAt(i)) || pql.charAt(i) == '_'
+            || pql.charAt(i) == '-')) {
+          i++;
+        }
+        String word = pql.substring(start, i);
+        if (depth == 0) {
+          String keyword = word.toUpperCase();
+          if ("WHERE".equals(keyword)) {
+            isInWhereClause = true;
+          } else if ("GROUP".equals(keyword) || "HAVING".equals(keyword) || "ORDER".equals(keyword)
+              || "TOP".equals(keyword) || "LIMIT".equals(keyword)) {
+            isInWhereClause = false;
+          }
+        }
+        appendToken(template, word);
+      } else if ((c == '<' || c == '>') && i + 1 < length
+          && (pql.charAt(i + 1) == '=' || (c == '<' && pql.charAt(i + 1) == '>'))) {
+        i += 2;
+        appendToken(template, pql.substring(start, i));
+      } else if ("(),;*+-/=<>.".indexOf(c) >= 0) {
+        if (c == '(') {
+          depth++;
+        } else if (c == ')') {
+          depth--;
+        }
+        i++;
+        appendToken(template, pql.substring(start, i));
+      } else {
+        return null;
+      }
+    }
+
+    return new PqlQueryShape(template.toString(), literalValues);
+  }
+
+  private static boolean isNumberStart(String pql, int i) {
+    char c = pql.charAt(i);
+    if (c == '+' || c == '-') {
+      i++;
+      if (i >= pql.length()) {
+        return false;
+      }
+      c = pql.charAt(i);
+    }
+    return isDigit(c) || (c == '.' && i + 1 < pql.length() && isDigit(pql.charAt(i + 1)));
+  }
+
+  private static boolean isDigit(char c) {
+    return '0' <= c && c <= '9';
+  }
+
+  private static boolean isLetter(char c) {
+    return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z');
+  }
+
+  private static void appendToken(StringBuilder template, String token) {
+    if (template.length() > 0) {
+      template.append(' ');
+    }
+    template.append(token);
+  }
+
+  private static void appendSlot(StringBuilder template, List<String> literalValues, String value) {
+    appendToken(template, "'" + SLOT_MARKER + literalValues.size() + SLOT_MARKER + "'");
+    literalValues.add(value);
+  }
+
+  /**
+   * @return the query with a slot in place of each literal of its WHERE clause
+   */
+  String getTemplate() {
+    return _template;
+  }
+
+  /**
+   * Binds the broker request compiled from the template to the literals of this query.
+   *
+   * @param template broker request compiled from the template of this shape, not modified
+   * @return a new broker request, as if compiled from the query
+   */
+  BrokerRequest bind(BrokerRequest template) {
+    BrokerRequest brokerRequest = new BrokerRequest(template);
+    if (brokerRequest.isSetFilterQuery()) {
+      bind(brokerRequest.getFilterQuery());
+    }
+    if (brokerRequest.isSetFilterSubQueryMap() && brokerRequest.getFilterSubQueryMap().isSetFilterQueryMap()) {
+      for (FilterQuery filterQuery : brokerRequest.getFilterSubQueryMap().getFilterQueryMap().values()) {
+        bind(filterQuery);
+      }
+    }
+    return brokerRequest;
+  }
+
+  private void bind(FilterQuery filterQuery) {
+    if (!filterQuery.isSetValue()) {
+      return;
+    }
+    FilterOperator operator = filterQuery.getOperator();
+    boolean isSet = operator == FilterOperator.IN || operator == FilterOperator.NOT_IN;
+    List<String> values = new ArrayList<String>(filterQuery.getValue().size());
+    for (String value : filterQuery.getValue()) {
+      if (isSet) {
+        // The compiler sorts and deduplicates the values of IN clauses
+        TreeSet<String> literalValues = new TreeSet<String>();
+        for (String slot : value.split(VALUE_SEPARATOR)) {
+          literalValues.add(fillSlots(slot));
+        }
+        values.add(StringUtil.join(VALUE_SEPARATOR, literalValues.toArray(new String[literalValues.size()])));
+      } else {
+        values.add(fillSlots(value));
+      }
+    }
+    filterQuery.setValue(values);
+  }
+
+  private String fillSlots(String value) {
+    int slotStart = value.indexOf(SLOT_MARKER);
+    if (slotStart < 0) {
+      return value;
+    }
+    StringBuilder filledValue = new StringBuilder(value.length());
+    int end = 0;
+    while (slotStart >= 0) {
+      int slotEnd = value.indexOf(SLOT_MARKER, slotStart + 1);
+      filledValue.append(value, end, slotStart);
+      filledValue.append(_literalValues.get(Integer.parseInt(value.substring(slotStart + 1, slotEnd))));
+      end = slotEnd + 1;
+      slotStart = value.indexOf(SLOT_MARKER, end);
+    }
+    filledValue.append(value, end, value.length());
+    return filledValue.toString();
+  }
+}
@@ -15,12 +15,14 @@
  */
 package com.linkedin.pinot.common.metadata;
 
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.helix.ZNRecord;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants;
@@ -63,6 +65,15 @@ public class SegmentZKMetadataTest {
     Assert.assertTrue(offlineSegmentMetadata.equals(new OfflineSegmentZKMetadata(offlineSegmentMetadata.toZNRecord())));
   }
 
+  @Test
+  public void partialColumnValueRangeTest() {
+    ZNRecord offlineZNRecord = getTestOfflineSegmentZNRecord();
+    offlineZNRecord.getMapFields().remove(CommonConstants.Segment.COLUMN_MIN_VALUES);
+    OfflineSegmentZKMetadata offlineSegmentMetadata = new OfflineSegmentZKMetadata(offlineZNRecord);
+    Assert.assertTrue(offlineSegmentMetadata.getColumnsWithValueRange().isEmpty());
+    Assert.assertNull(offlineSegmentMetadata.getColumnDataType("country"));
+  }
+
   private ZNRecord getTestDoneRealtimeSegmentZNRecord() {
     String segmentName = "testTable_R_1000_2000_groupId0_part0";
     ZNRecord record = new ZNRecord(segmentName);
@@ -145,6 +156,9 @@ public class SegmentZKMetadataTest {
     record.setSimpleField(CommonConstants.Segment.Offline.DOWNLOAD_URL, "http://localhost:8000/testTable_O_3000_4000");
     record.setLongField(CommonConstants.Segment.Offline.PUSH_TIME, 4000);
     record.setLongField(CommonConstants.Segment.Offline.REFRESH_TIME, 8000);
+    record.setMapField(CommonConstants.Segment.COLUMN_DATA_TYPES, Collections.singletonMap("country", "STRING"));
+    record.setMapField(CommonConstants.Segment.COLUMN_MIN_VALUES, Collections.singletonMap("country", "ca"));
+    record.setMapField(CommonConstants.Segment.COLUMN_MAX_VALUES, Collections.singletonMap("country", "us"));
     return record;
   }
 
@@ -163,6 +177,7 @@ public class SegmentZKMetadataTest {
     offlineSegmentMetadata.setDownloadUrl("http://localhost:8000/testTable_O_3000_4000");
     offlineSegmentMetadata.setPushTime(4000);
     offlineSegmentMetadata.setRefreshTime(8000);
+    offlineSegmentMetadata.setColumnValueRange("country", DataType.STRING, "ca", "us");
     return offlineSegmentMetadata;
   }
 }
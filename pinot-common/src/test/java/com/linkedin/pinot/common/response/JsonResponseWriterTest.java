@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.common.response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.exception.QueryException;
+
+
+public class JsonResponseWriterTest {
+
+  @Test
+  public void testQuoting() throws Exception {
+    String[] strings = { "", "plain", "quote \" and \\ backslash", "</script>", "tab\tnew line\n\r\b\f",
+        "\u0001\u001f\u007f\u0080\u009f\u00a0\u00e9", "\u2000\u2028\u20ac\u2100", "\ud83d\ude00" };
+    for (final String string : strings) {
+      String json = JsonResponseWriter.toJsonString(new JsonWritable() {
+        @Override
+        public void writeJson(JsonResponseWriter writer) throws IOException {
+          writer.value(string);
+        }
+      });
+      Assert.assertEquals(json, JSONObject.quote(string));
+    }
+  }
+
+  @Test
+  public void testNesting() throws Exception {
+    String json = JsonResponseWriter.toJsonString(new JsonWritable() {
+      @Override
+      public void writeJson(JsonResponseWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("a").value(1L);
+        writer.name("b").beginArray().value("x").value((String) null).beginArray().endArray().endArray();
+        writer.name("c").beginObject().endObject();
+        writer.name("d").value(1.5d);
+        writer.name("e").value(new JSONArray(Arrays.asList(1, 2)));
+        writer.endObject();
+      }
+    });
+    Assert.assertEquals(json, "{\"a\":1,\"b\":[\"x\",null,[]],\"c\":{},\"d\":1.5,\"e\":[1,2]}");
+  }
+
+  @Test
+  public void testBrokerResponse() throws Exception {
+    BrokerResponse brokerResponse = new BrokerResponse();
+    brokerResponse.setTotalDocs(100);
+    brokerResponse.setNumDocsScanned(10);
+    brokerResponse.setTimeUsedMs(5);
+    brokerResponse.setStreamedSelectionResults(new JsonWritable() {
+      @Override
+      public void writeJson(JsonResponseWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("columns").beginArray().value("column").endArray();
+        writer.name("results").beginArray().beginArray().value("value").endArray().endArray();
+        writer.endObject();
+      }
+    });
+    brokerResponse.addToExceptions(QueryException.BROKER_TIMEOUT_ERROR.deepCopy());
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    brokerResponse.writeJson(outputStream);
+    JSONObject streamed = new JSONObject(new String(outputStream.toByteArray(), "UTF-8"));
+
+    // The getters build the results from the streamed JSON
+    Assert.assertEquals(brokerResponse.getSelectionResults().getJSONArray("results").getJSONArray(0).getString(0),
+        "value");
+    JSONObject built = brokerResponse.toJson();
+    for (String key : new String[] { "totalDocs", "numDocsScanned", "timeUsedMs", "aggregationResults",
+        "selectionResults", "segmentStatistics", "exceptions", "traceInfo" }) {
+      Assert.assertEquals(streamed.get(key).toString(), built.get(key).toString(), key);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.pql.parsers;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+/**
+ * Tests that queries bound to a cached query shape compile to the same broker request as a direct compilation.
+ */
+public class CachingPql2CompilerTest {
+  private static final String[][] QUERIES_WITH_SAME_SHAPE = new String[][]{
+      {
+          "select count(*) from myTable where a = 1 and b = 'x' limit 10",
+          "SELECT count(*) FROM myTable WHERE a = -25 AND b = 'it''s' LIMIT 10",
+          "select count(*) from myTable where a=+007 and b=\"y\" limit 10"
+      },
+      {
+          "select sum(m) from myTable where c in ('b', 'a', 'b') and d not in (3, 1, 2) group by e top 5",
+          "select sum(m) from myTable where c in ('z', 'y', 'x') and d not in (10, 9, 9) group by e top 5"
+      },
+      {
+          "select * from myTable where (f > 1.5 or f <= -2) and g between 'a' and 'c' and 3 < h order by f limit 3, 7",
+          "select * from myTable where (f > .5 or f <= 10.) and g between '' and 'zz' and 100 < h order by f limit 3, 7"
+      },
+      {
+          "select max(m) from myTable where i <> 'foo' and j >= 42",
+          "select max(m) from myTable where i <> 'bar\tbaz' and j >= 0"
+      }
+  };
+
+  @Test
+  public void testBoundQueries() {
+    CachingPql2Compiler cachingCompiler = new CachingPql2Compiler();
+    Pql2Compiler compiler = new Pql2Compiler();
+
+    for (String[] queries : QUERIES_WITH_SAME_SHAPE) {
+      String template = PqlQueryShape.parse(queries[0]).getTemplate();
+      for (String query : queries) {
+        Assert.assertEquals(PqlQueryShape.parse(query).getTemplate(), template, query);
+
+        // Run twice, to go through the cached template at least once
+        for (int i = 0; i < 2; i++) {
+          BrokerRequest cachedRequest = cachingCompiler.compileToBrokerRequest(query);
+          BrokerRequest compiledRequest = compiler.compileToBrokerRequest(query);
+          Assert.assertTrue(CachingPql2Compiler.isSameRequest(cachedRequest, compiledRequest),
+              query + " compiled to " + cachedRequest + " instead of " + compiledRequest);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testLiteralsOutsideWhereClauseAreKept() {
+    Assert.assertNotEquals(PqlQueryShape.parse("select * from myTable where a = 1 limit 10").getTemplate(),
+        PqlQueryShape.parse("select * from myTable where a = 1 limit 20").getTemplate());
+    Assert.assertEquals(PqlQueryShape.parse("select * from myTable where a = 1 limit 10").getTemplate(),
+        PqlQueryShape.parse("select * from myTable where a = 2 limit 10").getTemplate());
+  }
+
+  @Test
+  public void testUnparsedQueries() {
+    CachingPql2Compiler cachingCompiler = new CachingPql2Compiler();
+
+    // Comments are left to the compiler
+    Assert.assertNull(PqlQueryShape.parse("select count(*) from myTable -- where a = 1"));
+
+    // Invalid queries fail every time
+    for (int i = 0; i < 2; i++) {
+      try {
+        cachingCompiler.compileToBrokerRequest("select count(*) from myTable where a = 1 and");
+        Assert.fail("Query should not compile");
+      } catch (Pql2CompilationException e) {
+        // Expected
+      }
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.linkedin.pinot.controller.helix.core.util;
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.joda.time.Duration;
@@ -22,6 +23,8 @@ import org.joda.time.Duration;
 import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
 import com.linkedin.pinot.common.segment.SegmentMetadata;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 
 
 public class ZKMetadataUtils {
@@ -45,9 +48,29 @@ public class ZKMetadataUtils {
     offlineSegmentZKMetadata.setTotalDocs(segmentMetadata.getTotalDocs());
     offlineSegmentZKMetadata.setCreationTime(segmentMetadata.getIndexCreationTime());
     offlineSegmentZKMetadata.setCrc(Long.parseLong(segmentMetadata.getCrc()));
+    if (segmentMetadata instanceof SegmentMetadataImpl) {
+      setColumnValueRanges(offlineSegmentZKMetadata, (SegmentMetadataImpl) segmentMetadata);
+    }
     return offlineSegmentZKMetadata;
   }
 
+  /**
+   * Records the range of values of the sorted columns of the segment, which the broker uses to prune segments. Data is
+   * usually partitioned on the sorted columns, so their ranges are narrow, and keeping to them keeps the metadata
+   * small. A column with a single value in the segment is always sorted.
+   */
+  private static void setColumnValueRanges(OfflineSegmentZKMetadata offlineSegmentZKMetadata,
+      SegmentMetadataImpl segmentMetadata) {
+    for (Map.Entry<String, ColumnMetadata> entry : segmentMetadata.getColumnMetadataMap().entrySet()) {
+      ColumnMetadata columnMetadata = entry.getValue();
+      if (columnMetadata.isSorted() && columnMetadata.isSingleValue() && columnMetadata.getMinValue() != null
+          && columnMetadata.getMaxValue() != null) {
+        offlineSegmentZKMetadata.setColumnValueRange(entry.getKey(), columnMetadata.getDataType(),
+            columnMetadata.getMinValue().toString(), columnMetadata.getMaxValue().toString());
+      }
+    }
+  }
+
   private static TimeUnit extractTimeUnitFromDuration(Duration timeGranularity) {
     if (timeGranularity == null) {
       return null;
@@ -18,8 +18,10 @@ package com.linkedin.pinot.core.block.query;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
 import com.linkedin.pinot.common.exception.QueryException;
@@ -158,6 +160,15 @@ public class IntermediateResultsBlock implements Block {
   }
 
   private DataTable getSelectionResultDataTable() throws Exception {
+    if (_selectionResult instanceof PriorityQueue<?>) {
+      // Rows of an order by are sent best first, so that the broker can stop reading them once one can't make it
+      final PriorityQueue<Serializable[]> queue = (PriorityQueue<Serializable[]>) _selectionResult;
+      final List<Serializable[]> sortedRows = new ArrayList<Serializable[]>(queue);
+      Collections.sort(sortedRows, Collections.reverseOrder(queue.comparator()));
+      final DataTable dataTable = SelectionOperatorUtils.getDataTableFromRowSet(sortedRows, _dataSchema);
+      dataTable.getMetadata().put(SelectionOperatorUtils.SORTED_ROWS_KEY, "true");
+      return attachMetadataToDataTable(dataTable);
+    }
     return attachMetadataToDataTable(SelectionOperatorUtils.getDataTableFromRowSet(_selectionResult, _dataSchema));
   }
 
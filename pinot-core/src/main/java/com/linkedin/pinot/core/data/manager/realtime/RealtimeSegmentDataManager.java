@@ -29,6 +29,7 @@ import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.metadata.instance.InstanceZKMetadata;
 import com.linkedin.pinot.common.metadata.segment.RealtimeSegmentZKMetadata;
 import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.Realtime.Status;
 import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
@@ -63,6 +64,7 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
 
   private volatile boolean keepIndexing = true;
   private TimerTask segmentStatusTask;
+  private TimerTask rollupPublishTask;
   private final RealtimeTableDataManager notifier;
   private Thread indexingThread;
   
@@ -110,7 +112,14 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
     this.kafkaStreamProvider.init(kafkaStreamProviderConfig);
     this.kafkaStreamProvider.start();
     // lets create a new realtime segment
-    realtimeSegment = new RealtimeSegmentImpl(schema, kafkaStreamProviderConfig.getSizeThresholdToFlushSegment());
+    boolean rollup = Boolean.parseBoolean(indexingConfig.getStreamConfigs().get(
+        Helix.DataSource.Realtime.REALTIME_SEGMENT_ROLLUP));
+    String rollupPublishInterval = indexingConfig.getStreamConfigs().get(
+        Helix.DataSource.Realtime.REALTIME_SEGMENT_ROLLUP_PUBLISH_INTERVAL);
+    final long rollupPublishIntervalMs = rollupPublishInterval == null
+        ? RealtimeSegmentImpl.DEFAULT_ROLLUP_PUBLISH_INTERVAL_MS : Long.parseLong(rollupPublishInterval);
+    realtimeSegment = new RealtimeSegmentImpl(schema, kafkaStreamProviderConfig.getSizeThresholdToFlushSegment(),
+        rollup, rollupPublishIntervalMs);
     ((RealtimeSegmentImpl) (realtimeSegment)).setSegmentName(segmentMetadata.getSegmentName());
     ((RealtimeSegmentImpl) (realtimeSegment)).setSegmentMetadata(segmentMetadata, this.schema);
     notifier = realtimeResourceManager;
@@ -122,6 +131,15 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
       }
     };
 
+    // rolled up rows are published by the indexing thread, this publishes them when the stream has no new events
+    final RealtimeSegmentImpl consumingSegment = (RealtimeSegmentImpl) realtimeSegment;
+    rollupPublishTask = new TimerTask() {
+      @Override
+      public void run() {
+        consumingSegment.publish();
+      }
+    };
+
     // start the indexing thread
     indexingThread = new Thread(new Runnable() {
       @Override
@@ -133,6 +151,8 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
         LOGGER.info("Indexing threshold reached, proceeding with index conversion");
         // kill the timer first
         segmentStatusTask.cancel();
+        rollupPublishTask.cancel();
+        ((RealtimeSegmentImpl) realtimeSegment).publish();
         LOGGER.info("Trying to persist a realtimeSegment - " + realtimeSegment.getSegmentName());
         LOGGER.info("Indexed " + ((RealtimeSegmentImpl) realtimeSegment).getRawDocumentCount()
             + " raw events, current number of docs = " + ((RealtimeSegmentImpl) realtimeSegment).getTotalDocs());
@@ -179,6 +199,9 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
     LOGGER.debug("scheduling keepIndexing timer check");
     // start a schedule timer to keep track of the segment
     TimerService.timer.schedule(segmentStatusTask, ONE_MINUTE_IN_MILLSEC, ONE_MINUTE_IN_MILLSEC);
+    if (rollup) {
+      TimerService.timer.schedule(rollupPublishTask, rollupPublishIntervalMs, rollupPublishIntervalMs);
+    }
     LOGGER.debug("finished scheduling keepIndexing timer check");
   }
 
@@ -205,7 +228,7 @@ public class RealtimeSegmentDataManager implements SegmentDataManager {
           + " raw events, success = " + ((RealtimeSegmentImpl) realtimeSegment).getSuccessIndexedCount()
           + " docs, total = " + ((RealtimeSegmentImpl) realtimeSegment).getTotalDocs() + " docs in realtime segment");
       if ((System.currentTimeMillis() >= segmentEndTimeThreshold)
-          || ((RealtimeSegmentImpl) realtimeSegment).getRawDocumentCount() >= kafkaStreamProviderConfig.getSizeThresholdToFlushSegment()) {
+          || ((RealtimeSegmentImpl) realtimeSegment).getAggregateDocumentCount() >= kafkaStreamProviderConfig.getSizeThresholdToFlushSegment()) {
         if (((RealtimeSegmentImpl) realtimeSegment).getRawDocumentCount() == 0) {
           LOGGER.info("no new events coming in, extending the end time by another hour");
           segmentEndTimeThreshold = System.currentTimeMillis() + kafkaStreamProviderConfig.getTimeThresholdToFlushSegment();
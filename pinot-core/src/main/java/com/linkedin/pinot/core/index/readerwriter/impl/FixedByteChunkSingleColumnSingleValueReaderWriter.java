@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.index.readerwriter.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.linkedin.pinot.common.utils.MmapUtils;
+import com.linkedin.pinot.core.index.reader.DataFileMetadata;
+import com.linkedin.pinot.core.index.reader.impl.FixedByteWidthRowColDataFileReader;
+import com.linkedin.pinot.core.index.readerwriter.SingleColumnSingleValueReaderWriter;
+import com.linkedin.pinot.core.index.writer.impl.FixedByteWidthRowColDataFileWriter;
+
+
+/**
+ * Append only, growable version of {@link FixedByteSingleColumnSingleValueReaderWriter}.<br>
+ * Instead of allocating the buffer for the maximum number of rows up front, the off heap memory is allocated in fixed
+ * size chunks of numRowsPerChunk rows as rows get written, so the memory used tracks the number of rows ingested.<br>
+ * Writes must be sequential (a row can only be written once all the previous chunks exist), reads can be random.
+ */
+public class FixedByteChunkSingleColumnSingleValueReaderWriter implements SingleColumnSingleValueReaderWriter {
+  public static final int DEFAULT_NUM_ROWS_PER_CHUNK = 64 * 1024;
+
+  private final int numRowsPerChunk;
+  private final int chunkShift;
+  private final int chunkMask;
+  private final int[] columnSizesInBytes;
+  private final int chunkSizeInBytes;
+
+  private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+  // Replaced on growth so that readers always see fully initialized chunks
+  private volatile FixedByteWidthRowColDataFileReader[] readers = new FixedByteWidthRowColDataFileReader[0];
+  private FixedByteWidthRowColDataFileWriter[] writers = new FixedByteWidthRowColDataFileWriter[0];
+
+  public FixedByteChunkSingleColumnSingleValueReaderWriter(int[] columnSizesInBytes) {
+    this(DEFAULT_NUM_ROWS_PER_CHUNK, columnSizesInBytes);
+  }
+
+  /**
+   *
+   * @param numRowsPerChunk number of rows in each chunk, rounded up to a power of two
+   * @param columnSizesInBytes
+   */
+  public FixedByteChunkSingleColumnSingleValueReaderWriter(int numRowsPerChunk, int[] columnSizesInBytes) {
+    this.numRowsPerChunk = Integer.highestOneBit(Math.max(1, numRowsPerChunk - 1)) << 1;
+    chunkShift = Integer.numberOfTrailingZeros(this.numRowsPerChunk);
+    chunkMask = this.numRowsPerChunk - 1;
+    this.columnSizesInBytes = columnSizesInBytes;
+    chunkSizeInBytes = this.numRowsPerChunk * columnSizesInBytes[0];
+  }
+
+  /**
+   * @return the number of rows that can be written without allocating a new chunk
+   */
+  public int getCapacity() {
+    return readers.length * numRowsPerChunk;
+  }
+
+  private FixedByteWidthRowColDataFileWriter getWriter(int row) {
+    final int chunkId = row >>> chunkShift;
+    while (chunkId >= writers.length) {
+      addChunk();
+    }
+    return writers[chunkId];
+  }
+
+  private void addChunk() {
+    try {
+      ByteBuffer buffer = MmapUtils.allocateDirectByteBuffer(chunkSizeInBytes, null,
+          this.getClass().getSimpleName() + " buffer");
+      buffer.order(ByteOrder.nativeOrder());
+      buffers.add(buffer);
+
+      final int chunkId = writers.length;
+      FixedByteWidthRowColDataFileWriter[] newWriters = Arrays.copyOf(writers, chunkId + 1);
+      newWriters[chunkId] = new FixedByteWidthRowColDataFileWriter(buffer, numRowsPerChunk, 1, columnSizesInBytes);
+      writers = newWriters;
+
+      FixedByteWidthRowColDataFileReader[] newReaders = Arrays.copyOf(readers, chunkId + 1);
+      newReaders[chunkId] = new FixedByteWidthRowColDataFileReader(buffer, numRowsPerChunk, 1, columnSizesInBytes);
+      readers = newReaders;
+    } catch (IOException e) {
+      throw new RuntimeException("Error while allocating a new chunk of " + numRowsPerChunk + " rows", e);
+    }
+  }
+
+  @Override
+  public DataFileMetadata getMetadata() {
+    return null;
+  }
+
+  @Override
+  public boolean setMetadata(DataFileMetadata metadata) {
+    return false;
+  }
+
+  @Override
+  public void close() throws IOException {
+    readers = new FixedByteWidthRowColDataFileReader[0];
+    writers = new FixedByteWidthRowColDataFileWriter[0];
+    for (ByteBuffer buffer : buffers) {
+      MmapUtils.unloadByteBuffer(buffer);
+    }
+    buffers.clear();
+  }
+
+  @Override
+  public void setChar(int row, char ch) {
+    getWriter(row).setChar(row & chunkMask, 0, ch);
+  }
+
+  @Override
+  public void setInt(int row, int i) {
+    getWriter(row).setInt(row & chunkMask, 0, i);
+  }
+
+  @Override
+  public void setShort(int row, short s) {
+    getWriter(row).setShort(row & chunkMask, 0, s);
+  }
+
+  @Override
+  public void setLong(int row, long l) {
+    getWriter(row).setLong(row & chunkMask, 0, l);
+  }
+
+  @Override
+  public void setFloat(int row, float f) {
+    getWriter(row).setFloat(row & chunkMask, 0, f);
+  }
+
+  @Override
+  public void setDouble(int row, double d) {
+    getWriter(row).setDouble(row & chunkMask, 0, d);
+  }
+
+  @Override
+  public void setString(int row, String string) throws Exception {
+    getWriter(row).setString(row & chunkMask, 0, string);
+  }
+
+  @Override
+  public void setBytes(int row, byte[] bytes) {
+    getWriter(row).setBytes(row & chunkMask, 0, bytes);
+  }
+
+  @Override
+  public char getChar(int row) {
+    return readers[row >>> chunkShift].getChar(row & chunkMask, 0);
+  }
+
+  @Override
+  public short getShort(int row) {
+    return readers[row >>> chunkShift].getShort(row & chunkMask, 0);
+  }
+
+  @Override
+  public int getInt(int row) {
+    return readers[row >>> chunkShift].getInt(row & chunkMask, 0);
+  }
+
+  @Override
+  public long getLong(int row) {
+    return readers[row >>> chunkShift].getLong(row & chunkMask, 0);
+  }
+
+  @Override
+  public float getFloat(int row) {
+    return readers[row >>> chunkShift].getFloat(row & chunkMask, 0);
+  }
+
+  @Override
+  public double getDouble(int row) {
+    return readers[row >>> chunkShift].getDouble(row & chunkMask, 0);
+  }
+
+  @Override
+  public String getString(int row) {
+    return readers[row >>> chunkShift].getString(row & chunkMask, 0);
+  }
+
+  @Override
+  public byte[] getBytes(int row) {
+    return readers[row >>> chunkShift].getBytes(row & chunkMask, 0);
+  }
+}
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.linkedin.pinot.common.utils.MmapUtils;
@@ -65,55 +66,53 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
    */
 
   private static int SIZE_OF_INT = 4;
-  private static int NUM_COLS_IN_HEADER = 3;
 
   private static int AVERAGE_NUM_VALUES_PER_ROW = 10;//used to compute the initial size
   private static int INCREMENT_PERCENTAGE = 100;//Increments the Initial size by 100% of initial capacity every time we runs out of capacity
 
-  private ByteBuffer headerBuffer;
+  // header columns (dataBufferId, startIndex, length) grow in chunks as rows get written
+  private FixedByteChunkSingleColumnSingleValueReaderWriter headerBufferIds;
+  private FixedByteChunkSingleColumnSingleValueReaderWriter headerStartIndexes;
+  private FixedByteChunkSingleColumnSingleValueReaderWriter headerLengths;
   private List<ByteBuffer> dataBuffers = new ArrayList<ByteBuffer>();
-  private FixedByteWidthRowColDataFileWriter headerWriter;
-  private FixedByteWidthRowColDataFileReader headerReader;
-  private List<FixedByteWidthRowColDataFileWriter> dataWriters = new ArrayList<FixedByteWidthRowColDataFileWriter>();
-  private List<FixedByteWidthRowColDataFileReader> dataReaders = new ArrayList<FixedByteWidthRowColDataFileReader>();
+  // Replaced on growth so that readers always see fully initialized buffers
+  private volatile FixedByteWidthRowColDataFileReader[] dataReaders = new FixedByteWidthRowColDataFileReader[0];
   private FixedByteWidthRowColDataFileWriter currentDataWriter;
   private int currentDataWriterIndex = -1;
   private int currentCapacity = 0;
-  private int headerSize;
   private int incrementalCapacity;
   private int columnSizeInBytes;
   private int maxNumberOfMultiValuesPerRow;
 
+  /**
+   * Off heap memory is allocated lazily, at most
+   * {@link FixedByteChunkSingleColumnSingleValueReaderWriter#DEFAULT_NUM_ROWS_PER_CHUNK} rows at a time, rows is only
+   * used to size the first chunks.
+   */
   public FixedByteSingleColumnMultiValueReaderWriter(int rows, int columnSizeInBytes, int maxNumberOfMultiValuesPerRow)
       throws IOException {
-    int initialCapacity = Math.max(maxNumberOfMultiValuesPerRow, rows * AVERAGE_NUM_VALUES_PER_ROW);
+    int rowsPerChunk = Math.min(rows, FixedByteChunkSingleColumnSingleValueReaderWriter.DEFAULT_NUM_ROWS_PER_CHUNK);
+    int initialCapacity = Math.max(maxNumberOfMultiValuesPerRow, rowsPerChunk * AVERAGE_NUM_VALUES_PER_ROW);
     int incrementalCapacity =
         Math.max(maxNumberOfMultiValuesPerRow, (int) (initialCapacity * 1.0f * INCREMENT_PERCENTAGE / 100));
-    init(rows, columnSizeInBytes, maxNumberOfMultiValuesPerRow, initialCapacity, incrementalCapacity);
+    init(rowsPerChunk, columnSizeInBytes, maxNumberOfMultiValuesPerRow, initialCapacity, incrementalCapacity);
   }
 
   public FixedByteSingleColumnMultiValueReaderWriter(int rows, int columnSizeInBytes, int maxNumberOfMultiValuesPerRow,
       int initialCapacity, int incrementalCapacity) throws IOException {
-    init(rows, columnSizeInBytes, maxNumberOfMultiValuesPerRow, initialCapacity, incrementalCapacity);
+    init(Math.min(rows, FixedByteChunkSingleColumnSingleValueReaderWriter.DEFAULT_NUM_ROWS_PER_CHUNK),
+        columnSizeInBytes, maxNumberOfMultiValuesPerRow, initialCapacity, incrementalCapacity);
 
   }
 
-  private void init(int rows, int columnSizeInBytes, int maxNumberOfMultiValuesPerRow, int initialCapacity,
+  private void init(int rowsPerChunk, int columnSizeInBytes, int maxNumberOfMultiValuesPerRow, int initialCapacity,
       int incrementalCapacity) throws IOException {
     this.columnSizeInBytes = columnSizeInBytes;
     this.maxNumberOfMultiValuesPerRow = maxNumberOfMultiValuesPerRow;
-    headerSize = rows * SIZE_OF_INT * NUM_COLS_IN_HEADER;
-    headerBuffer = MmapUtils.allocateDirectByteBuffer(headerSize, null,
-        this.getClass().getSimpleName() + " headerBuffer");
-    headerBuffer.order(ByteOrder.nativeOrder());
     //dataBufferId, startIndex, length
-    headerWriter =
-        new FixedByteWidthRowColDataFileWriter(headerBuffer, rows, 3,
-            new int[] { SIZE_OF_INT, SIZE_OF_INT, SIZE_OF_INT });
-    headerReader =
-        new FixedByteWidthRowColDataFileReader(headerBuffer, rows, 3,
-            new int[] { SIZE_OF_INT, SIZE_OF_INT, SIZE_OF_INT });
-    //at least create space for million entries, which for INT translates into 4mb buffer
+    headerBufferIds = new FixedByteChunkSingleColumnSingleValueReaderWriter(rowsPerChunk, new int[] { SIZE_OF_INT });
+    headerStartIndexes = new FixedByteChunkSingleColumnSingleValueReaderWriter(rowsPerChunk, new int[] { SIZE_OF_INT });
+    headerLengths = new FixedByteChunkSingleColumnSingleValueReaderWriter(rowsPerChunk, new int[] { SIZE_OF_INT });
     this.incrementalCapacity = incrementalCapacity;
     addCapacity(initialCapacity);
   }
@@ -132,11 +131,11 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
       dataBuffers.add(dataBuffer);
       currentDataWriter =
           new FixedByteWidthRowColDataFileWriter(dataBuffer, rowCapacity, 1, new int[] { columnSizeInBytes });
-      dataWriters.add(currentDataWriter);
 
-      FixedByteWidthRowColDataFileReader dataFileReader =
+      FixedByteWidthRowColDataFileReader[] newDataReaders = Arrays.copyOf(dataReaders, dataReaders.length + 1);
+      newDataReaders[dataReaders.length] =
           new FixedByteWidthRowColDataFileReader(dataBuffer, rowCapacity, 1, new int[] { columnSizeInBytes });
-      dataReaders.add(dataFileReader);
+      dataReaders = newDataReaders;
       //update the capacity
       currentCapacity = rowCapacity;
       currentDataWriterIndex = currentDataWriterIndex + 1;
@@ -152,13 +151,15 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
   }
 
   @Override
-  public void close() {
+  public void close() throws IOException {
+    dataReaders = new FixedByteWidthRowColDataFileReader[0];
     for (ByteBuffer dataBuffer : dataBuffers) {
       MmapUtils.unloadByteBuffer(dataBuffer);
     }
     dataBuffers.clear();
-    MmapUtils.unloadByteBuffer(headerBuffer);
-    headerBuffer = null;
+    headerBufferIds.close();
+    headerStartIndexes.close();
+    headerLengths.close();
   }
 
   private int updateHeader(int row, int length) {
@@ -166,8 +167,8 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
     int prevRowStartIndex = 0;
     int prevRowLength = 0;
     if (row > 0) {
-      prevRowStartIndex = headerReader.getInt(row - 1, 1);
-      prevRowLength = headerReader.getInt(row - 1, 2);
+      prevRowStartIndex = headerStartIndexes.getInt(row - 1);
+      prevRowLength = headerLengths.getInt(row - 1);
     }
     int newStartIndex = prevRowStartIndex + prevRowLength;
     if (newStartIndex + length > currentCapacity) {
@@ -176,9 +177,9 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
       prevRowLength = 0;
       newStartIndex = prevRowStartIndex + prevRowLength;
     }
-    headerWriter.setInt(row, 0, currentDataWriterIndex);
-    headerWriter.setInt(row, 1, newStartIndex);
-    headerWriter.setInt(row, 2, length);
+    headerBufferIds.setInt(row, currentDataWriterIndex);
+    headerStartIndexes.setInt(row, newStartIndex);
+    headerLengths.setInt(row, length);
     return newStartIndex;
   }
 
@@ -249,10 +250,10 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
 
   @Override
   public int getCharArray(int row, char[] charArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteWidthRowColDataFileReader dataReader = dataReaders.get(bufferIndex);
+    int bufferIndex = headerBufferIds.getInt(row);
+    int startIndex = headerStartIndexes.getInt(row);
+    int length = headerLengths.getInt(row);
+    FixedByteWidthRowColDataFileReader dataReader = dataReaders[bufferIndex];
     for (int i = 0; i < length; i++) {
       charArray[i] = dataReader.getChar(startIndex + i, 0);
     }
@@ -261,10 +262,10 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
 
   @Override
   public int getShortArray(int row, short[] shortsArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteWidthRowColDataFileReader dataReader = dataReaders.get(bufferIndex);
+    int bufferIndex = headerBufferIds.getInt(row);
+    int startIndex = headerStartIndexes.getInt(row);
+    int length = headerLengths.getInt(row);
+    FixedByteWidthRowColDataFileReader dataReader = dataReaders[bufferIndex];
     for (int i = 0; i < length; i++) {
       shortsArray[i] = dataReader.getShort(startIndex + i, 0);
     }
@@ -273,10 +274,10 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
 
   @Override
   public int getIntArray(int row, int[] intArray) {
-    int bufferIndex = headerReader.getInt(row, 0);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteWidthRowColDataFileReader dataReader = dataReaders.get(bufferIndex);
+    int bufferIndex = headerBufferIds.getInt(row);
+    int startIndex = headerStartIndexes.getInt(row);
+    int length = headerLengths.getInt(row);
+    FixedByteWidthRowColDataFileReader dataReader = dataReaders[bufferIndex];
     for (int i = 0; i < length; i++) {
       intArray[i] = dataReader.getInt(startIndex + i, 0);
     }
@@ -285,10 +286,10 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
 
   @Override
   public int getLongArray(int row, long[] longArray) {
-    int bufferIndex = headerReader.getInt(row, 0);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteWidthRowColDataFileReader dataReader = dataReaders.get(bufferIndex);
+    int bufferIndex = headerBufferIds.getInt(row);
+    int startIndex = headerStartIndexes.getInt(row);
+    int length = headerLengths.getInt(row);
+    FixedByteWidthRowColDataFileReader dataReader = dataReaders[bufferIndex];
     for (int i = 0; i < length; i++) {
       longArray[i] = dataReader.getLong(startIndex + i, 0);
     }
@@ -297,10 +298,10 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
 
   @Override
   public int getFloatArray(int row, float[] floatArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteWidthRowColDataFileReader dataReader = dataReaders.get(bufferIndex);
+    int bufferIndex = headerBufferIds.getInt(row);
+    int startIndex = headerStartIndexes.getInt(row);
+    int length = headerLengths.getInt(row);
+    FixedByteWidthRowColDataFileReader dataReader = dataReaders[bufferIndex];
     for (int i = 0; i < length; i++) {
       floatArray[i] = dataReader.getFloat(startIndex + i, 0);
     }
@@ -309,10 +310,10 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
 
   @Override
   public int getDoubleArray(int row, double[] doubleArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteWidthRowColDataFileReader dataReader = dataReaders.get(bufferIndex);
+    int bufferIndex = headerBufferIds.getInt(row);
+    int startIndex = headerStartIndexes.getInt(row);
+    int length = headerLengths.getInt(row);
+    FixedByteWidthRowColDataFileReader dataReader = dataReaders[bufferIndex];
     for (int i = 0; i < length; i++) {
       doubleArray[i] = dataReader.getDouble(startIndex + i, 0);
     }
@@ -321,10 +322,10 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
 
   @Override
   public int getStringArray(int row, String[] stringArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteWidthRowColDataFileReader dataReader = dataReaders.get(bufferIndex);
+    int bufferIndex = headerBufferIds.getInt(row);
+    int startIndex = headerStartIndexes.getInt(row);
+    int length = headerLengths.getInt(row);
+    FixedByteWidthRowColDataFileReader dataReader = dataReaders[bufferIndex];
     for (int i = 0; i < length; i++) {
       stringArray[i] = dataReader.getString(startIndex + i, 0);
     }
@@ -333,10 +334,10 @@ public class FixedByteSingleColumnMultiValueReaderWriter implements SingleColumn
 
   @Override
   public int getBytesArray(int row, byte[][] bytesArray) {
-    int bufferIndex = headerReader.getInt(row, 1);
-    int startIndex = headerReader.getInt(row, 1);
-    int length = headerReader.getInt(row, 2);
-    FixedByteWidthRowColDataFileReader dataReader = dataReaders.get(bufferIndex);
+    int bufferIndex = headerBufferIds.getInt(row);
+    int startIndex = headerStartIndexes.getInt(row);
+    int length = headerLengths.getInt(row);
+    FixedByteWidthRowColDataFileReader dataReader = dataReaders[bufferIndex];
     for (int i = 0; i < length; i++) {
       bytesArray[i] = dataReader.getBytes(startIndex + i, 0);
     }
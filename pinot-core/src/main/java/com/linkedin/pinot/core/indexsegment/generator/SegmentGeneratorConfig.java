@@ -34,6 +34,7 @@ import java.util.concurrent.TimeUnit;
  * Configuration properties used in the creation of index segments.
  */
 public class SegmentGeneratorConfig {
+  public static final int DEFAULT_NUM_COLUMN_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
 
   private Map<String, String> properties;
   private Schema schema;
@@ -45,6 +46,11 @@ public class SegmentGeneratorConfig {
   private boolean createInvertedIndex = false;
   private List<String> invertedIndexCreationColumns = new ArrayList<String>();
 
+  /**
+   * For bloom filters : none by default
+   */
+  private List<String> bloomFilterCreationColumns = new ArrayList<String>();
+
   private String segmentNamePostfix = null;
   private String segmentName = null;
   private String tableName = null;
@@ -57,6 +63,7 @@ public class SegmentGeneratorConfig {
   private String segmentEndTime = null;
   private FileFormat inputFileFormat = FileFormat.AVRO;
   private File inputDataFilePath = null;
+  private int numColumnThreads = DEFAULT_NUM_COLUMN_THREADS;
 
   /*
    *
@@ -114,6 +121,34 @@ public class SegmentGeneratorConfig {
     return invertedIndexCreationColumns;
   }
 
+  /**
+   *
+   * bloom filters are not created by default, they let segments which do not contain the value of an equality or in
+   * predicate on the column be pruned without opening the column
+   */
+
+  public void createBloomFilterForColumn(String column) {
+    bloomFilterCreationColumns.add(column);
+  }
+
+  public List<String> getBloomFilterCreationColumns() {
+    return bloomFilterCreationColumns;
+  }
+
+  /**
+   *
+   * the columns of a segment are processed in parallel by at most this many threads, 1 processes them one after
+   * another on the thread building the segment
+   */
+
+  public void setNumColumnThreads(int numColumnThreads) {
+    this.numColumnThreads = Math.max(1, numColumnThreads);
+  }
+
+  public int getNumColumnThreads() {
+    return numColumnThreads;
+  }
+
   public void setSegmentName(String segmentName) {
     this.segmentName = segmentName;
   }
@@ -53,7 +53,9 @@ public class BReusableFilteredDocIdSetOperator extends BaseOperator {
 
   @Override
   public boolean open() {
-    _filterOperators.open();
+    if (_filterOperators != null) {
+      _filterOperators.open();
+    }
     return true;
   }
 
@@ -138,7 +140,9 @@ public class BReusableFilteredDocIdSetOperator extends BaseOperator {
 
   @Override
   public boolean close() {
-    _filterOperators.close();
+    if (_filterOperators != null) {
+      _filterOperators.close();
+    }
     return true;
   }
 
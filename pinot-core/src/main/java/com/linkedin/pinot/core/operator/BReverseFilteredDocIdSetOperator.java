@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.operator;
+
+import java.util.Arrays;
+
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.plan.PlanNode;
+
+
+/**
+ * BReverseFilteredDocIdSetOperator returns the matched docIds from the end of the segment to its beginning: each
+ * block holds increasing docIds, and all its docIds are greater than the ones of the next block.
+ *
+ * Filter iterators can only move forward, so the docIds are read in windows going backward, the filter operators being
+ * created again from the plan for each window. The windows double in size to bound the number of filters created
+ * when few documents match.
+ */
+public class BReverseFilteredDocIdSetOperator extends BReusableFilteredDocIdSetOperator {
+
+  private final PlanNode _filterPlanNode;
+  private final int _maxSizeOfDocIdSet;
+  private int _windowSize;
+  // docIds from the end of the window down to it are read
+  private int _windowStart;
+
+  // docIds of the current window not returned yet
+  private int[] _windowDocIds = new int[0];
+  private int _windowLength = 0;
+  private DocIdSetBlock _currentDocIdSetBlock = null;
+
+  /**
+   *
+   * @param filterPlanNode plan of the filter, null to match all the documents
+   * @param docSize
+   * @param maxSizeOfDocIdSet
+   */
+  public BReverseFilteredDocIdSetOperator(PlanNode filterPlanNode, int docSize, int maxSizeOfDocIdSet) {
+    super(null, docSize, maxSizeOfDocIdSet);
+    _filterPlanNode = filterPlanNode;
+    _maxSizeOfDocIdSet = maxSizeOfDocIdSet;
+    _windowSize = maxSizeOfDocIdSet;
+    _windowStart = docSize;
+  }
+
+  @Override
+  public boolean open() {
+    return true;
+  }
+
+  @Override
+  public Block getNextBlock() {
+    while (_windowLength == 0) {
+      if (_windowStart == 0) {
+        _currentDocIdSetBlock = null;
+        return null;
+      }
+      final int windowEnd = _windowStart;
+      _windowStart = Math.max(0, windowEnd - _windowSize);
+      readWindow(_windowStart, windowEnd);
+      if (_filterPlanNode != null) {
+        _windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * _windowSize);
+      }
+    }
+    final int start = Math.max(0, _windowLength - _maxSizeOfDocIdSet);
+    final int[] docIds = Arrays.copyOfRange(_windowDocIds, start, _windowLength);
+    _windowLength = start;
+    _currentDocIdSetBlock = new DocIdSetBlock(docIds, docIds.length);
+    return _currentDocIdSetBlock;
+  }
+
+  private void readWindow(int start, int end) {
+    _windowLength = 0;
+    if (_filterPlanNode == null) {
+      ensureCapacity(end - start);
+      for (int docId = start; docId < end; docId++) {
+        _windowDocIds[_windowLength++] = docId;
+      }
+      return;
+    }
+    final Operator filterOperator = _filterPlanNode.run();
+    filterOperator.open();
+    try {
+      final BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator();
+      int docId = iterator.advance(start);
+      while (docId != Constants.EOF && docId < end) {
+        ensureCapacity(_windowLength + 1);
+        _windowDocIds[_windowLength++] = docId;
+        docId = iterator.next();
+      }
+    } finally {
+      filterOperator.close();
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > _windowDocIds.length) {
+      _windowDocIds = Arrays.copyOf(_windowDocIds, Math.max(capacity, 2 * _windowDocIds.length));
+    }
+  }
+
+  @Override
+  public Block getNextBlock(BlockId BlockId) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public String getOperatorName() {
+    return "BReverseFilteredDocIdSetOperator";
+  }
+
+  @Override
+  public Block getCurrentBlock() {
+    return _currentDocIdSetBlock;
+  }
+
+  @Override
+  public DocIdSetBlock getCurrentDocIdSetBlock() {
+    return _currentDocIdSetBlock;
+  }
+
+  @Override
+  public long getCurrentBlockSize() {
+    return _currentDocIdSetBlock == null ? 0 : _currentDocIdSetBlock.getSearchableLength();
+  }
+
+  @Override
+  public boolean close() {
+    return true;
+  }
+}
@@ -17,16 +17,15 @@ package com.linkedin.pinot.core.operator;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.linkedin.pinot.core.trace.TraceCallable;
 import com.linkedin.pinot.core.trace.TraceRunnable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +43,7 @@ import com.linkedin.pinot.core.operator.query.MSelectionOnlyOperator;
 import com.linkedin.pinot.core.operator.query.MSelectionOrderByOperator;
 import com.linkedin.pinot.core.query.aggregation.CombineService;
 import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionRowBudget;
 
 
 /**
@@ -70,38 +70,72 @@ public class MCombineOperator extends BaseOperator {
   private final boolean _isParallel;
   private final BrokerRequest _brokerRequest;
   private final ExecutorService _executorService;
+  // Default maximum number of threads a query uses to process its segments
+  public static final int DEFAULT_MAX_THREADS_PER_QUERY = Runtime.getRuntime().availableProcessors();
+
   private long _timeOutMs;
-  //Make this configurable
-  //These two control the parallelism on a per query basis, depending on the number of segments to process
-  private static int MAX_THREADS_PER_QUERY = 5;
-  private static int MIN_SEGMENTS_PER_THREAD = 10;
+  // Maximum number of segments of the query processed at the same time
+  private final int _maxThreadsPerQuery;
 
   private IntermediateResultsBlock _mergedBlock;
+  // Rows needed by a selection only query, shared by its segment operators
+  private final SelectionRowBudget _rowBudget;
 
   public MCombineOperator(List<Operator> retOperators, BrokerRequest brokerRequest) {
     _operators = retOperators;
     _isParallel = false;
     _brokerRequest = brokerRequest;
     _executorService = null;
+    _maxThreadsPerQuery = 1;
+    _rowBudget = createRowBudget(retOperators, brokerRequest);
   }
 
   public MCombineOperator(List<Operator> retOperators, ExecutorService executorService, long timeOutMs,
       BrokerRequest brokerRequest) {
+    this(retOperators, executorService, timeOutMs, brokerRequest, DEFAULT_MAX_THREADS_PER_QUERY);
+  }
+
+  /**
+   * @param maxThreadsPerQuery Maximum number of threads the query uses to process its segments
+   */
+  public MCombineOperator(List<Operator> retOperators, ExecutorService executorService, long timeOutMs,
+      BrokerRequest brokerRequest, int maxThreadsPerQuery) {
+    if (maxThreadsPerQuery <= 0) {
+      throw new IllegalArgumentException("Invalid max threads per query : " + maxThreadsPerQuery);
+    }
     _operators = retOperators;
     _executorService = executorService;
     _brokerRequest = brokerRequest;
     _timeOutMs = timeOutMs;
+    _maxThreadsPerQuery = maxThreadsPerQuery;
     if (_executorService != null) {
       _isParallel = true;
     } else {
       _isParallel = false;
     }
+    _rowBudget = createRowBudget(retOperators, brokerRequest);
+  }
+
+  private static SelectionRowBudget createRowBudget(List<Operator> operators, BrokerRequest brokerRequest) {
+    if (brokerRequest.getSelections() == null || brokerRequest.getSelections().isSetSelectionSortSequence()) {
+      return null;
+    }
+    final SelectionRowBudget rowBudget = new SelectionRowBudget(brokerRequest.getSelections().getSize());
+    for (Operator operator : operators) {
+      if (operator instanceof MSelectionOnlyOperator) {
+        ((MSelectionOnlyOperator) operator).setRowBudget(rowBudget);
+      }
+    }
+    return rowBudget;
   }
 
   @Override
   public boolean open() {
     for (Operator op : _operators) {
-      op.open();
+      // selection only operators are opened when they run, the ones skipped once the query has its rows never are
+      if (_rowBudget == null || !(op instanceof MSelectionOnlyOperator)) {
+        op.open();
+      }
     }
     return true;
   }
@@ -112,119 +146,89 @@ public class MCombineOperator extends BaseOperator {
     final long startTime = System.currentTimeMillis();
     if (_isParallel) {
       final long queryEndTime = System.currentTimeMillis() + _timeOutMs;
-      int numGroups = Math.min(MAX_THREADS_PER_QUERY, (_operators.size() + MIN_SEGMENTS_PER_THREAD - 1) / MIN_SEGMENTS_PER_THREAD);
+      final int numWorkers = getNumWorkers();
 
-      final List<List<Operator>> operatorGroups = new ArrayList<List<Operator>>(numGroups);
-      for (int i = 0; i < numGroups; i++) {
-        operatorGroups.add(new ArrayList<Operator>());
-      }
-      for (int i = 0; i < _operators.size(); i++) {
-        operatorGroups.get(i % numGroups).add(_operators.get(i));
-      }
-      final BlockingQueue<Block> blockingQueue = new ArrayBlockingQueue<Block>(operatorGroups.size());
-      // Submit operators.
-      for (final List<Operator> operatorGroup : operatorGroups) {
+      // Every worker pulls the next segment as soon as it is done with the previous one, so that a large or slow
+      // segment only holds its own thread while the other workers go through the remaining segments.
+      final AtomicInteger nextOperatorIndex = new AtomicInteger(0);
+      final Queue<IntermediateResultsBlock> doneBlocks = new ConcurrentLinkedQueue<IntermediateResultsBlock>();
+      final CountDownLatch doneLatch = new CountDownLatch(numWorkers);
+      for (int i = 0; i < numWorkers; i++) {
         _executorService.submit(new TraceRunnable() {
           @Override
           public void runJob() {
             IntermediateResultsBlock mergedBlock = null;
-            try {
-              for (Operator operator : operatorGroup) {
-                IntermediateResultsBlock blockToMerge = (IntermediateResultsBlock) operator.nextBlock();
+            Exception segmentException = null;
+            int operatorIndex;
+            while (System.currentTimeMillis() < queryEndTime
+                && (operatorIndex = nextOperatorIndex.getAndIncrement()) < _operators.size()) {
+              try {
+                IntermediateResultsBlock blockToMerge = getNextBlock(_operators.get(operatorIndex), mergedBlock);
                 if (mergedBlock == null) {
                   mergedBlock = blockToMerge;
                 } else {
                   CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
                 }
+              } catch (Exception e) {
+                // Go on with the next segments, the error is reported along with the results of the other segments.
+                LOGGER.error("exception in the MCombine operator ", e);
+                if (segmentException == null) {
+                  segmentException = e;
+                }
+              }
+            }
+            if (segmentException != null) {
+              if (mergedBlock == null) {
+                mergedBlock = new IntermediateResultsBlock(segmentException);
+              } else {
+                addException(mergedBlock,
+                    QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, segmentException));
               }
-            } catch (Exception e) {
-              LOGGER.error("exception in the MCombine operator ", e);
-              mergedBlock = new IntermediateResultsBlock(e);
             }
-            if (blockingQueue != null) {
-              blockingQueue.offer(mergedBlock);
+            if (mergedBlock != null) {
+              // Merge with the blocks of the workers done before this one, the merges are spread over the workers
+              // instead of being all done by a single merger.
+              IntermediateResultsBlock doneBlock;
+              while ((doneBlock = doneBlocks.poll()) != null) {
+                mergeDoneBlock(mergedBlock, doneBlock);
+              }
+              doneBlocks.offer(mergedBlock);
             }
+            doneLatch.countDown();
           }
         });
       }
-      LOGGER
-          .debug("Submitting operators to be run in parallel and it took:" + (System.currentTimeMillis() - startTime));
-
-      // Submit merger job:
-      Future<IntermediateResultsBlock> mergedBlockFuture =
-          _executorService.submit(new TraceCallable<IntermediateResultsBlock>() {
-            @Override
-            public IntermediateResultsBlock callJob() throws Exception {
-              int mergedBlocksNumber = 0;
-              IntermediateResultsBlock mergedBlock = null;
-              while ((queryEndTime > System.currentTimeMillis()) && (mergedBlocksNumber < operatorGroups.size())) {
-                if (mergedBlock == null) {
-                  mergedBlock =
-                      (IntermediateResultsBlock) blockingQueue.poll(queryEndTime - System.currentTimeMillis(),
-                          TimeUnit.MILLISECONDS);
-                  if (mergedBlock != null) {
-                    mergedBlocksNumber++;
-                  }
-                  LOGGER.debug("Got response from operator 0 after: {}", (System.currentTimeMillis() - startTime));
-                } else {
-                  IntermediateResultsBlock blockToMerge =
-                      (IntermediateResultsBlock) blockingQueue.poll(queryEndTime - System.currentTimeMillis(),
-                          TimeUnit.MILLISECONDS);
-                  if (blockToMerge != null) {
-                    try {
-                      LOGGER.debug("Got response from operator {} after: {}", mergedBlocksNumber,
-                          (System.currentTimeMillis() - startTime));
-                      CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
-                      LOGGER.debug("Merged response from operator {} after: {}", mergedBlocksNumber,
-                          (System.currentTimeMillis() - startTime));
-                    } catch (Exception e) {
-                      mergedBlock.getExceptions().add(
-                          QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
-                    }
-                    mergedBlocksNumber++;
-                  }
-                }
-              }
-              return mergedBlock;
-            }
-          });
+      LOGGER.debug("Submitting {} workers for {} operators took: {}", numWorkers, _operators.size(),
+          (System.currentTimeMillis() - startTime));
 
       // Get merge results.
+      ProcessingException processingException = null;
       try {
-        _mergedBlock = mergedBlockFuture.get(queryEndTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        if (!doneLatch.await(queryEndTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+          LOGGER.error("Timed out after {}ms with {} workers still running", _timeOutMs, doneLatch.getCount());
+          processingException = QueryException.getException(QueryException.EXECUTION_TIMEOUT_ERROR,
+              new TimeoutException("Timed out after " + _timeOutMs + "ms"));
+        }
       } catch (InterruptedException e) {
         LOGGER.error("InterruptedException ", e);
+        processingException = QueryException.getException(QueryException.FUTURE_CALL_ERROR, e);
+      }
+      // Several workers can be done at the same time, merge what they left
+      IntermediateResultsBlock doneBlock;
+      while ((doneBlock = doneBlocks.poll()) != null) {
         if (_mergedBlock == null) {
-          _mergedBlock = new IntermediateResultsBlock(e);
-        }
-        List<ProcessingException> exceptions = _mergedBlock.getExceptions();
-        if (exceptions == null) {
-          exceptions = new ArrayList<ProcessingException>();
-        }
-        exceptions.add(QueryException.getException(QueryException.FUTURE_CALL_ERROR, e));
-        _mergedBlock.setExceptionsList(exceptions);
-      } catch (ExecutionException e) {
-        LOGGER.error("Execution Exception", e);
-        if (_mergedBlock == null) {
-          _mergedBlock = new IntermediateResultsBlock(e);
-        }
-        List<ProcessingException> exceptions = _mergedBlock.getExceptions();
-        if (exceptions == null) {
-          exceptions = new ArrayList<ProcessingException>();
+          _mergedBlock = doneBlock;
+        } else {
+          mergeDoneBlock(_mergedBlock, doneBlock);
         }
-        exceptions.add(QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
-        _mergedBlock.setExceptionsList(exceptions);
-      } catch (TimeoutException e) {
-        LOGGER.error("TimeoutException ", e);
+      }
+      LOGGER.debug("Merged the responses of {} operators after: {}", _operators.size(),
+          (System.currentTimeMillis() - startTime));
+      if (processingException != null) {
         if (_mergedBlock == null) {
-          _mergedBlock = new IntermediateResultsBlock(e);
-        }
-        List<ProcessingException> exceptions = _mergedBlock.getExceptions();
-        if (exceptions == null) {
-          exceptions = new ArrayList<ProcessingException>();
+          _mergedBlock = new IntermediateResultsBlock();
         }
-        exceptions.add(QueryException.getException(QueryException.EXECUTION_TIMEOUT_ERROR, e));
-        _mergedBlock.setExceptionsList(exceptions);
+        addException(_mergedBlock, processingException);
       }
 
     } else {
@@ -232,7 +236,7 @@ public class MCombineOperator extends BaseOperator {
         if ((operator instanceof MAggregationOperator) || (operator instanceof MSelectionOrderByOperator)
             || (operator instanceof MSelectionOnlyOperator) || (operator instanceof MAggregationGroupByOperator)
             || (operator instanceof MCombineOperator)) {
-          IntermediateResultsBlock block = (IntermediateResultsBlock) operator.nextBlock();
+          IntermediateResultsBlock block = getNextBlock(operator, _mergedBlock);
           if (_mergedBlock == null) {
             _mergedBlock = block;
           } else {
@@ -252,6 +256,61 @@ public class MCombineOperator extends BaseOperator {
     return _mergedBlock;
   }
 
+  /**
+   * Skips the order by selections on segments sorted on the first sort column when none of their documents can beat
+   * the rows merged so far, and the selection only segments once the query has all the rows it needs.
+   */
+  private IntermediateResultsBlock getNextBlock(Operator operator, IntermediateResultsBlock mergedBlock) {
+    if (_rowBudget != null && operator instanceof MSelectionOnlyOperator) {
+      final MSelectionOnlyOperator selectionOperator = (MSelectionOnlyOperator) operator;
+      if (_rowBudget.isExhausted()) {
+        return selectionOperator.getSkippedBlock();
+      }
+      selectionOperator.open();
+      return (IntermediateResultsBlock) selectionOperator.nextBlock();
+    }
+    if (mergedBlock != null && operator instanceof MSelectionOrderByOperator) {
+      final MSelectionOrderByOperator selectionOperator = (MSelectionOrderByOperator) operator;
+      if (selectionOperator.canSkip(mergedBlock.getSelectionResult())) {
+        return selectionOperator.getSkippedBlock();
+      }
+    }
+    return (IntermediateResultsBlock) operator.nextBlock();
+  }
+
+  private void mergeDoneBlock(IntermediateResultsBlock mergedBlock, IntermediateResultsBlock blockToMerge) {
+    try {
+      CombineService.mergeTwoBlocks(_brokerRequest, mergedBlock, blockToMerge);
+    } catch (Exception e) {
+      LOGGER.error("exception while merging the blocks of two workers ", e);
+      addException(mergedBlock, QueryException.getException(QueryException.MERGE_RESPONSE_ERROR, e));
+    }
+  }
+
+  private static void addException(IntermediateResultsBlock block, ProcessingException processingException) {
+    List<ProcessingException> exceptions = block.getExceptions();
+    if (exceptions == null) {
+      exceptions = new ArrayList<ProcessingException>();
+    }
+    exceptions.add(processingException);
+    block.setExceptionsList(exceptions);
+  }
+
+  /**
+   * One worker per segment up to the number of cores (or the configured maximum), fewer when the threads of the
+   * executor are already busy with other queries. Workers pull segments until there are none left, so a query always
+   * makes progress with a single worker.
+   */
+  private int getNumWorkers() {
+    int numWorkers = Math.min(_operators.size(), _maxThreadsPerQuery);
+    if (_executorService instanceof ThreadPoolExecutor) {
+      final ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) _executorService;
+      final int numIdleThreads = threadPoolExecutor.getMaximumPoolSize() - threadPoolExecutor.getActiveCount();
+      numWorkers = Math.min(numWorkers, Math.max(1, numIdleThreads));
+    }
+    return numWorkers;
+  }
+
   private void trimToSize(BrokerRequest brokerRequest, IntermediateResultsBlock mergedBlock) {
     AggregationGroupByOperatorService aggregationGroupByOperatorService =
         new AggregationGroupByOperatorService(brokerRequest.getAggregationsInfo(), brokerRequest.getGroupBy());
@@ -34,6 +34,7 @@ import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
+import com.linkedin.pinot.core.query.selection.SelectionRowBudget;
 
 
 /**
@@ -53,6 +54,7 @@ public class MSelectionOnlyOperator extends BaseOperator {
   private final String[] _selectionColumns;
   private final int _limitDocs;
   private final Collection<Serializable[]> _rowEvents;
+  private SelectionRowBudget _rowBudget = null;
 
   public MSelectionOnlyOperator(IndexSegment indexSegment, Selection selection, Operator projectionOperator) {
     _indexSegment = indexSegment;
@@ -66,6 +68,17 @@ public class MSelectionOnlyOperator extends BaseOperator {
     _rowEvents = new ArrayList<Serializable[]>();
   }
 
+  /**
+   * Shares the rows needed by the query with the other segments of the instance, see {@link SelectionRowBudget}.
+   */
+  public void setRowBudget(SelectionRowBudget rowBudget) {
+    _rowBudget = rowBudget;
+  }
+
+  public SelectionRowBudget getRowBudget() {
+    return _rowBudget;
+  }
+
   @Override
   public boolean open() {
     _projectionOperator.open();
@@ -84,11 +97,19 @@ public class MSelectionOnlyOperator extends BaseOperator {
         _blocks[j++] = projectionBlock.getBlock(_dataSchema.getColumnName(i));
       }
       BlockDocIdIterator blockDocIdIterator = projectionBlock.getDocIdSetBlock().getBlockDocIdSet().iterator();
+      final int numRowsBefore = _rowEvents.size();
       int docId;
       while ((docId = blockDocIdIterator.next()) != Constants.EOF && _rowEvents.size() < _limitDocs) {
         numDocsScanned++;
         _rowEvents.add(SelectionOperatorUtils.collectRowFromBlockValSets(docId, _blocks, _dataSchema));
       }
+      if (_rowBudget != null) {
+        // the other segments of the query stop once the instance has enough rows
+        _rowBudget.addRows(_rowEvents.size() - numRowsBefore);
+        if (_rowBudget.isExhausted()) {
+          break;
+        }
+      }
       if (_rowEvents.size() == _limitDocs) {
         break;
       }
@@ -105,6 +126,19 @@ public class MSelectionOnlyOperator extends BaseOperator {
 
   }
 
+  /**
+   * @return the result of a segment that is not read because the row budget of the query is exhausted
+   */
+  public IntermediateResultsBlock getSkippedBlock() {
+    final IntermediateResultsBlock resultBlock = new IntermediateResultsBlock();
+    resultBlock.setSelectionResult(new ArrayList<Serializable[]>());
+    resultBlock.setSelectionDataSchema(_dataSchema);
+    resultBlock.setNumDocsScanned(0);
+    resultBlock.setTotalDocs(_indexSegment.getTotalDocs());
+    resultBlock.setTimeUsedMs(0);
+    return resultBlock;
+  }
+
   @Override
   public Block getNextBlock(BlockId BlockId) {
     throw new UnsupportedOperationException();
@@ -15,10 +15,13 @@
  */
 package com.linkedin.pinot.core.operator.query;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 import com.linkedin.pinot.core.operator.BaseOperator;
@@ -58,12 +61,26 @@ public class MSelectionOrderByOperator extends BaseOperator {
   private final Set<String> _selectionColumns = new HashSet<String>();
 
   public MSelectionOrderByOperator(IndexSegment indexSegment, Selection selection, Operator projectionOperator) {
+    this(indexSegment, selection, projectionOperator, false);
+  }
+
+  /**
+   *
+   * @param indexSegment
+   * @param selection
+   * @param projectionOperator
+   * @param isReverseDocIdOrder true if the projection blocks come in decreasing docId order, used to stop early on a
+   * descending order by on the column the segment is sorted on
+   */
+  public MSelectionOrderByOperator(IndexSegment indexSegment, Selection selection, Operator projectionOperator,
+      boolean isReverseDocIdOrder) {
     _indexSegment = indexSegment;
     _selection = selection;
     _projectionOperator = projectionOperator;
 
     initColumnarDataSourcePlanNodeMap(indexSegment);
     _selectionOperatorService = new SelectionOperatorService(_selection, indexSegment);
+    _selectionOperatorService.setReverseDocIdOrder(isReverseDocIdOrder);
     _dataSchema = _selectionOperatorService.getDataSchema();
     _blocks = new Block[_selectionColumns.size()];
   }
@@ -104,6 +121,9 @@ public class MSelectionOrderByOperator extends BaseOperator {
         _selectionOperatorService.iterateOnBlock(projectionBlock.getDocIdSetBlock().getBlockDocIdSet().iterator(),
             _blocks);
         numDocsScanned += ((DocIdSetBlock) (projectionBlock.getDocIdSetBlock())).getSearchableLength();
+        if (_selectionOperatorService.canTerminate()) {
+          break;
+        }
       }
 
       final IntermediateResultsBlock resultBlock = new IntermediateResultsBlock();
@@ -132,6 +152,27 @@ public class MSelectionOrderByOperator extends BaseOperator {
 
   }
 
+  /**
+   * @param rowEventsSet rows already selected from other segments
+   * @return true if none of the documents of the segment can make it into the given rows
+   */
+  public boolean canSkip(Collection<Serializable[]> rowEventsSet) {
+    return _selectionOperatorService.canSkipSegment(rowEventsSet);
+  }
+
+  /**
+   * @return the result of a segment that does not need to be read, see {@link #canSkip(Collection)}
+   */
+  public IntermediateResultsBlock getSkippedBlock() {
+    final IntermediateResultsBlock resultBlock = new IntermediateResultsBlock();
+    resultBlock.setSelectionResult(new PriorityQueue<Serializable[]>(1, _selectionOperatorService.getRowComparator()));
+    resultBlock.setSelectionDataSchema(_dataSchema);
+    resultBlock.setNumDocsScanned(0);
+    resultBlock.setTotalDocs(_indexSegment.getTotalDocs());
+    resultBlock.setTimeUsedMs(0);
+    return resultBlock;
+  }
+
   @Override
   public Block getNextBlock(BlockId BlockId) {
     throw new UnsupportedOperationException();
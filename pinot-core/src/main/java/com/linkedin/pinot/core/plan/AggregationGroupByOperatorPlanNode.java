@@ -50,13 +50,13 @@ public class AggregationGroupByOperatorPlanNode implements PlanNode {
   private final AggregationGroupByImplementationType _aggregationGroupByImplementationType;
 
   public AggregationGroupByOperatorPlanNode(IndexSegment indexSegment, BrokerRequest query,
-      AggregationGroupByImplementationType aggregationGroupByImplementationType) {
+      FilterQueryPlan filterQueryPlan, AggregationGroupByImplementationType aggregationGroupByImplementationType) {
     _indexSegment = indexSegment;
     _brokerRequest = query;
     _aggregationGroupByImplementationType = aggregationGroupByImplementationType;
     _projectionPlanNode =
         new ProjectionPlanNode(_indexSegment, getAggregationGroupByRelatedColumns(), new DocIdSetPlanNode(
-            _indexSegment, _brokerRequest, 10000));
+            _indexSegment, _brokerRequest, filterQueryPlan, 10000));
     for (int i = 0; i < _brokerRequest.getAggregationsInfo().size(); ++i) {
       AggregationInfo aggregationInfo = _brokerRequest.getAggregationsInfo().get(i);
       boolean hasDictionary = AggregationFunctionUtils.isAggregationFunctionWithDictionary(aggregationInfo, _indexSegment);
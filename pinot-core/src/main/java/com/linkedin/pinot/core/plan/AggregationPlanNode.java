@@ -50,12 +50,12 @@ public class AggregationPlanNode implements PlanNode {
       new ArrayList<AggregationFunctionPlanNode>();
   private final ProjectionPlanNode _projectionPlanNode;
 
-  public AggregationPlanNode(IndexSegment indexSegment, BrokerRequest query) {
+  public AggregationPlanNode(IndexSegment indexSegment, BrokerRequest query, FilterQueryPlan filterQueryPlan) {
     _indexSegment = indexSegment;
     _brokerRequest = query;
     _projectionPlanNode =
         new ProjectionPlanNode(_indexSegment, getAggregationRelatedColumns(), new DocIdSetPlanNode(_indexSegment,
-            _brokerRequest, 5000));
+            _brokerRequest, filterQueryPlan, 5000));
     for (int i = 0; i < _brokerRequest.getAggregationsInfo().size(); ++i) {
       AggregationInfo aggregationInfo = _brokerRequest.getAggregationsInfo().get(i);
       boolean hasDictionary = AggregationFunctionUtils.isAggregationFunctionWithDictionary(aggregationInfo, _indexSegment);
@@ -33,17 +33,35 @@ public abstract class BaseAggregationGroupByOperatorPlanNode implements PlanNode
 
   protected final IndexSegment indexSegment;
   protected final BrokerRequest brokerRequest;
+  protected final FilterQueryPlan filterQueryPlan;
   protected final AggregationGroupByImplementationType implementationType;
+  // Doc id set plan node given to the constructor, null if the projection plan node builds its own
+  protected final BaseDocIdSetPlanNode docIdSetPlanNode;
   protected final BaseProjectionPlanNode projectionPlanNode;
   protected final List<BaseAggregationFunctionGroupByPlanNode> aggregationFunctionGroupByPlanNodes;
 
   public BaseAggregationGroupByOperatorPlanNode(
       IndexSegment indexSegment,
       BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan,
       AggregationGroupByImplementationType implementationType) {
+    this(indexSegment, brokerRequest, filterQueryPlan, implementationType, null);
+  }
+
+  /**
+   * Makes the given doc id set plan node available to {@link #getProjectionPlanNode()}.
+   */
+  protected BaseAggregationGroupByOperatorPlanNode(
+      IndexSegment indexSegment,
+      BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan,
+      AggregationGroupByImplementationType implementationType,
+      BaseDocIdSetPlanNode docIdSetPlanNode) {
     this.indexSegment = indexSegment;
     this.brokerRequest = brokerRequest;
+    this.filterQueryPlan = filterQueryPlan;
     this.implementationType = implementationType;
+    this.docIdSetPlanNode = docIdSetPlanNode;
     this.projectionPlanNode = getProjectionPlanNode();
     this.aggregationFunctionGroupByPlanNodes = new ArrayList<>();
 
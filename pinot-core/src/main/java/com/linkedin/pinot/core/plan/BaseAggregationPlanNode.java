@@ -31,18 +31,34 @@ public abstract class BaseAggregationPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger("QueryPlanLog");
   protected final IndexSegment indexSegment;
   protected final BrokerRequest brokerRequest;
+  protected final FilterQueryPlan filterQueryPlan;
   protected final BaseDocIdSetPlanNode docIdSetPlanNode;
   protected final BaseProjectionPlanNode projectionPlanNode;
   protected final List<BaseAggregationFunctionPlanNode> aggregationFunctionPlanNodes;
 
-  public BaseAggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+  public BaseAggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan) {
     this.indexSegment = indexSegment;
     this.brokerRequest = brokerRequest;
+    this.filterQueryPlan = filterQueryPlan;
     this.docIdSetPlanNode = getDocIdSetPlanNode();
     this.projectionPlanNode = getProjectionPlanNode();
     this.aggregationFunctionPlanNodes = getAggregationFunctionPlanNodes();
   }
 
+  /**
+   * Uses the given doc id set plan node instead of {@link #getDocIdSetPlanNode()}.
+   */
+  protected BaseAggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      BaseDocIdSetPlanNode docIdSetPlanNode) {
+    this.indexSegment = indexSegment;
+    this.brokerRequest = brokerRequest;
+    this.filterQueryPlan = docIdSetPlanNode.filterQueryPlan;
+    this.docIdSetPlanNode = docIdSetPlanNode;
+    this.projectionPlanNode = getProjectionPlanNode();
+    this.aggregationFunctionPlanNodes = getAggregationFunctionPlanNodes();
+  }
+
   protected abstract BaseDocIdSetPlanNode getDocIdSetPlanNode();
 
   protected abstract BaseProjectionPlanNode getProjectionPlanNode();
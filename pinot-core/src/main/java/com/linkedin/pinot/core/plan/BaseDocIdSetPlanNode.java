@@ -26,18 +26,33 @@ public abstract class BaseDocIdSetPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(DocIdSetPlanNode.class);
   protected final IndexSegment indexSegment;
   protected final BrokerRequest brokerRequest;
+  protected final FilterQueryPlan filterQueryPlan;
   protected final int maxDocPerAggregation;
   protected final BaseFilterPlanNode filterNode;
 
   private BReusableFilteredDocIdSetOperator projectOp = null;
 
-  public BaseDocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, int maxDocPerAggregation) {
+  public BaseDocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, FilterQueryPlan filterQueryPlan,
+      int maxDocPerAggregation) {
     this.indexSegment = indexSegment;
     this.brokerRequest = brokerRequest;
+    this.filterQueryPlan = filterQueryPlan;
     this.maxDocPerAggregation = maxDocPerAggregation;
     this.filterNode = getFilterPlanNode();
   }
 
+  /**
+   * Uses the given filter plan node instead of {@link #getFilterPlanNode()}, e.g. one the planner already built.
+   */
+  protected BaseDocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, int maxDocPerAggregation,
+      BaseFilterPlanNode filterNode) {
+    this.indexSegment = indexSegment;
+    this.brokerRequest = brokerRequest;
+    this.filterQueryPlan = filterNode.filterQueryPlan;
+    this.maxDocPerAggregation = maxDocPerAggregation;
+    this.filterNode = filterNode;
+  }
+
   protected abstract BaseFilterPlanNode getFilterPlanNode();
 
   @Override
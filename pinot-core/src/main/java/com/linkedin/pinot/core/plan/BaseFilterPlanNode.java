@@ -16,9 +16,11 @@
 package com.linkedin.pinot.core.plan;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.utils.request.FilterQueryTree;
-import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.common.predicate.*;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.filter.*;
 import org.slf4j.Logger;
@@ -30,10 +32,15 @@ public abstract class BaseFilterPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(BaseFilterPlanNode.class);
   protected final IndexSegment indexSegment;
   protected final BrokerRequest brokerRequest;
+  protected final FilterQueryPlan filterQueryPlan;
 
-  public BaseFilterPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+  /**
+   * @param filterQueryPlan filter of the query, shared by the plans of all the segments the query runs on
+   */
+  public BaseFilterPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, FilterQueryPlan filterQueryPlan) {
     this.indexSegment = indexSegment;
     this.brokerRequest = brokerRequest;
+    this.filterQueryPlan = filterQueryPlan;
   }
 
   protected abstract Operator constructPhysicalOperator(FilterQueryTree filterQueryTree);
@@ -41,7 +48,7 @@ public abstract class BaseFilterPlanNode implements PlanNode {
   @Override
   public Operator run() {
     long start = System.currentTimeMillis();
-    Operator constructPhysicalOperator = constructPhysicalOperator(RequestUtils.generateFilterQueryTree(brokerRequest));
+    Operator constructPhysicalOperator = constructPhysicalOperator(filterQueryPlan.getFilterQueryTree());
     long end = System.currentTimeMillis();
     LOGGER.debug("FilterPlanNode.run took:" + (end - start));
     return constructPhysicalOperator;
@@ -85,4 +92,36 @@ public abstract class BaseFilterPlanNode implements PlanNode {
     };
     Collections.sort(operators, comparator);
   }
+
+  /**
+   * Returns the predicate of a leaf of the filter query tree, shared by the plans of all the segments of the query.
+   */
+  protected Predicate getPredicate(FilterQueryTree filterQueryTree) {
+    return filterQueryPlan.getPredicate(filterQueryTree);
+  }
+
+  /**
+   * Builds the predicate of a leaf of the filter query tree.
+   */
+  static Predicate buildPredicate(FilterQueryTree filterQueryTree) {
+    final FilterOperator filterType = filterQueryTree.getOperator();
+    final String column = filterQueryTree.getColumn();
+    final List<String> value = filterQueryTree.getValue();
+    switch (filterType) {
+      case EQUALITY:
+        return new EqPredicate(column, value);
+      case RANGE:
+        return new RangePredicate(column, value);
+      case REGEX:
+        return new RegexPredicate(column, value);
+      case NOT:
+        return new NEqPredicate(column, value);
+      case NOT_IN:
+        return new NotInPredicate(column, value);
+      case IN:
+        return new InPredicate(column, value);
+      default:
+        throw new UnsupportedOperationException("Unsupported filterType:" + filterType);
+    }
+  }
 }
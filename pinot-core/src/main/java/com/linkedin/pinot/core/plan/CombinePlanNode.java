@@ -43,12 +43,18 @@ public class CombinePlanNode implements PlanNode {
   private final BrokerRequest _brokerRequest;
   private final ExecutorService _executorService;
   private final long _timeOutMs;
+  private final int _maxThreadsPerQuery;
 
   public CombinePlanNode(BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs) {
+    this(brokerRequest, executorService, timeOutMs, MCombineOperator.DEFAULT_MAX_THREADS_PER_QUERY);
+  }
+
+  public CombinePlanNode(BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs,
+      int maxThreadsPerQuery) {
     _brokerRequest = brokerRequest;
     _executorService = executorService;
     _timeOutMs = timeOutMs;
-
+    _maxThreadsPerQuery = maxThreadsPerQuery;
   }
 
   public void addPlanNode(PlanNode planNode) {
@@ -94,7 +100,7 @@ public class CombinePlanNode implements PlanNode {
       }
     }
     MCombineOperator mCombineOperator =
-        new MCombineOperator(retOperators, _executorService, _timeOutMs, _brokerRequest);
+        new MCombineOperator(retOperators, _executorService, _timeOutMs, _brokerRequest, _maxThreadsPerQuery);
     long end = System.currentTimeMillis();
     LOGGER.info("CombinePlanNode.run took: " + (end - start));
     return mCombineOperator;
@@ -22,6 +22,7 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.BReusableFilteredDocIdSetOperator;
+import com.linkedin.pinot.core.operator.BReverseFilteredDocIdSetOperator;
 
 
 /**
@@ -39,14 +40,31 @@ public class DocIdSetPlanNode implements PlanNode {
   private final BrokerRequest _brokerRequest;
   private final PlanNode _filterNode;
   private final int _maxDocPerAggregation;
+  private final boolean _isReverseDocIdOrder;
   private BReusableFilteredDocIdSetOperator _projectOp = null;
 
-  public DocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest query, int maxDocPerAggregation) {
+  public DocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest query, FilterQueryPlan filterQueryPlan,
+      int maxDocPerAggregation) {
+    this(indexSegment, query, filterQueryPlan, maxDocPerAggregation, false);
+  }
+
+  /**
+   *
+   * @param indexSegment
+   * @param query
+   * @param filterQueryPlan
+   * @param maxDocPerAggregation
+   * @param isReverseDocIdOrder true to return the docIds from the end of the segment, see
+   * {@link BReverseFilteredDocIdSetOperator}
+   */
+  public DocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest query, FilterQueryPlan filterQueryPlan,
+      int maxDocPerAggregation, boolean isReverseDocIdOrder) {
     _maxDocPerAggregation = maxDocPerAggregation;
+    _isReverseDocIdOrder = isReverseDocIdOrder;
     _indexSegment = indexSegment;
     _brokerRequest = query;
     if (_brokerRequest.isSetFilterQuery()) {
-      _filterNode = new FilterPlanNode(_indexSegment, _brokerRequest);
+      _filterNode = new FilterPlanNode(_indexSegment, _brokerRequest, filterQueryPlan);
     } else {
       _filterNode = null;
     }
@@ -57,7 +75,9 @@ public class DocIdSetPlanNode implements PlanNode {
     int totalRawDocs = _indexSegment.getTotalDocs() - _indexSegment.getSegmentMetadata().getTotalAggregateDocs();
     long start = System.currentTimeMillis();
     if (_projectOp == null) {
-      if (_filterNode != null) {
+      if (_isReverseDocIdOrder) {
+        _projectOp = new BReverseFilteredDocIdSetOperator(_filterNode, totalRawDocs, _maxDocPerAggregation);
+      } else if (_filterNode != null) {
         _projectOp =
             new BReusableFilteredDocIdSetOperator(_filterNode.run(), totalRawDocs,
                 _maxDocPerAggregation);
@@ -76,7 +96,11 @@ public class DocIdSetPlanNode implements PlanNode {
   @Override
   public void showTree(String prefix) {
     LOGGER.debug(prefix + "DocIdSet Plan Node :");
-    LOGGER.debug(prefix + "Operator: BReusableFilteredDocIdSetOperator");
+    if (_isReverseDocIdOrder) {
+      LOGGER.debug(prefix + "Operator: BReverseFilteredDocIdSetOperator");
+    } else {
+      LOGGER.debug(prefix + "Operator: BReusableFilteredDocIdSetOperator");
+    }
     LOGGER.debug(prefix + "Argument 0: IndexSegment - " + _indexSegment.getSegmentName());
     if (_filterNode != null) {
       LOGGER.debug(prefix + "Argument 1: FilterPlanNode :(see below)");
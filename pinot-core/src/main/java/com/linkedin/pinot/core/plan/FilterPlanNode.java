@@ -28,17 +28,10 @@ import org.slf4j.LoggerFactory;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.utils.request.FilterQueryTree;
-import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.common.DataSourceMetadata;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.common.Predicate;
-import com.linkedin.pinot.core.common.predicate.EqPredicate;
-import com.linkedin.pinot.core.common.predicate.InPredicate;
-import com.linkedin.pinot.core.common.predicate.NEqPredicate;
-import com.linkedin.pinot.core.common.predicate.NotInPredicate;
-import com.linkedin.pinot.core.common.predicate.RangePredicate;
-import com.linkedin.pinot.core.common.predicate.RegexPredicate;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.filter.AndOperator;
 import com.linkedin.pinot.core.operator.filter.BaseFilterOperator;
@@ -58,17 +51,18 @@ public class FilterPlanNode implements PlanNode {
   private static final Logger LOGGER = LoggerFactory.getLogger(FilterPlanNode.class);
   private final BrokerRequest _brokerRequest;
   private final IndexSegment _segment;
+  private final FilterQueryPlan _filterQueryPlan;
 
-  public FilterPlanNode(IndexSegment segment, BrokerRequest brokerRequest) {
+  public FilterPlanNode(IndexSegment segment, BrokerRequest brokerRequest, FilterQueryPlan filterQueryPlan) {
     _segment = segment;
     _brokerRequest = brokerRequest;
+    _filterQueryPlan = filterQueryPlan;
   }
 
   @Override
   public Operator run() {
     long start = System.currentTimeMillis();
-    Operator constructPhysicalOperator =
-        constructPhysicalOperator(RequestUtils.generateFilterQueryTree(_brokerRequest));
+    Operator constructPhysicalOperator = constructPhysicalOperator(_filterQueryPlan.getFilterQueryTree());
     long end = System.currentTimeMillis();
     LOGGER.debug("FilterPlanNode.run took:" + (end - start));
     return constructPhysicalOperator;
@@ -105,32 +99,8 @@ public class FilterPlanNode implements PlanNode {
               + " with children operators");
       }
     } else {
-      final FilterOperator filterType = filterQueryTree.getOperator();
       final String column = filterQueryTree.getColumn();
-      Predicate predicate = null;
-      final List<String> value = filterQueryTree.getValue();
-      switch (filterType) {
-        case EQUALITY:
-          predicate = new EqPredicate(column, value);
-          break;
-        case RANGE:
-          predicate = new RangePredicate(column, value);
-          break;
-        case REGEX:
-          predicate = new RegexPredicate(column, value);
-          break;
-        case NOT:
-          predicate = new NEqPredicate(column, value);
-          break;
-        case NOT_IN:
-          predicate = new NotInPredicate(column, value);
-          break;
-        case IN:
-          predicate = new InPredicate(column, value);
-          break;
-        default:
-          throw new UnsupportedOperationException("Unsupported filterType:" + filterType);
-      }
+      final Predicate predicate = _filterQueryPlan.getPredicate(filterQueryTree);
 
       DataSource ds;
       ds = _segment.getDataSource(column);
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.common.Predicate;
+
+
+/**
+ * Filter of a query, compiled once per query by the query executor and given to the segment pruners and to the plans
+ * of all the segments the query runs on.<br>
+ * The filter query tree is rebuilt from the broker request once instead of once per segment, and so are the
+ * predicates of its leaves, which parse their values. Only the predicate evaluators, which resolve the values against
+ * the dictionary of each segment, are built per segment.<br>
+ * The plan reflects the filter of the request when it is built, the filter is not expected to be modified afterwards.
+ */
+public class FilterQueryPlan {
+  private final FilterQueryTree filterQueryTree;
+  // Not modified once built
+  private final Map<FilterQueryTree, Predicate> predicates = new IdentityHashMap<FilterQueryTree, Predicate>();
+
+  public FilterQueryPlan(BrokerRequest brokerRequest) {
+    if (brokerRequest.getFilterQuery() != null && brokerRequest.getFilterSubQueryMap() != null) {
+      filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+      addPredicates(filterQueryTree);
+    } else {
+      filterQueryTree = null;
+    }
+  }
+
+  private void addPredicates(FilterQueryTree filterQueryTree) {
+    List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children == null || children.isEmpty()) {
+      try {
+        predicates.put(filterQueryTree, BaseFilterPlanNode.buildPredicate(filterQueryTree));
+      } catch (UnsupportedOperationException e) {
+        // Thrown again when the plan of a segment asks for the predicate
+      }
+    } else {
+      for (FilterQueryTree child : children) {
+        addPredicates(child);
+      }
+    }
+  }
+
+  /**
+   * @return the filter query tree of the query, or null if the query has no filter
+   */
+  public FilterQueryTree getFilterQueryTree() {
+    return filterQueryTree;
+  }
+
+  /**
+   * @param filterQueryTree leaf of the filter query tree of this plan
+   * @return the predicate of the leaf
+   */
+  public Predicate getPredicate(FilterQueryTree filterQueryTree) {
+    Predicate predicate = predicates.get(filterQueryTree);
+    if (predicate == null) {
+      predicate = BaseFilterPlanNode.buildPredicate(filterQueryTree);
+    }
+    return predicate;
+  }
+}
@@ -22,14 +22,15 @@ public class RawAggregationGroupByOperatorPlanNode extends BaseAggregationGroupB
   public RawAggregationGroupByOperatorPlanNode(
       IndexSegment indexSegment,
       BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan,
       AggregationGroupByImplementationType implementationType) {
-    super(indexSegment, brokerRequest, implementationType);
+    super(indexSegment, brokerRequest, filterQueryPlan, implementationType);
   }
 
   @Override
   protected BaseProjectionPlanNode getProjectionPlanNode() {
     return new RawProjectionPlanNode(indexSegment,
         getAggregationGroupByRelatedColumns(),
-        new RawDocIdSetPlanNode(indexSegment, brokerRequest, DEFAULT_NUM_DOCS));
+        new RawDocIdSetPlanNode(indexSegment, brokerRequest, filterQueryPlan, DEFAULT_NUM_DOCS));
   }
 }
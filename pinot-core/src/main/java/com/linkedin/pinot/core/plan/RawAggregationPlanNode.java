@@ -26,13 +26,14 @@ import java.util.List;
 public class RawAggregationPlanNode extends BaseAggregationPlanNode {
   private static final int DEFAULT_MAX_DOC_PER_AGGREGATION = 5000;
 
-  public RawAggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest) {
-    super(indexSegment, brokerRequest);
+  public RawAggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan) {
+    super(indexSegment, brokerRequest, filterQueryPlan);
   }
 
   @Override
   protected BaseDocIdSetPlanNode getDocIdSetPlanNode() {
-    return new RawDocIdSetPlanNode(indexSegment, brokerRequest, DEFAULT_MAX_DOC_PER_AGGREGATION);
+    return new RawDocIdSetPlanNode(indexSegment, brokerRequest, filterQueryPlan, DEFAULT_MAX_DOC_PER_AGGREGATION);
   }
 
   @Override
@@ -22,17 +22,18 @@ import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.filter.StarTreeOperator;
 
 public class RawDocIdSetPlanNode extends BaseDocIdSetPlanNode {
-  public RawDocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, int maxDocPerAggregation) {
-    super(indexSegment, brokerRequest, maxDocPerAggregation);
+  public RawDocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, FilterQueryPlan filterQueryPlan,
+      int maxDocPerAggregation) {
+    super(indexSegment, brokerRequest, filterQueryPlan, maxDocPerAggregation);
   }
 
   @Override
   protected BaseFilterPlanNode getFilterPlanNode() {
     if (brokerRequest.isSetFilterQuery()) {
-      return new RawFilterPlanNode(indexSegment, brokerRequest);
+      return new RawFilterPlanNode(indexSegment, brokerRequest, filterQueryPlan);
     }
 
-    return new BaseFilterPlanNode(indexSegment, brokerRequest) {
+    return new BaseFilterPlanNode(indexSegment, brokerRequest, filterQueryPlan) {
       @Override
       protected Operator constructPhysicalOperator(FilterQueryTree filterQueryTree) {
         return new StarTreeOperator(
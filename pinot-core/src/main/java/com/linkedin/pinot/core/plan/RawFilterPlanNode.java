@@ -22,7 +22,6 @@ import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.common.DataSourceMetadata;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.common.Predicate;
-import com.linkedin.pinot.core.common.predicate.*;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.filter.*;
 
@@ -30,8 +29,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class RawFilterPlanNode extends BaseFilterPlanNode {
-  public RawFilterPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest) {
-    super(indexSegment, brokerRequest);
+  public RawFilterPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, FilterQueryPlan filterQueryPlan) {
+    super(indexSegment, brokerRequest, filterQueryPlan);
   }
 
   @Override
@@ -66,32 +65,8 @@ public class RawFilterPlanNode extends BaseFilterPlanNode {
               + " with children operators");
       }
     } else {
-      final FilterOperator filterType = filterQueryTree.getOperator();
       final String column = filterQueryTree.getColumn();
-      Predicate predicate = null;
-      final List<String> value = filterQueryTree.getValue();
-      switch (filterType) {
-        case EQUALITY:
-          predicate = new EqPredicate(column, value);
-          break;
-        case RANGE:
-          predicate = new RangePredicate(column, value);
-          break;
-        case REGEX:
-          predicate = new RegexPredicate(column, value);
-          break;
-        case NOT:
-          predicate = new NEqPredicate(column, value);
-          break;
-        case NOT_IN:
-          predicate = new NotInPredicate(column, value);
-          break;
-        case IN:
-          predicate = new InPredicate(column, value);
-          break;
-        default:
-          throw new UnsupportedOperationException("Unsupported filterType:" + filterType);
-      }
+      final Predicate predicate = getPredicate(filterQueryTree);
 
       DataSource ds;
       ds = indexSegment.getDataSource(column);
@@ -20,6 +20,8 @@ import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.Selection;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.DataSourceMetadata;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.query.MSelectionOnlyOperator;
@@ -38,27 +40,50 @@ public class SelectionPlanNode implements PlanNode {
   private final BrokerRequest _brokerRequest;
   private final Selection _selection;
   private final ProjectionPlanNode _projectionPlanNode;
+  private final boolean _isOrderedOnSortedColumn;
+  private final boolean _isReverseDocIdOrder;
 
-  public SelectionPlanNode(IndexSegment indexSegment, BrokerRequest query) {
+  public SelectionPlanNode(IndexSegment indexSegment, BrokerRequest query, FilterQueryPlan filterQueryPlan) {
     _indexSegment = indexSegment;
     _brokerRequest = query;
     _selection = _brokerRequest.getSelections();
     int maxDocPerNextCall = 10000;
 
-    if ((_selection.getSelectionSortSequence() == null) || _selection.getSelectionSortSequence().isEmpty()) {
+    _isOrderedOnSortedColumn = isOrderedOnSortedColumn(_indexSegment, _selection);
+    if ((_selection.getSelectionSortSequence() == null) || _selection.getSelectionSortSequence().isEmpty()
+        || _isOrderedOnSortedColumn) {
       //since no ordering is required, we can just get the minimum number of docs that matches the filter criteria
-      maxDocPerNextCall = Math.min(_selection.getOffset() + _selection.getSize(), maxDocPerNextCall);
+      //same when the docIds are in the order of the first sort column, the operator stops once the result is known
+      maxDocPerNextCall = Math.max(1, Math.min(_selection.getOffset() + _selection.getSize(), maxDocPerNextCall));
     }
+    // the docIds of a descending order by on the sorted column are walked from the end of the segment
+    _isReverseDocIdOrder = _isOrderedOnSortedColumn && !_selection.getSelectionSortSequence().get(0).isIsAsc();
 
-    DocIdSetPlanNode docIdSetPlanNode = new DocIdSetPlanNode(_indexSegment, _brokerRequest, maxDocPerNextCall);
+    DocIdSetPlanNode docIdSetPlanNode =
+        new DocIdSetPlanNode(_indexSegment, _brokerRequest, filterQueryPlan, maxDocPerNextCall, _isReverseDocIdOrder);
     _projectionPlanNode =
         new ProjectionPlanNode(_indexSegment, SelectionOperatorUtils.extractSelectionRelatedColumns(_selection, indexSegment), docIdSetPlanNode);
   }
 
+  /**
+   * @return true if the first sort column is the single value column the segment is sorted on
+   */
+  private static boolean isOrderedOnSortedColumn(IndexSegment indexSegment, Selection selection) {
+    if ((selection.getSelectionSortSequence() == null) || selection.getSelectionSortSequence().isEmpty()) {
+      return false;
+    }
+    final DataSource dataSource = indexSegment.getDataSource(selection.getSelectionSortSequence().get(0).getColumn());
+    if (dataSource == null) {
+      return false;
+    }
+    final DataSourceMetadata metadata = dataSource.getDataSourceMetadata();
+    return metadata.isSorted() && metadata.isSingleValue() && metadata.hasDictionary();
+  }
+
   @Override
   public Operator run() {
     if (_selection.isSetSelectionSortSequence()) {
-      return new MSelectionOrderByOperator(_indexSegment, _selection, _projectionPlanNode.run());
+      return new MSelectionOrderByOperator(_indexSegment, _selection, _projectionPlanNode.run(), _isReverseDocIdOrder);
     } else {
       return new MSelectionOnlyOperator(_indexSegment, _selection, _projectionPlanNode.run());
     }
@@ -74,6 +99,9 @@ public class SelectionPlanNode implements PlanNode {
     }
     LOGGER.debug(prefix + "Argument 0: IndexSegment - " + _indexSegment.getSegmentName());
     LOGGER.debug(prefix + "Argument 1: Selections - " + _brokerRequest.getSelections());
+    if (_isOrderedOnSortedColumn) {
+      LOGGER.debug(prefix + "Ordered on the sorted column, reverse docId order: " + _isReverseDocIdOrder);
+    }
     LOGGER.debug(prefix + "Argument 2: Projection - ");
     _projectionPlanNode.showTree(prefix + "    ");
 
@@ -22,14 +22,14 @@ public class StarTreeAggregationGroupByOperatorPlanNode extends BaseAggregationG
   public StarTreeAggregationGroupByOperatorPlanNode(
       IndexSegment indexSegment,
       BrokerRequest brokerRequest,
-      AggregationGroupByImplementationType implementationType) {
-    super(indexSegment, brokerRequest, implementationType);
+      AggregationGroupByImplementationType implementationType,
+      StarTreeFilterPlanNode filterNode) {
+    super(indexSegment, brokerRequest, filterNode.filterQueryPlan, implementationType,
+        new StarTreeDocIdSetPlanNode(indexSegment, brokerRequest, DEFAULT_NUM_DOCS, filterNode));
   }
 
   @Override
   protected BaseProjectionPlanNode getProjectionPlanNode() {
-    return new RawProjectionPlanNode(indexSegment,
-        getAggregationGroupByRelatedColumns(),
-        new StarTreeDocIdSetPlanNode(indexSegment, brokerRequest, DEFAULT_NUM_DOCS));
+    return new RawProjectionPlanNode(indexSegment, getAggregationGroupByRelatedColumns(), docIdSetPlanNode);
   }
 }
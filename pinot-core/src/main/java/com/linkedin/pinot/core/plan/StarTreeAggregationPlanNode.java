@@ -26,13 +26,16 @@ import java.util.List;
 public class StarTreeAggregationPlanNode extends BaseAggregationPlanNode {
   private static final int DEFAULT_MAX_DOC_PER_AGGREGATION = 5000;
 
-  public StarTreeAggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest) {
-    super(indexSegment, brokerRequest);
+  public StarTreeAggregationPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      StarTreeFilterPlanNode filterNode) {
+    super(indexSegment, brokerRequest,
+        new StarTreeDocIdSetPlanNode(indexSegment, brokerRequest, DEFAULT_MAX_DOC_PER_AGGREGATION, filterNode));
   }
 
   @Override
   protected BaseDocIdSetPlanNode getDocIdSetPlanNode() {
-    return new StarTreeDocIdSetPlanNode(indexSegment, brokerRequest, DEFAULT_MAX_DOC_PER_AGGREGATION);
+    return new StarTreeDocIdSetPlanNode(indexSegment, brokerRequest, DEFAULT_MAX_DOC_PER_AGGREGATION,
+        new StarTreeFilterPlanNode(indexSegment, brokerRequest, filterQueryPlan));
   }
 
   @Override
@@ -19,12 +19,17 @@ import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 
 public class StarTreeDocIdSetPlanNode extends BaseDocIdSetPlanNode {
-  public StarTreeDocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, int maxDocPerAggregation) {
-    super(indexSegment, brokerRequest, maxDocPerAggregation);
+  /**
+   * @param filterNode Filter plan node the planner built to decide to use the star tree, which keeps the leaves
+   *                   matching the filter so that the tree is traversed once
+   */
+  public StarTreeDocIdSetPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest, int maxDocPerAggregation,
+      StarTreeFilterPlanNode filterNode) {
+    super(indexSegment, brokerRequest, maxDocPerAggregation, filterNode);
   }
 
   @Override
   protected BaseFilterPlanNode getFilterPlanNode() {
-    return new StarTreeFilterPlanNode(indexSegment, brokerRequest);
+    return new StarTreeFilterPlanNode(indexSegment, brokerRequest, filterQueryPlan);
   }
 }
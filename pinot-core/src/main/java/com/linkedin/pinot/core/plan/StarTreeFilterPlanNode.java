@@ -15,129 +15,373 @@
  */
 package com.linkedin.pinot.core.plan;
 
-import com.google.common.collect.ImmutableList;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.FilterOperator;
 import com.linkedin.pinot.common.utils.request.FilterQueryTree;
-import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.common.*;
-import com.linkedin.pinot.core.common.predicate.*;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.operator.filter.*;
-import com.linkedin.pinot.core.segment.index.readers.*;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluator;
+import com.linkedin.pinot.core.operator.filter.predicate.PredicateEvaluatorProvider;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import com.linkedin.pinot.core.startree.StarTreeIndexNode;
 
 import java.util.*;
 
+/**
+ * Filter plan node that answers the filter of a query from the star tree of the segment.
+ *
+ * <p>
+ *   Each conjunct of the filter that references a single column (an EQUALITY, IN, RANGE, NOT or NOT_IN predicate, or
+ *   an OR / AND of predicates on that column) is resolved on the path: the traversal follows every child whose value
+ *   matches it, never the star node. The other conjuncts (e.g. d1 = a OR d2 = b) are scanned on the documents of the
+ *   matching leaves, and the traversal follows every non star child of the columns they reference, like for a group
+ *   by column, so that these documents hold the actual values of the columns. Unioning one traversal per branch of
+ *   the OR instead would count twice the documents matched by several branches.
+ * </p>
+ */
 public class StarTreeFilterPlanNode extends BaseFilterPlanNode {
-  private List<StarTreeIndexNode> matchingNodes;
+  private final OffHeapStarTree starTree;
+  private final List<String> dimensionNames;
+
+  // Conjuncts resolved on the path, by column
+  private final Map<String, List<FilterQueryTree>> pathFilters = new HashMap<>();
+  // Conjuncts scanned on the documents of the leaves
+  private final List<FilterQueryTree> residualFilters = new ArrayList<>();
+  // Columns for which the traversal follows all non star children
+  private final Set<String> expandedColumns = new HashSet<>();
+  private final Map<FilterQueryTree, PredicateEvaluator> predicateEvaluators = new IdentityHashMap<>();
+
+  private List<Integer> matchingNodes;
   private List<StarTreeOperator> starTreeOperators;
 
-  public StarTreeFilterPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest) {
-    super(indexSegment, brokerRequest);
+  public StarTreeFilterPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan) {
+    super(indexSegment, brokerRequest, filterQueryPlan);
+    this.starTree = indexSegment.getStarTree();
+    this.dimensionNames = indexSegment.getSegmentMetadata().getSchema().getDimensionNames();
+  }
+
+  /**
+   * Returns true if the star tree can answer the filter, i.e. it is made of AND and OR of EQUALITY, IN, RANGE, NOT
+   * and NOT_IN predicates on dimensions.
+   */
+  public static boolean isSupportedFilter(FilterQueryTree filterQueryTree, List<String> dimensionNames) {
+    if (isLeaf(filterQueryTree)) {
+      switch (filterQueryTree.getOperator()) {
+        case EQUALITY:
+          return filterQueryTree.getValue().size() == 1 && dimensionNames.contains(filterQueryTree.getColumn());
+        case IN:
+        case RANGE:
+        case NOT:
+        case NOT_IN:
+          return dimensionNames.contains(filterQueryTree.getColumn());
+        default:
+          return false;
+      }
+    }
+    if (!FilterOperator.AND.equals(filterQueryTree.getOperator())
+        && !FilterOperator.OR.equals(filterQueryTree.getOperator())) {
+      return false;
+    }
+    for (FilterQueryTree child : filterQueryTree.getChildren()) {
+      if (!isSupportedFilter(child, dimensionNames)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of documents of the leaves the query is answered from, which bounds the number of documents
+   * the star tree execution scans.
+   */
+  public int getNumDocsToScan() {
+    int numDocs = 0;
+    for (int node : getMatchingNodes(filterQueryPlan.getFilterQueryTree())) {
+      numDocs += starTree.getDocumentCount(node);
+    }
+    return numDocs;
   }
 
   @Override
   protected Operator constructPhysicalOperator(FilterQueryTree filterQueryTree) {
-    if (matchingNodes == null) {
-      matchingNodes = new ArrayList<>();
+    if (starTreeOperators == null) {
       starTreeOperators = new ArrayList<>();
-      List<String> dimensionNames = indexSegment.getSegmentMetadata().getSchema().getDimensionNames();
 
-      // Get conjunction values
-      List<FilterQueryTree> conjunctions = null;
-      if (filterQueryTree != null) {
-        if (filterQueryTree.getChildren() == null) {
-          conjunctions = ImmutableList.of(filterQueryTree);
-        } else {
-          conjunctions = filterQueryTree.getChildren();
+      // We store to avoid traversing tree again, as the leaf nodes that match do not change
+      for (int node : getMatchingNodes(filterQueryTree)) {
+        Map<String, Integer> pathValues = getPathValues(node);
+
+        // Scan the conjuncts on the columns the path does not cover
+        List<Operator> scanOperators = new ArrayList<>();
+        for (Map.Entry<String, List<FilterQueryTree>> entry : pathFilters.entrySet()) {
+          if (!pathValues.containsKey(entry.getKey())) {
+            for (FilterQueryTree pathFilter : entry.getValue()) {
+              scanOperators.add(buildScanOperator(pathFilter));
+            }
+          }
+        }
+        for (FilterQueryTree residualFilter : residualFilters) {
+          if (evaluate(residualFilter, pathValues) == null) {
+            scanOperators.add(buildScanOperator(residualFilter));
+          }
         }
-      }
 
-      // Convert the query to tree path values
-      Map<String, String> pathValues = new HashMap<>();
-      if (conjunctions != null) {
-        for (FilterQueryTree clause : conjunctions) {
-          String column = clause.getColumn();
-          String value = clause.getValue().get(0);
-          pathValues.put(column, value);
+        // Join those scan operators as AND
+        AndOperator andOperator = null;
+        if (!scanOperators.isEmpty()) {
+          andOperator = new AndOperator(scanOperators);
         }
+
+        // Scan that sub-segment
+        int startDocumentId = starTree.getStartDocumentId(node);
+        int endDocumentId = startDocumentId + starTree.getDocumentCount(node) - 1 /* inclusive end */;
+        starTreeOperators.add(new StarTreeOperator(startDocumentId, endDocumentId, andOperator));
       }
+    }
 
-      Queue<StarTreeIndexNode> searchQueue = new LinkedList<>();
-      searchQueue.add(indexSegment.getStarTreeRoot());
+    if (starTreeOperators.isEmpty()) {
+      return new StarTreeOperator(Constants.EOF, Constants.EOF, null);
+    }
 
-      while (!searchQueue.isEmpty()) {
-        StarTreeIndexNode current = searchQueue.remove();
+    return new CompositeStarTreeOperator(starTreeOperators);
+  }
 
-        // Find the leaf that corresponds to the query
-        while (current != null && !current.isLeaf()) {
-          String nextDimension = dimensionNames.get(current.getChildDimensionName());
-          String nextValue = pathValues.get(nextDimension);
-          DataSource nextDataSource = indexSegment.getDataSource(nextDimension);
+  private List<Integer> getMatchingNodes(FilterQueryTree filterQueryTree) {
+    if (matchingNodes != null) {
+      return matchingNodes;
+    }
+    matchingNodes = new ArrayList<>();
 
-          int nextValueId;
-          if (nextValue == null) {
-            nextValueId = StarTreeIndexNode.all();
-          } else {
-            nextValueId = nextDataSource.getDictionary().indexOf(nextValue);
+    // Split the conjuncts between the ones resolved on the path and the residual ones
+    if (filterQueryTree != null) {
+      List<FilterQueryTree> conjunctions;
+      if (FilterOperator.AND.equals(filterQueryTree.getOperator())) {
+        conjunctions = filterQueryTree.getChildren();
+      } else {
+        conjunctions = Collections.singletonList(filterQueryTree);
+      }
+      for (FilterQueryTree clause : conjunctions) {
+        String column = getSingleColumn(clause);
+        if (column != null) {
+          List<FilterQueryTree> columnFilters = pathFilters.get(column);
+          if (columnFilters == null) {
+            columnFilters = new ArrayList<>();
+            pathFilters.put(column, columnFilters);
           }
+          columnFilters.add(clause);
+        } else {
+          residualFilters.add(clause);
+          addColumns(clause, expandedColumns);
+        }
+      }
+    }
+    if (brokerRequest.isSetGroupBy()) {
+      expandedColumns.addAll(brokerRequest.getGroupBy().getColumns());
+    }
 
-          // If this is a group by, we split the query down several paths, but not star node
-          if (brokerRequest.isSetGroupBy() && brokerRequest.getGroupBy().getColumns().contains(nextDimension)) {
-            for (Map.Entry<Integer, StarTreeIndexNode> entry : current.getChildren().entrySet()) {
-              if (entry.getKey() != StarTreeIndexNode.all()) {
-                searchQueue.add(entry.getValue());
-              }
-            }
-            current = null; // triggers exit out of both loops
-          } else {
-            // Otherwise, we continue down this path
-            current = current.getChildren().get(nextValueId);
+    // The traversal runs directly against the flat tree, nodes are their index in it
+    Queue<Integer> searchQueue = new LinkedList<>();
+    searchQueue.add(OffHeapStarTree.ROOT);
+
+    while (!searchQueue.isEmpty()) {
+      int current = searchQueue.remove();
+
+      if (starTree.isLeaf(current)) {
+        // Skip the leaves whose path already contradicts a residual conjunct
+        Map<String, Integer> pathValues = getPathValues(current);
+        boolean matches = true;
+        for (FilterQueryTree residualFilter : residualFilters) {
+          if (Boolean.FALSE.equals(evaluate(residualFilter, pathValues))) {
+            matches = false;
+            break;
           }
         }
+        if (matches) {
+          matchingNodes.add(current);
+        }
+        continue;
+      }
 
-        if (current == null) {
-          continue;
+      String nextDimension = dimensionNames.get(starTree.getChildDimensionName(current));
+      List<FilterQueryTree> columnFilters = pathFilters.get(nextDimension);
+      if (columnFilters != null) {
+        // We split the query down the paths of the matching values, but not star node
+        addMatchingChildren(current, nextDimension, columnFilters, searchQueue);
+      } else if (expandedColumns.contains(nextDimension)) {
+        // If this is a group by or residual column, we split the query down several paths, but not star node
+        for (int i = 0; i < starTree.getNumChildren(current); i++) {
+          int child = starTree.getChild(current, i);
+          if (starTree.getDimensionValue(child) != StarTreeIndexNode.all()) {
+            searchQueue.add(child);
+          }
+        }
+      } else {
+        // Otherwise, we continue down the star node
+        int child = starTree.getChildForValue(current, StarTreeIndexNode.all());
+        if (child != OffHeapStarTree.INVALID_NODE) {
+          searchQueue.add(child);
         }
+      }
+    }
 
-        // We store to avoid traversing tree again, as the leaf node that matches does not change
-        matchingNodes.add(current);
+    return matchingNodes;
+  }
 
-        // Find the remaining path values
-        Map<String, String> pathValuesCopy = new HashMap<>(pathValues);
-        for (Map.Entry<Integer, Integer> entry : current.getPathValues().entrySet()) {
-          String dimensionName = dimensionNames.get(entry.getKey());
-          pathValuesCopy.remove(dimensionName);
+  private void addMatchingChildren(int node, String column, List<FilterQueryTree> columnFilters,
+      Queue<Integer> searchQueue) {
+    // Look the matching values up when a predicate matches fewer values than there are children, e.g. IN lists
+    int[] candidateValues = null;
+    for (FilterQueryTree columnFilter : columnFilters) {
+      if (isLeaf(columnFilter)) {
+        int[] dictionaryIds = getPredicateEvaluator(columnFilter).getDictionaryIds();
+        if (candidateValues == null || dictionaryIds.length < candidateValues.length) {
+          candidateValues = dictionaryIds;
         }
+      }
+    }
 
-        // Create ScanBasedFilterOperator with EqPredicate for each remaining path values
-        List<Operator> scanOperators = new ArrayList<>();
-        for (Map.Entry<String, String> entry : pathValuesCopy.entrySet()) {
-          Predicate predicate = new EqPredicate(entry.getKey(), Collections.singletonList(entry.getValue()));
-          ScanBasedFilterOperator operator = new ScanBasedFilterOperator(indexSegment.getDataSource(entry.getKey()));
-          operator.setPredicate(predicate);
-          scanOperators.add(operator);
+    if (candidateValues != null && candidateValues.length < starTree.getNumChildren(node)) {
+      for (int value : candidateValues) {
+        int child = starTree.getChildForValue(node, value);
+        if (child != OffHeapStarTree.INVALID_NODE && matches(columnFilters, value)) {
+          searchQueue.add(child);
         }
-
-        // Join those scan operators as AND
-        AndOperator andOperator = null;
-        if (!scanOperators.isEmpty()) {
-          andOperator = new AndOperator(scanOperators);
+      }
+    } else {
+      for (int i = 0; i < starTree.getNumChildren(node); i++) {
+        int child = starTree.getChild(node, i);
+        int value = starTree.getDimensionValue(child);
+        if (value != StarTreeIndexNode.all() && matches(columnFilters, value)) {
+          searchQueue.add(child);
         }
+      }
+    }
+  }
 
-        // Scan that sub-segment
-        Integer startDocumentId = current.getStartDocumentId();
-        Integer endDocumentId = startDocumentId + current.getDocumentCount() - 1 /* inclusive end */;
-        StarTreeOperator starTreeOperator = new StarTreeOperator(startDocumentId, endDocumentId, andOperator);
-        starTreeOperators.add(starTreeOperator);
+  /**
+   * Returns the values of the dimensions on the path to the node, without the star nodes.
+   */
+  private Map<String, Integer> getPathValues(int node) {
+    Map<String, Integer> pathValues = new HashMap<>();
+    for (Map.Entry<Integer, Integer> entry : starTree.getPathValues(node).entrySet()) {
+      if (entry.getValue() != StarTreeIndexNode.all()) {
+        pathValues.put(dimensionNames.get(entry.getKey()), entry.getValue());
       }
     }
+    return pathValues;
+  }
 
-    if (starTreeOperators.isEmpty()) {
-      return new StarTreeOperator(Constants.EOF, Constants.EOF, null);
+  /**
+   * Returns the column all the predicates of the filter are on, or null if they are on several columns.
+   */
+  private static String getSingleColumn(FilterQueryTree filterQueryTree) {
+    if (isLeaf(filterQueryTree)) {
+      return filterQueryTree.getColumn();
+    }
+    String column = null;
+    for (FilterQueryTree child : filterQueryTree.getChildren()) {
+      String childColumn = getSingleColumn(child);
+      if (childColumn == null || (column != null && !column.equals(childColumn))) {
+        return null;
+      }
+      column = childColumn;
     }
+    return column;
+  }
 
-    return new CompositeStarTreeOperator(starTreeOperators);
+  private static boolean isLeaf(FilterQueryTree filterQueryTree) {
+    return filterQueryTree.getChildren() == null || filterQueryTree.getChildren().isEmpty();
+  }
+
+  private static void addColumns(FilterQueryTree filterQueryTree, Set<String> columns) {
+    if (isLeaf(filterQueryTree)) {
+      columns.add(filterQueryTree.getColumn());
+    } else {
+      for (FilterQueryTree child : filterQueryTree.getChildren()) {
+        addColumns(child, columns);
+      }
+    }
+  }
+
+  private boolean matches(List<FilterQueryTree> columnFilters, int dictionaryId) {
+    for (FilterQueryTree columnFilter : columnFilters) {
+      if (!matches(columnFilter, dictionaryId)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Evaluates a filter on a single column against a dictionary id of that column.
+   */
+  private boolean matches(FilterQueryTree filterQueryTree, int dictionaryId) {
+    if (isLeaf(filterQueryTree)) {
+      return getPredicateEvaluator(filterQueryTree).apply(dictionaryId);
+    }
+    boolean isAnd = FilterOperator.AND.equals(filterQueryTree.getOperator());
+    for (FilterQueryTree child : filterQueryTree.getChildren()) {
+      if (matches(child, dictionaryId) != isAnd) {
+        return !isAnd;
+      }
+    }
+    return isAnd;
+  }
+
+  /**
+   * Evaluates a filter against the values of the path to a node.
+   *
+   * @return the value of the filter, or null if it depends on columns that are not on the path
+   */
+  private Boolean evaluate(FilterQueryTree filterQueryTree, Map<String, Integer> pathValues) {
+    if (isLeaf(filterQueryTree)) {
+      Integer dictionaryId = pathValues.get(filterQueryTree.getColumn());
+      if (dictionaryId == null) {
+        return null;
+      }
+      return getPredicateEvaluator(filterQueryTree).apply(dictionaryId);
+    }
+    boolean isAnd = FilterOperator.AND.equals(filterQueryTree.getOperator());
+    boolean isKnown = true;
+    for (FilterQueryTree child : filterQueryTree.getChildren()) {
+      Boolean childValue = evaluate(child, pathValues);
+      if (childValue == null) {
+        isKnown = false;
+      } else if (childValue != isAnd) {
+        return !isAnd;
+      }
+    }
+    return isKnown ? isAnd : null;
+  }
+
+  private PredicateEvaluator getPredicateEvaluator(FilterQueryTree filterQueryTree) {
+    PredicateEvaluator predicateEvaluator = predicateEvaluators.get(filterQueryTree);
+    if (predicateEvaluator == null) {
+      Dictionary dictionary = indexSegment.getDataSource(filterQueryTree.getColumn()).getDictionary();
+      predicateEvaluator =
+          PredicateEvaluatorProvider.getPredicateFunctionFor(getPredicate(filterQueryTree), dictionary);
+      predicateEvaluators.put(filterQueryTree, predicateEvaluator);
+    }
+    return predicateEvaluator;
+  }
+
+  private Operator buildScanOperator(FilterQueryTree filterQueryTree) {
+    if (isLeaf(filterQueryTree)) {
+      ScanBasedFilterOperator operator =
+          new ScanBasedFilterOperator(indexSegment.getDataSource(filterQueryTree.getColumn()));
+      operator.setPredicate(getPredicate(filterQueryTree));
+      return operator;
+    }
+    List<Operator> operators = new ArrayList<>();
+    for (FilterQueryTree child : filterQueryTree.getChildren()) {
+      operators.add(buildScanOperator(child));
+    }
+    if (FilterOperator.AND.equals(filterQueryTree.getOperator())) {
+      return new AndOperator(operators);
+    }
+    return new OrOperator(operators);
   }
 }
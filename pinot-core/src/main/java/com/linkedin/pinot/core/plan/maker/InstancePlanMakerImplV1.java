@@ -26,6 +26,7 @@ import com.linkedin.pinot.core.plan.AggregationGroupByOperatorPlanNode;
 import com.linkedin.pinot.core.plan.AggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType;
 import com.linkedin.pinot.core.plan.AggregationPlanNode;
 import com.linkedin.pinot.core.plan.CombinePlanNode;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
 import com.linkedin.pinot.core.plan.GlobalPlanImplV0;
 import com.linkedin.pinot.core.plan.InstanceResponsePlanNode;
 import com.linkedin.pinot.core.plan.Plan;
@@ -44,22 +45,28 @@ public class InstancePlanMakerImplV1 implements PlanMaker {
 
   @Override
   public PlanNode makeInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    return makeInnerSegmentPlan(indexSegment, brokerRequest, new FilterQueryPlan(brokerRequest));
+  }
+
+  @Override
+  public PlanNode makeInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan) {
 
     if (brokerRequest.isSetAggregationsInfo()) {
       if (!brokerRequest.isSetGroupBy()) {
         // Only Aggregation
-        final PlanNode aggregationPlanNode = new AggregationPlanNode(indexSegment, brokerRequest);
+        final PlanNode aggregationPlanNode = new AggregationPlanNode(indexSegment, brokerRequest, filterQueryPlan);
         return aggregationPlanNode;
       } else {
         // Aggregation GroupBy
         PlanNode aggregationGroupByPlanNode;
         if (indexSegment instanceof IndexSegmentImpl) {
           aggregationGroupByPlanNode =
-              new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest,
+              new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, filterQueryPlan,
                   AggregationGroupByImplementationType.DictionaryAndTrie);
         } else {
           aggregationGroupByPlanNode =
-              new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest,
+              new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, filterQueryPlan,
                   AggregationGroupByImplementationType.NoDictionary);
         }
         return aggregationGroupByPlanNode;
@@ -67,7 +74,7 @@ public class InstancePlanMakerImplV1 implements PlanMaker {
     }
     // Only Selection
     if (brokerRequest.isSetSelections()) {
-      final PlanNode selectionPlanNode = new SelectionPlanNode(indexSegment, brokerRequest);
+      final PlanNode selectionPlanNode = new SelectionPlanNode(indexSegment, brokerRequest, filterQueryPlan);
       return selectionPlanNode;
     }
     throw new UnsupportedOperationException("The query contains no aggregation or selection!");
@@ -76,11 +83,18 @@ public class InstancePlanMakerImplV1 implements PlanMaker {
   @Override
   public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest,
       ExecutorService executorService, long timeOutMs) {
+    return makeInterSegmentPlan(indexSegmentList, brokerRequest, new FilterQueryPlan(brokerRequest), executorService,
+        timeOutMs);
+  }
+
+  @Override
+  public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan, ExecutorService executorService, long timeOutMs) {
     final InstanceResponsePlanNode rootNode = new InstanceResponsePlanNode();
     final CombinePlanNode combinePlanNode = new CombinePlanNode(brokerRequest, executorService, timeOutMs);
     rootNode.setPlanNode(combinePlanNode);
     for (final IndexSegment indexSegment : indexSegmentList) {
-      combinePlanNode.addPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest));
+      combinePlanNode.addPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest, filterQueryPlan));
     }
     return new GlobalPlanImplV0(rootNode);
   }
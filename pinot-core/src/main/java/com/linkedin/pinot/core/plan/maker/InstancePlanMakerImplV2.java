@@ -22,10 +22,12 @@ import java.util.concurrent.ExecutorService;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.MCombineOperator;
 import com.linkedin.pinot.core.plan.AggregationGroupByOperatorPlanNode;
 import com.linkedin.pinot.core.plan.AggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType;
 import com.linkedin.pinot.core.plan.AggregationPlanNode;
 import com.linkedin.pinot.core.plan.CombinePlanNode;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
 import com.linkedin.pinot.core.plan.GlobalPlanImplV0;
 import com.linkedin.pinot.core.plan.InstanceResponsePlanNode;
 import com.linkedin.pinot.core.plan.Plan;
@@ -42,14 +44,30 @@ import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
  *
  */
 public class InstancePlanMakerImplV2 implements PlanMaker {
+  // Maximum number of threads a query uses to process its segments
+  private final int _maxThreadsPerQuery;
+
+  public InstancePlanMakerImplV2() {
+    this(MCombineOperator.DEFAULT_MAX_THREADS_PER_QUERY);
+  }
+
+  public InstancePlanMakerImplV2(int maxThreadsPerQuery) {
+    _maxThreadsPerQuery = maxThreadsPerQuery;
+  }
 
   @Override
   public PlanNode makeInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    return makeInnerSegmentPlan(indexSegment, brokerRequest, new FilterQueryPlan(brokerRequest));
+  }
+
+  @Override
+  public PlanNode makeInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan) {
 
     if (brokerRequest.isSetAggregationsInfo()) {
       if (!brokerRequest.isSetGroupBy()) {
         // Only Aggregation
-        final PlanNode aggregationPlanNode = new AggregationPlanNode(indexSegment, brokerRequest);
+        final PlanNode aggregationPlanNode = new AggregationPlanNode(indexSegment, brokerRequest, filterQueryPlan);
         return aggregationPlanNode;
       } else {
         // Aggregation GroupBy
@@ -57,33 +75,45 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
         if (indexSegment instanceof IndexSegmentImpl) {
           if (isGroupKeyFitForLong(indexSegment, brokerRequest)) {
             aggregationGroupByPlanNode =
-                new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.Dictionary);
+                new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, filterQueryPlan,
+                    AggregationGroupByImplementationType.Dictionary);
           } else {
             aggregationGroupByPlanNode =
-                new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.DictionaryAndTrie);
+                new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, filterQueryPlan,
+                    AggregationGroupByImplementationType.DictionaryAndTrie);
           }
         } else {
           aggregationGroupByPlanNode =
-              new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.NoDictionary);
+              new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, filterQueryPlan,
+                  AggregationGroupByImplementationType.NoDictionary);
         }
         return aggregationGroupByPlanNode;
       }
     }
     // Only Selection
     if (brokerRequest.isSetSelections()) {
-      final PlanNode selectionPlanNode = new SelectionPlanNode(indexSegment, brokerRequest);
+      final PlanNode selectionPlanNode = new SelectionPlanNode(indexSegment, brokerRequest, filterQueryPlan);
       return selectionPlanNode;
     }
     throw new UnsupportedOperationException("The query contains no aggregation or selection!");
   }
 
   @Override
-  public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs) {
+  public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest,
+      ExecutorService executorService, long timeOutMs) {
+    return makeInterSegmentPlan(indexSegmentList, brokerRequest, new FilterQueryPlan(brokerRequest), executorService,
+        timeOutMs);
+  }
+
+  @Override
+  public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan, ExecutorService executorService, long timeOutMs) {
     final InstanceResponsePlanNode rootNode = new InstanceResponsePlanNode();
-    final CombinePlanNode combinePlanNode = new CombinePlanNode(brokerRequest, executorService, timeOutMs);
+    final CombinePlanNode combinePlanNode =
+        new CombinePlanNode(brokerRequest, executorService, timeOutMs, _maxThreadsPerQuery);
     rootNode.setPlanNode(combinePlanNode);
     for (final IndexSegment indexSegment : indexSegmentList) {
-      combinePlanNode.addPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest));
+      combinePlanNode.addPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest, filterQueryPlan));
     }
     return new GlobalPlanImplV0(rootNode);
   }
@@ -22,10 +22,9 @@ package com.linkedin.pinot.core.plan.maker;
 
     import com.linkedin.pinot.common.request.AggregationInfo;
     import com.linkedin.pinot.common.request.BrokerRequest;
-    import com.linkedin.pinot.common.request.FilterOperator;
     import com.linkedin.pinot.common.utils.request.FilterQueryTree;
-    import com.linkedin.pinot.common.utils.request.RequestUtils;
     import com.linkedin.pinot.core.indexsegment.IndexSegment;
+    import com.linkedin.pinot.core.operator.MCombineOperator;
     import com.linkedin.pinot.core.plan.*;
     import com.linkedin.pinot.core.plan.AggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType;
     import com.linkedin.pinot.core.query.aggregation.groupby.BitHacks;
@@ -39,67 +38,101 @@ package com.linkedin.pinot.core.plan.maker;
  *
  */
 public class InstancePlanMakerImplV3 implements PlanMaker {
+  // Maximum number of threads a query uses to process its segments
+  private final int _maxThreadsPerQuery;
+
+  public InstancePlanMakerImplV3() {
+    this(MCombineOperator.DEFAULT_MAX_THREADS_PER_QUERY);
+  }
+
+  public InstancePlanMakerImplV3(int maxThreadsPerQuery) {
+    _maxThreadsPerQuery = maxThreadsPerQuery;
+  }
 
   @Override
   public PlanNode makeInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest) {
+    return makeInnerSegmentPlan(indexSegment, brokerRequest, new FilterQueryPlan(brokerRequest));
+  }
+
+  @Override
+  public PlanNode makeInnerSegmentPlan(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan) {
 
     if (brokerRequest.isSetAggregationsInfo()) {
       if (!brokerRequest.isSetGroupBy()) {
         // Only Aggregation
-        if (indexSegment.getSegmentMetadata().hasStarTree() && isConjunctiveAggregateQuery(brokerRequest)) {
-          return new StarTreeAggregationPlanNode(indexSegment, brokerRequest);
+        StarTreeFilterPlanNode starTreeFilterPlanNode =
+            getStarTreeFilterPlanNode(indexSegment, brokerRequest, filterQueryPlan);
+        if (starTreeFilterPlanNode != null) {
+          return new StarTreeAggregationPlanNode(indexSegment, brokerRequest, starTreeFilterPlanNode);
         } else {
-          return new RawAggregationPlanNode(indexSegment, brokerRequest);
+          return new RawAggregationPlanNode(indexSegment, brokerRequest, filterQueryPlan);
         }
       } else {
         // Aggregation GroupBy
         PlanNode aggregationGroupByPlanNode;
         if (indexSegment instanceof IndexSegmentImpl) {
+          StarTreeFilterPlanNode starTreeFilterPlanNode =
+            getStarTreeFilterPlanNode(indexSegment, brokerRequest, filterQueryPlan);
           if (isGroupKeyFitForLong(indexSegment, brokerRequest)) {
             // Optimization if can use Long as key for group by, as opposed to string
 //            aggregationGroupByPlanNode =
 //                new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.Dictionary);
-            if (indexSegment.getSegmentMetadata().hasStarTree() && isConjunctiveAggregateQuery(brokerRequest)) {
-              aggregationGroupByPlanNode = new StarTreeAggregationGroupByOperatorPlanNode(
-                  indexSegment, brokerRequest, BaseAggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType.Dictionary);
+            if (starTreeFilterPlanNode != null) {
+              aggregationGroupByPlanNode = new StarTreeAggregationGroupByOperatorPlanNode(indexSegment, brokerRequest,
+                  BaseAggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType.Dictionary,
+                  starTreeFilterPlanNode);
             } else {
               aggregationGroupByPlanNode = new RawAggregationGroupByOperatorPlanNode(
-                  indexSegment, brokerRequest, BaseAggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType.Dictionary);
+                  indexSegment, brokerRequest, filterQueryPlan,
+                      BaseAggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType.Dictionary);
             }
           } else {
 //            aggregationGroupByPlanNode =
 //                new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.DictionaryAndTrie);
-            if (indexSegment.getSegmentMetadata().hasStarTree() && isConjunctiveAggregateQuery(brokerRequest)) {
-              aggregationGroupByPlanNode = new StarTreeAggregationGroupByOperatorPlanNode(
-                  indexSegment, brokerRequest, BaseAggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType.DictionaryAndTrie);
+            if (starTreeFilterPlanNode != null) {
+              aggregationGroupByPlanNode = new StarTreeAggregationGroupByOperatorPlanNode(indexSegment, brokerRequest,
+                  BaseAggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType.DictionaryAndTrie,
+                  starTreeFilterPlanNode);
             } else {
               aggregationGroupByPlanNode = new RawAggregationGroupByOperatorPlanNode(
-                  indexSegment, brokerRequest, BaseAggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType.DictionaryAndTrie);
+                  indexSegment, brokerRequest, filterQueryPlan,
+                      BaseAggregationGroupByOperatorPlanNode.AggregationGroupByImplementationType.DictionaryAndTrie);
             }
           }
         } else {
           // This is used for real-time segment when the buffer is not yet ready to be flushed
           aggregationGroupByPlanNode =
-              new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, AggregationGroupByImplementationType.NoDictionary);
+              new AggregationGroupByOperatorPlanNode(indexSegment, brokerRequest, filterQueryPlan,
+                  AggregationGroupByImplementationType.NoDictionary);
         }
         return aggregationGroupByPlanNode;
       }
     }
     // Only Selection
     if (brokerRequest.isSetSelections()) {
-      final PlanNode selectionPlanNode = new SelectionPlanNode(indexSegment, brokerRequest);
+      final PlanNode selectionPlanNode = new SelectionPlanNode(indexSegment, brokerRequest, filterQueryPlan);
       return selectionPlanNode;
     }
     throw new UnsupportedOperationException("The query contains no aggregation or selection!");
   }
 
   @Override
-  public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest, ExecutorService executorService, long timeOutMs) {
+  public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest,
+      ExecutorService executorService, long timeOutMs) {
+    return makeInterSegmentPlan(indexSegmentList, brokerRequest, new FilterQueryPlan(brokerRequest), executorService,
+        timeOutMs);
+  }
+
+  @Override
+  public Plan makeInterSegmentPlan(List<IndexSegment> indexSegmentList, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan, ExecutorService executorService, long timeOutMs) {
     final InstanceResponsePlanNode rootNode = new InstanceResponsePlanNode();
-    final CombinePlanNode combinePlanNode = new CombinePlanNode(brokerRequest, executorService, timeOutMs);
+    final CombinePlanNode combinePlanNode =
+        new CombinePlanNode(brokerRequest, executorService, timeOutMs, _maxThreadsPerQuery);
     rootNode.setPlanNode(combinePlanNode);
     for (final IndexSegment indexSegment : indexSegmentList) {
-      combinePlanNode.addPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest));
+      combinePlanNode.addPlanNode(makeInnerSegmentPlan(indexSegment, brokerRequest, filterQueryPlan));
     }
     return new GlobalPlanImplV0(rootNode);
   }
@@ -116,39 +149,41 @@ public class InstancePlanMakerImplV3 implements PlanMaker {
     return true;
   }
 
-  private boolean isConjunctiveAggregateQuery(BrokerRequest brokerRequest) {
+  /**
+   * Returns the filter plan node answering the query from the star tree of the segment, or null if the star tree
+   * cannot answer it or scans at least as many documents as the raw segment would. The returned node keeps the
+   * leaves it matched, so the plan built on it does not traverse the tree again.
+   */
+  private StarTreeFilterPlanNode getStarTreeFilterPlanNode(IndexSegment indexSegment, BrokerRequest brokerRequest,
+      FilterQueryPlan filterQueryPlan) {
+    if (!indexSegment.getSegmentMetadata().hasStarTree()) {
+      return null;
+    }
+
     // All must be sum
     for (AggregationInfo aggregationInfo : brokerRequest.getAggregationsInfo()) {
       if (!aggregationInfo.getAggregationType().equalsIgnoreCase("sum")) {
-        return false;
+        return null;
       }
     }
 
     // If filter defined, check
     if (brokerRequest.isSetFilterQuery()) {
-      FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
-      return isSimpleConjunction(filterQueryTree);
+      FilterQueryTree filterQueryTree = filterQueryPlan.getFilterQueryTree();
+      List<String> dimensionNames = indexSegment.getSegmentMetadata().getSchema().getDimensionNames();
+      if (!StarTreeFilterPlanNode.isSupportedFilter(filterQueryTree, dimensionNames)) {
+        return null;
+      }
     }
 
-    return true;
-  }
-
-  /**
-   * Returns true if the filter query consists only of equality statements, conjoined by AND.
-   *
-   * <p>
-   *   e.g. WHERE d1 = d1v1 AND d2 = d2v2 AND d3 = d3v3
-   * </p>
-   */
-  private boolean isSimpleConjunction(FilterQueryTree tree) {
-    if (tree.getChildren() == null) {
-      return FilterOperator.EQUALITY.equals(tree.getOperator()) && tree.getValue().size() == 1;
-    } else {
-      boolean res = FilterOperator.AND.equals(tree.getOperator());
-      for (FilterQueryTree subTree : tree.getChildren()) {
-        res &= isSimpleConjunction(subTree);
-      }
-      return res;
+    // Expanding IN lists, ranges and group by columns can reach more documents than the raw segment holds
+    int numRawDocs = indexSegment.getSegmentMetadata().getTotalDocs()
+        - indexSegment.getSegmentMetadata().getTotalAggregateDocs();
+    StarTreeFilterPlanNode starTreeFilterPlanNode =
+        new StarTreeFilterPlanNode(indexSegment, brokerRequest, filterQueryPlan);
+    if (starTreeFilterPlanNode.getNumDocsToScan() >= numRawDocs) {
+      return null;
     }
+    return starTreeFilterPlanNode;
   }
 }
@@ -22,6 +22,7 @@ import com.linkedin.pinot.common.request.AggregationInfo;
 import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentSnapshot;
 import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
 
 
@@ -53,6 +54,10 @@ public class AggregationFunctionUtils {
           if (!((RealtimeSegmentImpl) indexSegment).hasDictionary(column)) {
             hasDictionary = false;
           }
+        } else if (indexSegment instanceof RealtimeSegmentSnapshot) {
+          if (!((RealtimeSegmentSnapshot) indexSegment).hasDictionary(column)) {
+            hasDictionary = false;
+          }
         }
       }
     }
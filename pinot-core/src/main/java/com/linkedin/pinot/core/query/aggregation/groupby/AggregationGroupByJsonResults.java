@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.aggregation.groupby;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.linkedin.pinot.client.BinaryResponseFormat;
+import com.linkedin.pinot.common.response.BinaryResponseWriter;
+import com.linkedin.pinot.common.response.BinaryWritable;
+import com.linkedin.pinot.common.response.JsonResponseWriter;
+import com.linkedin.pinot.common.response.JsonWritable;
+
+
+/**
+ * Reduced results of an aggregation group by query, written as the "aggregationResults" JSON array of the broker
+ * response: one {"function":...,"groupByResult":[{"group":[...],"value":...},...],"groupByColumns":[...]} object per
+ * aggregation function, with the groups best first. They can also be written in the binary response format.
+ */
+public class AggregationGroupByJsonResults implements JsonWritable, BinaryWritable {
+  private final List<String> _groupByColumns;
+  private final List<String> _functionNames = new ArrayList<String>();
+  private final List<String[]> _groupKeys = new ArrayList<String[]>();
+  private final List<Object[]> _values = new ArrayList<Object[]>();
+
+  public AggregationGroupByJsonResults(List<String> groupByColumns) {
+    _groupByColumns = groupByColumns;
+  }
+
+  /**
+   * Adds the results of the next aggregation function.
+   *
+   * @param functionName Name of the aggregation function
+   * @param groupKeys Group keys, best group first, with the group by values joined by the group by delimiter
+   * @param values Rendered values of the groups
+   */
+  public void addFunctionResults(String functionName, String[] groupKeys, Object[] values) {
+    _functionNames.add(functionName);
+    _groupKeys.add(groupKeys);
+    _values.add(values);
+  }
+
+  @Override
+  public void writeJson(JsonResponseWriter writer) throws IOException {
+    final String delimiter = GroupByConstants.GroupByDelimiter.groupByMultiDelimeter.toString();
+    final int groupSize = _groupByColumns.size();
+
+    writer.beginArray();
+    for (int i = 0; i < _functionNames.size(); ++i) {
+      writer.beginObject();
+      writer.name("function").value(_functionNames.get(i));
+      writer.name("groupByResult").beginArray();
+      final String[] groupKeys = _groupKeys.get(i);
+      final Object[] values = _values.get(i);
+      for (int j = 0; j < groupKeys.length; ++j) {
+        writer.beginObject();
+        writer.name("group").beginArray();
+        for (String groupValue : groupKeys[j].split(delimiter, groupSize)) {
+          writer.value(groupValue);
+        }
+        writer.endArray();
+        writer.name("value").value(values[j]);
+        writer.endObject();
+      }
+      writer.endArray();
+      writer.name("groupByColumns").beginArray();
+      for (String column : _groupByColumns) {
+        writer.value(column);
+      }
+      writer.endArray();
+      writer.endObject();
+    }
+    writer.endArray();
+  }
+
+  @Override
+  public void writeBinary(BinaryResponseWriter writer) throws IOException {
+    final String delimiter = GroupByConstants.GroupByDelimiter.groupByMultiDelimeter.toString();
+    final int groupSize = _groupByColumns.size();
+
+    writer.writeInt(_functionNames.size());
+    for (int i = 0; i < _functionNames.size(); ++i) {
+      writer.writeByte(BinaryResponseFormat.AGGREGATION_GROUP_BY);
+      writer.writeString(_functionNames.get(i));
+      writer.writeInt(groupSize);
+      for (String column : _groupByColumns) {
+        writer.writeString(column);
+      }
+      final String[] groupKeys = _groupKeys.get(i);
+      final Object[] values = _values.get(i);
+      writer.writeInt(groupKeys.length);
+      for (int j = 0; j < groupKeys.length; ++j) {
+        String[] group = groupKeys[j].split(delimiter, groupSize);
+        writer.writeInt(group.length);
+        for (String groupValue : group) {
+          writer.writeString(groupValue);
+        }
+        writer.writeValue(values[j]);
+      }
+    }
+  }
+
+  /**
+   * @return the results as JSONObjects, for the callers that need the objects rather than the JSON text
+   */
+  public List<JSONObject> toJson() throws JSONException {
+    final JSONArray results;
+    try {
+      results = new JSONArray(JsonResponseWriter.toJsonString(this));
+    } catch (IOException e) {
+      throw new JSONException(e);
+    }
+    List<JSONObject> retJsonResultList = new ArrayList<JSONObject>(results.length());
+    for (int i = 0; i < results.length(); ++i) {
+      retJsonResultList.add(results.getJSONObject(i));
+    }
+    return retJsonResultList;
+  }
+
+  @Override
+  public String toString() {
+    return "AggregationGroupByJsonResults(functions:" + _functionNames + ", groupByColumns:" + _groupByColumns + ")";
+  }
+}
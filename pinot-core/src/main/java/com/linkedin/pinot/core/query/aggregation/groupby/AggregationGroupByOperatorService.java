@@ -25,7 +25,6 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -114,15 +113,33 @@ public class AggregationGroupByOperatorService {
   }
 
   public List<JSONObject> renderGroupByOperators(List<Map<String, Serializable>> finalAggregationResult) {
+    AggregationGroupByJsonResults jsonResults = renderGroupByJsonResults(finalAggregationResult);
+    if (jsonResults == null) {
+      return null;
+    }
+    try {
+      return jsonResults.toJson();
+    } catch (JSONException e) {
+      LOGGER.error("Caught exception while processing group by aggregation", e);
+      Utils.rethrowException(e);
+      throw new AssertionError("Should not reach this");
+    }
+  }
+
+  /**
+   * Same as {@link #renderGroupByOperators(List)}, but the groups are written straight to the broker response instead
+   * of being converted to JSONObjects.
+   */
+  public AggregationGroupByJsonResults renderGroupByJsonResults(List<Map<String, Serializable>> finalAggregationResult) {
     try {
       if (finalAggregationResult == null || finalAggregationResult.size() != _aggregationFunctionList.size()) {
         return null;
       }
-      List<JSONObject> retJsonResultList = new ArrayList<JSONObject>();
+      AggregationGroupByJsonResults jsonResults = new AggregationGroupByJsonResults(_groupByColumns);
       for (int i = 0; i < _aggregationFunctionList.size(); ++i) {
-        JSONArray groupByResultsArray = new JSONArray();
+        String[] groupKeys = new String[0];
+        Object[] values = new Object[0];
 
-        int groupSize = _groupByColumns.size();
         Map<String, Serializable> reducedGroupByResult = finalAggregationResult.get(i);
         if (!reducedGroupByResult.isEmpty()) {
 
@@ -140,33 +157,21 @@ public class AggregationGroupByOperatorService {
             if (priorityQueue.size() < _groupByTopN) {
               realGroupSize = priorityQueue.size();
             }
+            groupKeys = new String[realGroupSize];
+            values = new Object[realGroupSize];
+            // The queue gives the worst group first
             for (int j = 0; j < realGroupSize; ++j) {
-              JSONObject groupByResultObject = new JSONObject();
               Pair res = (Pair) priorityQueue.dequeue();
-              groupByResultObject.put(
-                  "group",
-                  new JSONArray(((String) res.getSecond()).split(
-                      GroupByConstants.GroupByDelimiter.groupByMultiDelimeter.toString(), groupSize)));
-              //          if (res.getFirst() instanceof Number) {
-              //            groupByResultObject.put("value", df.format(res.getFirst()));
-              //          } else {
-              //            groupByResultObject.put("value", res.getFirst());
-              //          }
-              //          groupByResultsArray.put(realGroupSize - 1 - j, groupByResultObject);
-              groupByResultObject.put("value",
-                  _aggregationFunctionList.get(i).render((Serializable) res.getFirst()).get("value"));
-              groupByResultsArray.put(realGroupSize - 1 - j, groupByResultObject);
+              groupKeys[realGroupSize - 1 - j] = (String) res.getSecond();
+              values[realGroupSize - 1 - j] =
+                  _aggregationFunctionList.get(i).render((Serializable) res.getFirst()).get("value");
             }
           }
         }
 
-        JSONObject result = new JSONObject();
-        result.put("function", _aggregationFunctionList.get(i).getFunctionName());
-        result.put("groupByResult", groupByResultsArray);
-        result.put("groupByColumns", new JSONArray(_groupByColumns));
-        retJsonResultList.add(result);
+        jsonResults.addFunctionResults(_aggregationFunctionList.get(i).getFunctionName(), groupKeys, values);
       }
-      return retJsonResultList;
+      return jsonResults;
     } catch (JSONException e) {
       LOGGER.error("Caught exception while processing group by aggregation", e);
       Utils.rethrowException(e);
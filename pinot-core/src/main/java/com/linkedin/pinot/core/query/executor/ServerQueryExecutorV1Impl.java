@@ -42,12 +42,15 @@ import com.linkedin.pinot.core.data.manager.offline.InstanceDataManager;
 import com.linkedin.pinot.core.data.manager.offline.SegmentDataManager;
 import com.linkedin.pinot.core.data.manager.offline.TableDataManager;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.MCombineOperator;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
 import com.linkedin.pinot.core.plan.Plan;
 import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import com.linkedin.pinot.core.plan.maker.PlanMaker;
 import com.linkedin.pinot.core.query.config.QueryExecutorConfig;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerService;
 import com.linkedin.pinot.core.query.pruner.SegmentPrunerServiceImpl;
+import com.linkedin.pinot.core.realtime.MutableIndexSegment;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.Timer;
@@ -90,7 +93,12 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       _segmentPrunerService = new SegmentPrunerServiceImpl(_queryExecutorConfig.getPrunerConfig());
     }
     LOGGER.info("Trying to build QueryPlanMaker");
-    _planMaker = new InstancePlanMakerImplV2();
+    int maxThreadsPerQuery = MCombineOperator.DEFAULT_MAX_THREADS_PER_QUERY;
+    if (_queryExecutorConfig.getMaxThreadsPerQuery() > 0) {
+      maxThreadsPerQuery = _queryExecutorConfig.getMaxThreadsPerQuery();
+    }
+    LOGGER.info("Max threads per query : {}", maxThreadsPerQuery);
+    _planMaker = new InstancePlanMakerImplV2(maxThreadsPerQuery);
     LOGGER.info("Trying to build QueryExecutorTimer");
     if (_queryExecutorTimer == null) {
       _queryExecutorTimer =
@@ -108,8 +116,10 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       TraceContext.register(instanceRequest);
       final BrokerRequest brokerRequest = instanceRequest.getQuery();
       LOGGER.info("Incoming query is : {}", brokerRequest);
+      // the filter is compiled once for the pruners and the plans of all the segments
+      final FilterQueryPlan filterQueryPlan = new FilterQueryPlan(brokerRequest);
       long startPruningTime = System.nanoTime();
-      getPrunedQueryableSegments(queryableSegmentDataManagerList, instanceRequest);
+      getPrunedQueryableSegments(queryableSegmentDataManagerList, instanceRequest, filterQueryPlan);
       long pruningTime = System.nanoTime() - startPruningTime;
       _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.SEGMENT_PRUNING, pruningTime);
       LOGGER.info("Matched {} segments! ", queryableSegmentDataManagerList.size());
@@ -120,6 +130,7 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
       final Plan globalQueryPlan = _planMaker.makeInterSegmentPlan(
           queryableSegmentDataManagerList,
           brokerRequest,
+          filterQueryPlan,
           _instanceDataManager.getTableDataManager(brokerRequest.getQuerySource().getTableName())
               .getExecutorService(),
           getResourceTimeOut(instanceRequest.getQuery()));
@@ -168,7 +179,8 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
     }
   }
 
-  private List<IndexSegment> getPrunedQueryableSegments(final List<IndexSegment> listOfQueryableSegments, final InstanceRequest instanceRequest) {
+  private List<IndexSegment> getPrunedQueryableSegments(final List<IndexSegment> listOfQueryableSegments,
+      final InstanceRequest instanceRequest, final FilterQueryPlan filterQueryPlan) {
     LOGGER
         .info("InstanceRequest request {} segments", instanceRequest.getSearchSegments().size());
 
@@ -182,8 +194,13 @@ public class ServerQueryExecutorV1Impl implements QueryExecutor {
 
     for (final SegmentDataManager segmentDataManager : matchedSegmentDataManagerFromServer) {
       final IndexSegment indexSegment = segmentDataManager.getSegment();
-      if (!_segmentPrunerService.prune(indexSegment, instanceRequest.getQuery())) {
-        listOfQueryableSegments.add(indexSegment);
+      if (!_segmentPrunerService.prune(indexSegment, instanceRequest.getQuery(), filterQueryPlan)) {
+        if (indexSegment instanceof MutableIndexSegment) {
+          // consuming segments keep indexing while the query runs, plan every column on the same documents
+          listOfQueryableSegments.add(((MutableIndexSegment) indexSegment).getSnapshot());
+        } else {
+          listOfQueryableSegments.add(indexSegment);
+        }
       } else {
         tableDataManager.returnSegmentReader(indexSegment.getSegmentName());
       }
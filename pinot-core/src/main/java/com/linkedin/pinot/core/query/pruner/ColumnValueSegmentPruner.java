@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.pruner;
+
+import java.util.List;
+
+import org.apache.commons.configuration.Configuration;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.core.common.predicate.EqPredicate;
+import com.linkedin.pinot.core.common.predicate.InPredicate;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
+import com.linkedin.pinot.core.segment.index.BloomFilter;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+
+
+/**
+ * An implementation of SegmentPruner.
+ * Pruner will prune segment if the filter of the query cannot match any of its documents, judging from the min and
+ * max values of the filtered columns and their bloom filters, without opening any of their indexes.
+ * Only the equality, in and range predicates are evaluated, any other predicate may match.
+ *
+ *
+ */
+public class ColumnValueSegmentPruner implements SegmentPruner {
+
+  private static final String UNBOUNDED = "*";
+
+  @Override
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest, FilterQueryPlan filterQueryPlan) {
+    if (brokerRequest.getFilterQuery() == null || !(segment.getSegmentMetadata() instanceof SegmentMetadataImpl)) {
+      return false;
+    }
+    final FilterQueryTree filterQueryTree = filterQueryPlan.getFilterQueryTree();
+    if (filterQueryTree == null) {
+      return false;
+    }
+    return !mayMatch(segment, (SegmentMetadataImpl) segment.getSegmentMetadata(), filterQueryPlan, filterQueryTree);
+  }
+
+  private boolean mayMatch(IndexSegment segment, SegmentMetadataImpl segmentMetadata, FilterQueryPlan filterQueryPlan,
+      FilterQueryTree filterQueryTree) {
+    final List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      switch (filterQueryTree.getOperator()) {
+        case AND:
+          for (FilterQueryTree child : children) {
+            if (!mayMatch(segment, segmentMetadata, filterQueryPlan, child)) {
+              return false;
+            }
+          }
+          return true;
+        case OR:
+          for (FilterQueryTree child : children) {
+            if (mayMatch(segment, segmentMetadata, filterQueryPlan, child)) {
+              return true;
+            }
+          }
+          return false;
+        default:
+          return true;
+      }
+    }
+
+    final String column = filterQueryTree.getColumn();
+    final ColumnMetadata columnMetadata = segmentMetadata.getColumnMetadataFor(column);
+    if (columnMetadata == null) {
+      // Columns missing from the segment are left to the DataSchemaSegmentPruner
+      return true;
+    }
+    switch (filterQueryTree.getOperator()) {
+      case EQUALITY:
+        final EqPredicate eqPredicate = (EqPredicate) filterQueryPlan.getPredicate(filterQueryTree);
+        return mayContain(segment, column, columnMetadata, eqPredicate.getEqualsValue());
+      case IN:
+        final InPredicate inPredicate = (InPredicate) filterQueryPlan.getPredicate(filterQueryTree);
+        for (String value : inPredicate.getInRange()) {
+          if (mayContain(segment, column, columnMetadata, value)) {
+            return true;
+          }
+        }
+        return false;
+      case RANGE:
+        return mayOverlap(columnMetadata, (RangePredicate) filterQueryPlan.getPredicate(filterQueryTree));
+      default:
+        return true;
+    }
+  }
+
+  private boolean mayContain(IndexSegment segment, String column, ColumnMetadata columnMetadata, String value) {
+    final Comparable comparableValue = parseValue(columnMetadata, value);
+    if (comparableValue == null) {
+      return true;
+    }
+    final Comparable minValue = columnMetadata.getMinValue();
+    final Comparable maxValue = columnMetadata.getMaxValue();
+    if (minValue != null && maxValue != null
+        && (comparableValue.compareTo(minValue) < 0 || comparableValue.compareTo(maxValue) > 0)) {
+      return false;
+    }
+    if (columnMetadata.hasBloomFilter() && segment instanceof IndexSegmentImpl) {
+      final BloomFilter bloomFilter = ((IndexSegmentImpl) segment).getBloomFilterFor(column);
+      // The string form of the parsed value is the one the bloom filter was built with
+      return bloomFilter == null || bloomFilter.mightContain(comparableValue.toString());
+    }
+    return true;
+  }
+
+  private boolean mayOverlap(ColumnMetadata columnMetadata, RangePredicate rangePredicate) {
+    final Comparable minValue = columnMetadata.getMinValue();
+    final Comparable maxValue = columnMetadata.getMaxValue();
+    if (minValue == null || maxValue == null) {
+      return true;
+    }
+    if (!rangePredicate.getLowerBoundary().equals(UNBOUNDED)) {
+      final Comparable lowerBoundary = parseValue(columnMetadata, rangePredicate.getLowerBoundary());
+      if (lowerBoundary != null) {
+        final int comparison = lowerBoundary.compareTo(maxValue);
+        if (comparison > 0 || (comparison == 0 && !rangePredicate.includeLowerBoundary())) {
+          return false;
+        }
+      }
+    }
+    if (!rangePredicate.getUpperBoundary().equals(UNBOUNDED)) {
+      final Comparable upperBoundary = parseValue(columnMetadata, rangePredicate.getUpperBoundary());
+      if (upperBoundary != null) {
+        final int comparison = upperBoundary.compareTo(minValue);
+        if (comparison < 0 || (comparison == 0 && !rangePredicate.includeUpperBoundary())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the value of the predicate as a value of the column, or null if it cannot be compared to the column values
+   */
+  private static Comparable parseValue(ColumnMetadata columnMetadata, String value) {
+    try {
+      return ColumnMetadata.parseValue(columnMetadata.getDataType(), value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void init(Configuration config) {
+
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnValueSegmentPruner";
+  }
+}
@@ -19,6 +19,7 @@ import org.apache.commons.configuration.Configuration;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
 
 
 public interface SegmentPruner {
@@ -34,7 +35,8 @@ public interface SegmentPruner {
    *
    * @param segment
    * @param brokerRequest
+   * @param filterQueryPlan filter of the query, built once for all the segments the query runs on
    * @return true if the given segment is pruned.
    */
-  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest);
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest, FilterQueryPlan filterQueryPlan);
 }
@@ -17,13 +17,15 @@ package com.linkedin.pinot.core.query.pruner;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
 
 
 public interface SegmentPrunerService {
   /**
    * @param segment
    * @param query
+   * @param filterQueryPlan
    * @return
    */
-  public boolean prune(final IndexSegment segment, final BrokerRequest query);
+  public boolean prune(final IndexSegment segment, final BrokerRequest query, final FilterQueryPlan filterQueryPlan);
 }
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
 import com.linkedin.pinot.core.query.config.SegmentPrunerConfig;
 
 
@@ -52,12 +53,12 @@ public class SegmentPrunerServiceImpl implements SegmentPrunerService {
   }
 
   @Override
-  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest) {
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest, FilterQueryPlan filterQueryPlan) {
     if (_segmentPrunerSet == null || _segmentPrunerSet.size() == 0) {
       return false;
     }
     for (SegmentPruner pruner : _segmentPrunerSet) {
-      if (pruner.prune(segment, brokerRequest)) {
+      if (pruner.prune(segment, brokerRequest, filterQueryPlan)) {
         LOGGER.info(pruner + " pruned segment: " + segment.getSegmentName());
         return true;
       }
@@ -20,6 +20,7 @@ import org.joda.time.Interval;
 
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
 
 
 /**
@@ -32,7 +33,7 @@ import com.linkedin.pinot.core.indexsegment.IndexSegment;
 public class TimeSegmentPruner implements SegmentPruner {
 
   @Override
-  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest) {
+  public boolean prune(IndexSegment segment, BrokerRequest brokerRequest, FilterQueryPlan filterQueryPlan) {
     Interval interval = segment.getSegmentMetadata().getTimeInterval();
     if (interval != null && brokerRequest.getTimeInterval() != null && !new Interval(brokerRequest.getTimeInterval()).contains(interval)) {
       return true;
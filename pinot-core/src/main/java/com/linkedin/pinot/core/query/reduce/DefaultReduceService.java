@@ -40,7 +40,9 @@ import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunction;
 import com.linkedin.pinot.core.query.aggregation.AggregationFunctionFactory;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByJsonResults;
 import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByOperatorService;
+import com.linkedin.pinot.core.query.selection.SelectionJsonResults;
 import com.linkedin.pinot.core.query.selection.SelectionOperatorService;
 import com.linkedin.pinot.core.query.selection.SelectionOperatorUtils;
 
@@ -154,8 +156,8 @@ public class DefaultReduceService implements ReduceService {
       if (brokerRequest.isSetSelections() && (brokerRequest.getSelections().getSelectionColumns() != null)
           && (brokerRequest.getSelections().getSelectionColumns().size() >= 0)) {
         // Reduce DataTable for selection query.
-        JSONObject selectionRet = reduceOnSelectionResults(brokerRequest, instanceResponseMap);
-        brokerResponse.setSelectionResults(selectionRet);
+        SelectionJsonResults selectionRet = reduceOnSelectionResults(brokerRequest, instanceResponseMap);
+        brokerResponse.setStreamedSelectionResults(selectionRet);
         return brokerResponse;
       }
       if (brokerRequest.isSetAggregationsInfo()) {
@@ -172,7 +174,7 @@ public class DefaultReduceService implements ReduceService {
 
           AggregationGroupByOperatorService aggregationGroupByOperatorService =
               new AggregationGroupByOperatorService(brokerRequest.getAggregationsInfo(), brokerRequest.getGroupBy());
-          brokerResponse.setAggregationResults(reduceOnAggregationGroupByOperatorResults(
+          brokerResponse.setStreamedAggregationResults(reduceOnAggregationGroupByOperatorResults(
               aggregationGroupByOperatorService, instanceResponseMap));
 
         }
@@ -187,7 +189,7 @@ public class DefaultReduceService implements ReduceService {
         "Should not reach here, the query has no attributes of selection or aggregation!");
   }
 
-  private JSONObject reduceOnSelectionResults(BrokerRequest brokerRequest,
+  private SelectionJsonResults reduceOnSelectionResults(BrokerRequest brokerRequest,
       Map<ServerInstance, DataTable> instanceResponseMap) {
     try {
       if (instanceResponseMap.size() > 0) {
@@ -195,10 +197,11 @@ public class DefaultReduceService implements ReduceService {
         if (brokerRequest.getSelections().isSetSelectionSortSequence()) {
           SelectionOperatorService selectionService =
               new SelectionOperatorService(brokerRequest.getSelections(), dt.getDataSchema());
-          return selectionService.render(selectionService.reduce(instanceResponseMap));
+          return selectionService.renderJsonResults(selectionService.reduce(instanceResponseMap));
         } else {
           Collection<Serializable[]> reduceResult = SelectionOperatorUtils.reduce(instanceResponseMap, brokerRequest.getSelections().getSize());
-          return SelectionOperatorUtils.render(reduceResult, brokerRequest.getSelections().getSelectionColumns(), dt.getDataSchema());
+          return SelectionOperatorUtils.renderJsonResults(reduceResult,
+              brokerRequest.getSelections().getSelectionColumns(), dt.getDataSchema());
         }
       } else {
         return null;
@@ -210,10 +213,10 @@ public class DefaultReduceService implements ReduceService {
     }
   }
 
-  private List<JSONObject> reduceOnAggregationGroupByOperatorResults(
+  private AggregationGroupByJsonResults reduceOnAggregationGroupByOperatorResults(
       AggregationGroupByOperatorService aggregationGroupByOperatorService,
       Map<ServerInstance, DataTable> instanceResponseMap) {
-    return aggregationGroupByOperatorService.renderGroupByOperators(aggregationGroupByOperatorService
+    return aggregationGroupByOperatorService.renderGroupByJsonResults(aggregationGroupByOperatorService
         .reduceGroupByOperators(instanceResponseMap));
   }
 
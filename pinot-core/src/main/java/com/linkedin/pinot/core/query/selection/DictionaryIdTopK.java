@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.selection;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.linkedin.pinot.common.request.SelectionSort;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.BlockMetadata;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
+
+
+/**
+ * Top K documents of a segment for a selection ORDER BY whose sort columns are all single value columns with a sorted
+ * dictionary.
+ *
+ * In a sorted dictionary the order of the dictIds is the order of the values, so documents are compared on their
+ * dictIds only. The dictIds of the sort columns are packed into one long sort key, first sort column in the high bits,
+ * and a descending column stores (cardinality - 1 - dictId): a smaller key always comes first. The best (key, docId)
+ * pairs are kept in a primitive max heap whose root is the threshold a document has to beat, and the rows are only
+ * materialized for the documents left in the heap once the whole segment is processed.
+ *
+ * The dictIds of a block of docIds are read once per column, the next sort columns are only read for the documents
+ * whose key prefix can still beat the threshold, and when the first sort column is sorted, blocks whose first or last
+ * document can't beat the threshold are skipped without reading anything else.
+ */
+public class DictionaryIdTopK {
+  private static final int MAX_KEY_BITS = 63;
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+  private static final long PRUNED = -1L;
+
+  private final int _maxSize;
+  private final int _numSortColumns;
+  private final boolean[] _isAsc;
+  private final int[] _cardinalities;
+  // position of the lowest bit of each sort column in the key
+  private final int[] _shifts;
+
+  // max heap on (key, docId), the root is the worst document kept
+  private final long[] _heapKeys;
+  private final int[] _heapDocIds;
+  private int _size = 0;
+
+  private int[] _docIdBuffer = new int[INITIAL_BUFFER_SIZE];
+  private long[] _keyBuffer = new long[INITIAL_BUFFER_SIZE];
+
+  // first sort column values of the first and last documents of the last block, when that column is sorted
+  private boolean _isFirstColumnSorted = false;
+  private long _firstDocColumnValue = -1L;
+  private long _lastDocColumnValue = -1L;
+
+  /**
+   * @return true if all the sort columns are single value with a sorted dictionary, and their dictIds fit in a key
+   */
+  public static boolean isSupported(List<SelectionSort> sortSequence, Block[] blocks) {
+    int numBits = 0;
+    for (int i = 0; i < sortSequence.size(); i++) {
+      final BlockMetadata metadata = blocks[i].getMetadata();
+      if (!metadata.isSingleValue() || !metadata.hasDictionary()
+          || !(metadata.getDictionary() instanceof ImmutableDictionaryReader)) {
+        return false;
+      }
+      numBits += getNumBits(metadata.getDictionary().length());
+    }
+    return numBits <= MAX_KEY_BITS;
+  }
+
+  private static int getNumBits(int cardinality) {
+    return cardinality <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(cardinality - 1);
+  }
+
+  /**
+   *
+   * @param sortSequence
+   * @param blocks blocks of the columns of the data schema, the sort columns first
+   * @param maxSize number of documents to keep, offset + size of the selection
+   */
+  public DictionaryIdTopK(List<SelectionSort> sortSequence, Block[] blocks, int maxSize) {
+    _maxSize = maxSize;
+    _numSortColumns = sortSequence.size();
+    _isAsc = new boolean[_numSortColumns];
+    _cardinalities = new int[_numSortColumns];
+    _shifts = new int[_numSortColumns];
+    int shift = 0;
+    for (int i = _numSortColumns - 1; i >= 0; i--) {
+      _isAsc[i] = sortSequence.get(i).isIsAsc();
+      _cardinalities[i] = blocks[i].getMetadata().getDictionary().length();
+      _shifts[i] = shift;
+      shift += getNumBits(_cardinalities[i]);
+    }
+    _heapKeys = new long[maxSize];
+    _heapDocIds = new int[maxSize];
+  }
+
+  /**
+   * Offers all the documents of the iterator.
+   *
+   * @return the number of documents read from the iterator
+   */
+  public int collect(BlockDocIdIterator blockDocIdIterator, Block[] blocks) {
+    int length = 0;
+    int docId;
+    while ((docId = blockDocIdIterator.next()) != Constants.EOF) {
+      if (length == _docIdBuffer.length) {
+        _docIdBuffer = Arrays.copyOf(_docIdBuffer, length * 2);
+        _keyBuffer = new long[length * 2];
+      }
+      _docIdBuffer[length++] = docId;
+    }
+    if (length == 0 || _maxSize == 0) {
+      return length;
+    }
+
+    final BlockSingleValIterator[] iterators = new BlockSingleValIterator[_numSortColumns];
+    for (int i = 0; i < _numSortColumns; i++) {
+      iterators[i] = (BlockSingleValIterator) blocks[i].getBlockValueSet().iterator();
+    }
+
+    // docIds come in increasing order, on a sorted column the best dictId of the block is at one of its ends
+    _isFirstColumnSorted = blocks[0].getMetadata().isSorted();
+    if (_isFirstColumnSorted) {
+      _firstDocColumnValue = getColumnValue(0, getDictId(iterators[0], _docIdBuffer[0]));
+      _lastDocColumnValue = getColumnValue(0, getDictId(iterators[0], _docIdBuffer[length - 1]));
+      final long bestColumnValue = Math.min(_firstDocColumnValue, _lastDocColumnValue);
+      if (_size == _maxSize && (bestColumnValue << _shifts[0]) > _heapKeys[0]) {
+        return length;
+      }
+    }
+
+    for (int i = 0; i < length; i++) {
+      _keyBuffer[i] = getColumnKey(0, getDictId(iterators[0], _docIdBuffer[i]));
+    }
+    for (int column = 1; column < _numSortColumns; column++) {
+      for (int i = 0; i < length; i++) {
+        // with all the next columns at 0 the key is as small as it can get, skip the document if it can't win
+        if (_keyBuffer[i] == PRUNED || (_size == _maxSize && _keyBuffer[i] > _heapKeys[0])) {
+          _keyBuffer[i] = PRUNED;
+          continue;
+        }
+        _keyBuffer[i] |= getColumnKey(column, getDictId(iterators[column], _docIdBuffer[i]));
+      }
+    }
+    for (int i = 0; i < length; i++) {
+      if (_keyBuffer[i] != PRUNED) {
+        offer(_keyBuffer[i], _docIdBuffer[i]);
+      }
+    }
+    return length;
+  }
+
+  private static int getDictId(BlockSingleValIterator iterator, int docId) {
+    iterator.skipTo(docId);
+    return iterator.nextIntVal();
+  }
+
+  private long getColumnValue(int column, int dictId) {
+    return _isAsc[column] ? dictId : _cardinalities[column] - 1 - dictId;
+  }
+
+  private long getColumnKey(int column, int dictId) {
+    return getColumnValue(column, dictId) << _shifts[column];
+  }
+
+  /**
+   * Tells whether none of the documents after the last block can make it into the top K. This is only known when the
+   * first sort column is sorted and the blocks are read in the order of that column: increasing docIds for an
+   * ascending sort, decreasing docIds (each block still holding increasing docIds) for a descending one.
+   * With a single sort column, the documents equal to the threshold are not read either: they can only change which
+   * of the tied rows are returned.
+   *
+   * @param isReverseDocIdOrder true if the blocks come in decreasing docId order
+   */
+  public boolean canTerminate(boolean isReverseDocIdOrder) {
+    if (!_isFirstColumnSorted || _size < _maxSize || _isAsc[0] == isReverseDocIdOrder) {
+      return false;
+    }
+    // the documents left are on the side of the last block where the first sort column only gets worse
+    final long nextColumnValue = isReverseDocIdOrder ? _firstDocColumnValue : _lastDocColumnValue;
+    final long thresholdColumnValue = _heapKeys[0] >>> _shifts[0];
+    if (_numSortColumns == 1) {
+      return nextColumnValue >= thresholdColumnValue;
+    }
+    return nextColumnValue > thresholdColumnValue;
+  }
+
+  private void offer(long key, int docId) {
+    if (_size < _maxSize) {
+      int i = _size++;
+      // sift up
+      while (i > 0) {
+        final int parent = (i - 1) >>> 1;
+        if (!isWorse(key, docId, _heapKeys[parent], _heapDocIds[parent])) {
+          break;
+        }
+        _heapKeys[i] = _heapKeys[parent];
+        _heapDocIds[i] = _heapDocIds[parent];
+        i = parent;
+      }
+      _heapKeys[i] = key;
+      _heapDocIds[i] = docId;
+    } else if (isWorse(_heapKeys[0], _heapDocIds[0], key, docId)) {
+      siftDown(key, docId);
+    }
+  }
+
+  /**
+   * Replaces the root of the heap.
+   */
+  private void siftDown(long key, int docId) {
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= _size) {
+        break;
+      }
+      if (child + 1 < _size && isWorse(_heapKeys[child + 1], _heapDocIds[child + 1], _heapKeys[child],
+          _heapDocIds[child])) {
+        child++;
+      }
+      if (!isWorse(_heapKeys[child], _heapDocIds[child], key, docId)) {
+        break;
+      }
+      _heapKeys[i] = _heapKeys[child];
+      _heapDocIds[i] = _heapDocIds[child];
+      i = child;
+    }
+    _heapKeys[i] = key;
+    _heapDocIds[i] = docId;
+  }
+
+  /**
+   * Documents with the same values are ordered on their docIds.
+   */
+  private static boolean isWorse(long key1, int docId1, long key2, int docId2) {
+    return key1 > key2 || (key1 == key2 && docId1 > docId2);
+  }
+
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * Empties the heap.
+   *
+   * @return the docIds kept, best first
+   */
+  public int[] drainSortedDocIds() {
+    final int[] docIds = new int[_size];
+    for (int i = _size - 1; i >= 0; i--) {
+      docIds[i] = _heapDocIds[0];
+      final long lastKey = _heapKeys[_size - 1];
+      final int lastDocId = _heapDocIds[_size - 1];
+      _size--;
+      if (_size > 0) {
+        siftDown(lastKey, lastDocId);
+      }
+    }
+    return docIds;
+  }
+}
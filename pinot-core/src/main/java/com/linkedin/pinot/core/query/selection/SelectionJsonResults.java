@@ -0,0 +1,281 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.selection;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.linkedin.pinot.client.BinaryResponseFormat;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.response.BinaryResponseWriter;
+import com.linkedin.pinot.common.response.BinaryWritable;
+import com.linkedin.pinot.common.response.JsonResponseWriter;
+import com.linkedin.pinot.common.response.JsonWritable;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+
+
+/**
+ * Reduced rows of a selection query, written as the "selectionResults" JSON object of the broker response:
+ * {"columns":[...],"results":[[...],...]}, or as typed columns in the binary response format.
+ *
+ * The rows are written one at a time, without building a JSONArray per row. The selected columns and their number
+ * formats are resolved once for all the rows; the values are formatted as
+ * {@link SelectionOperatorUtils#DEFAULT_FORMAT_STRING_MAP} does, integers without going through a DecimalFormat.
+ */
+public class SelectionJsonResults implements JsonWritable, BinaryWritable {
+  private final List<Serializable[]> _rows;
+  private final String[] _columnNames;
+  private final int[] _columnIndexes;
+  private final DataType[] _columnTypes;
+
+  /**
+   * @param rows Rows in the order in which they are returned
+   * @param selectionColumns Columns to return, in the order of the data schema
+   * @param dataSchema Data schema of the rows
+   */
+  public SelectionJsonResults(List<Serializable[]> rows, Collection<String> selectionColumns, DataSchema dataSchema) {
+    _rows = rows;
+    List<Integer> columnIndexes = new ArrayList<Integer>();
+    for (int i = 0; i < dataSchema.size(); ++i) {
+      if (selectionColumns.contains(dataSchema.getColumnName(i))) {
+        columnIndexes.add(i);
+      }
+    }
+    _columnNames = new String[columnIndexes.size()];
+    _columnIndexes = new int[columnIndexes.size()];
+    _columnTypes = new DataType[columnIndexes.size()];
+    for (int i = 0; i < _columnIndexes.length; ++i) {
+      _columnIndexes[i] = columnIndexes.get(i);
+      _columnNames[i] = dataSchema.getColumnName(_columnIndexes[i]);
+      _columnTypes[i] = dataSchema.getColumnType(_columnIndexes[i]);
+    }
+  }
+
+  public int getNumRows() {
+    return _rows.size();
+  }
+
+  @Override
+  public void writeJson(JsonResponseWriter writer) throws IOException {
+    // DecimalFormat is not thread safe, each write gets its own copies
+    final DecimalFormat[] formats = new DecimalFormat[_columnTypes.length];
+    for (int i = 0; i < _columnTypes.length; ++i) {
+      DecimalFormat format = SelectionOperatorUtils.DEFAULT_FORMAT_STRING_MAP.get(_columnTypes[i]);
+      if (format != null) {
+        formats[i] = (DecimalFormat) format.clone();
+      }
+    }
+
+    writer.beginObject();
+    writer.name("columns").beginArray();
+    for (String columnName : _columnNames) {
+      writer.value(columnName);
+    }
+    writer.endArray();
+
+    writer.name("results").beginArray();
+    for (Serializable[] row : _rows) {
+      writer.beginArray();
+      for (int i = 0; i < _columnIndexes.length; ++i) {
+        writeValue(writer, row[_columnIndexes[i]], _columnTypes[i], formats[i]);
+      }
+      writer.endArray();
+    }
+    writer.endArray();
+    writer.endObject();
+  }
+
+  private static void writeValue(JsonResponseWriter writer, Serializable value, DataType type, DecimalFormat format)
+      throws IOException {
+    switch (type) {
+      case STRING:
+        writer.value((String) value);
+        break;
+      case INT:
+      case LONG:
+        writer.value(value.toString());
+        break;
+      case FLOAT:
+      case DOUBLE:
+        writer.value(format.format(((Number) value).doubleValue()));
+        break;
+      case STRING_ARRAY:
+        writer.beginArray();
+        for (String s : (String[]) value) {
+          writer.value(s);
+        }
+        writer.endArray();
+        break;
+      case INT_ARRAY:
+        writer.beginArray();
+        for (int s : (int[]) value) {
+          writer.value(Integer.toString(s));
+        }
+        writer.endArray();
+        break;
+      case LONG_ARRAY:
+        writer.beginArray();
+        for (long s : (long[]) value) {
+          writer.value(Long.toString(s));
+        }
+        writer.endArray();
+        break;
+      case FLOAT_ARRAY:
+        writer.beginArray();
+        for (float s : (float[]) value) {
+          writer.value(format.format(s));
+        }
+        writer.endArray();
+        break;
+      case DOUBLE_ARRAY:
+        writer.beginArray();
+        for (double s : (double[]) value) {
+          writer.value(format.format(s));
+        }
+        writer.endArray();
+        break;
+      default:
+        if (type.isSingleValue()) {
+          writer.value(String.valueOf(value));
+        } else {
+          writer.beginArray().endArray();
+        }
+        break;
+    }
+  }
+
+  /**
+   * Writes the rows column after column, numbers with their own type instead of formatted as strings.
+   */
+  @Override
+  public void writeBinary(BinaryResponseWriter writer) throws IOException {
+    writer.writeInt(_columnNames.length);
+    for (int i = 0; i < _columnNames.length; ++i) {
+      writer.writeString(_columnNames[i]);
+      writer.writeByte(getBinaryType(_columnTypes[i]));
+    }
+    writer.writeInt(_rows.size());
+    for (int i = 0; i < _columnIndexes.length; ++i) {
+      final int columnIndex = _columnIndexes[i];
+      final byte binaryType = getBinaryType(_columnTypes[i]);
+      for (Serializable[] row : _rows) {
+        writeBinaryValue(writer, row[columnIndex], binaryType);
+      }
+    }
+  }
+
+  private static byte getBinaryType(DataType type) {
+    switch (type) {
+      case INT:
+      case SHORT:
+        return BinaryResponseFormat.TYPE_INT;
+      case LONG:
+        return BinaryResponseFormat.TYPE_LONG;
+      case FLOAT:
+        return BinaryResponseFormat.TYPE_FLOAT;
+      case DOUBLE:
+        return BinaryResponseFormat.TYPE_DOUBLE;
+      case INT_ARRAY:
+        return BinaryResponseFormat.TYPE_INT_ARRAY;
+      case LONG_ARRAY:
+        return BinaryResponseFormat.TYPE_LONG_ARRAY;
+      case FLOAT_ARRAY:
+        return BinaryResponseFormat.TYPE_FLOAT_ARRAY;
+      case DOUBLE_ARRAY:
+        return BinaryResponseFormat.TYPE_DOUBLE_ARRAY;
+      default:
+        return type.isSingleValue() ? BinaryResponseFormat.TYPE_STRING : BinaryResponseFormat.TYPE_STRING_ARRAY;
+    }
+  }
+
+  private static void writeBinaryValue(BinaryResponseWriter writer, Serializable value, byte binaryType)
+      throws IOException {
+    switch (binaryType) {
+      case BinaryResponseFormat.TYPE_INT:
+        writer.writeInt(((Number) value).intValue());
+        break;
+      case BinaryResponseFormat.TYPE_LONG:
+        writer.writeLong(((Number) value).longValue());
+        break;
+      case BinaryResponseFormat.TYPE_FLOAT:
+        writer.writeFloat(((Number) value).floatValue());
+        break;
+      case BinaryResponseFormat.TYPE_DOUBLE:
+        writer.writeDouble(((Number) value).doubleValue());
+        break;
+      case BinaryResponseFormat.TYPE_INT_ARRAY:
+        writer.writeInt(((int[]) value).length);
+        for (int v : (int[]) value) {
+          writer.writeInt(v);
+        }
+        break;
+      case BinaryResponseFormat.TYPE_LONG_ARRAY:
+        writer.writeInt(((long[]) value).length);
+        for (long v : (long[]) value) {
+          writer.writeLong(v);
+        }
+        break;
+      case BinaryResponseFormat.TYPE_FLOAT_ARRAY:
+        writer.writeInt(((float[]) value).length);
+        for (float v : (float[]) value) {
+          writer.writeFloat(v);
+        }
+        break;
+      case BinaryResponseFormat.TYPE_DOUBLE_ARRAY:
+        writer.writeInt(((double[]) value).length);
+        for (double v : (double[]) value) {
+          writer.writeDouble(v);
+        }
+        break;
+      case BinaryResponseFormat.TYPE_STRING_ARRAY:
+        if (value instanceof String[]) {
+          writer.writeInt(((String[]) value).length);
+          for (String v : (String[]) value) {
+            writer.writeString(v);
+          }
+        } else {
+          writer.writeInt(0);
+        }
+        break;
+      default:
+        writer.writeString(value == null ? null : value.toString());
+        break;
+    }
+  }
+
+  /**
+   * @return the results as a JSONObject, for the callers that need the object rather than the JSON text
+   */
+  public JSONObject toJson() throws JSONException {
+    try {
+      return new JSONObject(JsonResponseWriter.toJsonString(this));
+    } catch (IOException e) {
+      throw new JSONException(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SelectionJsonResults(numRows:" + _rows.size() + ")";
+  }
+}
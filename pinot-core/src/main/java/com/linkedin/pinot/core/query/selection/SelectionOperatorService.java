@@ -32,8 +32,6 @@ import java.util.PriorityQueue;
 
 import javax.activation.UnsupportedDataTypeException;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
@@ -89,6 +87,12 @@ public class SelectionOperatorService {
   private Comparator<Integer> _rowDocIdComparator;
   private Collection<Integer> _rowDocIdSet;
 
+  // Top K on dictIds, used for the whole segment when all the sort columns support it
+  private DictionaryIdTopK _dictionaryIdTopK = null;
+  private Block[] _dictionaryIdTopKBlocks = null;
+  private boolean _isDictionaryIdTopKChecked = false;
+  private boolean _isReverseDocIdOrder = false;
+
   private final IndexSegment _indexSegment;
   private final boolean _doOrdering;
 
@@ -210,6 +214,7 @@ public class SelectionOperatorService {
     if (_doOrdering) {
       PriorityQueue<Serializable[]> queue = (PriorityQueue<Serializable[]>) _rowEventsSet;
       for (final DataTable dt : selectionResults.values()) {
+        final boolean isSorted = "true".equals(dt.getMetadata().get(SelectionOperatorUtils.SORTED_ROWS_KEY));
         for (int rowId = 0; rowId < dt.getNumberOfRows(); ++rowId) {
           final Serializable[] row = getRowFromDataTable(dt, rowId);
           if (queue.size() < _maxRowSize) {
@@ -218,6 +223,9 @@ public class SelectionOperatorService {
             if (_rowComparator.compare(queue.peek(), row) < 0) {
               queue.add(row);
               queue.poll();
+            } else if (isSorted) {
+              // the next rows of this server are not better
+              break;
             }
           }
         }
@@ -238,39 +246,44 @@ public class SelectionOperatorService {
   }
 
   public JSONObject render(Collection<Serializable[]> finalResults, DataSchema dataSchema, int offset) throws Exception {
-    final LinkedList<JSONArray> rowEventsJSonList = new LinkedList<JSONArray>();
+    return renderJsonResults(finalResults, dataSchema, offset).toJson();
+  }
+
+  /**
+   * Same as {@link #render(Collection, DataSchema, int)}, but the rows are written straight to the broker response
+   * instead of being converted to a JSONObject.
+   */
+  public SelectionJsonResults renderJsonResults(Collection<Serializable[]> finalResults, DataSchema dataSchema,
+      int offset) throws Exception {
+    final LinkedList<Serializable[]> rows = new LinkedList<Serializable[]>();
     if (finalResults instanceof PriorityQueue<?>) {
       PriorityQueue<Serializable[]> queue = (PriorityQueue<Serializable[]>) finalResults;
       while (finalResults.size() > offset) {
-        rowEventsJSonList.addFirst(getJSonArrayFromRow(queue.poll(), dataSchema));
+        rows.addFirst(queue.poll());
       }
     } else if (finalResults instanceof ArrayList<?>) {
       List<Serializable[]> list = (List<Serializable[]>) finalResults;
       //TODO: check if the offset is inclusive or exclusive
       for (int i = offset; i < list.size(); i++) {
-        rowEventsJSonList.add(getJSonArrayFromRow(list.get(i), dataSchema));
+        rows.add(list.get(i));
       }
     } else {
       throw new UnsupportedDataTypeException("type of results Expected: (PriorityQueue| ArrayList)) actual:"
           + finalResults.getClass());
     }
-    final JSONObject resultJsonObject = new JSONObject();
-    resultJsonObject.put("results", new JSONArray(rowEventsJSonList));
-    resultJsonObject.put("columns", getSelectionColumnsFromDataSchema(dataSchema));
-    return resultJsonObject;
+    return new SelectionJsonResults(new ArrayList<Serializable[]>(rows), _selectionColumns, dataSchema);
   }
 
-  private JSONArray getSelectionColumnsFromDataSchema(DataSchema dataSchema) {
-    final JSONArray jsonArray = new JSONArray();
-    for (int idx = 0; idx < dataSchema.size(); ++idx) {
-      if (_selectionColumns.contains(dataSchema.getColumnName(idx))) {
-        jsonArray.put(dataSchema.getColumnName(idx));
+  public Collection<Serializable[]> getRowEventsSet() {
+    if (_dictionaryIdTopK != null && _dictionaryIdTopK.size() > 0) {
+      // Only the rows of the documents left in the top K are materialized
+      final PriorityQueue<Serializable[]> rowEventsPriorityQueue =
+          new PriorityQueue<Serializable[]>(_maxRowSize, _rowComparator);
+      for (int docId : _dictionaryIdTopK.drainSortedDocIds()) {
+        rowEventsPriorityQueue.add(getRowFromBlockValSets(docId, _dictionaryIdTopKBlocks));
       }
+      merge(_rowEventsSet, rowEventsPriorityQueue);
     }
-    return jsonArray;
-  }
-
-  public Collection<Serializable[]> getRowEventsSet() {
     return _rowEventsSet;
   }
 
@@ -278,6 +291,13 @@ public class SelectionOperatorService {
     return _dataSchema;
   }
 
+  /**
+   * @return the comparator of the order by rows, the worst row first
+   */
+  public Comparator<Serializable[]> getRowComparator() {
+    return _rowComparator;
+  }
+
   public long getNumDocsScanned() {
     return _numDocsScanned;
   }
@@ -287,46 +307,33 @@ public class SelectionOperatorService {
       @Override
       public int compare(Serializable[] o1, Serializable[] o2) {
         for (int i = 0; i < sortSequence.size(); ++i) {
+          int result = 0;
           switch (dataSchema.getColumnType(i)) {
             case INT:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Integer) o1[i]).compareTo((Integer) o2[i]);
-              } else {
-                return ((Integer) o2[i]).compareTo((Integer) o1[i]);
-              }
+              result = ((Integer) o1[i]).compareTo((Integer) o2[i]);
+              break;
             case SHORT:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Short) o1[i]).compareTo((Short) o2[i]);
-              } else {
-                return ((Short) o2[i]).compareTo((Short) o1[i]);
-              }
+              result = ((Short) o1[i]).compareTo((Short) o2[i]);
+              break;
             case LONG:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Long) o1[i]).compareTo((Long) o2[i]);
-              } else {
-                return ((Long) o2[i]).compareTo((Long) o1[i]);
-              }
+              result = ((Long) o1[i]).compareTo((Long) o2[i]);
+              break;
             case FLOAT:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Float) o1[i]).compareTo((Float) o2[i]);
-              } else {
-                return ((Float) o2[i]).compareTo((Float) o1[i]);
-              }
+              result = ((Float) o1[i]).compareTo((Float) o2[i]);
+              break;
             case DOUBLE:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((Double) o1[i]).compareTo((Double) o2[i]);
-              } else {
-                return ((Double) o2[i]).compareTo((Double) o1[i]);
-              }
+              result = ((Double) o1[i]).compareTo((Double) o2[i]);
+              break;
             case STRING:
-              if (!sortSequence.get(i).isIsAsc()) {
-                return ((String) o1[i]).compareTo((String) o2[i]);
-              } else {
-                return ((String) o2[i]).compareTo((String) o1[i]);
-              }
+              result = ((String) o1[i]).compareTo((String) o2[i]);
+              break;
             default:
               break;
           }
+          // Rows equal on a sort column are compared on the next one
+          if (result != 0) {
+            return sortSequence.get(i).isIsAsc() ? -result : result;
+          }
         }
         return 0;
       };
@@ -337,6 +344,10 @@ public class SelectionOperatorService {
     return render(reduceResults, _dataSchema, _selectionOffset);
   }
 
+  public SelectionJsonResults renderJsonResults(Collection<Serializable[]> reduceResults) throws Exception {
+    return renderJsonResults(reduceResults, _dataSchema, _selectionOffset);
+  }
+
   private DataSchema getDataSchema(List<SelectionSort> sortSequence, List<String> selectionColumns,
       IndexSegment indexSegment) {
     final List<String> columns = new ArrayList<String>();
@@ -367,6 +378,19 @@ public class SelectionOperatorService {
   }
 
   public void iterateOnBlock(BlockDocIdIterator blockDocIdIterator, Block[] blocks) throws Exception {
+    if (!_isDictionaryIdTopKChecked) {
+      _isDictionaryIdTopKChecked = true;
+      if (_doOrdering && DictionaryIdTopK.isSupported(_sortSequence, blocks)) {
+        _dictionaryIdTopK = new DictionaryIdTopK(_sortSequence, blocks, _maxRowSize);
+      }
+    }
+    if (_dictionaryIdTopK != null) {
+      _numDocsScanned += _dictionaryIdTopK.collect(blockDocIdIterator, blocks);
+      // The column blocks cover the whole segment, the rows are read from them once all the blocks are processed
+      _dictionaryIdTopKBlocks = Arrays.copyOf(blocks, blocks.length);
+      return;
+    }
+
     int docId = 0;
     _rowDocIdComparator = getDocIdComparator(_sortSequence, _dataSchema, blocks);
     if (_doOrdering) {
@@ -542,7 +566,7 @@ public class SelectionOperatorService {
     };
   }
 
-  private Serializable[] getRowFromBlockValSets(int docId, Block[] blocks) throws Exception {
+  private Serializable[] getRowFromBlockValSets(int docId, Block[] blocks) {
 
     final Serializable[] row = new Serializable[_dataSchema.size()];
     int j = 0;
@@ -743,64 +767,6 @@ public class SelectionOperatorService {
     return row;
   }
 
-  private JSONArray getJSonArrayFromRow(Serializable[] poll, DataSchema dataSchema) throws JSONException {
-
-    final JSONArray jsonArray = new JSONArray();
-    for (int i = 0; i < dataSchema.size(); ++i) {
-      if (_selectionColumns.contains(dataSchema.getColumnName(i))) {
-        if (dataSchema.getColumnType(i).isSingleValue()) {
-          if (dataSchema.getColumnType(i) == DataType.STRING) {
-            jsonArray.put(poll[i]);
-          } else {
-            jsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(poll[i]));
-          }
-        } else {
-          // Multi-value;
-
-          JSONArray stringJsonArray = new JSONArray();
-          //          stringJsonArray.put(poll[i]);
-          switch (dataSchema.getColumnType(i)) {
-            case STRING_ARRAY:
-              String[] stringValues = (String[]) poll[i];
-              for (String s : stringValues) {
-                stringJsonArray.put(s);
-              }
-              break;
-            case INT_ARRAY:
-              int[] intValues = (int[]) poll[i];
-              for (int s : intValues) {
-                stringJsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(s));
-              }
-              break;
-            case FLOAT_ARRAY:
-              float[] floatValues = (float[]) poll[i];
-              for (float s : floatValues) {
-                stringJsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(s));
-              }
-              break;
-            case LONG_ARRAY:
-              long[] longValues = (long[]) poll[i];
-              for (long s : longValues) {
-                stringJsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(s));
-              }
-              break;
-            case DOUBLE_ARRAY:
-              double[] doubleValues = (double[]) poll[i];
-              for (double s : doubleValues) {
-                stringJsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(s));
-              }
-              break;
-            default:
-              break;
-          }
-          jsonArray.put(stringJsonArray);
-
-        }
-      }
-    }
-    return jsonArray;
-  }
-
   private static Serializable[] getRowFromDataTable(DataTable dt, int rowId) {
     final Serializable[] row = new Serializable[dt.getDataSchema().size()];
     for (int i = 0; i < dt.getDataSchema().size(); ++i) {
@@ -1070,10 +1036,48 @@ public class SelectionOperatorService {
     return rowString;
   }
 
+  /**
+   * Tells the service that the blocks of docIds come in decreasing docId order, see {@link #canTerminate()}.
+   */
+  public void setReverseDocIdOrder(boolean isReverseDocIdOrder) {
+    _isReverseDocIdOrder = isReverseDocIdOrder;
+  }
+
+  /**
+   * @return true if none of the documents left in the segment can change the result. For an order by, this is only
+   * known when the segment is sorted on the first sort column and read in the order of that column.
+   */
   public boolean canTerminate() {
     if (!_doOrdering) {
-      return getRowEventsSet().size() >= _maxRowSize;
+      return _rowEventsSet.size() >= _maxRowSize;
+    }
+    return _dictionaryIdTopK != null && _dictionaryIdTopK.canTerminate(_isReverseDocIdOrder);
+  }
+
+  /**
+   * @param rowEventsSet rows already selected from other segments
+   * @return true if the segment is sorted on the first sort column and the best value of that column in the segment
+   * can't beat the worst of the given rows, in which case the segment doesn't need to be read
+   */
+  public boolean canSkipSegment(Collection<Serializable[]> rowEventsSet) {
+    if (!_doOrdering || _indexSegment == null || !(rowEventsSet instanceof PriorityQueue<?>)
+        || rowEventsSet.size() < _maxRowSize || _maxRowSize == 0) {
+      return false;
+    }
+    final DataSource dataSource = _indexSegment.getDataSource(_sortSequence.get(0).getColumn());
+    final DataSourceMetadata metadata = dataSource.getDataSourceMetadata();
+    if (!metadata.isSorted() || !metadata.isSingleValue() || !metadata.hasDictionary()) {
+      return false;
+    }
+    final Dictionary dictionary = dataSource.getDictionary();
+    if (dictionary == null || dictionary.length() == 0) {
+      return false;
     }
-    return false;
+    final boolean isAsc = _sortSequence.get(0).isIsAsc();
+    final Comparable bestValue = (Comparable) dictionary.get(isAsc ? 0 : dictionary.length() - 1);
+    final Serializable[] worstRow = ((PriorityQueue<Serializable[]>) rowEventsSet).peek();
+    final int result = isAsc ? bestValue.compareTo(worstRow[0]) : ((Comparable) worstRow[0]).compareTo(bestValue);
+    // rows tied on a single sort column are interchangeable
+    return _sortSequence.size() == 1 ? result >= 0 : result > 0;
   }
 }
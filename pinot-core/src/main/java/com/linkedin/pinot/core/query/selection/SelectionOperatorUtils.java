@@ -24,14 +24,11 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.linkedin.pinot.common.data.FieldSpec.DataType;
@@ -72,6 +69,11 @@ import com.linkedin.pinot.core.segment.index.readers.StringDictionary;
  */
 public class SelectionOperatorUtils {
 
+  /**
+   * DataTable metadata key set to "true" when the rows of an order by selection are sorted best first.
+   */
+  public static final String SORTED_ROWS_KEY = "sortedRows";
+
   public static final Map<DataType, DecimalFormat> DEFAULT_FORMAT_STRING_MAP = new HashMap<DataType, DecimalFormat>();
   static {
     DEFAULT_FORMAT_STRING_MAP.put(DataType.INT, new DecimalFormat("##########", DecimalFormatSymbols.getInstance(Locale.US)));
@@ -150,28 +152,19 @@ public class SelectionOperatorUtils {
   }
 
   public static JSONObject render(Collection<Serializable[]> finalResults, List<String> selectionColumns, DataSchema dataSchema) throws Exception {
-    final LinkedList<JSONArray> rowEventsJSonList = new LinkedList<JSONArray>();
-    List<Serializable[]> list = (List<Serializable[]>) finalResults;
-    if (selectionColumns.size() == 1 && selectionColumns.get(0).equals("*")) {
-      selectionColumns = getSelectionColumns(selectionColumns, dataSchema);
-    }
-    for (int i = 0; i < list.size(); i++) {
-      rowEventsJSonList.add(getJSonArrayFromRow(list.get(i), selectionColumns, dataSchema));
-    }
-    final JSONObject resultJsonObject = new JSONObject();
-    resultJsonObject.put("results", new JSONArray(rowEventsJSonList));
-    resultJsonObject.put("columns", getSelectionColumnsFromDataSchema(selectionColumns, dataSchema));
-    return resultJsonObject;
+    return renderJsonResults(finalResults, selectionColumns, dataSchema).toJson();
   }
 
-  private static JSONArray getSelectionColumnsFromDataSchema(List<String> selectionColumns, DataSchema dataSchema) {
-    final JSONArray jsonArray = new JSONArray();
-    for (int idx = 0; idx < dataSchema.size(); ++idx) {
-      if (selectionColumns.contains(dataSchema.getColumnName(idx))) {
-        jsonArray.put(dataSchema.getColumnName(idx));
-      }
+  /**
+   * Same as {@link #render(Collection, List, DataSchema)}, but the rows are written straight to the broker response
+   * instead of being converted to a JSONObject.
+   */
+  public static SelectionJsonResults renderJsonResults(Collection<Serializable[]> finalResults,
+      List<String> selectionColumns, DataSchema dataSchema) {
+    if (selectionColumns.size() == 1 && selectionColumns.get(0).equals("*")) {
+      selectionColumns = getSelectionColumns(selectionColumns, dataSchema);
     }
-    return jsonArray;
+    return new SelectionJsonResults((List<Serializable[]>) finalResults, selectionColumns, dataSchema);
   }
 
   public static DataSchema extractDataSchema(String[] selectionColumns, IndexSegment indexSegment) {
@@ -408,64 +401,6 @@ public class SelectionOperatorUtils {
     return row;
   }
 
-  public static JSONArray getJSonArrayFromRow(Serializable[] poll, List<String> selectionColumns, DataSchema dataSchema) throws JSONException {
-
-    final JSONArray jsonArray = new JSONArray();
-    for (int i = 0; i < dataSchema.size(); ++i) {
-      if (selectionColumns.contains(dataSchema.getColumnName(i))) {
-        if (dataSchema.getColumnType(i).isSingleValue()) {
-          if (dataSchema.getColumnType(i) == DataType.STRING) {
-            jsonArray.put(poll[i]);
-          } else {
-            jsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(poll[i]));
-          }
-        } else {
-          // Multi-value;
-
-          JSONArray stringJsonArray = new JSONArray();
-          //          stringJsonArray.put(poll[i]);
-          switch (dataSchema.getColumnType(i)) {
-            case STRING_ARRAY:
-              String[] stringValues = (String[]) poll[i];
-              for (String s : stringValues) {
-                stringJsonArray.put(s);
-              }
-              break;
-            case INT_ARRAY:
-              int[] intValues = (int[]) poll[i];
-              for (int s : intValues) {
-                stringJsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(s));
-              }
-              break;
-            case FLOAT_ARRAY:
-              float[] floatValues = (float[]) poll[i];
-              for (float s : floatValues) {
-                stringJsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(s));
-              }
-              break;
-            case LONG_ARRAY:
-              long[] longValues = (long[]) poll[i];
-              for (long s : longValues) {
-                stringJsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(s));
-              }
-              break;
-            case DOUBLE_ARRAY:
-              double[] doubleValues = (double[]) poll[i];
-              for (double s : doubleValues) {
-                stringJsonArray.put(DEFAULT_FORMAT_STRING_MAP.get(dataSchema.getColumnType(i)).format(s));
-              }
-              break;
-            default:
-              break;
-          }
-          jsonArray.put(stringJsonArray);
-
-        }
-      }
-    }
-    return jsonArray;
-  }
-
   public static Serializable[] extractRowFromDataTable(DataTable dt, int rowId) {
     final Serializable[] row = new Serializable[dt.getDataSchema().size()];
     for (int i = 0; i < dt.getDataSchema().size(); ++i) {
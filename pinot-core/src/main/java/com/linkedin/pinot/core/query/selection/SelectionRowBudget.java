@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.query.selection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Number of rows a selection only query needs from all the segments of an instance.
+ *
+ * The segment operators of the query share it: each one adds the rows it collects, and the ones that find it
+ * exhausted stop scanning or are not run at all, since the instance already has enough rows to answer the query.
+ */
+public class SelectionRowBudget {
+  private final int _limit;
+  private final AtomicInteger _numRows = new AtomicInteger(0);
+
+  public SelectionRowBudget(int limit) {
+    _limit = limit;
+  }
+
+  public int getLimit() {
+    return _limit;
+  }
+
+  /**
+   * Adds rows collected by a segment, they must be part of the rows merged for the instance.
+   */
+  public void addRows(int numRows) {
+    if (numRows > 0) {
+      _numRows.addAndGet(numRows);
+    }
+  }
+
+  public boolean isExhausted() {
+    return _numRows.get() >= _limit;
+  }
+}
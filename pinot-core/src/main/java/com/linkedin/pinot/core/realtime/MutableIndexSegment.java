@@ -45,4 +45,12 @@ public interface MutableIndexSegment extends IndexSegment {
    * @return
    */
   int getAggregateDocumentCount();
+
+  /**
+   * gives a read only view of the documents indexed so far,
+   * a query should run against a single view so that
+   * all its columns see the same documents
+   * @return
+   */
+  IndexSegment getSnapshot();
 }
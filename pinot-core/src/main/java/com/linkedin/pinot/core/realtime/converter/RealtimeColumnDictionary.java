@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.converter;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.index.reader.SingleColumnSingleValueReader;
+import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
+
+
+/**
+ * Sorted view over the dictionary of a realtime column, used when converting it to an offline segment.
+ *
+ * The values are sorted once in their natural order (the same order the pre index stats collectors use), and each
+ * realtime dictId is mapped to its rank in that order so that the documents can be compared without decoding them.
+ */
+class RealtimeColumnDictionary {
+  private final Object[] values;
+  private final Object sortedValues;
+  private final int[] ranks;
+  private final int[] dictIdsByRank;
+  private final int cardinality;
+  private final boolean hasNull;
+
+  RealtimeColumnDictionary(FieldSpec spec, MutableDictionaryReader dictionary) {
+    final int length = dictionary.length();
+    hasNull = dictionary.hasNull();
+    values = new Object[length];
+    ranks = new int[length];
+    dictIdsByRank = new int[length];
+
+    final Integer[] sortedDictIds = new Integer[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = toColumnType(spec, dictionary.get(i));
+      sortedDictIds[i] = i;
+    }
+    Arrays.sort(sortedDictIds, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer dictId1, Integer dictId2) {
+        return compareValues(values[dictId1], values[dictId2]);
+      }
+    });
+
+    // realtime dictionaries hold unique values, equal values would share a rank
+    int numRanks = 0;
+    for (int i = 0; i < length; i++) {
+      final int dictId = sortedDictIds[i];
+      if (numRanks == 0 || compareValues(values[dictId], values[dictIdsByRank[numRanks - 1]]) != 0) {
+        dictIdsByRank[numRanks++] = dictId;
+      }
+      ranks[dictId] = numRanks - 1;
+    }
+    cardinality = numRanks;
+
+    sortedValues = Array.newInstance(getComponentType(spec), cardinality);
+    for (int rank = 0; rank < cardinality; rank++) {
+      Array.set(sortedValues, rank, values[dictIdsByRank[rank]]);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int compareValues(Object value1, Object value2) {
+    return ((Comparable<Object>) value1).compareTo(value2);
+  }
+
+  private static Object toColumnType(FieldSpec spec, Object value) {
+    switch (spec.getDataType()) {
+      case INT:
+        return ((Number) value).intValue();
+      case LONG:
+        return ((Number) value).longValue();
+      case FLOAT:
+        return ((Number) value).floatValue();
+      case DOUBLE:
+        return ((Number) value).doubleValue();
+      case STRING:
+      case BOOLEAN:
+        return value.toString();
+      default:
+        throw new UnsupportedOperationException("Unsupported data type : " + spec.getDataType() + " for column : "
+            + spec.getName());
+    }
+  }
+
+  /**
+   * @return the type of the sorted values array, the dictionary creator expects primitive arrays for numbers
+   */
+  private static Class<?> getComponentType(FieldSpec spec) {
+    switch (spec.getDataType()) {
+      case INT:
+        return int.class;
+      case LONG:
+        return long.class;
+      case FLOAT:
+        return float.class;
+      case DOUBLE:
+        return double.class;
+      default:
+        return String.class;
+    }
+  }
+
+  /**
+   * @return the number of realtime dictIds
+   */
+  int length() {
+    return values.length;
+  }
+
+  /**
+   * @return the number of unique values, which is the number of ranks
+   */
+  int cardinality() {
+    return cardinality;
+  }
+
+  /**
+   * @return the value of the realtime dictId, converted to the data type of the column
+   */
+  Object getValue(int dictId) {
+    return values[dictId];
+  }
+
+  int getRank(int dictId) {
+    return ranks[dictId];
+  }
+
+  /**
+   * @return the sorted unique values as a primitive array (or String[]), as expected by the dictionary creator
+   */
+  Object getSortedValues() {
+    return sortedValues;
+  }
+
+  /**
+   * Sorts the documents of a single value column on their values with a counting sort over the ranks of their dictIds,
+   * in O(numDocs + cardinality) and without comparing any value. Documents with the same value keep their docId order.
+   *
+   * @param forwardIndex dictionary encoded forward index of the column
+   * @param numDocs number of documents to sort
+   * @return sortedDocIds[i] is the realtime docId of the i-th document in value order
+   */
+  int[] sortDocIds(SingleColumnSingleValueReader forwardIndex, int numDocs) {
+    // offsets[rank + 1] counts the documents of the rank, then becomes the position of the next document of the rank
+    final int[] offsets = new int[cardinality + 1];
+    for (int docId = 0; docId < numDocs; docId++) {
+      offsets[ranks[forwardIndex.getInt(docId)] + 1]++;
+    }
+    for (int rank = 0; rank < cardinality; rank++) {
+      offsets[rank + 1] += offsets[rank];
+    }
+    final int[] sortedDocIds = new int[numDocs];
+    for (int docId = 0; docId < numDocs; docId++) {
+      sortedDocIds[offsets[ranks[forwardIndex.getInt(docId)]]++] = docId;
+    }
+    return sortedDocIds;
+  }
+
+  /**
+   * @return true if null values were ingested in the column, they are stored as the default null value
+   */
+  boolean hasNull() {
+    return hasNull;
+  }
+
+  Object getMinValue() {
+    return cardinality == 0 ? null : values[dictIdsByRank[0]];
+  }
+
+  Object getMaxValue() {
+    return cardinality == 0 ? null : values[dictIdsByRank[cardinality - 1]];
+  }
+}
@@ -16,19 +16,38 @@
 package com.linkedin.pinot.core.realtime.converter;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.linkedin.pinot.common.config.IndexingConfig;
+import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.common.data.TimeFieldSpec;
 import com.linkedin.pinot.common.data.TimeGranularitySpec;
-import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.index.reader.SingleColumnMultiValueReader;
+import com.linkedin.pinot.core.index.reader.SingleColumnSingleValueReader;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentVersion;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndex;
+import com.linkedin.pinot.core.segment.creator.ColumnIndexCreationInfo;
+import com.linkedin.pinot.core.segment.creator.ForwardIndexType;
+import com.linkedin.pinot.core.segment.creator.InvertedIndexCreator;
+import com.linkedin.pinot.core.segment.creator.InvertedIndexType;
+import com.linkedin.pinot.core.segment.creator.impl.ColumnTaskRunner;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentColumnarIndexCreator;
 import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.creator.impl.inv.BitmapInvertedIndexCreator;
 
 
 public class RealtimeSegmentConverter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeSegmentConverter.class);
 
   private RealtimeSegmentImpl realtimeSegmentImpl;
   private String outputPath;
@@ -62,6 +81,7 @@ public class RealtimeSegmentConverter {
     }
 
     newSchema.addSchema(newTimeSpec.getName(), newTimeSpec);
+    newSchema.setStarTreeIndexSpec(schema.getStarTreeIndexSpec());
     this.dataSchema = newSchema;
     this.sortedColumn = sortedColumn;
   }
@@ -70,15 +90,16 @@ public class RealtimeSegmentConverter {
     this(realtimeSegment, outputPath, schema, tableName, segmentName, sortedColumn);
     this.indexingConfig = indexingConfig;
   }
+  /**
+   * Writes the offline segment directly from the dictionaries, forward indexes and inverted indexes of the realtime
+   * segment: each realtime dictionary is sorted once into the offline dictionary along with a dictId remap table, the
+   * forward indexes are written by remapping dictIds and the inverted indexes are taken from the realtime bitmaps.
+   * The documents are ordered on the sorted column with a counting sort over its dictIds, and the columns are
+   * processed in parallel.<br>
+   * Segments with a star tree go through {@link SegmentIndexCreationDriverImpl}, the star tree creator builds its
+   * own documents from the rows of the segment.
+   */
   public void build() throws Exception {
-    // lets create a record reader
-    RecordReader reader;
-
-    if (sortedColumn == null) {
-      reader = new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema);
-    } else {
-      reader = new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema, sortedColumn);
-    }
     SegmentGeneratorConfig genConfig = new SegmentGeneratorConfig(dataSchema);
     genConfig.setInputFilePath(null);
 
@@ -94,8 +115,171 @@ public class RealtimeSegmentConverter {
         genConfig.createInvertedIndexForColumn(column);
       }
     }
-    final SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
-    driver.init(genConfig, reader);
-    driver.build();
+
+    if (dataSchema.getStarTreeIndexSpec() != null) {
+      final SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+      if (sortedColumn == null) {
+        driver.init(genConfig, new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema));
+      } else {
+        driver.init(genConfig, new RealtimeSegmentRecordReader(realtimeSegmentImpl, dataSchema, sortedColumn));
+      }
+      driver.build();
+      return;
+    }
+
+    final long start = System.currentTimeMillis();
+    // rolled up events are already merged into their document
+    final int totalDocs = realtimeSegmentImpl.getAggregateDocumentCount();
+
+    final File indexDir = new File(outputPath);
+    if (!indexDir.exists()) {
+      indexDir.mkdirs();
+    }
+    final File tempIndexDir = new File(indexDir, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
+    final List<FieldSpec> fieldSpecs = new ArrayList<FieldSpec>(dataSchema.getAllFieldSpecs());
+    final ColumnTaskRunner columnTaskRunner = new ColumnTaskRunner(segmentName, genConfig.getNumColumnThreads());
+    try {
+      final SegmentColumnarIndexCreator indexCreator = new SegmentColumnarIndexCreator(columnTaskRunner);
+
+      // Sort every realtime dictionary once, the rank of a realtime dictId is its position in the sorted values
+      final Map<String, RealtimeColumnDictionary> columnDictionaryMap =
+          new ConcurrentHashMap<String, RealtimeColumnDictionary>();
+      columnTaskRunner.runForEachColumn(fieldSpecs, new ColumnTaskRunner.ColumnTask<FieldSpec>() {
+        @Override
+        public void run(FieldSpec spec) {
+          columnDictionaryMap.put(spec.getName(),
+              new RealtimeColumnDictionary(spec, realtimeSegmentImpl.getDictionaryFor(spec.getName())));
+        }
+      });
+
+      // docIdMap[offlineDocId] is the realtime docId, null when the document order is kept as is
+      int[] sortedDocIdMap = null;
+      if (sortedColumn != null) {
+        if (dataSchema.getFieldSpecFor(sortedColumn).isSingleValueField()) {
+          sortedDocIdMap = columnDictionaryMap.get(sortedColumn).sortDocIds(
+              (SingleColumnSingleValueReader) realtimeSegmentImpl.getForwardIndexFor(sortedColumn), totalDocs);
+        } else {
+          LOGGER.warn("Sorted column {} of segment {} is multi value, keeping the ingestion order", sortedColumn,
+              segmentName);
+        }
+      }
+      final int[] docIdMap = sortedDocIdMap;
+
+      final Map<String, ColumnIndexCreationInfo> indexCreationInfoMap =
+          new ConcurrentHashMap<String, ColumnIndexCreationInfo>();
+      columnTaskRunner.runForEachColumn(fieldSpecs, new ColumnTaskRunner.ColumnTask<FieldSpec>() {
+        @Override
+        public void run(FieldSpec spec) {
+          indexCreationInfoMap.put(spec.getName(),
+              buildIndexCreationInfo(spec, columnDictionaryMap.get(spec.getName()), docIdMap, totalDocs));
+        }
+      });
+
+      // Building the dictionaries is done by the index creator, we only feed it the dictionary encoded values.
+      // The creators of different columns don't share any state, so the columns are written in parallel.
+      indexCreator.init(genConfig, indexCreationInfoMap, dataSchema, totalDocs, tempIndexDir);
+      columnTaskRunner.runForEachColumn(fieldSpecs, new ColumnTaskRunner.ColumnTask<FieldSpec>() {
+        @Override
+        public void run(FieldSpec spec) {
+          writeColumn(indexCreator, spec, columnDictionaryMap.get(spec.getName()), docIdMap, totalDocs);
+        }
+      });
+      indexCreator.setSegmentName(segmentName);
+      indexCreator.seal();
+    } finally {
+      columnTaskRunner.close();
+    }
+    SegmentIndexCreationDriverImpl.commitSegment(genConfig, tempIndexDir, segmentName);
+
+    LOGGER.info("Converted realtime segment {} with {} documents in {} ms", segmentName, totalDocs,
+        (System.currentTimeMillis() - start));
+  }
+
+  private ColumnIndexCreationInfo buildIndexCreationInfo(FieldSpec spec, RealtimeColumnDictionary dictionary,
+      int[] docIdMap, int totalDocs) {
+    final String column = spec.getName();
+    boolean isSorted = spec.isSingleValueField();
+    int totalNumberOfEntries = 0;
+    int maxNumberOfMultiValues = 0;
+
+    if (spec.isSingleValueField()) {
+      final SingleColumnSingleValueReader reader =
+          (SingleColumnSingleValueReader) realtimeSegmentImpl.getForwardIndexFor(column);
+      int previousRank = -1;
+      for (int docId = 0; docId < totalDocs && isSorted; docId++) {
+        int rank = dictionary.getRank(reader.getInt(docIdMap == null ? docId : docIdMap[docId]));
+        if (rank < previousRank) {
+          isSorted = false;
+        }
+        previousRank = rank;
+      }
+    } else {
+      final SingleColumnMultiValueReader reader =
+          (SingleColumnMultiValueReader) realtimeSegmentImpl.getForwardIndexFor(column);
+      final int[] dictIds = new int[realtimeSegmentImpl.getMaxNumberOfMultiValues(column)];
+      for (int docId = 0; docId < totalDocs; docId++) {
+        int length = reader.getIntArray(docId, dictIds);
+        totalNumberOfEntries += length;
+        maxNumberOfMultiValues = Math.max(maxNumberOfMultiValues, length);
+      }
+    }
+
+    return new ColumnIndexCreationInfo(true, dictionary.getMinValue(), dictionary.getMaxValue(),
+        dictionary.getSortedValues(), ForwardIndexType.FIXED_BIT_COMPRESSED, InvertedIndexType.P4_DELTA, isSorted,
+        dictionary.hasNull(), totalNumberOfEntries, maxNumberOfMultiValues);
+  }
+
+  private void writeColumn(SegmentColumnarIndexCreator indexCreator, FieldSpec spec,
+      RealtimeColumnDictionary dictionary, int[] docIdMap, int totalDocs) {
+    final String column = spec.getName();
+
+    // remap[realtimeDictId] is the dictId in the offline dictionary
+    final int[] remap = new int[dictionary.length()];
+    for (int dictId = 0; dictId < remap.length; dictId++) {
+      remap[dictId] = indexCreator.indexOfSV(column, dictionary.getValue(dictId));
+    }
+
+    // Without reordering the realtime bitmaps are the inverted index, otherwise it is built along the forward index
+    final InvertedIndexCreator invertedIndexCreator = indexCreator.getInvertedIndexCreatorFor(column);
+    final boolean copyBitmaps = invertedIndexCreator instanceof BitmapInvertedIndexCreator && docIdMap == null
+        && realtimeSegmentImpl.getInvertedIndexFor(column) != null;
+    final InvertedIndexCreator perDocInvertedIndexCreator = copyBitmaps ? null : invertedIndexCreator;
+
+    if (spec.isSingleValueField()) {
+      final SingleColumnSingleValueReader reader =
+          (SingleColumnSingleValueReader) realtimeSegmentImpl.getForwardIndexFor(column);
+      for (int docId = 0; docId < totalDocs; docId++) {
+        int dictId = remap[reader.getInt(docIdMap == null ? docId : docIdMap[docId])];
+        indexCreator.indexSVDictionaryId(column, docId, dictId);
+        if (perDocInvertedIndexCreator != null) {
+          perDocInvertedIndexCreator.add(docId, dictId);
+        }
+      }
+    } else {
+      final SingleColumnMultiValueReader reader =
+          (SingleColumnMultiValueReader) realtimeSegmentImpl.getForwardIndexFor(column);
+      final int[] dictIds = new int[realtimeSegmentImpl.getMaxNumberOfMultiValues(column)];
+      for (int docId = 0; docId < totalDocs; docId++) {
+        int length = reader.getIntArray(docIdMap == null ? docId : docIdMap[docId], dictIds);
+        int[] offlineDictIds = new int[length];
+        for (int i = 0; i < length; i++) {
+          offlineDictIds[i] = remap[dictIds[i]];
+          if (perDocInvertedIndexCreator != null) {
+            perDocInvertedIndexCreator.add(docId, offlineDictIds[i]);
+          }
+        }
+        indexCreator.indexMVDictionaryIds(column, docId, offlineDictIds);
+      }
+    }
+
+    if (copyBitmaps) {
+      final RealtimeInvertedIndex invertedIndex = realtimeSegmentImpl.getInvertedIndexFor(column);
+      for (int dictId = 0; dictId < remap.length; dictId++) {
+        MutableRoaringBitmap docIds = invertedIndex.getDocIdSetFor(dictId);
+        if (docIds != null) {
+          ((BitmapInvertedIndexCreator) invertedIndexCreator).addDocIds(remap[dictId], docIds);
+        }
+      }
+    }
   }
 }
@@ -16,12 +16,12 @@
 package com.linkedin.pinot.core.realtime.converter;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.index.reader.SingleColumnSingleValueReader;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
 
 
@@ -31,20 +31,24 @@ public class RealtimeSegmentRecordReader implements RecordReader {
   private Schema dataSchema;
   private List<String> columns;
   int counter = 0;
-  private final Iterator<Integer> docIdIterator;
+  // sortedDocIds[counter] is the docId of the next row, null when the rows are read in docId order
+  private final int[] sortedDocIds;
 
   public RealtimeSegmentRecordReader(RealtimeSegmentImpl rtSegment, Schema schema) {
     this.realtimeSegment = rtSegment;
     this.dataSchema = schema;
     columns = new ArrayList<String>();
-    this.docIdIterator = null;
+    this.sortedDocIds = null;
   }
 
   public RealtimeSegmentRecordReader(RealtimeSegmentImpl rtSegment, Schema schema, String sortedColumn) {
     this.realtimeSegment = rtSegment;
     this.dataSchema = schema;
     columns = new ArrayList<String>();
-    this.docIdIterator = realtimeSegment.getSortedDocIdIteratorOnColumn(sortedColumn);
+    this.sortedDocIds = new RealtimeColumnDictionary(schema.getFieldSpecFor(sortedColumn),
+        realtimeSegment.getDictionaryFor(sortedColumn)).sortDocIds(
+        (SingleColumnSingleValueReader) realtimeSegment.getForwardIndexFor(sortedColumn),
+        realtimeSegment.getAggregateDocumentCount());
   }
 
   @Override
@@ -61,10 +65,10 @@ public class RealtimeSegmentRecordReader implements RecordReader {
 
   @Override
   public boolean hasNext() {
-    if (docIdIterator == null) {
+    if (sortedDocIds == null) {
       return counter < realtimeSegment.getAggregateDocumentCount();
     }
-    return docIdIterator.hasNext();
+    return counter < sortedDocIds.length;
   }
 
   @Override
@@ -74,13 +78,12 @@ public class RealtimeSegmentRecordReader implements RecordReader {
 
   @Override
   public GenericRow next() {
-    if (docIdIterator == null) {
+    if (sortedDocIds == null) {
       GenericRow row = realtimeSegment.getRawValueRowAt(counter);
       counter++;
       return row;
     }
-    int docId = docIdIterator.next();
-    return realtimeSegment.getRawValueRowAt(docId);
+    return realtimeSegment.getRawValueRowAt(sortedDocIds[counter++]);
   }
 
   @Override
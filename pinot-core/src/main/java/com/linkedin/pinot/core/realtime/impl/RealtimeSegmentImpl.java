@@ -17,20 +17,15 @@ package com.linkedin.pinot.core.realtime.impl;
 
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
-import org.roaringbitmap.IntIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,8 +41,11 @@ import com.linkedin.pinot.core.common.Predicate;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.data.readers.RecordReader;
 import com.linkedin.pinot.core.index.reader.DataFileReader;
+import com.linkedin.pinot.core.index.reader.SingleColumnMultiValueReader;
+import com.linkedin.pinot.core.index.reader.SingleColumnSingleValueReader;
+import com.linkedin.pinot.core.index.readerwriter.SingleColumnSingleValueReaderWriter;
+import com.linkedin.pinot.core.index.readerwriter.impl.FixedByteChunkSingleColumnSingleValueReaderWriter;
 import com.linkedin.pinot.core.index.readerwriter.impl.FixedByteSingleColumnMultiValueReaderWriter;
-import com.linkedin.pinot.core.index.readerwriter.impl.FixedByteSingleColumnSingleValueReaderWriter;
 import com.linkedin.pinot.core.indexsegment.IndexType;
 import com.linkedin.pinot.core.realtime.RealtimeSegment;
 import com.linkedin.pinot.core.realtime.impl.datasource.RealtimeColumnDataSource;
@@ -57,12 +55,15 @@ import com.linkedin.pinot.core.realtime.impl.invertedIndex.DimensionInvertertedI
 import com.linkedin.pinot.core.realtime.impl.invertedIndex.MetricInvertedIndex;
 import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndex;
 import com.linkedin.pinot.core.realtime.impl.invertedIndex.TimeInvertedIndex;
+import com.linkedin.pinot.core.realtime.impl.rollup.RollupHashTable;
+import com.linkedin.pinot.core.realtime.impl.rollup.RollupMetricValues;
 import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 
 
 public class RealtimeSegmentImpl implements RealtimeSegment {
   private static final Logger LOGGER = LoggerFactory.getLogger(RealtimeSegmentImpl.class);
+  public static final long DEFAULT_ROLLUP_PUBLISH_INTERVAL_MS = 1000L;
 
   private SegmentMetadataImpl _segmentMetadata;
   private final Schema dataSchema;
@@ -79,9 +80,14 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
   private Map<String, Integer> maxNumberOfMultivaluesMap;
 
-  private int docIdSearchableOffset = -1;
+  // last docId whose forward index, inverted index and dictionary entries are all written, queries capture it once
+  // and never read past it. Volatile so that publishing it makes all the writes of the row visible to them.
+  // In rollup mode the documents above it are pending and their metrics can still change.
+  private volatile int docIdSearchableOffset = -1;
   private int numDocsIndexed = 0;
   private int numSuccessIndexed = 0;
+  // read by the segment status timer, events are counted even when they are rolled up into an existing doc
+  private volatile int numRawEventsIndexed = 0;
 
   // to compute the rolling interval
   private long minTimeVal = Long.MAX_VALUE;
@@ -91,7 +97,36 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
   private final Map<String, DataFileReader> columnIndexReaderWriterMap;
 
+  // rollup mode: docId of the row of each distinct dimension and time dicIds, null when events are stored as they come
+  private final RollupHashTable rollupHashTable;
+  // rollup mode: metric sums of the documents that are not published yet
+  private final Map<String, RollupMetricValues> rollupMetricValuesMap;
+  // rollup mode: held while a row is indexed and while pending documents are published, never taken by queries
+  private final Object rollupLock = new Object();
+  private final long rollupPublishIntervalMs;
+  private long lastPublishTimeMs = System.currentTimeMillis();
+
   public RealtimeSegmentImpl(Schema schema, int capacity) throws IOException {
+    this(schema, capacity, false);
+  }
+
+  public RealtimeSegmentImpl(Schema schema, int capacity, boolean rollup) throws IOException {
+    this(schema, capacity, rollup, DEFAULT_ROLLUP_PUBLISH_INTERVAL_MS);
+  }
+
+  /**
+   *
+   * @param schema
+   * @param capacity maximum number of documents of the segment
+   * @param rollup if true, the metrics of the events having the same dimension and time values as a document that is
+   *          not published yet are summed into this document instead of being indexed as a new document. Only
+   *          supported when all the dimensions are single value.
+   * @param rollupPublishIntervalMs in rollup mode, maximum time the indexed rows wait before being published.
+   *          Published documents are never modified, a longer interval rolls up more events per document.
+   * @throws IOException
+   */
+  public RealtimeSegmentImpl(Schema schema, int capacity, boolean rollup, long rollupPublishIntervalMs)
+      throws IOException {
     // initial variable setup
     dataSchema = schema;
     dictionaryMap = new HashMap<String, MutableDictionaryReader>();
@@ -99,10 +134,21 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     incomingTimeColumnName = dataSchema.getTimeFieldSpec().getIncomingTimeColumnName();
     outgoingTimeColumnName = dataSchema.getTimeFieldSpec().getOutGoingTimeColumnName();
     this.capacity = capacity;
+    this.rollupPublishIntervalMs = rollupPublishIntervalMs;
 
     for (FieldSpec col : dataSchema.getAllFieldSpecs()) {
       maxNumberOfMultivaluesMap.put(col.getName(), 0);
     }
+    if (rollup) {
+      for (String dimension : dataSchema.getDimensionNames()) {
+        if (!dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
+          LOGGER.warn("Cannot roll up events with multi value dimension {}, indexing every event as a document",
+              dimension);
+          rollup = false;
+          break;
+        }
+      }
+    }
     // dictionary assignment for dimensions and time column
     for (String column : dataSchema.getDimensionNames()) {
       dictionaryMap.put(column, RealtimeDictionaryProvider.getDictionaryFor(dataSchema.getFieldSpecFor(column)));
@@ -126,7 +172,7 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     for (String dimension : schema.getDimensionNames()) {
       invertedIndexMap.put(dimension, new DimensionInvertertedIndex(dimension));
       if (schema.getFieldSpecFor(dimension).isSingleValueField()) {
-        columnIndexReaderWriterMap.put(dimension, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
+        columnIndexReaderWriterMap.put(dimension, new FixedByteChunkSingleColumnSingleValueReaderWriter(
             V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
       } else {
         columnIndexReaderWriterMap.put(dimension, new FixedByteSingleColumnMultiValueReaderWriter(capacity,
@@ -136,16 +182,50 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
     for (String metric : schema.getMetricNames()) {
       invertedIndexMap.put(metric, new MetricInvertedIndex(metric));
-      columnIndexReaderWriterMap.put(metric, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
+      columnIndexReaderWriterMap.put(metric, new FixedByteChunkSingleColumnSingleValueReaderWriter(
           V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
     }
 
     invertedIndexMap.put(outgoingTimeColumnName, new TimeInvertedIndex(outgoingTimeColumnName));
-    columnIndexReaderWriterMap.put(outgoingTimeColumnName, new FixedByteSingleColumnSingleValueReaderWriter(capacity,
+    columnIndexReaderWriterMap.put(outgoingTimeColumnName, new FixedByteChunkSingleColumnSingleValueReaderWriter(
         V1Constants.Dict.INT_DICTIONARY_COL_SIZE));
 
+    if (rollup) {
+      rollupHashTable = new RollupHashTable(new RollupHashTable.KeyMatcher() {
+        @Override
+        public boolean matches(int docId, int[] key) {
+          return rollupKeyMatches(docId, key);
+        }
+      });
+      rollupMetricValuesMap = new HashMap<String, RollupMetricValues>();
+      for (String metric : schema.getMetricNames()) {
+        rollupMetricValuesMap.put(metric, new RollupMetricValues(schema.getFieldSpecFor(metric)));
+      }
+    } else {
+      rollupHashTable = null;
+      rollupMetricValuesMap = null;
+    }
+  }
+
+  public boolean isRollup() {
+    return rollupHashTable != null;
+  }
+
+  private boolean rollupKeyMatches(int docId, int[] key) {
+    final List<String> dimensionNames = dataSchema.getDimensionNames();
+    for (int d = 0; d < dimensionNames.size(); d++) {
+      SingleColumnSingleValueReaderWriter readerWriter =
+          (SingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(dimensionNames.get(d));
+      if (readerWriter.getInt(docId) != key[d]) {
+        return false;
+      }
+    }
+    SingleColumnSingleValueReaderWriter timeReaderWriter =
+        (SingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName);
+    return timeReaderWriter.getInt(docId) == key[dimensionNames.size()];
   }
 
+
   @Override
   public Interval getTimeInterval() {
     DateTime start = timeConverter.getDataTimeFrom(minTimeVal);
@@ -163,6 +243,56 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
   @Override
   public boolean index(GenericRow row) {
+    if (rollupHashTable == null) {
+      return indexRow(row);
+    }
+    synchronized (rollupLock) {
+      final boolean canTakeMoreRows = indexRow(row);
+      if (System.currentTimeMillis() - lastPublishTimeMs >= rollupPublishIntervalMs) {
+        publishPendingDocs();
+      }
+      return canTakeMoreRows;
+    }
+  }
+
+  /**
+   * Makes the documents indexed so far visible to queries.<br>
+   * Rows are published as soon as they are indexed, unless events are rolled up: documents then stay pending, so that
+   * the events with the same dimensions can still be summed into them, until the rollup publish interval has elapsed
+   * or this method is called. It can be called by any thread, e.g. a timer when the stream has no new events, and has
+   * to be called once the indexing stops.
+   */
+  public void publish() {
+    if (rollupHashTable != null) {
+      synchronized (rollupLock) {
+        publishPendingDocs();
+      }
+    }
+  }
+
+  /**
+   * Adds the final metric values of the pending documents to the dictionaries, forward and inverted indexes of the
+   * metrics, then publishes them. Must be called with the rollup lock held.
+   */
+  private void publishPendingDocs() {
+    final List<String> metricNames = dataSchema.getMetricNames();
+    final int lastDocId = docIdGenerator.get();
+    for (int docId = docIdSearchableOffset + 1; docId <= lastDocId; docId++) {
+      for (String metric : metricNames) {
+        final Object value = rollupMetricValuesMap.get(metric).get(docId);
+        final MutableDictionaryReader dictionary = dictionaryMap.get(metric);
+        dictionary.index(value);
+        final int dicId = dictionary.indexOf(value);
+        ((SingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).setInt(docId, dicId);
+        invertedIndexMap.get(metric).add(dicId, docId);
+      }
+    }
+    lastPublishTimeMs = System.currentTimeMillis();
+    // must stay the last write, the pending documents are never modified once published
+    docIdSearchableOffset = lastDocId;
+  }
+
+  private boolean indexRow(GenericRow row) {
     if (numDocsIndexed >= capacity) {
       return false;
     }
@@ -179,8 +309,10 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
       }
     }
 
-    for (String metric : dataSchema.getMetricNames()) {
-      dictionaryMap.get(metric).index(row.getValue(metric));
+    if (rollupHashTable == null) {
+      for (String metric : dataSchema.getMetricNames()) {
+        dictionaryMap.get(metric).index(row.getValue(metric));
+      }
     }
 
     // convert time granularity and add the time value to dictionary
@@ -199,17 +331,44 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     minTimeVal = Math.min(minTimeVal, timeValue);
     maxTimeVal = Math.max(maxTimeVal, timeValue);
 
-    // also lets collect all dicIds to update inverted index later
-    Map<String, Object> rawRowToDicIdMap = new HashMap<String, Object>();
+    final List<String> dimensionNames = dataSchema.getDimensionNames();
+    final List<String> metricNames = dataSchema.getMetricNames();
+
+    int[] rollupKey = null;
+    int rollupDocId = -1;
+    if (rollupHashTable != null) {
+      rollupKey = new int[dimensionNames.size() + 1];
+      for (int d = 0; d < dimensionNames.size(); d++) {
+        rollupKey[d] = dictionaryMap.get(dimensionNames.get(d)).indexOf(row.getValue(dimensionNames.get(d)));
+      }
+      rollupKey[dimensionNames.size()] = dictionaryMap.get(outgoingTimeColumnName).indexOf(timeValueObj);
+
+      rollupDocId = rollupHashTable.get(rollupKey);
+      // published documents are never modified, the event then starts a new document for its key
+      if (rollupDocId > docIdSearchableOffset) {
+        for (String metric : metricNames) {
+          rollupMetricValuesMap.get(metric).add(rollupDocId, row.getValue(metric));
+        }
+        numRawEventsIndexed += 1;
+        numSuccessIndexed += 1;
+        return (numDocsIndexed < capacity);
+      }
+    }
 
     // lets update forward index now
     int docId = docIdGenerator.incrementAndGet();
 
-    for (String dimension : dataSchema.getDimensionNames()) {
+    // collect the dicIds in primitive arrays to update the inverted index later
+    final int[] dimensionDicIds = new int[dimensionNames.size()];
+    final int[][] multiValueDimensionDicIds = new int[dimensionNames.size()][];
+    final int[] metricDicIds = new int[metricNames.size()];
+
+    for (int d = 0; d < dimensionNames.size(); d++) {
+      String dimension = dimensionNames.get(d);
       if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
         int dicId = dictionaryMap.get(dimension).indexOf(row.getValue(dimension));
-        ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setInt(docId, dicId);
-        rawRowToDicIdMap.put(dimension, dicId);
+        ((SingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setInt(docId, dicId);
+        dimensionDicIds[d] = dicId;
       } else {
         Object[] mValues = (Object[]) row.getValue(dimension);
         int[] dicIds = new int[mValues.length];
@@ -218,47 +377,60 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
         }
         ((FixedByteSingleColumnMultiValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).setIntArray(docId,
             dicIds);
-        rawRowToDicIdMap.put(dimension, dicIds);
+        multiValueDimensionDicIds[d] = dicIds;
       }
     }
 
-    for (String metric : dataSchema.getMetricNames()) {
-      FixedByteSingleColumnSingleValueReaderWriter readerWriter =
-          (FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric);
-      int dicId = dictionaryMap.get(metric).indexOf(row.getValue(metric));
-      readerWriter.setInt(docId, dicId);
-      rawRowToDicIdMap.put(metric, dicId);
+    for (int m = 0; m < metricNames.size(); m++) {
+      String metric = metricNames.get(m);
+      if (rollupHashTable != null) {
+        // the metrics of a rolled up doc are indexed when it is published
+        rollupMetricValuesMap.get(metric).set(docId, row.getValue(metric));
+      } else {
+        int dicId = dictionaryMap.get(metric).indexOf(row.getValue(metric));
+        ((SingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).setInt(docId, dicId);
+        metricDicIds[m] = dicId;
+      }
     }
 
     int timeDicId = dictionaryMap.get(outgoingTimeColumnName).indexOf(timeValueObj);
 
-    ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName)).setInt(
+    ((SingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName)).setInt(
         docId, timeDicId);
-    rawRowToDicIdMap.put(outgoingTimeColumnName, timeDicId);
 
     // lets update the inverted index now
     // metrics
-    for (String metric : dataSchema.getMetricNames()) {
-      invertedIndexMap.get(metric).add(rawRowToDicIdMap.get(metric), docId);
+    if (rollupHashTable == null) {
+      for (int m = 0; m < metricNames.size(); m++) {
+        invertedIndexMap.get(metricNames.get(m)).add(metricDicIds[m], docId);
+      }
     }
 
     //dimension
-    for (String dimension : dataSchema.getDimensionNames()) {
-      if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
-        invertedIndexMap.get(dimension).add(rawRowToDicIdMap.get(dimension), docId);
+    for (int d = 0; d < dimensionNames.size(); d++) {
+      RealtimeInvertedIndex invertedIndex = invertedIndexMap.get(dimensionNames.get(d));
+      if (multiValueDimensionDicIds[d] == null) {
+        invertedIndex.add(dimensionDicIds[d], docId);
       } else {
-        int[] dicIds = (int[]) rawRowToDicIdMap.get(dimension);
-        for (int dicId : dicIds) {
-          invertedIndexMap.get(dimension).add(dicId, docId);
+        for (int dicId : multiValueDimensionDicIds[d]) {
+          invertedIndex.add(dicId, docId);
         }
       }
     }
     //time
-    invertedIndexMap.get(outgoingTimeColumnName).add(rawRowToDicIdMap.get(outgoingTimeColumnName), docId);
+    invertedIndexMap.get(outgoingTimeColumnName).add(timeDicId, docId);
 
-    docIdSearchableOffset = docId;
+    if (rollupHashTable == null) {
+      // publish the row, must stay the last write of the row
+      docIdSearchableOffset = docId;
+    } else if (rollupDocId == -1) {
+      rollupHashTable.put(rollupKey, docId);
+    } else {
+      rollupHashTable.replace(rollupKey, docId);
+    }
     numDocsIndexed += 1;
     numSuccessIndexed += 1;
+    numRawEventsIndexed += 1;
     return (numDocsIndexed < capacity);
   }
 
@@ -288,15 +460,23 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
 
   @Override
   public DataSource getDataSource(String columnName) {
+    return getDataSource(columnName, docIdSearchableOffset);
+  }
+
+  /**
+   * @param searchableOffset last published docId the data source is bounded by, read before any of the structures
+   * so that everything read afterwards is at least as recent as the offset
+   */
+  DataSource getDataSource(String columnName, int searchableOffset) {
     FieldSpec fieldSpec = dataSchema.getFieldSpecFor(columnName);
 
     if (fieldSpec.getFieldType() == FieldType.METRIC) {
       return new RealtimeColumnDataSource(fieldSpec, columnIndexReaderWriterMap.get(columnName),
-          invertedIndexMap.get(columnName), docIdSearchableOffset, -1, dataSchema, dictionaryMap.get(columnName));
+          invertedIndexMap.get(columnName), searchableOffset, -1, dataSchema, dictionaryMap.get(columnName));
     }
 
     return new RealtimeColumnDataSource(fieldSpec, columnIndexReaderWriterMap.get(columnName),
-        invertedIndexMap.get(columnName), docIdSearchableOffset, maxNumberOfMultivaluesMap.get(columnName), dataSchema,
+        invertedIndexMap.get(columnName), searchableOffset, maxNumberOfMultivaluesMap.get(columnName), dataSchema,
         dictionaryMap.get(columnName));
   }
 
@@ -326,9 +506,12 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     return docIdGenerator.get() + 1;
   }
 
+  /**
+   * @return the number of events indexed, larger than the number of documents when events are rolled up
+   */
   @Override
   public int getRawDocumentCount() {
-    return docIdGenerator.get() + 1;
+    return numRawEventsIndexed;
   }
 
   public int getSuccessIndexedCount() {
@@ -362,165 +545,14 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
       }
     }
     invertedIndexMap.clear();
-    _segmentMetadata.close();
-  }
-
-  private IntIterator[] getSortedBitmapIntIteratorsForStringColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
-    final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
-    final IntIterator[] intIterators = new IntIterator[dictionary.length()];
-
-    final List<String> rawValues = new ArrayList<String>();
-    for (int i = 0; i < dictionary.length(); i++) {
-      rawValues.add((String) dictionary.get(i));
-    }
-
-    long start = System.currentTimeMillis();
-    Collections.sort(rawValues);
-
-    LOGGER.info("dictionary len : {}, time to sort : {} ", dictionary.length(), (System.currentTimeMillis() - start));
-
-    for (int i = 0; i < rawValues.size(); i++) {
-      intIterators[i] = index.getDocIdSetFor(dictionary.indexOf(rawValues.get(i))).getIntIterator();
-    }
-    return intIterators;
-  }
-
-  private IntIterator[] getSortedBitmapIntIteratorsForIntegerColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
-    final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
-    final IntIterator[] intIterators = new IntIterator[dictionary.length()];
-
-    int[] rawValuesArr = new int[dictionary.length()];
-
-    for (int i = 0; i < dictionary.length(); i++) {
-      rawValuesArr[i] = (Integer) dictionary.get(i);
-    }
-
-    Arrays.sort(rawValuesArr);
-
-    long start = System.currentTimeMillis();
-
-    LOGGER.info("dictionary len : {}, time to sort : {} ", dictionary.length(), (System.currentTimeMillis() - start));
-
-    for (int i = 0; i < rawValuesArr.length; i++) {
-      intIterators[i] = index.getDocIdSetFor(dictionary.indexOf(rawValuesArr[i])).getIntIterator();
-    }
-    return intIterators;
-  }
-
-  private IntIterator[] getSortedBitmapIntIteratorsForLongColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
-    final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
-    final IntIterator[] intIterators = new IntIterator[dictionary.length()];
-
-    final List<Long> rawValues = new ArrayList<Long>();
-    for (int i = 0; i < dictionary.length(); i++) {
-      rawValues.add((Long) dictionary.get(i));
-    }
-
-    long start = System.currentTimeMillis();
-    Collections.sort(rawValues);
-
-    LOGGER.info("dictionary len : {}, time to sort : {} ", dictionary.length(), (System.currentTimeMillis() - start));
-
-    for (int i = 0; i < rawValues.size(); i++) {
-      intIterators[i] = index.getDocIdSetFor(dictionary.indexOf(rawValues.get(i))).getIntIterator();
-    }
-    return intIterators;
-  }
-
-  private IntIterator[] getSortedBitmapIntIteratorsForFloatColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
-    final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
-    final IntIterator[] intIterators = new IntIterator[dictionary.length()];
-
-    final List<Float> rawValues = new ArrayList<Float>();
-    for (int i = 0; i < dictionary.length(); i++) {
-      rawValues.add((Float) dictionary.get(i));
-    }
-
-    long start = System.currentTimeMillis();
-    Collections.sort(rawValues);
-
-    LOGGER.info("dictionary len : {}, time to sort : {} ", dictionary.length(), (System.currentTimeMillis() - start));
-
-    for (int i = 0; i < rawValues.size(); i++) {
-      intIterators[i] = index.getDocIdSetFor(dictionary.indexOf(rawValues.get(i))).getIntIterator();
-    }
-    return intIterators;
-  }
-
-  private IntIterator[] getSortedBitmapIntIteratorsForDoubleColumn(final String columnToSortOn) {
-    final RealtimeInvertedIndex index = invertedIndexMap.get(columnToSortOn);
-    final MutableDictionaryReader dictionary = dictionaryMap.get(columnToSortOn);
-    final IntIterator[] intIterators = new IntIterator[dictionary.length()];
-
-    final List<Double> rawValues = new ArrayList<Double>();
-    for (int i = 0; i < dictionary.length(); i++) {
-      rawValues.add((Double) dictionary.get(i));
-    }
 
-    long start = System.currentTimeMillis();
-    Collections.sort(rawValues);
-
-    LOGGER.info("dictionary len : {}, time to sort : {} ", dictionary.length(), (System.currentTimeMillis() - start));
-
-    for (int i = 0; i < rawValues.size(); i++) {
-      intIterators[i] = index.getDocIdSetFor(dictionary.indexOf(rawValues.get(i))).getIntIterator();
-    }
-    return intIterators;
-  }
-
-  public Iterator<Integer> getSortedDocIdIteratorOnColumn(final String columnToSortOn) {
-    IntIterator[] iterators = null;
-
-    switch (dataSchema.getFieldSpecFor(columnToSortOn).getDataType()) {
-      case INT:
-        iterators = getSortedBitmapIntIteratorsForIntegerColumn(columnToSortOn);
-        break;
-      case LONG:
-        iterators = getSortedBitmapIntIteratorsForLongColumn(columnToSortOn);
-        break;
-      case FLOAT:
-        iterators = getSortedBitmapIntIteratorsForFloatColumn(columnToSortOn);
-        break;
-      case DOUBLE:
-        iterators = getSortedBitmapIntIteratorsForDoubleColumn(columnToSortOn);
-        break;
-      case STRING:
-      case BOOLEAN:
-        iterators = getSortedBitmapIntIteratorsForStringColumn(columnToSortOn);
-        break;
-      default:
-        iterators = null;
-        break;
-    }
-
-    final IntIterator[] intIterators = iterators;
-
-    return new Iterator<Integer>() {
-      int arrayIndex = 0;
-
-      @Override
-      public boolean hasNext() {
-        return intIterators[intIterators.length - 1].hasNext();
+    if (rollupHashTable != null) {
+      rollupHashTable.close();
+      for (RollupMetricValues rollupMetricValues : rollupMetricValuesMap.values()) {
+        rollupMetricValues.close();
       }
-
-      @Override
-      public Integer next() {
-        if (intIterators[arrayIndex].hasNext()) {
-          return intIterators[arrayIndex].next();
-        }
-        arrayIndex += 1;
-        return intIterators[arrayIndex].next();
-      }
-
-      @Override
-      public void remove() {
-        throw new UnsupportedOperationException("remove not supported");
-      }
-    };
+    }
+    _segmentMetadata.close();
   }
 
   @Override
@@ -531,7 +563,7 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     for (String dimension : dataSchema.getDimensionNames()) {
       if (dataSchema.getFieldSpecFor(dimension).isSingleValueField()) {
         int dicId =
-            ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).getInt(docId);
+            ((SingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(dimension)).getInt(docId);
         Object rawValue = dictionaryMap.get(dimension).get(dicId);
         rowValues.put(dimension, rawValue);
       } else {
@@ -548,32 +580,15 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     }
 
     for (String metric : dataSchema.getMetricNames()) {
-      switch (dataSchema.getFieldSpecFor(metric).getDataType()) {
-        case INT:
-          rowValues.put(metric,
-              ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getInt(docId));
-          break;
-        case FLOAT:
-          rowValues.put(metric,
-              ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getFloat(docId));
-          break;
-        case LONG:
-          rowValues.put(metric,
-              ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getLong(docId));
-          break;
-        case DOUBLE:
-          rowValues.put(metric,
-              ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getDouble(docId));
-          break;
-        default:
-          throw new UnsupportedOperationException("unsopported metric data type");
-      }
+      // the forward index of a metric holds its dicId, like the other columns
+      int dicId = ((SingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(metric)).getInt(docId);
+      rowValues.put(metric, dictionaryMap.get(metric).get(dicId));
     }
 
     rowValues.put(
         outgoingTimeColumnName,
         dictionaryMap.get(outgoingTimeColumnName).get(
-            ((FixedByteSingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName))
+            ((SingleColumnSingleValueReaderWriter) columnIndexReaderWriterMap.get(outgoingTimeColumnName))
                 .getInt(docId)));
 
     row.init(rowValues);
@@ -594,12 +609,41 @@ public class RealtimeSegmentImpl implements RealtimeSegment {
     return docIdSearchableOffset + 1;
   }
 
+  /**
+   * @return a view of the documents published so far, all the data sources of the view are bounded by the same
+   * offset so that the columns of a query see the same documents
+   */
+  @Override
+  public IndexSegment getSnapshot() {
+    return new RealtimeSegmentSnapshot(this, docIdSearchableOffset);
+  }
+
   public boolean hasDictionary(String columnName) {
     return dictionaryMap.containsKey(columnName);
   }
 
+  public MutableDictionaryReader getDictionaryFor(String columnName) {
+    return dictionaryMap.get(columnName);
+  }
+
+  /**
+   * @return the dictionary encoded forward index of the column, a {@link SingleColumnSingleValueReader} for single
+   * value columns and a {@link SingleColumnMultiValueReader} for multi value columns
+   */
+  public DataFileReader getForwardIndexFor(String columnName) {
+    return columnIndexReaderWriterMap.get(columnName);
+  }
+
+  public RealtimeInvertedIndex getInvertedIndexFor(String columnName) {
+    return invertedIndexMap.get(columnName);
+  }
+
+  public int getMaxNumberOfMultiValues(String columnName) {
+    return maxNumberOfMultivaluesMap.get(columnName);
+  }
+
   @Override
-  public StarTreeIndexNode getStarTreeRoot() {
+  public OffHeapStarTree getStarTree() {
     return null;
   }
 }
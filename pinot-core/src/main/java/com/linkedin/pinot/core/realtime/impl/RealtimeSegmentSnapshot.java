@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl;
+
+import com.linkedin.pinot.common.segment.SegmentMetadata;
+import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.IndexType;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
+
+
+/**
+ * Read only view of a realtime segment, bounded by the docIdSearchableOffset captured when a query started.
+ * Every data source of the view and its total number of docs use that offset, documents indexed afterwards are not
+ * visible to the query.
+ */
+public class RealtimeSegmentSnapshot implements IndexSegment {
+  private final RealtimeSegmentImpl segment;
+  private final int searchableOffset;
+
+  public RealtimeSegmentSnapshot(RealtimeSegmentImpl segment, int searchableOffset) {
+    this.segment = segment;
+    this.searchableOffset = searchableOffset;
+  }
+
+  public boolean hasDictionary(String columnName) {
+    return segment.hasDictionary(columnName);
+  }
+
+  @Override
+  public IndexType getIndexType() {
+    return segment.getIndexType();
+  }
+
+  @Override
+  public String getSegmentName() {
+    return segment.getSegmentName();
+  }
+
+  @Override
+  public String getAssociatedDirectory() {
+    return segment.getAssociatedDirectory();
+  }
+
+  @Override
+  public SegmentMetadata getSegmentMetadata() {
+    return segment.getSegmentMetadata();
+  }
+
+  @Override
+  public DataSource getDataSource(String columnName) {
+    return segment.getDataSource(columnName, searchableOffset);
+  }
+
+  @Override
+  public String[] getColumnNames() {
+    return segment.getColumnNames();
+  }
+
+  @Override
+  public void destroy() {
+    throw new UnsupportedOperationException("cannot destroy a snapshot, the realtime segment owns the indexes");
+  }
+
+  @Override
+  public int getTotalDocs() {
+    return searchableOffset + 1;
+  }
+
+  @Override
+  public OffHeapStarTree getStarTree() {
+    return segment.getStarTree();
+  }
+}
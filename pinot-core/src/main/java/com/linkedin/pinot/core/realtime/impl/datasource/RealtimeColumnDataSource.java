@@ -28,8 +28,8 @@ import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.common.DataSourceMetadata;
 import com.linkedin.pinot.core.common.Predicate;
 import com.linkedin.pinot.core.index.reader.DataFileReader;
+import com.linkedin.pinot.core.index.readerwriter.SingleColumnSingleValueReaderWriter;
 import com.linkedin.pinot.core.index.readerwriter.impl.FixedByteSingleColumnMultiValueReaderWriter;
-import com.linkedin.pinot.core.index.readerwriter.impl.FixedByteSingleColumnSingleValueReaderWriter;
 import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
 import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndex;
 import com.linkedin.pinot.core.segment.index.InvertedIndexReader;
@@ -75,7 +75,7 @@ public class RealtimeColumnDataSource extends DataSource {
       if (fieldSpec.isSingleValueField()) {
         Block SvBlock =
             new RealtimeSingleValueBlock(filteredDocIdBitmap, fieldSpec, dictionary, offset,
-                (FixedByteSingleColumnSingleValueReaderWriter) indexReader);
+                (SingleColumnSingleValueReaderWriter) indexReader);
         return SvBlock;
       } else {
         Block mvBlock =
@@ -183,6 +183,10 @@ public class RealtimeColumnDataSource extends DataSource {
     };
   }
 
+  /**
+   * @return the shared inverted index of the column, the blocks of this data source bound the iteration of its
+   * bitmaps by the searchable offset
+   */
   @Override
   public InvertedIndexReader getInvertedIndex() {
     return invertedIndex;
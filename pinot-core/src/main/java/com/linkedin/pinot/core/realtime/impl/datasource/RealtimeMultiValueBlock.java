@@ -88,7 +88,7 @@ public class RealtimeMultiValueBlock implements Block {
 
           @Override
           public boolean skipTo(int docId) {
-            if (docId > max) {
+            if (docId >= max) {
               return false;
             }
             counter = docId;
@@ -29,7 +29,7 @@ import com.linkedin.pinot.core.common.BlockValIterator;
 import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.common.Predicate;
-import com.linkedin.pinot.core.index.readerwriter.impl.FixedByteSingleColumnSingleValueReaderWriter;
+import com.linkedin.pinot.core.index.readerwriter.SingleColumnSingleValueReaderWriter;
 import com.linkedin.pinot.core.realtime.impl.dictionary.MutableDictionaryReader;
 import com.linkedin.pinot.core.segment.index.block.BlockUtils;
 
@@ -40,11 +40,11 @@ public class RealtimeSingleValueBlock implements Block {
   private final FieldSpec spec;
   private final MutableDictionaryReader dictionary;
   private final int docIdSearchableOffset;
-  private final FixedByteSingleColumnSingleValueReaderWriter reader;
+  private final SingleColumnSingleValueReaderWriter reader;
   private Predicate p;
 
   public RealtimeSingleValueBlock(MutableRoaringBitmap filteredBitmap, FieldSpec spec,
-      MutableDictionaryReader dictionary, int offset, FixedByteSingleColumnSingleValueReaderWriter indexReader) {
+      MutableDictionaryReader dictionary, int offset, SingleColumnSingleValueReaderWriter indexReader) {
     this.spec = spec;
     this.dictionary = dictionary;
     this.filteredBitmap = filteredBitmap;
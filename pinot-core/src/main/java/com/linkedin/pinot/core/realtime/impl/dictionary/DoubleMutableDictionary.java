@@ -36,13 +36,13 @@ public class DoubleMutableDictionary extends MutableDictionaryReader {
 
     if (rawValue instanceof String) {
       Double entry = new Double(Double.parseDouble(rawValue.toString()));
-      addToDictionaryBiMap(entry);
+      addToDictionary(entry);
       updateMinMax(entry);
       return;
     }
 
     if (rawValue instanceof Double) {
-      addToDictionaryBiMap(rawValue);
+      addToDictionary(rawValue);
       updateMinMax((Double) rawValue);
       return;
     }
@@ -50,13 +50,13 @@ public class DoubleMutableDictionary extends MutableDictionaryReader {
     if (rawValue instanceof Object[]) {
       for (Object o : (Object[]) rawValue) {
         if (o instanceof String) {
-          addToDictionaryBiMap(new Double(Double.parseDouble(o.toString())));
+          addToDictionary(new Double(Double.parseDouble(o.toString())));
           updateMinMax(new Double(Double.parseDouble(o.toString())));
           continue;
         }
 
         if (o instanceof Double) {
-          addToDictionaryBiMap(o);
+          addToDictionary(o);
           updateMinMax((Double) o);
           continue;
         }
@@ -79,37 +79,37 @@ public class DoubleMutableDictionary extends MutableDictionaryReader {
       return hasNull;
     }
     if (rawValue instanceof String) {
-      return dictionaryIdBiMap.inverse().containsKey(new Double(Double.parseDouble(rawValue.toString())));
+      return containsRawValue(new Double(Double.parseDouble(rawValue.toString())));
     }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue);
+    return containsRawValue(rawValue);
   }
 
   @Override
   public int indexOf(Object rawValue) {
     if (rawValue instanceof String) {
-      return getIndexOfFromBiMap(new Double(Double.parseDouble(rawValue.toString())));
+      return getDictionaryIdFor(new Double(Double.parseDouble(rawValue.toString())));
     }
-    return getIndexOfFromBiMap(rawValue);
+    return getDictionaryIdFor(rawValue);
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return getRawValue(dictionaryId);
   }
 
   @Override
   public long getLongValue(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).longValue();
+    return ((Double) getRawValue(dictionaryId)).longValue();
   }
 
   @Override
   public double getDoubleValue(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).doubleValue();
+    return ((Double) getRawValue(dictionaryId)).doubleValue();
   }
 
   @Override
   public String toString(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).toString();
+    return ((Double) getRawValue(dictionaryId)).toString();
   }
 
   @Override
@@ -148,11 +148,11 @@ public class DoubleMutableDictionary extends MutableDictionaryReader {
 
   @Override
   public String getStringValue(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).toString();
+    return ((Double) getRawValue(dictionaryId)).toString();
   }
 
   private double getDouble(int dictionaryId) {
-    return ((Double) dictionaryIdBiMap.get(new Integer(dictionaryId))).doubleValue();
+    return ((Double) getRawValue(dictionaryId)).doubleValue();
   }
 
   @Override
@@ -35,13 +35,13 @@ public class FloatMutableDictionary extends MutableDictionaryReader {
     }
     if (rawValue instanceof String) {
       Float e = new Float(Float.parseFloat(rawValue.toString()));
-      addToDictionaryBiMap(e);
+      addToDictionary(e);
       updateMinMax(e);
       return;
     }
 
     if (rawValue instanceof Float) {
-      addToDictionaryBiMap(rawValue);
+      addToDictionary(rawValue);
       updateMinMax((Float) rawValue);
       return;
     }
@@ -50,13 +50,13 @@ public class FloatMutableDictionary extends MutableDictionaryReader {
 
       for (Object o : (Object[]) rawValue) {
         if (o instanceof String) {
-          addToDictionaryBiMap(new Float(Float.parseFloat(o.toString())));
+          addToDictionary(new Float(Float.parseFloat(o.toString())));
           updateMinMax(new Float(Float.parseFloat(o.toString())));
           continue;
         }
 
         if (o instanceof Float) {
-          addToDictionaryBiMap(o);
+          addToDictionary(o);
           updateMinMax((Float) o);
           continue;
         }
@@ -79,37 +79,37 @@ public class FloatMutableDictionary extends MutableDictionaryReader {
       return hasNull;
     }
     if (rawValue instanceof String) {
-      return dictionaryIdBiMap.inverse().containsKey(new Float(Float.parseFloat(rawValue.toString())));
+      return containsRawValue(new Float(Float.parseFloat(rawValue.toString())));
     }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue);
+    return containsRawValue(rawValue);
   }
 
   @Override
   public int indexOf(Object rawValue) {
     if (rawValue instanceof String) {
-      return getIndexOfFromBiMap(new Float(Float.parseFloat(rawValue.toString())));
+      return getDictionaryIdFor(new Float(Float.parseFloat(rawValue.toString())));
     }
-    return getIndexOfFromBiMap(rawValue);
+    return getDictionaryIdFor(rawValue);
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return getRawValue(dictionaryId);
   }
 
   @Override
   public long getLongValue(int dictionaryId) {
-    return ((Float) getRawValueFromBiMap(dictionaryId)).longValue();
+    return ((Float) getRawValue(dictionaryId)).longValue();
   }
 
   @Override
   public double getDoubleValue(int dictionaryId) {
-    return ((Float) getRawValueFromBiMap(dictionaryId)).doubleValue();
+    return ((Float) getRawValue(dictionaryId)).doubleValue();
   }
 
   @Override
   public String toString(int dictionaryId) {
-    return ((Float) getRawValueFromBiMap(dictionaryId)).toString();
+    return ((Float) getRawValue(dictionaryId)).toString();
   }
 
   @Override
@@ -148,11 +148,11 @@ public class FloatMutableDictionary extends MutableDictionaryReader {
 
   @Override
   public String getStringValue(int dictionaryId) {
-    return ((Double) getRawValueFromBiMap(dictionaryId)).toString();
+    return ((Double) getRawValue(dictionaryId)).toString();
   }
 
   private float getFloat(int dictionaryId) {
-    return ((Float) dictionaryIdBiMap.get(new Integer(dictionaryId))).floatValue();
+    return ((Float) getRawValue(dictionaryId)).floatValue();
   }
 
   @Override
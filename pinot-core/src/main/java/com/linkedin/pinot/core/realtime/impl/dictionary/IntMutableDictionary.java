@@ -36,13 +36,13 @@ public class IntMutableDictionary extends MutableDictionaryReader {
 
     if (rawValue instanceof String) {
       Integer entry = new Integer(Integer.parseInt(rawValue.toString()));
-      addToDictionaryBiMap(entry);
+      addToDictionary(entry);
       updateMinMax(entry);
       return;
     }
 
     if (rawValue instanceof Integer) {
-      addToDictionaryBiMap(rawValue);
+      addToDictionary(rawValue);
       updateMinMax((Integer) rawValue);
       return;
     }
@@ -53,13 +53,13 @@ public class IntMutableDictionary extends MutableDictionaryReader {
       for (int i = 0; i < multivalues.length; i++) {
 
         if (multivalues[i] instanceof String) {
-          addToDictionaryBiMap(new Integer(Integer.parseInt(multivalues[i].toString())));
+          addToDictionary(new Integer(Integer.parseInt(multivalues[i].toString())));
           updateMinMax(Integer.parseInt(multivalues[i].toString()));
           continue;
         }
 
         if (multivalues[i] instanceof Integer) {
-          addToDictionaryBiMap(multivalues[i]);
+          addToDictionary(multivalues[i]);
           updateMinMax((Integer) multivalues[i]);
           continue;
         }
@@ -82,42 +82,42 @@ public class IntMutableDictionary extends MutableDictionaryReader {
       return hasNull;
     }
     if (rawValue instanceof String) {
-      return dictionaryIdBiMap.inverse().containsKey(new Integer(Integer.parseInt(rawValue.toString())));
+      return containsRawValue(new Integer(Integer.parseInt(rawValue.toString())));
     }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue);
+    return containsRawValue(rawValue);
   }
 
   @Override
   public int indexOf(Object rawValue) {
     if (rawValue instanceof String) {
-      return getIndexOfFromBiMap(new Integer(Integer.parseInt(rawValue.toString())));
+      return getDictionaryIdFor(new Integer(Integer.parseInt(rawValue.toString())));
     }
-    return getIndexOfFromBiMap(rawValue);
+    return getDictionaryIdFor(rawValue);
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return getRawValue(dictionaryId);
   }
 
   @Override
   public long getLongValue(int dictionaryId) {
-    return ((Integer) getRawValueFromBiMap(dictionaryId)).longValue();
+    return ((Integer) getRawValue(dictionaryId)).longValue();
   }
 
   @Override
   public double getDoubleValue(int dictionaryId) {
-    return ((Integer) getRawValueFromBiMap(dictionaryId)).doubleValue();
+    return ((Integer) getRawValue(dictionaryId)).doubleValue();
   }
 
   @Override
   public String toString(int dictionaryId) {
-    return ((Integer) getRawValueFromBiMap(dictionaryId)).toString();
+    return ((Integer) getRawValue(dictionaryId)).toString();
   }
 
   @Override
   public String getStringValue(int dictionaryId) {
-    return ((Integer) getRawValueFromBiMap(dictionaryId)).toString();
+    return ((Integer) getRawValue(dictionaryId)).toString();
   }
 
   @Override
@@ -155,7 +155,7 @@ public class IntMutableDictionary extends MutableDictionaryReader {
   }
 
   public int getInt(int dictionaryId) {
-    return ((Integer) dictionaryIdBiMap.get(new Integer(dictionaryId))).intValue();
+    return ((Integer) getRawValue(dictionaryId)).intValue();
   }
 
   @Override
@@ -36,13 +36,13 @@ public class LongMutableDictionary extends MutableDictionaryReader {
 
     if (rawValue instanceof String) {
       Long e = new Long(Long.parseLong(rawValue.toString()));
-      addToDictionaryBiMap(e);
+      addToDictionary(e);
       updateMinMax(e);
       return;
     }
 
     if (rawValue instanceof Long) {
-      addToDictionaryBiMap(rawValue);
+      addToDictionary(rawValue);
       updateMinMax((Long) rawValue);
       return;
     }
@@ -50,13 +50,13 @@ public class LongMutableDictionary extends MutableDictionaryReader {
     if (rawValue instanceof Object[]) {
       for (Object o : (Object[]) rawValue) {
         if (o instanceof String) {
-          addToDictionaryBiMap(new Long(Long.parseLong(o.toString())));
+          addToDictionary(new Long(Long.parseLong(o.toString())));
           updateMinMax(new Long(Long.parseLong(o.toString())));
           continue;
         }
 
         if (o instanceof Long) {
-          addToDictionaryBiMap(o);
+          addToDictionary(o);
           updateMinMax((Long) o);
           continue;
         }
@@ -79,37 +79,37 @@ public class LongMutableDictionary extends MutableDictionaryReader {
       return hasNull;
     }
     if (rawValue instanceof String) {
-      return dictionaryIdBiMap.inverse().containsKey(new Long(Long.parseLong(rawValue.toString())));
+      return containsRawValue(new Long(Long.parseLong(rawValue.toString())));
     }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue);
+    return containsRawValue(rawValue);
   }
 
   @Override
   public int indexOf(Object rawValue) {
     if (rawValue instanceof String) {
-      return getIndexOfFromBiMap(new Long(Long.parseLong(rawValue.toString())));
+      return getDictionaryIdFor(new Long(Long.parseLong(rawValue.toString())));
     }
-    return getIndexOfFromBiMap(rawValue);
+    return getDictionaryIdFor(rawValue);
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return getRawValue(dictionaryId);
   }
 
   @Override
   public long getLongValue(int dictionaryId) {
-    return ((Long) getRawValueFromBiMap(dictionaryId)).longValue();
+    return ((Long) getRawValue(dictionaryId)).longValue();
   }
 
   @Override
   public double getDoubleValue(int dictionaryId) {
-    return ((Long) getRawValueFromBiMap(dictionaryId)).doubleValue();
+    return ((Long) getRawValue(dictionaryId)).doubleValue();
   }
 
   @Override
   public String toString(int dictionaryId) {
-    return ((Long) getRawValueFromBiMap(dictionaryId)).toString();
+    return ((Long) getRawValue(dictionaryId)).toString();
   }
 
   @Override
@@ -148,11 +148,11 @@ public class LongMutableDictionary extends MutableDictionaryReader {
 
   @Override
   public String getStringValue(int dictionaryId) {
-    return ((Long) getRawValueFromBiMap(dictionaryId)).toString();
+    return ((Long) getRawValue(dictionaryId)).toString();
   }
 
   private long getLong(int dictionaryId) {
-    return ((Long) dictionaryIdBiMap.get(new Integer(dictionaryId))).longValue();
+    return ((Long) getRawValue(dictionaryId)).longValue();
   }
 
   @Override
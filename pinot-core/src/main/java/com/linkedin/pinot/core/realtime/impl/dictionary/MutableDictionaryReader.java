@@ -15,48 +15,76 @@
  */
 package com.linkedin.pinot.core.realtime.impl.dictionary;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
 
 
+/**
+ * Dictionary of a consuming segment, values are only added by the indexing thread while queries read it.<br>
+ * A value is stored in the dictId to value array and the value to dictId map before the length is published, so a
+ * reader never gets a dictId it can't look up, and lookups don't take any lock.
+ */
 public abstract class MutableDictionaryReader implements Dictionary {
-  protected BiMap<Integer, Object> dictionaryIdBiMap;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final Map<Object, Integer> rawValueToDictionaryIdMap;
+  // Replaced on growth so that readers always see a fully copied array
+  private volatile Object[] dictionaryIdToRawValue;
+  private volatile int length = 0;
   protected FieldSpec spec;
   protected boolean hasNull = false;
-  private final AtomicInteger dictionaryIdGenerator;
 
   public MutableDictionaryReader(FieldSpec spec) {
     this.spec = spec;
-    this.dictionaryIdBiMap = HashBiMap.<Integer, Object> create();
-    dictionaryIdGenerator = new AtomicInteger(-1);
+    this.rawValueToDictionaryIdMap = new ConcurrentHashMap<Object, Integer>();
+    this.dictionaryIdToRawValue = new Object[INITIAL_CAPACITY];
   }
 
-  protected void addToDictionaryBiMap(Object val) {
-    if (!dictionaryIdBiMap.inverse().containsKey(val)) {
-      dictionaryIdBiMap.put(new Integer(dictionaryIdGenerator.incrementAndGet()), val);
+  protected void addToDictionary(Object val) {
+    if (rawValueToDictionaryIdMap.containsKey(val)) {
       return;
     }
+    final int dictionaryId = length;
+    Object[] rawValues = dictionaryIdToRawValue;
+    if (dictionaryId == rawValues.length) {
+      rawValues = Arrays.copyOf(rawValues, rawValues.length * 2);
+      dictionaryIdToRawValue = rawValues;
+    }
+    rawValues[dictionaryId] = val;
+    rawValueToDictionaryIdMap.put(val, dictionaryId);
+    // publish the new entry
+    length = dictionaryId + 1;
   }
 
   @Override
   public int length() {
-    return dictionaryIdGenerator.get() + 1;
+    return length;
   }
 
-  protected Integer getIndexOfFromBiMap(Object val) {
-    Integer ret = dictionaryIdBiMap.inverse().get(val);
-    if (ret == null) {
+  protected boolean containsRawValue(Object val) {
+    return getDictionaryIdFor(val) != -1;
+  }
+
+  protected Integer getDictionaryIdFor(Object val) {
+    if (val == null) {
+      return -1;
+    }
+    Integer ret = rawValueToDictionaryIdMap.get(val);
+    if (ret == null || ret >= length) {
       ret = -1;
     }
     return ret;
   }
 
-  protected Object getRawValueFromBiMap(int dictionaryId) {
-    return dictionaryIdBiMap.get(new Integer(dictionaryId));
+  protected Object getRawValue(int dictionaryId) {
+    if (dictionaryId < 0 || dictionaryId >= length) {
+      return null;
+    }
+    return dictionaryIdToRawValue[dictionaryId];
   }
 
   public boolean hasNull() {
@@ -95,13 +123,14 @@ public abstract class MutableDictionaryReader implements Dictionary {
 
   public void print() {
     System.out.println("************* printing dictionary for column : " + spec.getName() + " ***************");
-    for (Integer key : dictionaryIdBiMap.keySet()) {
-      System.out.println(key + "," + dictionaryIdBiMap.get(key));
+    final int size = length;
+    for (int dictionaryId = 0; dictionaryId < size; dictionaryId++) {
+      System.out.println(dictionaryId + "," + getRawValue(dictionaryId));
     }
     System.out.println("************************************");
   }
 
   public boolean isEmpty() {
-    return dictionaryIdBiMap.isEmpty();
+    return length == 0;
   }
 }
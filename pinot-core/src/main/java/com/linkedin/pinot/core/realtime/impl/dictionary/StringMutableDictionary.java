@@ -31,13 +31,13 @@ public class StringMutableDictionary extends MutableDictionaryReader {
   public void index(Object rawValue) {
     if (rawValue instanceof Object[]) {
       for (Object o : (Object[]) rawValue) {
-        addToDictionaryBiMap(o.toString());
+        addToDictionary(o.toString());
         updateMinMax(o.toString());
       }
       return;
     }
 
-    addToDictionaryBiMap(rawValue.toString());
+    addToDictionary(rawValue.toString());
     updateMinMax(rawValue.toString());
   }
 
@@ -62,17 +62,17 @@ public class StringMutableDictionary extends MutableDictionaryReader {
     if (rawValue == null) {
       return hasNull;
     }
-    return dictionaryIdBiMap.inverse().containsKey(rawValue.toString());
+    return containsRawValue(rawValue.toString());
   }
 
   @Override
   public int indexOf(Object rawValue) {
-    return getIndexOfFromBiMap(rawValue.toString());
+    return getDictionaryIdFor(rawValue.toString());
   }
 
   @Override
   public Object get(int dictionaryId) {
-    return getRawValueFromBiMap(dictionaryId);
+    return getRawValue(dictionaryId);
   }
 
   @Override
@@ -87,12 +87,12 @@ public class StringMutableDictionary extends MutableDictionaryReader {
 
   @Override
   public String toString(int dictionaryId) {
-    return (String) getRawValueFromBiMap(dictionaryId);
+    return (String) getRawValue(dictionaryId);
   }
 
   @Override
   public String getStringValue(int dictionaryId) {
-    return (String) getRawValueFromBiMap(dictionaryId);
+    return (String) getRawValue(dictionaryId);
   }
 
   @Override
@@ -126,7 +126,7 @@ public class StringMutableDictionary extends MutableDictionaryReader {
   }
 
   private String getString(int dictionaryId) {
-    return dictionaryIdBiMap.get(new Integer(dictionaryId)).toString();
+    return getRawValue(dictionaryId).toString();
   }
 
   @Override
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.invertedIndex;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+
+/**
+ * Realtime inverted index keyed by dictionary id.<br>
+ * Realtime dictionary ids are dense and assigned in increasing order, so the posting lists are kept in an array
+ * indexed by dictId instead of a map of boxed keys. The array is doubled when a new dictId goes past its end.<br>
+ * The indexing thread only appends docIds to plain int arrays and never mutates anything a query can hold on to:
+ * queries get roaring bitmaps built from the docIds that are visible, and these bitmaps are cached per dictId and
+ * extended by the next reader. A bitmap can hold docIds of rows that are not published yet, queries bound their
+ * iteration by the docIdSearchableOffset of their snapshot instead of copying the bitmap. No lock is taken on either
+ * side; the visibility of the appended docIds is guaranteed by the volatile doc count the segment publishes once a
+ * row is fully indexed.
+ */
+public abstract class BaseRealtimeInvertedIndex implements RealtimeInvertedIndex {
+  private static final int INITIAL_CAPACITY = 16;
+
+  // Replaced on growth so that readers always see a fully copied array
+  private volatile DocIdList[] invertedIndex = new DocIdList[INITIAL_CAPACITY];
+
+  public BaseRealtimeInvertedIndex(String columnName) {
+  }
+
+  @Override
+  public void add(Object dictId, int docId) {
+    add(((Number) dictId).intValue(), docId);
+  }
+
+  @Override
+  public void add(int dictId, int docId) {
+    DocIdList[] docIdLists = invertedIndex;
+    if (dictId >= docIdLists.length) {
+      docIdLists = Arrays.copyOf(docIdLists, Math.max(docIdLists.length * 2, dictId + 1));
+      invertedIndex = docIdLists;
+    }
+    if (docIdLists[dictId] == null) {
+      docIdLists[dictId] = new DocIdList();
+    }
+    docIdLists[dictId].add(docId);
+  }
+
+  @Override
+  public MutableRoaringBitmap getDocIdSetFor(Object dicId) {
+    return getDocIdSetFor(((Number) dicId).intValue());
+  }
+
+  @Override
+  public MutableRoaringBitmap getDocIdSetFor(int dictId) {
+    final DocIdList[] docIdLists = invertedIndex;
+    if (dictId < 0 || dictId >= docIdLists.length || docIdLists[dictId] == null) {
+      return null;
+    }
+    return docIdLists[dictId].getBitmap();
+  }
+
+  @Override
+  public ImmutableRoaringBitmap getImmutable(int idx) {
+    MutableRoaringBitmap bitmap = getDocIdSetFor(idx);
+    // the dictionary can already hold values of rows whose docIds are not added yet
+    return bitmap == null ? Snapshot.EMPTY.bitmap : bitmap;
+  }
+
+  /**
+   * @return the number of dictionary ids that can be looked up without growing the index, some may have no docIds
+   */
+  protected int getCapacity() {
+    return invertedIndex.length;
+  }
+
+  @Override
+  public int[] getMinMaxRangeFor(int docId) {
+    throw new UnsupportedOperationException("");
+  }
+
+  @Override
+  public void close() throws IOException {
+  }
+
+  /**
+   * Sorted, append only list of the docIds of one dictId.
+   */
+  private static final class DocIdList {
+    private static final int INITIAL_LIST_CAPACITY = 4;
+
+    // docId + 1 is stored, so that 0 marks a slot whose write is not visible to the reader yet
+    private volatile int[] docIds = new int[INITIAL_LIST_CAPACITY];
+    // only accessed by the indexing thread
+    private int size = 0;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    void add(int docId) {
+      final int entry = docId + 1;
+      int[] entries = docIds;
+      // multi value rows can repeat a value
+      if (size > 0 && entries[size - 1] == entry) {
+        return;
+      }
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size * 2);
+        docIds = entries;
+      }
+      entries[size++] = entry;
+    }
+
+    MutableRoaringBitmap getBitmap() {
+      final Snapshot cached = snapshot;
+      final int[] entries = docIds;
+      int end = cached.size;
+      while (end < entries.length && entries[end] != 0) {
+        end++;
+      }
+      if (end == cached.size) {
+        return cached.bitmap;
+      }
+
+      // copy on write, other queries can be iterating the cached bitmap
+      final MutableRoaringBitmap bitmap = cached.bitmap.clone();
+      for (int i = cached.size; i < end; i++) {
+        bitmap.add(entries[i] - 1);
+      }
+      if (end > snapshot.size) {
+        snapshot = new Snapshot(bitmap, end);
+      }
+      return bitmap;
+    }
+  }
+
+  /**
+   * Bitmap of the first size docIds of a list, never modified once built.
+   */
+  private static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(new MutableRoaringBitmap(), 0);
+
+    final MutableRoaringBitmap bitmap;
+    final int size;
+
+    Snapshot(MutableRoaringBitmap bitmap, int size) {
+      this.bitmap = bitmap;
+      this.size = size;
+    }
+  }
+}
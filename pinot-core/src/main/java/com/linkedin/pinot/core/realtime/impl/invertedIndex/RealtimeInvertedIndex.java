@@ -23,6 +23,16 @@ import com.linkedin.pinot.core.segment.index.InvertedIndexReader;
 public interface RealtimeInvertedIndex extends InvertedIndexReader {
   public void add(Object dictId, int docId);
 
+  public void add(int dictId, int docId);
+
   public MutableRoaringBitmap getDocIdSetFor(Object dicId);
 
+  /**
+   * Returns the docIds of the dictId, the bitmap is shared and must not be modified.
+   * It can hold docIds above the docIdSearchableOffset of a query, which has to bound its iteration by that offset.
+   * @param dictId
+   * @return null if no document has the dictId
+   */
+  public MutableRoaringBitmap getDocIdSetFor(int dictId);
+
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.rollup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.linkedin.pinot.common.utils.MmapUtils;
+
+
+/**
+ * Off heap open addressing hash table from a rollup key (the dictionary ids of the dimensions and of the time column)
+ * to the docId holding the aggregated row.<br>
+ * Only the hash of the key and the docId are stored, the keys themselves are read back from the forward indexes of
+ * the segment through a {@link KeyMatcher}, so the table costs 8 bytes per slot. It is only accessed by the indexing
+ * thread.
+ */
+public class RollupHashTable {
+  private static final int SLOT_SIZE_IN_BYTES = 8;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * Tells whether the row stored at docId has the given key.
+   */
+  public interface KeyMatcher {
+    boolean matches(int docId, int[] key);
+  }
+
+  private final KeyMatcher keyMatcher;
+  private ByteBuffer buffer;
+  private int capacity;
+  private int mask;
+  private int size = 0;
+
+  public RollupHashTable(KeyMatcher keyMatcher) {
+    this.keyMatcher = keyMatcher;
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    this.capacity = capacity;
+    mask = capacity - 1;
+    buffer = MmapUtils.allocateDirectByteBuffer(capacity * SLOT_SIZE_IN_BYTES, null,
+        this.getClass().getSimpleName() + " buffer");
+    // direct buffers are zeroed, all the slots start empty
+    buffer.order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * @return the docId of the row with this key, -1 if there is none
+   */
+  public int get(int[] key) {
+    final int hash = hash(key);
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      final int entry = buffer.getInt(slot * SLOT_SIZE_IN_BYTES + 4);
+      if (entry == 0) {
+        return -1;
+      }
+      if (buffer.getInt(slot * SLOT_SIZE_IN_BYTES) == hash && keyMatcher.matches(entry - 1, key)) {
+        return entry - 1;
+      }
+    }
+  }
+
+  /**
+   * Adds a key that is not in the table yet.
+   */
+  public void put(int[] key, int docId) {
+    if (size * 2 >= capacity) {
+      resize();
+    }
+    insert(hash(key), docId);
+    size++;
+  }
+
+  /**
+   * Points a key that is in the table to a new docId, holding the same key.
+   */
+  public void replace(int[] key, int docId) {
+    final int hash = hash(key);
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      final int entry = buffer.getInt(slot * SLOT_SIZE_IN_BYTES + 4);
+      if (entry == 0) {
+        throw new IllegalStateException("Cannot replace the docId of a key that is not in the table");
+      }
+      if (buffer.getInt(slot * SLOT_SIZE_IN_BYTES) == hash && keyMatcher.matches(entry - 1, key)) {
+        buffer.putInt(slot * SLOT_SIZE_IN_BYTES + 4, docId + 1);
+        return;
+      }
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void insert(int hash, int docId) {
+    int slot = hash & mask;
+    while (buffer.getInt(slot * SLOT_SIZE_IN_BYTES + 4) != 0) {
+      slot = (slot + 1) & mask;
+    }
+    buffer.putInt(slot * SLOT_SIZE_IN_BYTES, hash);
+    // docId + 1 so that 0 marks an empty slot
+    buffer.putInt(slot * SLOT_SIZE_IN_BYTES + 4, docId + 1);
+  }
+
+  private void resize() {
+    final ByteBuffer oldBuffer = buffer;
+    final int oldCapacity = capacity;
+    allocate(oldCapacity * 2);
+    for (int slot = 0; slot < oldCapacity; slot++) {
+      final int entry = oldBuffer.getInt(slot * SLOT_SIZE_IN_BYTES + 4);
+      if (entry != 0) {
+        insert(oldBuffer.getInt(slot * SLOT_SIZE_IN_BYTES), entry - 1);
+      }
+    }
+    MmapUtils.unloadByteBuffer(oldBuffer);
+  }
+
+  private static int hash(int[] key) {
+    int hash = 1;
+    for (int value : key) {
+      hash = 31 * hash + value;
+    }
+    // spread the bits, the low ones pick the slot
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    return hash;
+  }
+
+  public void close() {
+    MmapUtils.unloadByteBuffer(buffer);
+    buffer = null;
+  }
+}
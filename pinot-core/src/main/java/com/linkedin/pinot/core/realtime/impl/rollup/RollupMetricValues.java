@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime.impl.rollup;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.core.index.readerwriter.impl.FixedByteChunkSingleColumnSingleValueReaderWriter;
+
+
+/**
+ * Running sums of a metric for the documents of a rolled up realtime segment that are not published yet.<br>
+ * Events with the same dimensions are summed here in place while their document is not visible to queries. When the
+ * document is published its final value is added to the regular dictionary of the metric, and it is never modified
+ * again. Values are kept off heap as longs for INT and LONG metrics and as doubles for FLOAT and DOUBLE metrics.
+ */
+public class RollupMetricValues {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RollupMetricValues.class);
+
+  private final FieldSpec spec;
+  private final boolean isFloatingPoint;
+  private final FixedByteChunkSingleColumnSingleValueReaderWriter values;
+
+  public RollupMetricValues(FieldSpec spec) {
+    this.spec = spec;
+    isFloatingPoint = spec.getDataType() == DataType.FLOAT || spec.getDataType() == DataType.DOUBLE;
+    values = new FixedByteChunkSingleColumnSingleValueReaderWriter(new int[] { Long.SIZE / 8 });
+  }
+
+  /**
+   * Sets the value of a new document.
+   */
+  public void set(int docId, Object rawValue) {
+    if (isFloatingPoint) {
+      values.setDouble(docId, toNumber(rawValue).doubleValue());
+    } else {
+      values.setLong(docId, toNumber(rawValue).longValue());
+    }
+  }
+
+  /**
+   * Adds the value of an event to the value of a document that is not published yet.
+   */
+  public void add(int docId, Object rawValue) {
+    if (isFloatingPoint) {
+      values.setDouble(docId, values.getDouble(docId) + toNumber(rawValue).doubleValue());
+    } else {
+      values.setLong(docId, values.getLong(docId) + toNumber(rawValue).longValue());
+    }
+  }
+
+  private Number toNumber(Object rawValue) {
+    if (rawValue == null) {
+      return 0;
+    }
+    if (rawValue instanceof Number) {
+      return (Number) rawValue;
+    }
+    return Double.parseDouble(rawValue.toString());
+  }
+
+  /**
+   * @return the value of the document in the data type of the metric, as expected by its dictionary
+   */
+  public Object get(int docId) {
+    switch (spec.getDataType()) {
+      case INT:
+        return (int) values.getLong(docId);
+      case LONG:
+        return values.getLong(docId);
+      case FLOAT:
+        return (float) values.getDouble(docId);
+      default:
+        return values.getDouble(docId);
+    }
+  }
+
+  public void close() {
+    try {
+      values.close();
+    } catch (IOException e) {
+      LOGGER.error("Failed to close the values of rolled up metric {}", spec.getName(), e);
+    }
+  }
+}
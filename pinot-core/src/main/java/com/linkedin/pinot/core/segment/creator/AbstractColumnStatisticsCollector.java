@@ -41,9 +41,8 @@ public abstract class AbstractColumnStatisticsCollector {
 
   private Object previousValue = null;
   protected final FieldSpec fieldSpec;
-  private boolean isSorted = true;
-  private int prevBiggerThanNextCount = 0;
-  private int numberOfChanges = 0;
+  // Primitive collectors track the order of their values themselves, without boxing them into previousValue
+  protected boolean isSorted = true;
   protected int totalNumberOfEntries = 0;
   protected int maxNumberOfMultiValues = 0;
 
@@ -67,21 +66,8 @@ public abstract class AbstractColumnStatisticsCollector {
 
   public void addressSorted(Object entry) {
     if (isSorted) {
-      if (previousValue != null) {
-        if (((Comparable) entry).compareTo(previousValue) != 0) {
-          numberOfChanges++;
-        }
-        if (((Comparable) entry).compareTo(previousValue) < 0) {
-          prevBiggerThanNextCount++;
-        }
-
-        if (!entry.equals(previousValue) && previousValue != null) {
-          final Comparable prevValue = (Comparable) previousValue;
-          final Comparable origin = (Comparable) entry;
-          if (origin.compareTo(prevValue) < 0) {
-            isSorted = false;
-          }
-        }
+      if (previousValue != null && ((Comparable) entry).compareTo(previousValue) < 0) {
+        isSorted = false;
       }
       previousValue = entry;
     }
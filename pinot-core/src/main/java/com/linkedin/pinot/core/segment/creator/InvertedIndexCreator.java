@@ -32,6 +32,11 @@ public interface InvertedIndexCreator {
 
   public void add(int docIds, Object dictionaryIds);
 
+  /**
+   * Adds a multi value document from its dictionary ids, without boxing them.
+   */
+  public void add(int docId, int[] dictionaryIds);
+
   public long totalTimeTakeSoFar();
 
   public void seal() throws IOException;
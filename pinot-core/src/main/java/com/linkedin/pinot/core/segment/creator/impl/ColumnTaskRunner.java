@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator.impl;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
+
+
+/**
+ * Runs a task for every column of a segment being created on a bounded pool of threads.<br>
+ * The index structures of a column (stats, dictionary, forward and inverted index) don't share any state with the
+ * ones of the other columns, so the columns can be processed in parallel, which matters for wide tables.<br>
+ * One runner is created per segment build and shared by all its steps, it must be closed once the build is done.
+ */
+public class ColumnTaskRunner implements Closeable {
+  private final ExecutorService executorService;
+
+  /**
+   * Task run for every column by {@link #runForEachColumn}.
+   */
+  public interface ColumnTask<T> {
+    void run(T column) throws Exception;
+  }
+
+  /**
+   * @param name used to name the threads
+   * @param numThreads maximum number of threads processing the columns, 1 processes them one after another on the
+   *                   calling thread
+   */
+  public ColumnTaskRunner(String name, int numThreads) {
+    if (numThreads > 1) {
+      // The threads are only started once columns are submitted
+      executorService = Executors.newFixedThreadPool(numThreads, new NamedThreadFactory("segment-creator-" + name));
+    } else {
+      executorService = null;
+    }
+  }
+
+  /**
+   * Runs the task for every column and waits for all of them, rethrowing the first failure.
+   *
+   * @param columns columns to process, each one is handed to a single task
+   * @param task task to run for each column
+   */
+  public <T> void runForEachColumn(Collection<T> columns, final ColumnTask<T> task) throws Exception {
+    if (executorService == null || columns.size() <= 1) {
+      for (T column : columns) {
+        task.run(column);
+      }
+      return;
+    }
+
+    final List<Future<Void>> futures = new ArrayList<Future<Void>>(columns.size());
+    try {
+      for (final T column : columns) {
+        futures.add(executorService.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            task.run(column);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      // Don't leave the tasks of the other columns running once one of them failed
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.creator.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.core.data.GenericRow;
+
+
+/**
+ * Raw values of the rows of a segment, written column by column to local files while the input is read for the stats,
+ * so that the input is decoded only once and each column can then be indexed on its own.<br>
+ * Values are written in the binary form of the data type of their column: 4 or 8 bytes for numbers, a length and UTF-8
+ * bytes for strings, and multi values are prefixed by their number of values. A value whose class does not match the
+ * data type of its column can not be spilled, in which case the rows have to be read again from the input.
+ */
+class SegmentColumnSpill implements Closeable {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File spillDir;
+  private final List<FieldSpec> fieldSpecs;
+  private final DataOutputStream[] outputs;
+  private int numRows = 0;
+
+  SegmentColumnSpill(Collection<FieldSpec> fieldSpecs, File spillDir) throws IOException {
+    this.fieldSpecs = new ArrayList<FieldSpec>(fieldSpecs);
+    this.spillDir = spillDir;
+    spillDir.mkdirs();
+    outputs = new DataOutputStream[this.fieldSpecs.size()];
+    for (int i = 0; i < outputs.length; i++) {
+      outputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getFile(i)), BUFFER_SIZE));
+    }
+  }
+
+  private File getFile(int columnIndex) {
+    return new File(spillDir, columnIndex + ".spill");
+  }
+
+  /**
+   * Appends the values of the row to the spill of every column.
+   *
+   * @return false if one of the values can not be spilled, the spill is then incomplete and can not be read
+   */
+  boolean append(GenericRow row) throws IOException {
+    for (int i = 0; i < outputs.length; i++) {
+      final FieldSpec spec = fieldSpecs.get(i);
+      final Object value = row.getValue(spec.getName());
+      if (spec.isSingleValueField()) {
+        if (!writeValue(outputs[i], spec, value)) {
+          return false;
+        }
+      } else {
+        if (!(value instanceof Object[])) {
+          return false;
+        }
+        final Object[] values = (Object[]) value;
+        outputs[i].writeInt(values.length);
+        for (Object element : values) {
+          if (!writeValue(outputs[i], spec, element)) {
+            return false;
+          }
+        }
+      }
+    }
+    numRows++;
+    return true;
+  }
+
+  private static boolean writeValue(DataOutputStream output, FieldSpec spec, Object value) throws IOException {
+    switch (spec.getDataType()) {
+      case INT:
+        if (!(value instanceof Integer)) {
+          return false;
+        }
+        output.writeInt((Integer) value);
+        return true;
+      case LONG:
+        if (!(value instanceof Long)) {
+          return false;
+        }
+        output.writeLong((Long) value);
+        return true;
+      case FLOAT:
+        if (!(value instanceof Float)) {
+          return false;
+        }
+        output.writeFloat((Float) value);
+        return true;
+      case DOUBLE:
+        if (!(value instanceof Double)) {
+          return false;
+        }
+        output.writeDouble((Double) value);
+        return true;
+      case STRING:
+      case BOOLEAN:
+        // strings are only ever used through toString by the stats collectors and the dictionaries
+        if (value == null || value instanceof Object[]) {
+          return false;
+        }
+        final byte[] bytes = value.toString().getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  int getNumRows() {
+    return numRows;
+  }
+
+  List<FieldSpec> getFieldSpecs() {
+    return fieldSpecs;
+  }
+
+  /**
+   * Flushes and closes the spill files, they can only be read after this.
+   */
+  void finishWriting() throws IOException {
+    for (DataOutputStream output : outputs) {
+      output.close();
+    }
+  }
+
+  /**
+   * @return a reader of the values of the column, in row order
+   */
+  ColumnReader openColumn(int columnIndex) throws IOException {
+    return new ColumnReader(fieldSpecs.get(columnIndex),
+        new DataInputStream(new BufferedInputStream(new FileInputStream(getFile(columnIndex)), BUFFER_SIZE)));
+  }
+
+  /**
+   * Closes the spill files and deletes them.
+   */
+  @Override
+  public void close() {
+    for (DataOutputStream output : outputs) {
+      IOUtils.closeQuietly(output);
+    }
+    FileUtils.deleteQuietly(spillDir);
+  }
+
+  /**
+   * Reads back the values of one column, as the same classes as the ones that were spilled.
+   */
+  static class ColumnReader implements Closeable {
+    private final FieldSpec spec;
+    private final DataInputStream input;
+
+    private ColumnReader(FieldSpec spec, DataInputStream input) {
+      this.spec = spec;
+      this.input = input;
+    }
+
+    Object next() throws IOException {
+      if (spec.isSingleValueField()) {
+        return readValue();
+      }
+      final Object[] values = new Object[input.readInt()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = readValue();
+      }
+      return values;
+    }
+
+    private Object readValue() throws IOException {
+      switch (spec.getDataType()) {
+        case INT:
+          return input.readInt();
+        case LONG:
+          return input.readLong();
+        case FLOAT:
+          return input.readFloat();
+        case DOUBLE:
+          return input.readDouble();
+        case STRING:
+        case BOOLEAN:
+          final byte[] bytes = new byte[input.readInt()];
+          input.readFully(bytes);
+          return new String(bytes, UTF_8);
+        default:
+          throw new UnsupportedOperationException("Unsupported data type : " + spec.getDataType() + " for column : "
+              + spec.getName());
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+}
@@ -20,11 +20,14 @@ import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataK
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.COLUMN_TYPE;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.DATA_TYPE;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.DICTIONARY_ELEMENT_SIZE;
+import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.HAS_BLOOM_FILTER;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.HAS_INVERTED_INDEX;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.HAS_NULL_VALUE;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.IS_SINGLE_VALUED;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.IS_SORTED;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.MAX_MULTI_VALUE_ELEMTS;
+import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.MAX_VALUE;
+import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.MIN_VALUE;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.TOTAL_DOCS;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Column.TOTAL_NUMBER_OF_ENTRIES;
 import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataKeys.Segment.DIMENSIONS;
@@ -40,10 +43,13 @@ import static com.linkedin.pinot.core.segment.creator.impl.V1Constants.MetadataK
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.configuration.PropertiesConfiguration;
 
 import com.linkedin.pinot.common.data.FieldSpec;
@@ -60,7 +66,7 @@ import com.linkedin.pinot.core.segment.creator.impl.fwd.MultiValueUnsortedForwar
 import com.linkedin.pinot.core.segment.creator.impl.fwd.SingleValueSortedForwardIndexCreator;
 import com.linkedin.pinot.core.segment.creator.impl.fwd.SingleValueUnsortedForwardIndexCreator;
 import com.linkedin.pinot.core.segment.creator.impl.inv.BitmapInvertedIndexCreator;
-import org.apache.commons.lang.ArrayUtils;
+import com.linkedin.pinot.core.segment.index.BloomFilter;
 
 
 /**
@@ -71,18 +77,26 @@ import org.apache.commons.lang.ArrayUtils;
 
 public class SegmentColumnarIndexCreator implements SegmentCreator {
   // TODO Refactor class name to match interface name
+  private final ColumnTaskRunner columnTaskRunner;
   private SegmentGeneratorConfig config;
   private Map<String, ColumnIndexCreationInfo> indexCreationInfoMap;
   private Map<String, SegmentDictionaryCreator> dictionaryCreatorMap;
   private Map<String, ForwardIndexCreator> forwardIndexCreatorMap;
   private Map<String, InvertedIndexCreator> invertedIndexCreatorMap;
+  private Set<String> bloomFilterColumns;
   private String segmentName;
 
   private Schema schema;
   private File file;
   private int totalDocs;
   private int docIdCounter;
-  private Map<String, Map<Object, Object>> dictionaryCache = new HashMap<String, Map<Object, Object>>();
+
+  /**
+   * @param columnTaskRunner runs the per column steps of the segment build, owned by the caller
+   */
+  public SegmentColumnarIndexCreator(ColumnTaskRunner columnTaskRunner) {
+    this.columnTaskRunner = columnTaskRunner;
+  }
 
   @Override
   public void init(SegmentGeneratorConfig segmentCreationSpec,
@@ -91,10 +105,10 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
     docIdCounter = 0;
     config = segmentCreationSpec;
     this.indexCreationInfoMap = indexCreationInfoMap;
-    dictionaryCreatorMap = new HashMap<String, SegmentDictionaryCreator>();
-    forwardIndexCreatorMap = new HashMap<String, ForwardIndexCreator>();
-    this.indexCreationInfoMap = indexCreationInfoMap;
-    invertedIndexCreatorMap = new HashMap<String, InvertedIndexCreator>();
+    // Filled by the threads initializing the columns
+    dictionaryCreatorMap = new ConcurrentHashMap<String, SegmentDictionaryCreator>();
+    forwardIndexCreatorMap = new ConcurrentHashMap<String, ForwardIndexCreator>();
+    invertedIndexCreatorMap = new ConcurrentHashMap<String, InvertedIndexCreator>();
     file = outDir;
 
     // Check that the output directory does not exist
@@ -108,79 +122,154 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
 
     this.totalDocs = totalDocs;
 
-    // Initialize and build dictionaries
+    // Check that every column is dictionary encoded before building anything
     for (final FieldSpec spec : schema.getAllFieldSpecs()) {
-      final ColumnIndexCreationInfo info = indexCreationInfoMap.get(spec.getName());
-      if (info.isCreateDictionary()) {
-        dictionaryCreatorMap.put(spec.getName(),
-            new SegmentDictionaryCreator(info.hasNulls(), info.getSortedUniqueElementsArray(), spec, file));
-      } else {
+      if (!indexCreationInfoMap.get(spec.getName()).isCreateDictionary()) {
         throw new RuntimeException("Creation of indices without dictionaries is not implemented!");
       }
     }
 
-    // For each column, build its dictionary and initialize a forwards and an inverted index
-    for (final String column : dictionaryCreatorMap.keySet()) {
-      dictionaryCreatorMap.get(column).build();
-      dictionaryCache.put(column, new HashMap<Object, Object>());
-      ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
-      int uniqueValueCount = indexCreationInfo.getDistinctValueCount();
-      if (schema.getFieldSpecFor(column).isSingleValueField()) {
-        if (indexCreationInfo.isSorted()) {
-          forwardIndexCreatorMap.put(column,
-              new SingleValueSortedForwardIndexCreator(file, uniqueValueCount,
-                  schema.getFieldSpecFor(column)));
-        } else {
-          forwardIndexCreatorMap.put(
-              column,
-              new SingleValueUnsortedForwardIndexCreator(schema.getFieldSpecFor(column), file,
-                  uniqueValueCount, totalDocs, indexCreationInfo.getTotalNumberOfEntries(),
-                  indexCreationInfo.hasNulls()));
-        }
+    // For each column, build its dictionary and initialize a forwards and an inverted index. Building a dictionary
+    // writes it and hashes all its values, the columns are built in parallel.
+    final Set<String> invertedIndexColumns = new HashSet<String>(config.getInvertedIndexCreationColumns());
+    bloomFilterColumns = new HashSet<String>(config.getBloomFilterCreationColumns());
+    columnTaskRunner.runForEachColumn(schema.getAllFieldSpecs(),
+        new ColumnTaskRunner.ColumnTask<FieldSpec>() {
+          @Override
+          public void run(FieldSpec spec) throws Exception {
+            initColumn(spec, invertedIndexColumns.contains(spec.getName()));
+          }
+        });
+  }
+
+  private void initColumn(FieldSpec spec, boolean createInvertedIndex) throws Exception {
+    final String column = spec.getName();
+    final ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
+    final SegmentDictionaryCreator dictionaryCreator =
+        new SegmentDictionaryCreator(indexCreationInfo.hasNulls(), indexCreationInfo.getSortedUniqueElementsArray(),
+            spec, file);
+    dictionaryCreator.build();
+    dictionaryCreatorMap.put(column, dictionaryCreator);
+
+    if (bloomFilterColumns.contains(column)) {
+      createBloomFilter(column, indexCreationInfo.getSortedUniqueElementsArray());
+    }
+
+    int uniqueValueCount = indexCreationInfo.getDistinctValueCount();
+    if (spec.isSingleValueField()) {
+      if (indexCreationInfo.isSorted()) {
+        forwardIndexCreatorMap.put(column, new SingleValueSortedForwardIndexCreator(file, uniqueValueCount, spec));
       } else {
         forwardIndexCreatorMap.put(
             column,
-            new MultiValueUnsortedForwardIndexCreator(schema.getFieldSpecFor(column), file,
-                uniqueValueCount, totalDocs, indexCreationInfo.getTotalNumberOfEntries(),
-                indexCreationInfo.hasNulls()));
+            new SingleValueUnsortedForwardIndexCreator(spec, file, uniqueValueCount, totalDocs,
+                indexCreationInfo.getTotalNumberOfEntries(), indexCreationInfo.hasNulls()));
       }
+    } else {
+      forwardIndexCreatorMap.put(
+          column,
+          new MultiValueUnsortedForwardIndexCreator(spec, file, uniqueValueCount, totalDocs,
+              indexCreationInfo.getTotalNumberOfEntries(), indexCreationInfo.hasNulls()));
     }
 
-    for (String column : config.getInvertedIndexCreationColumns()) {
-      ColumnIndexCreationInfo indexCreationInfo = indexCreationInfoMap.get(column);
-      int uniqueValueCount = indexCreationInfo.getDistinctValueCount();
-      invertedIndexCreatorMap.put(
-          column,
-          new BitmapInvertedIndexCreator(file, uniqueValueCount, schema
-              .getFieldSpecFor(column)));
+    if (createInvertedIndex) {
+      invertedIndexCreatorMap.put(column, new BitmapInvertedIndexCreator(file, uniqueValueCount, spec));
     }
   }
 
+  /**
+   * Writes the bloom filter of the distinct values of the column, each value is added in the string form that
+   * {@link BloomFilter#mightContain} is called with.
+   */
+  private void createBloomFilter(String column, Object sortedUniqueElementsArray) throws IOException {
+    final int cardinality = ArrayUtils.getLength(sortedUniqueElementsArray);
+    final BloomFilter bloomFilter = BloomFilter.create(cardinality, BloomFilter.DEFAULT_FALSE_POSITIVE_PROBABILITY);
+    if (sortedUniqueElementsArray instanceof int[]) {
+      for (int value : (int[]) sortedUniqueElementsArray) {
+        bloomFilter.add(Integer.toString(value));
+      }
+    } else if (sortedUniqueElementsArray instanceof long[]) {
+      for (long value : (long[]) sortedUniqueElementsArray) {
+        bloomFilter.add(Long.toString(value));
+      }
+    } else if (sortedUniqueElementsArray instanceof float[]) {
+      for (float value : (float[]) sortedUniqueElementsArray) {
+        bloomFilter.add(Float.toString(value));
+      }
+    } else if (sortedUniqueElementsArray instanceof double[]) {
+      for (double value : (double[]) sortedUniqueElementsArray) {
+        bloomFilter.add(Double.toString(value));
+      }
+    } else {
+      for (Object value : (Object[]) sortedUniqueElementsArray) {
+        bloomFilter.add(value.toString());
+      }
+    }
+    bloomFilter.write(new File(file, column + V1Constants.Indexes.BLOOM_FILTER_FILE_EXTENSION));
+  }
+
   @Override
   public void indexRow(GenericRow row) {
     for (final String column : dictionaryCreatorMap.keySet()) {
+      indexValue(column, docIdCounter, row.getValue(column));
+    }
+    docIdCounter++;
+  }
 
-      Object columnValueToIndex = row.getValue(column);
-      if (schema.getFieldSpecFor(column).isSingleValueField()) {
-        int dictionaryIndex = dictionaryCreatorMap.get(column).indexOfSV(columnValueToIndex);
-        ((SingleValueForwardIndexCreator)forwardIndexCreatorMap.get(column)).index(docIdCounter, dictionaryIndex);
+  /**
+   * Indexes the raw value of one column of a document, as {@link #indexRow(GenericRow)} does for all the columns.
+   * The values of a column must be indexed in docId order, but the creators of different columns don't share any
+   * state, so different columns can be indexed by different threads.
+   */
+  public void indexValue(String column, int docId, Object columnValueToIndex) {
+    if (schema.getFieldSpecFor(column).isSingleValueField()) {
+      int dictionaryIndex = dictionaryCreatorMap.get(column).indexOfSV(columnValueToIndex);
+      ((SingleValueForwardIndexCreator)forwardIndexCreatorMap.get(column)).index(docId, dictionaryIndex);
+
+      // TODO : {refactor inverted index addition}
+      if (invertedIndexCreatorMap.containsKey(column)) {
+        invertedIndexCreatorMap.get(column).add(docId, dictionaryIndex);
+      }
+    } else {
+      int[] indexes = dictionaryCreatorMap.get(column).indexOfMV(columnValueToIndex);
+      ((MultiValueForwardIndexCreator)forwardIndexCreatorMap.get(column)).index(docId, indexes);
 
-        // TODO : {refactor inverted index addition}
-        if (invertedIndexCreatorMap.containsKey(column)) {
-          invertedIndexCreatorMap.get(column).add(docIdCounter, dictionaryIndex);
-        }
-      } else {
-        int[] indexes = dictionaryCreatorMap.get(column).indexOfMV(columnValueToIndex);
-        ((MultiValueForwardIndexCreator)forwardIndexCreatorMap.get(column)).index(docIdCounter, indexes);
-
-        Integer[] dictionaryIndex = ArrayUtils.toObject(indexes);
-        // TODO : {refactor inverted index addition}
-        if (invertedIndexCreatorMap.containsKey(column)) {
-          invertedIndexCreatorMap.get(column).add(docIdCounter, dictionaryIndex);
-        }
+      // TODO : {refactor inverted index addition}
+      if (invertedIndexCreatorMap.containsKey(column)) {
+        invertedIndexCreatorMap.get(column).add(docId, indexes);
       }
     }
-    docIdCounter++;
+  }
+
+  /**
+   * Returns the dictionary id assigned to a single raw value of the column. Only valid once the dictionaries have been
+   * built by {@link #init}.
+   */
+  public int indexOfSV(String column, Object value) {
+    return dictionaryCreatorMap.get(column).indexOfSV(value);
+  }
+
+  /**
+   * Writes an already dictionary encoded single value into the forward index of the column. Unlike
+   * {@link #indexRow(GenericRow)} this does not touch the inverted index, see {@link #getInvertedIndexCreatorFor}.
+   */
+  public void indexSVDictionaryId(String column, int docId, int dictionaryId) {
+    ((SingleValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docId, dictionaryId);
+  }
+
+  /**
+   * Writes already dictionary encoded multi values into the forward index of the column. Unlike
+   * {@link #indexRow(GenericRow)} this does not touch the inverted index, see {@link #getInvertedIndexCreatorFor}.
+   */
+  public void indexMVDictionaryIds(String column, int docId, int[] dictionaryIds) {
+    ((MultiValueForwardIndexCreator) forwardIndexCreatorMap.get(column)).index(docId, dictionaryIds);
+  }
+
+  /**
+   * @return the inverted index creator of the column, or null if no inverted index is created for it
+   */
+  public InvertedIndexCreator getInvertedIndexCreatorFor(String column) {
+    return invertedIndexCreatorMap.get(column);
   }
 
   @Override
@@ -190,14 +279,26 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
 
   @Override
   public void seal() throws ConfigurationException, IOException {
-    for (final String column : forwardIndexCreatorMap.keySet()) {
-      forwardIndexCreatorMap.get(column).close();
-      dictionaryCreatorMap.get(column).close();
-    }
-
-    // The map is only initialized for columns that have inverted index creation enabled.
-    for (final String invertedColumn : invertedIndexCreatorMap.keySet()) {
-      invertedIndexCreatorMap.get(invertedColumn).seal();
+    // Flushing the forward index and serializing the inverted index of a column is independent of the other columns
+    try {
+      columnTaskRunner.runForEachColumn(forwardIndexCreatorMap.keySet(),
+          new ColumnTaskRunner.ColumnTask<String>() {
+            @Override
+            public void run(String column) throws Exception {
+              forwardIndexCreatorMap.get(column).close();
+              dictionaryCreatorMap.get(column).close();
+
+              // The map is only initialized for columns that have inverted index creation enabled.
+              final InvertedIndexCreator invertedIndexCreator = invertedIndexCreatorMap.get(column);
+              if (invertedIndexCreator != null) {
+                invertedIndexCreator.seal();
+              }
+            }
+          });
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Caught exception while sealing the columns of segment " + segmentName, e);
     }
     writeMetadata();
   }
@@ -273,9 +374,37 @@ public class SegmentColumnarIndexCreator implements SegmentCreator {
       properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, TOTAL_NUMBER_OF_ENTRIES),
           String.valueOf(columnIndexCreationInfo.getTotalNumberOfEntries()));
 
+      final String minValue = toMetadataValue(columnIndexCreationInfo.getMin());
+      final String maxValue = toMetadataValue(columnIndexCreationInfo.getMax());
+      if (minValue != null && maxValue != null) {
+        properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, MIN_VALUE), minValue);
+        properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, MAX_VALUE), maxValue);
+      }
+
+      properties.setProperty(V1Constants.MetadataKeys.Column.getKeyFor(column, HAS_BLOOM_FILTER),
+          String.valueOf(bloomFilterColumns.contains(column)));
     }
 
     properties.save();
   }
 
+  /**
+   * @return the min or max value of a column as set in the metadata, or null if it would not be read back as is
+   */
+  private static String toMetadataValue(Object value) {
+    if (value == null) {
+      return null;
+    }
+    final String string = value.toString();
+    if (value instanceof String) {
+      // Surrounding whitespaces are trimmed when the metadata is loaded, and a back slash could escape the delimiter
+      if (!string.trim().equals(string) || string.indexOf('\\') >= 0) {
+        return null;
+      }
+      // Escaped so that the value is not split into a list on the commas
+      return string.replace(",", "\\,");
+    }
+    return string;
+  }
+
 }
@@ -19,6 +19,7 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,7 +63,9 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
   int totalDocs;
   File tempIndexDir;
   String segmentName;
-  long totalRecordReadTime = 0;
+  File spillDir;
+  SegmentColumnSpill spill;
+  ColumnTaskRunner columnTaskRunner;
   long totalIndexTime = 0;
   long totalStatsCollectorTime = 0;
   boolean isStarTree = false;
@@ -79,8 +82,11 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     recordReader.init();
     dataSchema = recordReader.getSchema();
 
+    // The columns are processed in parallel by the steps of the build, all of them share the same threads
+    columnTaskRunner = new ColumnTaskRunner(config.getTableName(), config.getNumColumnThreads());
+
     // Initialize stats collection
-    statsCollector = new SegmentPreIndexStatsCollectorImpl(recordReader.getSchema());
+    statsCollector = new SegmentPreIndexStatsCollectorImpl(recordReader.getSchema(), columnTaskRunner);
     statsCollector.init();
 
     // Initialize index creation
@@ -91,7 +97,7 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
       indexCreator = new StarTreeSegmentCreator(dataSchema.getStarTreeIndexSpec(), recordReader);
       isStarTree = true;
     } else {
-      indexCreator = new SegmentColumnarIndexCreator();
+      indexCreator = new SegmentColumnarIndexCreator(columnTaskRunner);
     }
 
     // Ensure that the output directory exists
@@ -102,23 +108,42 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
 
     // Create a temporary directory used in segment creation
     tempIndexDir = new File(indexDir, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
+    spillDir = new File(indexDir, com.linkedin.pinot.common.utils.FileUtils.getRandomFileName());
   }
 
   @Override
   public void build() throws Exception {
-    // Count the number of documents and gather per-column statistics
+    try {
+      buildSegment();
+    } finally {
+      if (spill != null) {
+        spill.close();
+      }
+      columnTaskRunner.close();
+    }
+  }
+
+  private void buildSegment() throws Exception {
+    // Count the number of documents and gather per-column statistics, spilling the values to index them without
+    // reading the input again. The star tree creator reads the input by itself, there is nothing to spill for it.
     LOGGER.info("Start building StatsCollector!");
+    long start = System.currentTimeMillis();
+    if (!isStarTree && indexCreator instanceof SegmentColumnarIndexCreator) {
+      spill = new SegmentColumnSpill(dataSchema.getAllFieldSpecs(), spillDir);
+    }
     totalDocs = 0;
     while (recordReader.hasNext()) {
       totalDocs++;
-      long start = System.currentTimeMillis();
       GenericRow row = recordReader.next();
-      long stop = System.currentTimeMillis();
       statsCollector.collectRow(row);
-      long stop1 = System.currentTimeMillis();
-      totalRecordReadTime += (stop - start);
-      totalStatsCollectorTime += (stop1 - stop);
+      if (spill != null && !spill.append(row)) {
+        LOGGER.info("Values of row {} can not be spilled, the input will be read again to index it: {}", totalDocs,
+            row);
+        spill.close();
+        spill = null;
+      }
     }
+    totalStatsCollectorTime = System.currentTimeMillis() - start;
 
     // Create dummy row with all values, null for others, zero for metrics if is star tree
     if (isStarTree) {
@@ -133,6 +158,12 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
         allValues.put(spec.getName(), allValue);
       }
 
+      // Aggregate documents hold the all value in the time column too
+      TimeFieldSpec timeFieldSpec = dataSchema.getTimeFieldSpec();
+      if (timeFieldSpec != null) {
+        allValues.put(timeFieldSpec.getName(), StarTreeIndexNode.getAllValue(timeFieldSpec));
+      }
+
       GenericRow allRow = new GenericRow();
       allRow.init(allValues);
       statsCollector.collectRow(allRow);
@@ -146,18 +177,20 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     indexCreator.init(config, indexCreationInfoMap, dataSchema, totalDocs, tempIndexDir);
 
     // Build the index
-    recordReader.rewind();
     LOGGER.info("Start building IndexCreator!");
-    while (recordReader.hasNext()) {
-      long start = System.currentTimeMillis();
-      GenericRow row = recordReader.next();
-      long stop = System.currentTimeMillis();
-      indexCreator.indexRow(row);
-      long stop1 = System.currentTimeMillis();
-      totalRecordReadTime += (stop - start);
-      totalIndexTime += (stop1 - stop);
+    start = System.currentTimeMillis();
+    if (spill != null) {
+      recordReader.close();
+      spill.finishWriting();
+      indexSpilledColumns((SegmentColumnarIndexCreator) indexCreator);
+    } else {
+      recordReader.rewind();
+      while (recordReader.hasNext()) {
+        indexCreator.indexRow(recordReader.next());
+      }
+      recordReader.close();
     }
-    recordReader.close();
+    totalIndexTime = System.currentTimeMillis() - start;
     LOGGER.info("Finished records indexing in IndexCreator!");
 
     // Build the segment name, if necessary
@@ -183,6 +216,50 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     indexCreator.seal();
     LOGGER.info("Finished segment seal!");
 
+    commitSegment(config, tempIndexDir, segmentName);
+
+    LOGGER.info("Driver, record read and stats collector time : {}", totalStatsCollectorTime);
+    LOGGER.info("Driver, indexing time : {}", totalIndexTime);
+  }
+
+  /**
+   * Indexes every column from its spill, the columns being indexed in parallel.
+   */
+  private void indexSpilledColumns(final SegmentColumnarIndexCreator columnarIndexCreator) throws Exception {
+    final List<FieldSpec> fieldSpecs = spill.getFieldSpecs();
+    final int numRows = spill.getNumRows();
+    final List<Integer> columnIndexes = new ArrayList<Integer>(fieldSpecs.size());
+    for (int i = 0; i < fieldSpecs.size(); i++) {
+      columnIndexes.add(i);
+    }
+    columnTaskRunner.runForEachColumn(columnIndexes, new ColumnTaskRunner.ColumnTask<Integer>() {
+      @Override
+      public void run(Integer columnIndex) throws Exception {
+        final String column = fieldSpecs.get(columnIndex).getName();
+        final SegmentColumnSpill.ColumnReader reader = spill.openColumn(columnIndex);
+        try {
+          for (int docId = 0; docId < numRows; docId++) {
+            columnarIndexCreator.indexValue(column, docId, reader.next());
+          }
+        } finally {
+          reader.close();
+        }
+      }
+    });
+  }
+
+  public void ovveriteSegmentName(String segmentName) {
+    this.segmentName = segmentName;
+  }
+
+  /**
+   * Moves a sealed segment from its temporary directory to the directory named after the segment in the output
+   * directory of the config, then computes its CRC and writes its creation metadata.
+   *
+   * @return the directory of the segment
+   */
+  public static File commitSegment(SegmentGeneratorConfig config, File tempIndexDir, String segmentName)
+      throws IOException {
     // Delete the directory named after the segment name, if it exists
     final File outputDir = new File(config.getIndexOutputDir());
     final File segmentOutputDir = new File(outputDir, segmentName);
@@ -200,21 +277,14 @@ public class SegmentIndexCreationDriverImpl implements SegmentIndexCreationDrive
     final long crc = CrcUtils.forAllFilesInFolder(segmentOutputDir).computeCrc();
 
     // Persist creation metadata to disk
-    persistCreationMeta(segmentOutputDir, crc);
-
-    LOGGER.info("Driver, record read time : {}", totalRecordReadTime);
-    LOGGER.info("Driver, stats collector time : {}", totalStatsCollectorTime);
-    LOGGER.info("Driver, indexing time : {}", totalIndexTime);
-  }
-
-  public void ovveriteSegmentName(String segmentName) {
-    this.segmentName = segmentName;
+    persistCreationMeta(config, segmentOutputDir, crc);
+    return segmentOutputDir;
   }
 
   /**
    * Writes segment creation metadata to disk.
    */
-  void persistCreationMeta(File outputDir, long crc) throws IOException {
+  static void persistCreationMeta(SegmentGeneratorConfig config, File outputDir, long crc) throws IOException {
     final File crcFile = new File(outputDir, V1Constants.SEGMENT_CREATION_META);
     final DataOutputStream out = new DataOutputStream(new FileOutputStream(crcFile));
     out.writeLong(crc);
@@ -32,7 +32,10 @@ public class V1Constants {
   public static final String SEGMENT_REFRESH_TIME = "segment.refresh.time";
 
   public static final String STARTREE_DIR = "startree";
+  // Java serialized StarTreeIndexNode graph, only read for segments created before the flat star tree format
   public static final String STARTREE_FILE = "startree.ser";
+  // Flat star tree, see OffHeapStarTree
+  public static final String STARTREE_INDEX_FILE = "startree.idx";
   public static final String STARTREE_ALL = "__ALL__";
   public static final Number STARTREE_ALL_NUMBER = 0;
 
@@ -86,6 +89,7 @@ public class V1Constants {
     public static final String BITMAP_INVERTED_INDEX_FILE_EXTENSION = ".bitmap.inv";
     public static final String SORTED_INVERTED_INDEX_FILE_EXTENSION = ".sorted.inv";
     public static final String INTARRAY_INVERTED_INDEX_FILE_EXTENSION = ".intArray.inv";
+    public static final String BLOOM_FILTER_FILE_EXTENSION = ".bloom";
   }
 
   public static class MetadataKeys {
@@ -131,6 +135,9 @@ public class V1Constants {
       public static final String HAS_INVERTED_INDEX = "hasInvertedIndex";
       public static final String HAS_NULL_VALUE = "hasNullValue";
       public static final String HAS_DICTIONARY = "hasDictionary";
+      public static final String HAS_BLOOM_FILTER = "hasBloomFilter";
+      public static final String MIN_VALUE = "minValue";
+      public static final String MAX_VALUE = "maxValue";
 
       public static final String IS_SORTED = "isSorted";
       public static final String IS_SINGLE_VALUED = "isSingleValues";
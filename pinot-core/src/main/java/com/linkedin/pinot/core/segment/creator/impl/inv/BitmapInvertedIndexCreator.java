@@ -24,6 +24,7 @@ import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 import com.linkedin.pinot.common.data.FieldSpec;
@@ -58,6 +59,14 @@ public class BitmapInvertedIndexCreator implements InvertedIndexCreator {
     invertedIndex[dictionaryId].add(docId);
   }
 
+  /**
+   * Adds all the docIds of an existing bitmap for the given dictionary id, avoiding a per document add when the
+   * source is already indexed (e.g. a realtime segment being converted).
+   */
+  public void addDocIds(int dictionaryId, ImmutableRoaringBitmap docIds) {
+    invertedIndex[dictionaryId].or(docIds);
+  }
+
   @Override
   public long totalTimeTakeSoFar() {
     return (System.currentTimeMillis() - start);
@@ -106,6 +115,11 @@ public class BitmapInvertedIndexCreator implements InvertedIndexCreator {
     indexMultiValue(entries, docId);
   }
 
+  @Override
+  public void add(int docId, int[] dictionaryIds) {
+    indexMultiValue(dictionaryIds, docId);
+  }
+
   private void indexSingleValue(int entry, int docId) {
     if (entry == -1) {
       return;
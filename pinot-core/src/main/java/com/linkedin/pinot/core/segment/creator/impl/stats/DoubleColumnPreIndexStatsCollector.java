@@ -35,6 +35,8 @@ public class DoubleColumnPreIndexStatsCollector extends AbstractColumnStatistics
   private double[] sortedDoubleList;
   private boolean hasNull = false;
   private boolean sealed = false;
+  private double previousValue;
+  private boolean hasPreviousValue = false;
 
   public DoubleColumnPreIndexStatsCollector(FieldSpec spec) {
     super(spec);
@@ -54,7 +56,13 @@ public class DoubleColumnPreIndexStatsCollector extends AbstractColumnStatistics
       return;
     }
     double value = ((Number) entry).doubleValue();
-    addressSorted(value);
+    if (isSorted) {
+      if (hasPreviousValue && Double.compare(value, previousValue) < 0) {
+        isSorted = false;
+      }
+      previousValue = value;
+      hasPreviousValue = true;
+    }
     doubleSet.add(value);
   }
 
@@ -35,6 +35,8 @@ public class FloatColumnPreIndexStatsCollector extends AbstractColumnStatisticsC
   private float[] sortedFloatList;
   private boolean hasNull = false;
   private boolean sealed = false;
+  private float previousValue;
+  private boolean hasPreviousValue = false;
 
   public FloatColumnPreIndexStatsCollector(FieldSpec spec) {
     super(spec);
@@ -55,7 +57,13 @@ public class FloatColumnPreIndexStatsCollector extends AbstractColumnStatisticsC
     }
 
     float value = ((Number) entry).floatValue();
-    addressSorted(value);
+    if (isSorted) {
+      if (hasPreviousValue && Float.compare(value, previousValue) < 0) {
+        isSorted = false;
+      }
+      previousValue = value;
+      hasPreviousValue = true;
+    }
     floatSet.add(value);
   }
 
@@ -35,6 +35,8 @@ public class IntColumnPreIndexStatsCollector extends AbstractColumnStatisticsCol
   private boolean hasNull = false;
   private int[] sortedIntList;
   private boolean sealed = false;
+  private int previousValue;
+  private boolean hasPreviousValue = false;
 
   public IntColumnPreIndexStatsCollector(FieldSpec spec) {
     super(spec);
@@ -55,7 +57,13 @@ public class IntColumnPreIndexStatsCollector extends AbstractColumnStatisticsCol
     }
 
     int value = ((Number) entry).intValue();
-    addressSorted(value);
+    if (isSorted) {
+      if (hasPreviousValue && value < previousValue) {
+        isSorted = false;
+      }
+      previousValue = value;
+      hasPreviousValue = true;
+    }
     intSet.add(value);
   }
 
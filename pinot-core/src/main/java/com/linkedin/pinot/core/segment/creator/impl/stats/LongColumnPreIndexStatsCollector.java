@@ -35,6 +35,8 @@ public class LongColumnPreIndexStatsCollector extends AbstractColumnStatisticsCo
   private long[] sortedLongList;
   private boolean hasNull = false;
   private boolean sealed = false;
+  private long previousValue;
+  private boolean hasPreviousValue = false;
 
   public LongColumnPreIndexStatsCollector(FieldSpec spec) {
     super(spec);
@@ -56,7 +58,13 @@ public class LongColumnPreIndexStatsCollector extends AbstractColumnStatisticsCo
     }
 
     long value = ((Number) entry).longValue();
-    addressSorted(value);
+    if (isSorted) {
+      if (hasPreviousValue && value < previousValue) {
+        isSorted = false;
+      }
+      previousValue = value;
+      hasPreviousValue = true;
+    }
     longSet.add(value);
 
   }
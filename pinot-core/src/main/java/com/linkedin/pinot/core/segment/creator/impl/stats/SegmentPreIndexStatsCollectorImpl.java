@@ -26,6 +26,7 @@ import com.linkedin.pinot.common.data.Schema;
 import com.linkedin.pinot.core.data.GenericRow;
 import com.linkedin.pinot.core.segment.creator.AbstractColumnStatisticsCollector;
 import com.linkedin.pinot.core.segment.creator.SegmentPreIndexStatsCollector;
+import com.linkedin.pinot.core.segment.creator.impl.ColumnTaskRunner;
 
 
 /**
@@ -36,10 +37,12 @@ public class SegmentPreIndexStatsCollectorImpl implements SegmentPreIndexStatsCo
   private static final Logger LOGGER = LoggerFactory.getLogger(SegmentPreIndexStatsCollectorImpl.class);
 
   private final Schema dataSchema;
+  private final ColumnTaskRunner columnTaskRunner;
   Map<String, AbstractColumnStatisticsCollector> columnStatsCollectorMap;
 
-  public SegmentPreIndexStatsCollectorImpl(Schema dataSchema) {
+  public SegmentPreIndexStatsCollectorImpl(Schema dataSchema, ColumnTaskRunner columnTaskRunner) {
     this.dataSchema = dataSchema;
+    this.columnTaskRunner = columnTaskRunner;
   }
 
   @Override
@@ -72,9 +75,14 @@ public class SegmentPreIndexStatsCollectorImpl implements SegmentPreIndexStatsCo
 
   @Override
   public void build() throws Exception {
-    for (final String column : columnStatsCollectorMap.keySet()) {
-      columnStatsCollectorMap.get(column).seal();
-    }
+    // Sealing sorts the unique values of the column, the columns are sorted in parallel
+    columnTaskRunner.runForEachColumn(columnStatsCollectorMap.values(),
+        new ColumnTaskRunner.ColumnTask<AbstractColumnStatisticsCollector>() {
+          @Override
+          public void run(AbstractColumnStatisticsCollector collector) {
+            collector.seal();
+          }
+        });
   }
 
   @Override
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.segment.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+
+/**
+ * Bloom filter over the distinct values of a column, written next to the other indexes of the column when the segment
+ * is built and kept on heap once loaded.<br>
+ * Values are added and looked up in their string form, the string form of a number must be canonical for its data
+ * type (e.g. Integer.toString for an INT column) so that the same value always sets the same bits.
+ * The bits of a value are picked by double hashing the two halves of its 128 bits murmur3 hash.
+ */
+public class BloomFilter {
+  public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int MAX_NUM_HASH_FUNCTIONS = 16;
+
+  private final int numHashFunctions;
+  private final long[] bits;
+  private final long numBits;
+
+  private BloomFilter(int numHashFunctions, long[] bits) {
+    this.numHashFunctions = numHashFunctions;
+    this.bits = bits;
+    numBits = (long) bits.length * Long.SIZE;
+  }
+
+  /**
+   * @param numValues number of distinct values that will be added
+   * @param falsePositiveProbability expected probability of {@link #mightContain} returning true for a value which
+   *                                 was not added, once all the values are added
+   */
+  public static BloomFilter create(int numValues, double falsePositiveProbability) {
+    final int n = Math.max(1, numValues);
+    final double optimalNumBits = -n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+    final int numLongs = (int) Math.max(1, Math.ceil(optimalNumBits / Long.SIZE));
+    final long numBits = (long) numLongs * Long.SIZE;
+    final int numHashFunctions =
+        (int) Math.min(MAX_NUM_HASH_FUNCTIONS, Math.max(1, Math.round((double) numBits / n * Math.log(2))));
+    return new BloomFilter(numHashFunctions, new long[numLongs]);
+  }
+
+  public void add(String value) {
+    final ByteBuffer hash = hash(value);
+    final long hash1 = hash.getLong();
+    final long hash2 = hash.getLong();
+    for (int i = 0; i < numHashFunctions; i++) {
+      final long bit = index(hash1 + i * hash2);
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  /**
+   * @return false if the value was never added, true if it may have been
+   */
+  public boolean mightContain(String value) {
+    final ByteBuffer hash = hash(value);
+    final long hash1 = hash.getLong();
+    final long hash2 = hash.getLong();
+    for (int i = 0; i < numHashFunctions; i++) {
+      final long bit = index(hash1 + i * hash2);
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static ByteBuffer hash(String value) {
+    return ByteBuffer.wrap(HASH_FUNCTION.hashString(value, UTF_8).asBytes());
+  }
+
+  private long index(long combinedHash) {
+    return (combinedHash & Long.MAX_VALUE) % numBits;
+  }
+
+  public void write(File file) throws IOException {
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(numHashFunctions);
+      out.writeInt(bits.length);
+      for (long word : bits) {
+        out.writeLong(word);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  public static BloomFilter read(File file) throws IOException {
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      final int numHashFunctions = in.readInt();
+      final long[] bits = new long[in.readInt()];
+      for (int i = 0; i < bits.length; i++) {
+        bits[i] = in.readLong();
+      }
+      return new BloomFilter(numHashFunctions, bits);
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -51,11 +51,14 @@ public class ColumnMetadata {
   private final TimeUnit timeunit;
   private final boolean hasDictionary;
   private final int totalNumberOfEntries;
+  private final Comparable minValue;
+  private final Comparable maxValue;
+  private final boolean hasBloomFilter;
 
   public ColumnMetadata(String columnName, int cardinality, int totalDocs, DataType dataType, int bitsPerElement,
       int stringColumnMaxLength, FieldType fieldType, boolean isSorted, boolean hasInvertedIndex,
       boolean insSingleValue, int maxNumberOfMultiValues, boolean hasNulls, boolean hasDictionary, TimeUnit timeunit,
-      int totalNumberOfEntries) {
+      int totalNumberOfEntries, Comparable minValue, Comparable maxValue, boolean hasBloomFilter) {
 
     this.columnName = columnName;
     this.cardinality = cardinality;
@@ -72,6 +75,33 @@ public class ColumnMetadata {
     this.timeunit = timeunit;
     this.hasDictionary = hasDictionary;
     this.totalNumberOfEntries = totalNumberOfEntries;
+    this.minValue = minValue;
+    this.maxValue = maxValue;
+    this.hasBloomFilter = hasBloomFilter;
+  }
+
+  /**
+   * Parses a value of a column of the given data type, as a Comparable of the same class as the min and max values.
+   *
+   * @return the value, or null if the data type has no natural order
+   * @throws NumberFormatException if the value is not a number of the data type
+   */
+  public static Comparable parseValue(DataType dataType, String value) {
+    switch (dataType) {
+      case INT:
+        return Integer.valueOf(value);
+      case LONG:
+        return Long.valueOf(value);
+      case FLOAT:
+        return Float.valueOf(value);
+      case DOUBLE:
+        return Double.valueOf(value);
+      case STRING:
+      case BOOLEAN:
+        return value;
+      default:
+        return null;
+    }
   }
 
   public int getTotalNumberOfEntries() {
@@ -170,4 +200,22 @@ public class ColumnMetadata {
   public boolean hasDictionary() {
     return hasDictionary;
   }
+
+  /**
+   * @return the smallest value of the column, or null for segments created without it
+   */
+  public Comparable getMinValue() {
+    return minValue;
+  }
+
+  /**
+   * @return the largest value of the column, or null for segments created without it
+   */
+  public Comparable getMaxValue() {
+    return maxValue;
+  }
+
+  public boolean hasBloomFilter() {
+    return hasBloomFilter;
+  }
 }
@@ -16,10 +16,13 @@
 package com.linkedin.pinot.core.segment.index;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.linkedin.pinot.core.segment.index.loader.Loaders;
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +32,7 @@ import com.linkedin.pinot.core.common.Predicate;
 import com.linkedin.pinot.core.index.reader.DataFileReader;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.IndexType;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.index.column.ColumnIndexContainer;
 import com.linkedin.pinot.core.segment.index.data.source.ColumnDataSourceImpl;
 import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
@@ -44,16 +48,18 @@ public class IndexSegmentImpl implements IndexSegment {
   private final File indexDir;
   private final SegmentMetadataImpl segmentMetadata;
   private final Map<String, ColumnIndexContainer> indexContainerMap;
-  private final StarTreeIndexNode starTreeRoot;
+  private final OffHeapStarTree starTree;
+  // Bloom filters are only read from disk once a query needs them
+  private final ConcurrentMap<String, BloomFilter> bloomFilterMap = new ConcurrentHashMap<String, BloomFilter>();
 
   public IndexSegmentImpl(File indexDir,
                           SegmentMetadataImpl segmentMetadata,
                           Map<String, ColumnIndexContainer> columnIndexContainerMap,
-                          StarTreeIndexNode starTreeRoot) throws Exception {
+                          OffHeapStarTree starTree) throws Exception {
     this.indexDir = indexDir;
     this.segmentMetadata = segmentMetadata;
     this.indexContainerMap = columnIndexContainerMap;
-    this.starTreeRoot = starTreeRoot;
+    this.starTree = starTree;
     LOGGER.info("successfully loaded the index segment : " + indexDir.getName());
   }
 
@@ -69,6 +75,30 @@ public class IndexSegmentImpl implements IndexSegment {
     return indexContainerMap.get(column).getInvertedIndex();
   }
 
+  /**
+   * Loads the bloom filter of the column the first time it is asked for.
+   *
+   * @return the bloom filter of the column, or null if the segment was created without one or it could not be read
+   */
+  public BloomFilter getBloomFilterFor(String column) {
+    BloomFilter bloomFilter = bloomFilterMap.get(column);
+    if (bloomFilter != null) {
+      return bloomFilter;
+    }
+    final ColumnMetadata columnMetadata = segmentMetadata.getColumnMetadataFor(column);
+    if (columnMetadata == null || !columnMetadata.hasBloomFilter()) {
+      return null;
+    }
+    try {
+      bloomFilter = BloomFilter.read(new File(indexDir, column + V1Constants.Indexes.BLOOM_FILTER_FILE_EXTENSION));
+    } catch (IOException e) {
+      LOGGER.error("Error when loading bloom filter for column : " + column, e);
+      return null;
+    }
+    final BloomFilter existingBloomFilter = bloomFilterMap.putIfAbsent(column, bloomFilter);
+    return existingBloomFilter != null ? existingBloomFilter : bloomFilter;
+  }
+
   @Override
   public IndexType getIndexType() {
     return IndexType.COLUMNAR;
@@ -127,6 +157,14 @@ public class IndexSegmentImpl implements IndexSegment {
       }
     }
     indexContainerMap.clear();
+    bloomFilterMap.clear();
+    if (starTree != null) {
+      try {
+        starTree.close();
+      } catch (Exception e) {
+        LOGGER.error("Error when close star tree index of segment : " + getSegmentName(), e);
+      }
+    }
   }
 
   @Override
@@ -135,7 +173,7 @@ public class IndexSegmentImpl implements IndexSegment {
   }
 
   @Override
-  public StarTreeIndexNode getStarTreeRoot() {
-    return starTreeRoot;
+  public OffHeapStarTree getStarTree() {
+    return starTree;
   }
 }
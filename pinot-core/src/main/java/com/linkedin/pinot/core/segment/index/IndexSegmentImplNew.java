@@ -19,7 +19,7 @@ import java.io.File;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import org.apache.log4j.Logger;
 
 import com.linkedin.pinot.common.segment.SegmentMetadata;
@@ -91,7 +91,7 @@ public class IndexSegmentImplNew implements IndexSegment {
   }
 
   @Override
-  public StarTreeIndexNode getStarTreeRoot() {
+  public OffHeapStarTree getStarTree() {
     // TODO: It appears that this class is not used anywhere, so not implementing (gbrandt@linkedin.com)
     return null;
   }
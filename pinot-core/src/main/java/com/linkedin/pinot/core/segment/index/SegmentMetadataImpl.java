@@ -374,12 +374,34 @@ public class SegmentMetadataImpl implements SegmentMetadata {
         _segmentMetadataPropertiesConfiguration.getInt(V1Constants.MetadataKeys.Column.getKeyFor(column,
             V1Constants.MetadataKeys.Column.TOTAL_NUMBER_OF_ENTRIES));
 
+    // Segments created before the min and max values were written have neither of them
+    final Comparable minValue = extractColumnValueFor(column, V1Constants.MetadataKeys.Column.MIN_VALUE, dataType);
+    final Comparable maxValue = extractColumnValueFor(column, V1Constants.MetadataKeys.Column.MAX_VALUE, dataType);
+
+    final boolean hasBloomFilter =
+        _segmentMetadataPropertiesConfiguration.getBoolean(
+            V1Constants.MetadataKeys.Column.getKeyFor(column, V1Constants.MetadataKeys.Column.HAS_BLOOM_FILTER), false);
+
     return new ColumnMetadata(column, cardinality, totalDocs, dataType, bitsPerElement, stringColumnMaxLength,
         fieldType, isSorted, hasInvertedIndex, insSingleValue, maxNumberOfMultiValues, hasNulls, hasDictionary,
-        segmentTimeUnit, totalNumberOfEntries);
+        segmentTimeUnit, totalNumberOfEntries, minValue, maxValue, hasBloomFilter);
 
   }
 
+  private Comparable extractColumnValueFor(String column, String key, DataType dataType) {
+    final String value =
+        _segmentMetadataPropertiesConfiguration.getString(V1Constants.MetadataKeys.Column.getKeyFor(column, key));
+    if (value == null) {
+      return null;
+    }
+    try {
+      return ColumnMetadata.parseValue(dataType, value);
+    } catch (NumberFormatException e) {
+      LOGGER.warn("Invalid {} {} for column {} of type {}", key, value, column, dataType);
+      return null;
+    }
+  }
+
   public ColumnMetadata getColumnMetadataFor(String column) {
     return _columnMetadataMap.get(column);
   }
@@ -16,17 +16,15 @@
 package com.linkedin.pinot.core.segment.index.loader;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.HashMap;
 import java.util.Map;
 
 import com.linkedin.pinot.common.metadata.segment.IndexLoadingConfigMetadata;
 import com.linkedin.pinot.common.segment.ReadMode;
-import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.linkedin.pinot.core.segment.index.column.ColumnIndexContainer;
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,14 +53,13 @@ public class Loaders {
       }
 
       // The star tree index (if available)
-      StarTreeIndexNode starTreeRoot = null;
+      OffHeapStarTree starTree = null;
       if (metadata.hasStarTree()) {
-        File starTreeFile = new File(indexDir, V1Constants.STARTREE_FILE);
-        LOGGER.debug("Loading star tree index file {}", starTreeFile);
-        starTreeRoot = StarTreeIndexNode.fromBytes(new FileInputStream(starTreeFile));
+        LOGGER.debug("Loading star tree index of {}", indexDir);
+        starTree = OffHeapStarTree.load(indexDir, readMode == ReadMode.mmap);
       }
 
-      return new IndexSegmentImpl(indexDir, metadata, indexContainerMap, starTreeRoot);
+      return new IndexSegmentImpl(indexDir, metadata, indexContainerMap, starTree);
     }
   }
 }
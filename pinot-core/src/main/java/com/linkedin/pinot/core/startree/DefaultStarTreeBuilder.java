@@ -81,7 +81,7 @@ public class DefaultStarTreeBuilder implements StarTreeBuilder {
 
     LOG.info("Beginning StarTree construction...");
     startMillis = System.currentTimeMillis();
-    constructStarTree(starTree, starTreeTable);
+    constructStarTree(starTree, 0, starTreeTable.size());
     numberNodes();
     endMillis = System.currentTimeMillis();
     LOG.info("StarTree construction complete, took {} ms", endMillis - startMillis);
@@ -147,47 +147,39 @@ public class DefaultStarTreeBuilder implements StarTreeBuilder {
   /**
    * Recursively constructs the StarTree, splitting nodes and adding leaf records.
    *
+   * <p>
+   *   The records of a node are a contiguous range of the table. Splitting the node sorts the range on the split
+   *   dimension, so that each child with a value owns a sub range of it, and appends the aggregates of the star child
+   *   to the end of the table. The table is thus only ever appended to, and the records of every leaf stay contiguous,
+   *   raw records first and aggregates after.
+   * </p>
+   *
    * @param node
    *  The sub-tree to potentially split.
-   * @param table
-   *  The projection of the StarTree table which corresponds to the sub tree.
-   * @return
-   *  The number of records that were added at this level
+   * @param startDocumentId
+   *  The first record of the sub tree in the StarTree table.
+   * @param documentCount
+   *  The number of records of the sub tree.
    */
-
-  private int constructStarTree(StarTreeIndexNode node, StarTreeTable table) {
+  private void constructStarTree(StarTreeIndexNode node, int startDocumentId, int documentCount) {
     long startMillis;
     long endMillis;
 
-    if (node.getLevel() >= splitOrder.size() || table.size() <= maxLeafRecords) {
+    if (node.getLevel() >= splitOrder.size() || documentCount <= maxLeafRecords) {
       // Either can no longer split, or max record constraint has been met
-      return 0;
+      return;
     }
 
     // The next dimension on which to split
     Integer splitDimensionId = splitOrder.get(node.getLevel());
-    LOG.info("Splitting on dimension {} at level {} (table.size={})", splitDimensionId, node.getLevel(), table.size());
-
-    // Compute the remaining unique combinations after removing split dimension
-    int aggregateCombinations = 0;
-    Iterator<StarTreeTableRow> uniqueItr = table.getUniqueCombinations(Collections.singletonList(splitDimensionId));
-    while (uniqueItr.hasNext()) {
-      // And append them to the sub table
-      // n.b. This appends to the end of the sub table, which may be actually inserting to a parent table
-      StarTreeTableRow row = uniqueItr.next();
-      table.append(row);
-      aggregateCombinations++;
-    }
-    LOG.info("Added {} aggregate combinations at {}", aggregateCombinations, node);
+    LOG.info("Splitting on dimension {} at level {} (table.size={})", splitDimensionId, node.getLevel(), documentCount);
 
-    // Sort the sub-table based on the current tree prefix
-    // n.b. If a view of a larger table, it will be partially sorted,
-    // so the first couple of dimension prefix comparisons will be no-ops.
-    List<Integer> pathDimensions = node.getPathDimensions();
-    pathDimensions.add(splitDimensionId);
-    LOG.info("Sorting sub-table at {} by dimensions {}", node, pathDimensions);
+    // Sort the sub-table on the split dimension
+    // n.b. All its records already have the same values for the tree prefix
+    StarTreeTable table = starTreeTable.view(startDocumentId, documentCount);
+    LOG.info("Sorting sub-table at {} by dimension {}", node, splitDimensionId);
     startMillis = System.currentTimeMillis();
-    table.sort(pathDimensions);
+    table.sort(Collections.singletonList(splitDimensionId));
     endMillis = System.currentTimeMillis();
     LOG.info("Sort of sub-table {} took {} ms", node, endMillis - startMillis);
 
@@ -195,38 +187,49 @@ public class DefaultStarTreeBuilder implements StarTreeBuilder {
     node.setChildDimensionName(splitDimensionId);
     node.setChildren(new HashMap<Integer, StarTreeIndexNode>());
 
-    // Compute the GROUP BY stats, including for ALL (i.e. "*") dimension value
-    LOG.info("Computing group by stats at {}", node);
-    startMillis = System.currentTimeMillis();
-    StarTreeTableGroupByStats groupByStats = table.groupBy(splitDimensionId);
-    endMillis = System.currentTimeMillis();
-    LOG.info("Group by stats computation at {} took {} ms", node, endMillis - startMillis);
-
-    int subTreeAggregateCombinations = 0;
-    for (Integer valueId : groupByStats.getValues()) {
-      // Create child
-      StarTreeIndexNode child = new StarTreeIndexNode();
-      child.setDimensionName(splitDimensionId);
-      child.setDimensionValue(valueId);
-      child.setParent(node);
-      child.setLevel(node.getLevel() + 1);
-      // n.b. We will number the nodes later using BFS after fully split
-
-      // Add child to parent
-      node.getChildren().put(valueId, child);
-
-      // Create table projection
-      // n.b. Since the sub table is sorted, we can use minRecordId and raw count to determine the range for
-      // containing the dimensions whose value is valueId for splitDimensionId, and create a sub table.
-      Integer minRecordId = groupByStats.getMinRecordId(valueId) + subTreeAggregateCombinations;
-      Integer rawRecordCount = groupByStats.getRawCount(valueId);
-      StarTreeTable subTable = table.view(minRecordId, rawRecordCount);
-
-      // Create sub-tree
-      subTreeAggregateCombinations += constructStarTree(child, subTable);
+    // Find the range of each value of the split dimension
+    List<Integer> values = new ArrayList<>();
+    List<Integer> valueStartDocumentIds = new ArrayList<>();
+    Iterator<StarTreeTableRow> itr = table.getAllCombinations();
+    for (int documentId = startDocumentId; itr.hasNext(); documentId++) {
+      Integer value = itr.next().getDimensions().get(splitDimensionId);
+      if (values.isEmpty() || !values.get(values.size() - 1).equals(value)) {
+        values.add(value);
+        valueStartDocumentIds.add(documentId);
+      }
+    }
+    valueStartDocumentIds.add(startDocumentId + documentCount);
+
+    // Compute the remaining unique combinations after removing split dimension, they are the star child records
+    // n.b. The iterator does not read the table once created, so the records can be appended while iterating
+    int aggregateStartDocumentId = starTreeTable.size();
+    Iterator<StarTreeTableRow> uniqueItr = table.getUniqueCombinations(Collections.singletonList(splitDimensionId));
+    while (uniqueItr.hasNext()) {
+      starTreeTable.append(uniqueItr.next());
     }
+    int aggregateCombinations = starTreeTable.size() - aggregateStartDocumentId;
+    LOG.info("Added {} aggregate combinations at {}", aggregateCombinations, node);
+
+    constructStarTree(createChild(node, splitDimensionId, StarTreeIndexNode.all()), aggregateStartDocumentId,
+        aggregateCombinations);
+    for (int i = 0; i < values.size(); i++) {
+      int valueStartDocumentId = valueStartDocumentIds.get(i);
+      constructStarTree(createChild(node, splitDimensionId, values.get(i)), valueStartDocumentId,
+          valueStartDocumentIds.get(i + 1) - valueStartDocumentId);
+    }
+  }
 
-    return aggregateCombinations + subTreeAggregateCombinations;
+  private StarTreeIndexNode createChild(StarTreeIndexNode node, Integer splitDimensionId, Integer valueId) {
+    StarTreeIndexNode child = new StarTreeIndexNode();
+    child.setDimensionName(splitDimensionId);
+    child.setDimensionValue(valueId);
+    child.setParent(node);
+    child.setLevel(node.getLevel() + 1);
+    // n.b. We will number the nodes later using BFS after fully split
+
+    // Add child to parent
+    node.getChildren().put(valueId, child);
+    return child;
   }
 
   /**
@@ -0,0 +1,328 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.utils.MmapUtils;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+
+
+/**
+ * Read only star tree stored as a flat array of fixed size nodes, memory mapped from (or loaded off heap from) the
+ * {@link V1Constants#STARTREE_INDEX_FILE} of the segment, so that loading a segment does not deserialize an object
+ * graph and the tree does not live on the heap.<br>
+ * Nodes are identified by their index in the array, the root being node 0. They are written in BFS order, so the
+ * children of a node are contiguous, and they are sorted on their dimension value (the dictId of the value, the star
+ * node {@link StarTreeIndexNode#all()} coming first): the child for a value is found by a binary search over the
+ * child range of its parent.
+ *
+ * <pre>
+ * header : magic (int), version (int), number of nodes (int)
+ * node   : dimension name, dimension value, child dimension name, start document id, document count, parent node,
+ *          first child node (-1 for a leaf), number of children (all ints)
+ * </pre>
+ */
+public class OffHeapStarTree implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapStarTree.class);
+
+  public static final int MAGIC = 0x53545245;
+  public static final int VERSION = 1;
+  public static final int ROOT = 0;
+  public static final int INVALID_NODE = -1;
+
+  private static final int INT_SIZE = Integer.SIZE / Byte.SIZE;
+  private static final int HEADER_SIZE = 3 * INT_SIZE;
+  private static final int DIMENSION_NAME_OFFSET = 0;
+  private static final int DIMENSION_VALUE_OFFSET = INT_SIZE;
+  private static final int CHILD_DIMENSION_NAME_OFFSET = 2 * INT_SIZE;
+  private static final int START_DOCUMENT_ID_OFFSET = 3 * INT_SIZE;
+  private static final int DOCUMENT_COUNT_OFFSET = 4 * INT_SIZE;
+  private static final int PARENT_OFFSET = 5 * INT_SIZE;
+  private static final int FIRST_CHILD_OFFSET = 6 * INT_SIZE;
+  private static final int NUM_CHILDREN_OFFSET = 7 * INT_SIZE;
+  private static final int NODE_SIZE = 8 * INT_SIZE;
+
+  private final ByteBuffer buffer;
+  private final RandomAccessFile randomAccessFile;
+  private final int numNodes;
+
+  private OffHeapStarTree(ByteBuffer buffer, RandomAccessFile randomAccessFile) {
+    this.buffer = buffer;
+    this.randomAccessFile = randomAccessFile;
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IllegalStateException("Not a star tree index, wrong magic number " + buffer.getInt(0));
+    }
+    if (buffer.getInt(INT_SIZE) != VERSION) {
+      throw new IllegalStateException("Unsupported star tree index version " + buffer.getInt(INT_SIZE));
+    }
+    numNodes = buffer.getInt(2 * INT_SIZE);
+  }
+
+  /**
+   * Loads the star tree of a segment. Segments created before the flat format only have the Java serialized tree, it
+   * is converted to the flat format in memory.
+   *
+   * @param indexDir segment directory
+   * @param isMmap whether to memory map the index file or to load it in a direct byte buffer
+   */
+  public static OffHeapStarTree load(File indexDir, boolean isMmap) throws IOException {
+    final File starTreeFile = new File(indexDir, V1Constants.STARTREE_INDEX_FILE);
+    if (starTreeFile.exists()) {
+      return fromFile(starTreeFile, isMmap);
+    }
+
+    final File legacyStarTreeFile = new File(indexDir, V1Constants.STARTREE_FILE);
+    LOGGER.info("No {} in {}, converting the serialized star tree {}", V1Constants.STARTREE_INDEX_FILE, indexDir,
+        legacyStarTreeFile);
+    final InputStream inputStream = new FileInputStream(legacyStarTreeFile);
+    try {
+      return fromTree(StarTreeIndexNode.fromBytes(inputStream));
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Caught exception while reading star tree " + legacyStarTreeFile, e);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  public static OffHeapStarTree fromFile(File file, boolean isMmap) throws IOException {
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    final ByteBuffer buffer;
+    if (isMmap) {
+      buffer = MmapUtils.mmapFile(randomAccessFile, MapMode.READ_ONLY, 0, randomAccessFile.length(), file,
+          OffHeapStarTree.class.getSimpleName() + " buffer");
+    } else {
+      buffer = MmapUtils.allocateDirectByteBuffer((int) randomAccessFile.length(), file,
+          OffHeapStarTree.class.getSimpleName() + " buffer");
+      while (buffer.hasRemaining() && randomAccessFile.getChannel().read(buffer) >= 0) {
+      }
+    }
+    return new OffHeapStarTree(buffer, randomAccessFile);
+  }
+
+  /**
+   * Converts a star tree built on heap to the flat format.
+   */
+  public static OffHeapStarTree fromTree(StarTreeIndexNode root) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    write(root, bytes);
+    final ByteBuffer buffer = MmapUtils.allocateDirectByteBuffer(bytes.size(), null,
+        OffHeapStarTree.class.getSimpleName() + " buffer");
+    buffer.put(bytes.toByteArray());
+    return new OffHeapStarTree(buffer, null);
+  }
+
+  /**
+   * Writes a star tree built on heap in the flat format.
+   */
+  public static void write(StarTreeIndexNode root, File file) throws IOException {
+    final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      write(root, outputStream);
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  private static void write(StarTreeIndexNode root, OutputStream outputStream) throws IOException {
+    // Lay the nodes out in BFS order, the children of a node sorted on their value get the next indexes
+    final List<StarTreeIndexNode> nodes = new ArrayList<StarTreeIndexNode>();
+    final IntArrayList parents = new IntArrayList();
+    final IntArrayList firstChildren = new IntArrayList();
+    nodes.add(root);
+    parents.add(INVALID_NODE);
+    for (int i = 0; i < nodes.size(); i++) {
+      final StarTreeIndexNode node = nodes.get(i);
+      if (node.isLeaf()) {
+        firstChildren.add(INVALID_NODE);
+        continue;
+      }
+      firstChildren.add(nodes.size());
+      final List<StarTreeIndexNode> children = new ArrayList<StarTreeIndexNode>(node.getChildren().values());
+      Collections.sort(children, new Comparator<StarTreeIndexNode>() {
+        @Override
+        public int compare(StarTreeIndexNode left, StarTreeIndexNode right) {
+          return Integer.compare(left.getDimensionValue(), right.getDimensionValue());
+        }
+      });
+      for (StarTreeIndexNode child : children) {
+        nodes.add(child);
+        parents.add(i);
+      }
+    }
+
+    final DataOutputStream out = new DataOutputStream(outputStream);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      final StarTreeIndexNode node = nodes.get(i);
+      out.writeInt(node.getDimensionName());
+      out.writeInt(node.getDimensionValue());
+      out.writeInt(node.getChildDimensionName());
+      out.writeInt(node.getStartDocumentId());
+      out.writeInt(node.getDocumentCount());
+      out.writeInt(parents.getInt(i));
+      out.writeInt(firstChildren.getInt(i));
+      out.writeInt(node.isLeaf() ? 0 : node.getChildren().size());
+    }
+    out.flush();
+  }
+
+  public int getNumNodes() {
+    return numNodes;
+  }
+
+  private int getInt(int node, int fieldOffset) {
+    return buffer.getInt(HEADER_SIZE + node * NODE_SIZE + fieldOffset);
+  }
+
+  public boolean isLeaf(int node) {
+    return getInt(node, FIRST_CHILD_OFFSET) == INVALID_NODE;
+  }
+
+  /**
+   * @return the id of the dimension the node splits its parent on
+   */
+  public int getDimensionName(int node) {
+    return getInt(node, DIMENSION_NAME_OFFSET);
+  }
+
+  /**
+   * @return the dictId of the value of the dimension the node splits its parent on, {@link StarTreeIndexNode#all()}
+   * for a star node
+   */
+  public int getDimensionValue(int node) {
+    return getInt(node, DIMENSION_VALUE_OFFSET);
+  }
+
+  /**
+   * @return the id of the dimension the children of the node split it on
+   */
+  public int getChildDimensionName(int node) {
+    return getInt(node, CHILD_DIMENSION_NAME_OFFSET);
+  }
+
+  public int getStartDocumentId(int node) {
+    return getInt(node, START_DOCUMENT_ID_OFFSET);
+  }
+
+  public int getDocumentCount(int node) {
+    return getInt(node, DOCUMENT_COUNT_OFFSET);
+  }
+
+  /**
+   * @return the parent of the node, {@link #INVALID_NODE} for the root
+   */
+  public int getParent(int node) {
+    return getInt(node, PARENT_OFFSET);
+  }
+
+  public int getNumChildren(int node) {
+    return getInt(node, NUM_CHILDREN_OFFSET);
+  }
+
+  /**
+   * @return the i-th child of the node in dimension value order
+   */
+  public int getChild(int node, int i) {
+    return getInt(node, FIRST_CHILD_OFFSET) + i;
+  }
+
+  /**
+   * Binary searches the children of the node for the one with the dimension value.
+   *
+   * @return the child, or {@link #INVALID_NODE} if the node is a leaf or has no child for the value
+   */
+  public int getChildForValue(int node, int dimensionValue) {
+    int low = getInt(node, FIRST_CHILD_OFFSET);
+    if (low == INVALID_NODE) {
+      return INVALID_NODE;
+    }
+    int high = low + getInt(node, NUM_CHILDREN_OFFSET) - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int midValue = getDimensionValue(mid);
+      if (midValue < dimensionValue) {
+        low = mid + 1;
+      } else if (midValue > dimensionValue) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return INVALID_NODE;
+  }
+
+  /**
+   * Returns the dimension values, keyed by dimension id, on the path from the root to the node.
+   */
+  public Map<Integer, Integer> getPathValues(int node) {
+    final Map<Integer, Integer> values = new HashMap<Integer, Integer>();
+    for (int current = node; getParent(current) != INVALID_NODE; current = getParent(current)) {
+      values.put(getDimensionName(current), getDimensionValue(current));
+    }
+    return values;
+  }
+
+  public String toString(int node) {
+    return "StarTreeNode{nodeId=" + node + ", dimensionName=" + getDimensionName(node) + ", dimensionValue="
+        + getDimensionValue(node) + ", childDimensionName=" + getChildDimensionName(node) + ", childCount="
+        + getNumChildren(node) + ", startDocumentId=" + getStartDocumentId(node) + ", documentCount="
+        + getDocumentCount(node) + "}";
+  }
+
+  public void printTree(int node, int level) {
+    for (int i = 0; i < level; i++) {
+      System.out.print("  ");
+    }
+    System.out.println(toString(node));
+
+    for (int i = 0; i < getNumChildren(node); i++) {
+      printTree(getChild(node, i), level + 1);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    MmapUtils.unloadByteBuffer(buffer);
+    if (randomAccessFile != null) {
+      randomAccessFile.close();
+    }
+  }
+}
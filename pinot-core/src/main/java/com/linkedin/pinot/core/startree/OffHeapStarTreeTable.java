@@ -0,0 +1,640 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.utils.MmapUtils;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Star tree table that stores fixed width rows in large off heap pages.
+ *
+ * <p>
+ *   A row is encoded as the dictionary ids of its dimensions (4 bytes each) followed by its metrics in their primitive
+ *   type, and is sorted and aggregated in that form, without boxing. The pages are direct buffers, or files mapped
+ *   from the backing directory when there is one, so the table does not live on the heap.
+ * </p>
+ *
+ * <p>
+ *   Rows are sorted by chunks of at most maxRowsInMemory rows with a primitive comparator on the dimensions. When a
+ *   range holds several chunks, the sorted chunks are spilled to disk as runs and k-way merged back into the range.
+ *   {@link #getUniqueCombinations(List)} aggregates each chunk before spilling it, and again while merging the runs,
+ *   without modifying the table.
+ * </p>
+ *
+ * <p>
+ *   Rows can only be appended to the table itself, not to a view of it.
+ * </p>
+ */
+public class OffHeapStarTreeTable implements StarTreeTable {
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapStarTreeTable.class);
+
+  public static final int DEFAULT_PAGE_SIZE_IN_BYTES = 64 * 1024 * 1024;
+  public static final int DEFAULT_MAX_ROWS_IN_MEMORY = 1024 * 1024;
+  private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+  private final Storage storage;
+  private final int startRowId;
+  private final int numRows; // -1 for the table itself, whose size grows with appends
+
+  public OffHeapStarTreeTable(List<FieldSpec.DataType> dimensionTypes, List<FieldSpec.DataType> metricTypes) {
+    this(dimensionTypes, metricTypes, null);
+  }
+
+  /**
+   * @param backingDir directory of the mapped pages and of the spilled runs, or null to use direct buffers
+   */
+  public OffHeapStarTreeTable(List<FieldSpec.DataType> dimensionTypes, List<FieldSpec.DataType> metricTypes,
+      File backingDir) {
+    this(dimensionTypes, metricTypes, backingDir, DEFAULT_PAGE_SIZE_IN_BYTES, DEFAULT_MAX_ROWS_IN_MEMORY);
+  }
+
+  public OffHeapStarTreeTable(List<FieldSpec.DataType> dimensionTypes, List<FieldSpec.DataType> metricTypes,
+      File backingDir, int pageSizeInBytes, int maxRowsInMemory) {
+    this(new Storage(dimensionTypes.size(), metricTypes, backingDir, pageSizeInBytes, maxRowsInMemory), 0, -1);
+  }
+
+  private OffHeapStarTreeTable(Storage storage, int startRowId, int numRows) {
+    this.storage = storage;
+    this.startRowId = startRowId;
+    this.numRows = numRows;
+  }
+
+  @Override
+  public void append(StarTreeTableRow row) {
+    if (numRows >= 0) {
+      throw new UnsupportedOperationException("Rows can only be appended to the table, not to a view");
+    }
+    int rowId = storage.size;
+    if (rowId == storage.pages.size() * storage.rowsPerPage) {
+      storage.addPage();
+    }
+    storage.encode(row, storage.getPage(rowId), storage.getOffset(rowId));
+    storage.size++;
+  }
+
+  @Override
+  public int size() {
+    return numRows >= 0 ? numRows : storage.size;
+  }
+
+  @Override
+  public Iterator<StarTreeTableRow> getUniqueCombinations(List<Integer> excludedDimensions) {
+    final boolean[] isExcluded = new boolean[storage.numDimensions];
+    if (excludedDimensions != null) {
+      for (Integer dimension : excludedDimensions) {
+        isExcluded[dimension] = true;
+      }
+    }
+    int numIncluded = 0;
+    final int[] includedDimensions = new int[storage.numDimensions];
+    for (int i = 0; i < storage.numDimensions; i++) {
+      if (!isExcluded[i]) {
+        includedDimensions[numIncluded++] = i;
+      }
+    }
+    final int[] sortDimensions = Arrays.copyOf(includedDimensions, numIncluded);
+
+    final PriorityQueue<RowRun> queue = createMergeQueue(sortRuns(sortDimensions, true), sortDimensions);
+    final ByteBuffer current = ByteBuffer.allocate(storage.rowSize);
+    final StarTreeTableRow row = new StarTreeTableRow(storage.numDimensions, storage.metricTypes.length);
+
+    return new Iterator<StarTreeTableRow>() {
+      @Override
+      public boolean hasNext() {
+        return !queue.isEmpty();
+      }
+
+      @Override
+      public StarTreeTableRow next() {
+        if (queue.isEmpty()) {
+          throw new NoSuchElementException();
+        }
+
+        // Aggregate the head of every run with the same included dimensions
+        RowRun run = queue.poll();
+        storage.copyRow(run.buffer, run.offset, current, 0);
+        advance(queue, run);
+        while (!queue.isEmpty()
+            && storage.compare(queue.peek().buffer, queue.peek().offset, current, 0, sortDimensions) == 0) {
+          run = queue.poll();
+          storage.aggregate(run.buffer, run.offset, current, 0);
+          advance(queue, run);
+        }
+
+        storage.decode(current, 0, row);
+        for (int i = 0; i < storage.numDimensions; i++) {
+          if (isExcluded[i]) {
+            row.setDimension(i, StarTreeIndexNode.all());
+          }
+        }
+        return row;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public Iterator<StarTreeTableRow> getAllCombinations() {
+    final StarTreeTableRow reuse = new StarTreeTableRow(storage.numDimensions, storage.metricTypes.length);
+    final int endRowId = startRowId + size();
+    return new Iterator<StarTreeTableRow>() {
+      private int rowId = startRowId;
+
+      @Override
+      public boolean hasNext() {
+        return rowId < endRowId;
+      }
+
+      @Override
+      public StarTreeTableRow next() {
+        if (rowId >= endRowId) {
+          throw new NoSuchElementException();
+        }
+        storage.decode(storage.getPage(rowId), storage.getOffset(rowId), reuse);
+        rowId++;
+        return reuse;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public void sort(List<Integer> sortDimensions) {
+    if (sortDimensions == null || size() <= 1) {
+      return;
+    }
+    int[] dimensions = new int[sortDimensions.size()];
+    for (int i = 0; i < dimensions.length; i++) {
+      dimensions[i] = sortDimensions.get(i);
+    }
+
+    // The runs do not reference the table, so they can be merged back over the sorted range
+    PriorityQueue<RowRun> queue = createMergeQueue(sortRuns(dimensions, false), dimensions);
+    int rowId = startRowId;
+    while (!queue.isEmpty()) {
+      RowRun run = queue.poll();
+      storage.copyRow(run.buffer, run.offset, storage.getPage(rowId), storage.getOffset(rowId));
+      rowId++;
+      advance(queue, run);
+    }
+  }
+
+  @Override
+  public StarTreeTableGroupByStats groupBy(Integer dimension) {
+    StarTreeTableGroupByStats result = new StarTreeTableGroupByStats();
+
+    int endRowId = startRowId + size();
+    for (int rowId = startRowId; rowId < endRowId; rowId++) {
+      int value = storage.getPage(rowId).getInt(storage.getOffset(rowId) + dimension * 4);
+      result.incrementRawCount(value);
+      result.updateMinRecordId(value, rowId - startRowId);
+    }
+
+    Iterator<StarTreeTableRow> itr = getUniqueCombinations(null);
+    while (itr.hasNext()) {
+      result.incrementUniqueCount(itr.next().getDimensions().get(dimension));
+    }
+
+    return result;
+  }
+
+  @Override
+  public StarTreeTable view(Integer startDocumentId, Integer documentCount) {
+    return new OffHeapStarTreeTable(storage, startRowId + startDocumentId, documentCount);
+  }
+
+  @Override
+  public void printTable(PrintStream printStream) {
+    Iterator<StarTreeTableRow> itr = getAllCombinations();
+    for (int i = 0; itr.hasNext(); i++) {
+      printStream.println(i + ": " + itr.next());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (numRows < 0) {
+      storage.close();
+    }
+  }
+
+  /**
+   * Sorts the rows of the table by chunks that fit in memory.
+   *
+   * @param dimensions the dimensions to sort on
+   * @param aggregate whether to aggregate the rows of a chunk with the same dimensions
+   * @return a single in memory run if the table fits in one chunk, the runs spilled to disk otherwise
+   */
+  private List<RowRun> sortRuns(int[] dimensions, boolean aggregate) {
+    List<RowRun> runs = new ArrayList<>();
+    int count = size();
+    if (count == 0) {
+      return runs;
+    }
+
+    int chunkSize = Math.min(count, Math.min(storage.maxRowsInMemory, Integer.MAX_VALUE / storage.rowSize));
+    ByteBuffer chunk = MmapUtils.allocateDirectByteBuffer(chunkSize * storage.rowSize, null,
+        OffHeapStarTreeTable.class.getSimpleName() + " sort buffer");
+    if (count == chunkSize) {
+      sortChunk(startRowId, count, dimensions, aggregate, chunk);
+      runs.add(new BufferRun(chunk));
+      return runs;
+    }
+
+    LOG.info("Sorting {} rows in runs of {} rows", count, chunkSize);
+    try {
+      for (int chunkStart = 0; chunkStart < count; chunkStart += chunkSize) {
+        sortChunk(startRowId + chunkStart, Math.min(chunkSize, count - chunkStart), dimensions, aggregate, chunk);
+        runs.add(spill(chunk));
+      }
+    } catch (IOException e) {
+      for (RowRun run : runs) {
+        run.close();
+      }
+      throw new IllegalStateException("Could not spill sorted run", e);
+    } finally {
+      MmapUtils.unloadByteBuffer(chunk);
+    }
+    return runs;
+  }
+
+  /**
+   * Copies the rows [start, start + count) into the chunk, sorted (and aggregated) on the dimensions.
+   */
+  private void sortChunk(int start, int count, final int[] dimensions, boolean aggregate, ByteBuffer chunk) {
+    int[] rowIds = new int[count];
+    for (int i = 0; i < count; i++) {
+      rowIds[i] = start + i;
+    }
+    IntArrays.quickSort(rowIds, 0, count, new IntComparator() {
+      @Override
+      public int compare(int rowId1, int rowId2) {
+        return storage.compare(storage.getPage(rowId1), storage.getOffset(rowId1), storage.getPage(rowId2),
+            storage.getOffset(rowId2), dimensions);
+      }
+
+      @Override
+      public int compare(Integer rowId1, Integer rowId2) {
+        return compare(rowId1.intValue(), rowId2.intValue());
+      }
+    });
+
+    final int rowSize = storage.rowSize;
+    chunk.clear();
+    int numChunkRows = 0;
+    for (int i = 0; i < count; i++) {
+      int rowId = rowIds[i];
+      if (aggregate && numChunkRows > 0 && storage.compare(storage.getPage(rowId), storage.getOffset(rowId), chunk,
+          (numChunkRows - 1) * rowSize, dimensions) == 0) {
+        storage.aggregate(storage.getPage(rowId), storage.getOffset(rowId), chunk, (numChunkRows - 1) * rowSize);
+      } else {
+        storage.copyRow(storage.getPage(rowId), storage.getOffset(rowId), chunk, numChunkRows * rowSize);
+        numChunkRows++;
+      }
+    }
+    chunk.limit(numChunkRows * rowSize);
+  }
+
+  private RowRun spill(ByteBuffer chunk) throws IOException {
+    File dir = storage.backingDir != null ? storage.backingDir : new File(System.getProperty("java.io.tmpdir"));
+    if (!dir.exists()) {
+      FileUtils.forceMkdir(dir);
+    }
+    File file = File.createTempFile("star_tree_run_", ".tmp", dir);
+    int numRunRows = chunk.remaining() / storage.rowSize;
+    try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+      while (chunk.hasRemaining()) {
+        channel.write(chunk);
+      }
+    }
+    return new FileRun(file, numRunRows);
+  }
+
+  private PriorityQueue<RowRun> createMergeQueue(List<RowRun> runs, final int[] dimensions) {
+    PriorityQueue<RowRun> queue = new PriorityQueue<>(Math.max(1, runs.size()), new Comparator<RowRun>() {
+      @Override
+      public int compare(RowRun run1, RowRun run2) {
+        return storage.compare(run1.buffer, run1.offset, run2.buffer, run2.offset, dimensions);
+      }
+    });
+    for (RowRun run : runs) {
+      advance(queue, run);
+    }
+    return queue;
+  }
+
+  /** Moves the run to its next row, and puts it back in the queue unless it is exhausted */
+  private static void advance(PriorityQueue<RowRun> queue, RowRun run) {
+    if (run.next()) {
+      queue.add(run);
+    } else {
+      run.close();
+    }
+  }
+
+  /**
+   * Sorted sequence of rows, the current row is at offset in buffer.
+   */
+  private abstract class RowRun {
+    ByteBuffer buffer;
+    int offset;
+
+    abstract boolean next();
+
+    abstract void close();
+  }
+
+  /** Run of a sorted chunk that is still in memory */
+  private class BufferRun extends RowRun {
+    BufferRun(ByteBuffer chunk) {
+      buffer = chunk;
+      offset = -storage.rowSize;
+    }
+
+    @Override
+    boolean next() {
+      offset += storage.rowSize;
+      return offset < buffer.limit();
+    }
+
+    @Override
+    void close() {
+      MmapUtils.unloadByteBuffer(buffer);
+    }
+  }
+
+  /** Run of a sorted chunk spilled to disk */
+  private class FileRun extends RowRun {
+    private final File file;
+    private final DataInputStream inputStream;
+    private int numRemainingRows;
+
+    FileRun(File file, int numRows) throws IOException {
+      this.file = file;
+      this.inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_BUFFER_SIZE));
+      this.numRemainingRows = numRows;
+      buffer = ByteBuffer.allocate(storage.rowSize);
+      offset = 0;
+    }
+
+    @Override
+    boolean next() {
+      if (numRemainingRows == 0) {
+        return false;
+      }
+      try {
+        inputStream.readFully(buffer.array());
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not read run " + file, e);
+      }
+      numRemainingRows--;
+      return true;
+    }
+
+    @Override
+    void close() {
+      try {
+        inputStream.close();
+      } catch (IOException e) {
+        LOG.warn("Could not close run {}", file, e);
+      }
+      FileUtils.deleteQuietly(file);
+    }
+  }
+
+  /**
+   * Pages of the table, shared with its views.
+   */
+  private static final class Storage {
+    final int numDimensions;
+    final FieldSpec.DataType[] metricTypes;
+    final int[] metricOffsets;
+    final int rowSize;
+    final int rowsPerPage;
+    final File backingDir;
+    final int maxRowsInMemory;
+    final List<ByteBuffer> pages = new ArrayList<>();
+    final List<RandomAccessFile> pageFiles = new ArrayList<>();
+    int size;
+
+    Storage(int numDimensions, List<FieldSpec.DataType> metricTypes, File backingDir, int pageSizeInBytes,
+        int maxRowsInMemory) {
+      this.numDimensions = numDimensions;
+      this.metricTypes = metricTypes.toArray(new FieldSpec.DataType[metricTypes.size()]);
+      this.metricOffsets = new int[this.metricTypes.length];
+
+      int offset = numDimensions * 4;
+      for (int i = 0; i < this.metricTypes.length; i++) {
+        metricOffsets[i] = offset;
+        switch (this.metricTypes[i]) {
+          case SHORT:
+            offset += Short.SIZE / 8;
+            break;
+          case INT:
+            offset += Integer.SIZE / 8;
+            break;
+          case LONG:
+            offset += Long.SIZE / 8;
+            break;
+          case FLOAT:
+            offset += Float.SIZE / 8;
+            break;
+          case DOUBLE:
+            offset += Double.SIZE / 8;
+            break;
+          default:
+            throw new IllegalArgumentException("Unsupported metric type " + this.metricTypes[i]);
+        }
+      }
+      this.rowSize = Math.max(1, offset);
+      this.rowsPerPage = Math.max(1, pageSizeInBytes / rowSize);
+      this.backingDir = backingDir;
+      this.maxRowsInMemory = Math.max(1, maxRowsInMemory);
+    }
+
+    ByteBuffer getPage(int rowId) {
+      return pages.get(rowId / rowsPerPage);
+    }
+
+    int getOffset(int rowId) {
+      return (rowId % rowsPerPage) * rowSize;
+    }
+
+    void addPage() {
+      int pageSize = rowsPerPage * rowSize;
+      try {
+        if (backingDir == null) {
+          pages.add(MmapUtils.allocateDirectByteBuffer(pageSize, null,
+              OffHeapStarTreeTable.class.getSimpleName() + " page"));
+        } else {
+          if (!backingDir.exists()) {
+            FileUtils.forceMkdir(backingDir);
+          }
+          File pageFile = new File(backingDir, "page_" + pages.size());
+          RandomAccessFile randomAccessFile = new RandomAccessFile(pageFile, "rw");
+          pageFiles.add(randomAccessFile);
+          pages.add(MmapUtils.mmapFile(randomAccessFile, FileChannel.MapMode.READ_WRITE, 0, pageSize, pageFile,
+              OffHeapStarTreeTable.class.getSimpleName() + " page"));
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not allocate page of " + rowsPerPage + " rows", e);
+      }
+    }
+
+    void close() throws IOException {
+      for (ByteBuffer page : pages) {
+        MmapUtils.unloadByteBuffer(page);
+      }
+      pages.clear();
+      for (RandomAccessFile pageFile : pageFiles) {
+        pageFile.close();
+      }
+      pageFiles.clear();
+      size = 0;
+    }
+
+    int compare(ByteBuffer buffer1, int offset1, ByteBuffer buffer2, int offset2, int[] dimensions) {
+      for (int dimension : dimensions) {
+        int value1 = buffer1.getInt(offset1 + dimension * 4);
+        int value2 = buffer2.getInt(offset2 + dimension * 4);
+        if (value1 != value2) {
+          return value1 < value2 ? -1 : 1;
+        }
+      }
+      return 0;
+    }
+
+    void copyRow(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset) {
+      ByteBuffer from = src.duplicate();
+      from.clear();
+      from.position(srcOffset);
+      from.limit(srcOffset + rowSize);
+      ByteBuffer to = dst.duplicate();
+      to.clear();
+      to.position(dstOffset);
+      to.put(from);
+    }
+
+    void encode(StarTreeTableRow row, ByteBuffer buffer, int offset) {
+      for (int i = 0; i < numDimensions; i++) {
+        buffer.putInt(offset + i * 4, row.getDimensions().get(i));
+      }
+      for (int i = 0; i < metricTypes.length; i++) {
+        Number metric = row.getMetrics().get(i);
+        int metricOffset = offset + metricOffsets[i];
+        switch (metricTypes[i]) {
+          case SHORT:
+            buffer.putShort(metricOffset, metric.shortValue());
+            break;
+          case INT:
+            buffer.putInt(metricOffset, metric.intValue());
+            break;
+          case LONG:
+            buffer.putLong(metricOffset, metric.longValue());
+            break;
+          case FLOAT:
+            buffer.putFloat(metricOffset, metric.floatValue());
+            break;
+          case DOUBLE:
+            buffer.putDouble(metricOffset, metric.doubleValue());
+            break;
+          default:
+            throw new IllegalArgumentException("Unsupported metric type " + metricTypes[i]);
+        }
+      }
+    }
+
+    void decode(ByteBuffer buffer, int offset, StarTreeTableRow row) {
+      for (int i = 0; i < numDimensions; i++) {
+        row.setDimension(i, buffer.getInt(offset + i * 4));
+      }
+      for (int i = 0; i < metricTypes.length; i++) {
+        int metricOffset = offset + metricOffsets[i];
+        switch (metricTypes[i]) {
+          case SHORT:
+            row.setMetric(i, buffer.getShort(metricOffset));
+            break;
+          case INT:
+            row.setMetric(i, buffer.getInt(metricOffset));
+            break;
+          case LONG:
+            row.setMetric(i, buffer.getLong(metricOffset));
+            break;
+          case FLOAT:
+            row.setMetric(i, buffer.getFloat(metricOffset));
+            break;
+          case DOUBLE:
+            row.setMetric(i, buffer.getDouble(metricOffset));
+            break;
+          default:
+            throw new IllegalArgumentException("Unsupported metric type " + metricTypes[i]);
+        }
+      }
+    }
+
+    /** Adds the metrics of the src row to the ones of the dst row */
+    void aggregate(ByteBuffer src, int srcOffset, ByteBuffer dst, int dstOffset) {
+      for (int i = 0; i < metricTypes.length; i++) {
+        int from = srcOffset + metricOffsets[i];
+        int to = dstOffset + metricOffsets[i];
+        switch (metricTypes[i]) {
+          case SHORT:
+            dst.putShort(to, (short) (dst.getShort(to) + src.getShort(from)));
+            break;
+          case INT:
+            dst.putInt(to, dst.getInt(to) + src.getInt(from));
+            break;
+          case LONG:
+            dst.putLong(to, dst.getLong(to) + src.getLong(from));
+            break;
+          case FLOAT:
+            dst.putFloat(to, dst.getFloat(to) + src.getFloat(from));
+            break;
+          case DOUBLE:
+            dst.putDouble(to, dst.getDouble(to) + src.getDouble(from));
+            break;
+          default:
+            throw new IllegalArgumentException("Unsupported metric type " + metricTypes[i]);
+        }
+      }
+    }
+  }
+}
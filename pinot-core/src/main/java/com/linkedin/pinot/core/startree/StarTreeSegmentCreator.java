@@ -39,14 +39,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.*;
 
 public class StarTreeSegmentCreator implements SegmentCreator {
   private static final Logger LOG = LoggerFactory.getLogger(StarTreeSegmentCreator.class);
-  private static final int DEFAULT_STAR_TREE_TABLE_INCREMENT = 1000000;
   private static final String STAR_TREE_TABLE_FILE_PREFIX = "star_tree_table_";
 
   private StarTreeIndexSpec starTreeIndexSpec; // TODO: Support multiple trees
@@ -141,8 +138,7 @@ public class StarTreeSegmentCreator implements SegmentCreator {
     // StarTree builder / table
     starTreeTableFile = new File(System.getProperty("java.io.tmpdir"),
         STAR_TREE_TABLE_FILE_PREFIX + System.currentTimeMillis());
-    StarTreeTable table = new MmapLinkedListStarTreeTable(
-        dimensionTypes, metricTypes, starTreeTableFile, DEFAULT_STAR_TREE_TABLE_INCREMENT);
+    StarTreeTable table = new OffHeapStarTreeTable(dimensionTypes, metricTypes, starTreeTableFile);
     starTreeBuilder.init(splitOrderIndexes, starTreeIndexSpec.getMaxLeafRecords(), table);
 
     // Build the StarTree structure and table
@@ -338,16 +334,14 @@ public class StarTreeSegmentCreator implements SegmentCreator {
         true /* raw segment has star tree */);
 
     // Write star tree
-    LOG.info("Writing " + V1Constants.STARTREE_FILE);
+    LOG.info("Writing " + V1Constants.STARTREE_INDEX_FILE);
     startMillis = System.currentTimeMillis();
-    File starTreeFile = new File(outDir, V1Constants.STARTREE_FILE);
-    OutputStream starTreeOutputStream = new FileOutputStream(starTreeFile);
-    starTreeBuilder.getTree().writeTree(starTreeOutputStream);
-    starTreeOutputStream.close();
+    OffHeapStarTree.write(starTreeBuilder.getTree(), new File(outDir, V1Constants.STARTREE_INDEX_FILE));
     endMillis = System.currentTimeMillis();
     LOG.info("Wrote StarTree file (took {} ms)", endMillis - startMillis);
 
     // Delete tmp star tree data
+    starTreeBuilder.getTable().close();
     LOG.info("Deleting StarTree table file {}", starTreeTableFile);
     FileUtils.forceDelete(starTreeTableFile);
   }
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.plan;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.common.predicate.InPredicate;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+
+
+public class FilterQueryPlanTest {
+
+  @Test
+  public void testPredicatesBuiltOnce() {
+    BrokerRequest brokerRequest =
+        new Pql2Compiler().compileToBrokerRequest("select count(*) from myTable where a in (1, 2) and b > 3");
+
+    // Every segment plan given the filter plan of the query gets the same predicates
+    FilterQueryPlan filterQueryPlan = new FilterQueryPlan(brokerRequest);
+    FilterQueryTree filterQueryTree = filterQueryPlan.getFilterQueryTree();
+    Assert.assertEquals(filterQueryTree.getOperator(), FilterOperator.AND);
+
+    List<FilterQueryTree> leaves = filterQueryTree.getChildren();
+    Assert.assertEquals(leaves.size(), 2);
+    for (FilterQueryTree leaf : leaves) {
+      Predicate predicate = filterQueryPlan.getPredicate(leaf);
+      Assert.assertSame(filterQueryPlan.getPredicate(leaf), predicate);
+      if (leaf.getColumn().equals("a")) {
+        Assert.assertEquals(((InPredicate) predicate).getInRange(), new String[]{"1", "2"});
+      } else {
+        Assert.assertEquals(((RangePredicate) predicate).getLowerBoundary(), "3");
+      }
+    }
+  }
+
+  @Test
+  public void testNoFilter() {
+    BrokerRequest brokerRequest = new Pql2Compiler().compileToBrokerRequest("select count(*) from myTable");
+    Assert.assertNull(new FilterQueryPlan(brokerRequest).getFilterQueryTree());
+  }
+}
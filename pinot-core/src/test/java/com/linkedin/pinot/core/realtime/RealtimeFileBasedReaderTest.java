@@ -16,6 +16,7 @@
 package com.linkedin.pinot.core.realtime;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -30,6 +31,7 @@ import org.testng.annotations.Test;
 import com.linkedin.pinot.common.data.FieldSpec;
 import com.linkedin.pinot.common.data.FieldSpec.FieldType;
 import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.StarTreeIndexSpec;
 import com.linkedin.pinot.common.segment.ReadMode;
 import com.linkedin.pinot.core.common.Block;
 import com.linkedin.pinot.core.common.BlockMetadata;
@@ -43,6 +45,7 @@ import com.linkedin.pinot.core.realtime.converter.RealtimeSegmentConverter;
 import com.linkedin.pinot.core.realtime.impl.FileBasedStreamProviderConfig;
 import com.linkedin.pinot.core.realtime.impl.FileBasedStreamProviderImpl;
 import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.linkedin.pinot.core.segment.index.loader.Loaders;
 import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
 
@@ -155,6 +158,7 @@ public class RealtimeFileBasedReaderTest {
         Block realtimeBlock = realtimeDS.nextBlock();
 
         BlockMetadata offlineMetadata = offlineBlock.getMetadata();
+        BlockMetadata realtimeMetadata = realtimeBlock.getMetadata();
 
         BlockSingleValIterator offlineValIterator = (BlockSingleValIterator) offlineBlock.getBlockValueSet().iterator();
         BlockSingleValIterator realtimeValIterator =
@@ -165,7 +169,8 @@ public class RealtimeFileBasedReaderTest {
         while (realtimeValIterator.hasNext()) {
           int offlineDicId = offlineValIterator.nextIntVal();
           int realtimeDicId = realtimeValIterator.nextIntVal();
-          Assert.assertEquals(offlineMetadata.getDictionary().get(offlineDicId), realtimeDicId);
+          Assert.assertEquals(offlineMetadata.getDictionary().get(offlineDicId),
+              realtimeMetadata.getDictionary().get(realtimeDicId));
         }
         Assert.assertEquals(offlineValIterator.hasNext(), realtimeValIterator.hasNext());
       }
@@ -239,4 +244,53 @@ public class RealtimeFileBasedReaderTest {
       }
     }
   }
+
+  @Test
+  public void testConversionOnSortedColumn() throws Exception {
+    File outputDir = new File(FileUtils.getTempDirectory(), "RealtimeFileBasedReaderTest-sorted");
+    FileUtils.deleteQuietly(outputDir);
+    try {
+      RealtimeSegmentConverter converter =
+          new RealtimeSegmentConverter(realtimeSegment, outputDir.getAbsolutePath(), schema, "testTable",
+              "sorted-segment", "column1");
+      converter.build();
+
+      IndexSegment sortedSegment = Loaders.IndexSegment.load(outputDir.listFiles()[0], ReadMode.mmap);
+      Assert.assertEquals(sortedSegment.getTotalDocs(), realtimeSegment.getAggregateDocumentCount());
+      Assert.assertTrue(((SegmentMetadataImpl) sortedSegment.getSegmentMetadata()).getColumnMetadataFor("column1")
+          .isSorted());
+
+      Block block = sortedSegment.getDataSource("column1").nextBlock();
+      BlockSingleValIterator valIterator = (BlockSingleValIterator) block.getBlockValueSet().iterator();
+      int previousDicId = -1;
+      while (valIterator.hasNext()) {
+        int dicId = valIterator.nextIntVal();
+        Assert.assertTrue(dicId >= previousDicId);
+        previousDicId = dicId;
+      }
+    } finally {
+      FileUtils.deleteQuietly(outputDir);
+    }
+  }
+
+  @Test
+  public void testConversionWithStarTree() throws Exception {
+    Schema starTreeSchema = SegmentTestUtils.extractSchemaFromAvro(new File(filePath), fieldTypeMap, TimeUnit.MINUTES);
+    StarTreeIndexSpec starTreeIndexSpec = new StarTreeIndexSpec();
+    starTreeIndexSpec.setSplitExcludes(Collections.<String>emptyList());
+    starTreeSchema.setStarTreeIndexSpec(starTreeIndexSpec);
+    File outputDir = new File(FileUtils.getTempDirectory(), "RealtimeFileBasedReaderTest-star-tree");
+    FileUtils.deleteQuietly(outputDir);
+    try {
+      RealtimeSegmentConverter converter =
+          new RealtimeSegmentConverter(realtimeSegment, outputDir.getAbsolutePath(), starTreeSchema, "testTable",
+              "star-tree-segment", null);
+      converter.build();
+
+      IndexSegment starTreeSegment = Loaders.IndexSegment.load(outputDir.listFiles()[0], ReadMode.mmap);
+      Assert.assertNotNull(starTreeSegment.getStarTree());
+    } finally {
+      FileUtils.deleteQuietly(outputDir);
+    }
+  }
 }
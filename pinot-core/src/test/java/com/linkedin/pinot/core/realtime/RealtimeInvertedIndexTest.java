@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.predicate.EqPredicate;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.filter.BitmapBasedFilterOperator;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.DimensionInvertertedIndex;
+import com.linkedin.pinot.core.realtime.impl.invertedIndex.RealtimeInvertedIndex;
+
+
+public class RealtimeInvertedIndexTest {
+
+  private GenericRow getRow(int event) {
+    Map<String, Object> fields = new HashMap<String, Object>();
+    fields.put("country", "country_" + (event % 3));
+    fields.put("clicks", event);
+    fields.put("daysSinceEpoch", 16000);
+    GenericRow row = new GenericRow();
+    row.init(fields);
+    return row;
+  }
+
+  @Test
+  public void testSnapshotIsBounded() throws Exception {
+    Schema schema = new Schema();
+    schema.addSchema("country", new DimensionFieldSpec("country", DataType.STRING, true));
+    schema.addSchema("clicks", new MetricFieldSpec("clicks", DataType.INT));
+    schema.addSchema("daysSinceEpoch", new TimeFieldSpec("daysSinceEpoch", DataType.INT, TimeUnit.DAYS));
+    RealtimeSegmentImpl segment = new RealtimeSegmentImpl(schema, 1000);
+    for (int event = 0; event < 50; event++) {
+      segment.index(getRow(event));
+    }
+
+    IndexSegment snapshot = segment.getSnapshot();
+    // documents indexed after the snapshot was taken are not visible to it
+    for (int event = 50; event < 100; event++) {
+      segment.index(getRow(event));
+    }
+    Assert.assertEquals(snapshot.getTotalDocs(), 50);
+    Assert.assertEquals(segment.getTotalDocs(), 100);
+
+    BitmapBasedFilterOperator filterOperator = new BitmapBasedFilterOperator(snapshot.getDataSource("country"));
+    filterOperator.setPredicate(new EqPredicate("country", Collections.singletonList("country_1")));
+    BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator();
+    int numDocs = 0;
+    for (int docId = iterator.next(); docId != Constants.EOF; docId = iterator.next()) {
+      Assert.assertTrue(docId < 50);
+      Assert.assertEquals(docId % 3, 1);
+      numDocs++;
+    }
+    Assert.assertEquals(numDocs, 17);
+  }
+
+  @Test
+  public void testBitmapIsShared() {
+    RealtimeInvertedIndex invertedIndex = new DimensionInvertertedIndex("column");
+    for (int docId = 0; docId < 100; docId++) {
+      invertedIndex.add(docId % 3, docId);
+    }
+    Assert.assertEquals(invertedIndex.getDocIdSetFor(1).getCardinality(), 33);
+    // no copy until new docIds are added
+    Assert.assertSame(invertedIndex.getImmutable(1), invertedIndex.getImmutable(1));
+
+    for (int docId = 100; docId < 200; docId++) {
+      invertedIndex.add(docId % 3, docId);
+    }
+    Assert.assertEquals(invertedIndex.getDocIdSetFor(1).getCardinality(), 67);
+
+    // dictIds without any document
+    Assert.assertTrue(invertedIndex.getImmutable(5).isEmpty());
+    Assert.assertNull(invertedIndex.getDocIdSetFor(5));
+  }
+
+  @Test
+  public void testMultiValueDuplicates() {
+    RealtimeInvertedIndex invertedIndex = new DimensionInvertertedIndex("column");
+    for (int docId = 0; docId < 10; docId++) {
+      invertedIndex.add(0, docId);
+      invertedIndex.add(0, docId);
+      invertedIndex.add(1000, docId);
+    }
+    Assert.assertEquals(invertedIndex.getDocIdSetFor(0).getCardinality(), 10);
+    Assert.assertEquals(invertedIndex.getDocIdSetFor(1000).getCardinality(), 10);
+  }
+}
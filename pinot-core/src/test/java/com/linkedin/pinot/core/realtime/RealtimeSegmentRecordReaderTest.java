@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.realtime.converter.RealtimeSegmentRecordReader;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+
+
+public class RealtimeSegmentRecordReaderTest {
+  private static final int NUM_DOCS = 10000;
+
+  @Test
+  public void testSortedColumn() throws Exception {
+    Schema schema = new Schema();
+    schema.addSchema("memberId", new DimensionFieldSpec("memberId", DataType.LONG, true));
+    schema.addSchema("country", new DimensionFieldSpec("country", DataType.STRING, true));
+    schema.addSchema("clicks", new MetricFieldSpec("clicks", DataType.INT));
+    schema.addSchema("daysSinceEpoch", new TimeFieldSpec("daysSinceEpoch", DataType.INT, TimeUnit.DAYS));
+
+    RealtimeSegmentImpl segment = new RealtimeSegmentImpl(schema, NUM_DOCS);
+    for (int i = 0; i < NUM_DOCS; i++) {
+      Map<String, Object> fields = new HashMap<String, Object>();
+      // values come in a different order than their natural one
+      fields.put("memberId", (long) ((i * 7919) % 1000) - 500);
+      fields.put("country", "country_" + (i % 37));
+      fields.put("clicks", i);
+      fields.put("daysSinceEpoch", 16000);
+      GenericRow row = new GenericRow();
+      row.init(fields);
+      segment.index(row);
+    }
+
+    for (String sortedColumn : new String[] { "memberId", "country" }) {
+      RealtimeSegmentRecordReader recordReader = new RealtimeSegmentRecordReader(segment, schema, sortedColumn);
+      recordReader.init();
+      for (int pass = 0; pass < 2; pass++) {
+        recordReader.rewind();
+        Comparable previousValue = null;
+        int previousClicks = -1;
+        int numRows = 0;
+        while (recordReader.hasNext()) {
+          GenericRow row = recordReader.next();
+          Comparable value = (Comparable) row.getValue(sortedColumn);
+          int clicks = (Integer) row.getValue("clicks");
+          if (previousValue != null) {
+            int comparison = previousValue.compareTo(value);
+            Assert.assertTrue(comparison <= 0);
+            // documents with the same value keep their ingestion order
+            if (comparison == 0) {
+              Assert.assertTrue(previousClicks < clicks);
+            }
+          }
+          previousValue = value;
+          previousClicks = clicks;
+          numRows++;
+        }
+        Assert.assertEquals(numRows, NUM_DOCS);
+      }
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.realtime;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.data.MetricFieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.data.TimeFieldSpec;
+import com.linkedin.pinot.core.common.BlockDocIdIterator;
+import com.linkedin.pinot.core.common.Constants;
+import com.linkedin.pinot.core.common.Predicate;
+import com.linkedin.pinot.core.common.predicate.EqPredicate;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.operator.filter.BitmapBasedFilterOperator;
+import com.linkedin.pinot.core.realtime.impl.RealtimeSegmentImpl;
+
+
+public class RealtimeSegmentRollupTest {
+  private static final String[] COUNTRIES = { "us", "fr", "in", "cn", "br" };
+  private static final String[] BROWSERS = { "firefox", "chrome", "safari", "ie" };
+  private static final int NUM_DAYS = 3;
+  private static final int NUM_EVENTS = 1000;
+
+  private Schema getSchema() {
+    Schema schema = new Schema();
+    schema.addSchema("country", new DimensionFieldSpec("country", DataType.STRING, true));
+    schema.addSchema("browser", new DimensionFieldSpec("browser", DataType.STRING, true));
+    schema.addSchema("clicks", new MetricFieldSpec("clicks", DataType.INT));
+    schema.addSchema("cost", new MetricFieldSpec("cost", DataType.DOUBLE));
+    schema.addSchema("daysSinceEpoch", new TimeFieldSpec("daysSinceEpoch", DataType.INT, TimeUnit.DAYS));
+    return schema;
+  }
+
+  private GenericRow getRow(int event) {
+    return getRow(event, COUNTRIES[event % COUNTRIES.length]);
+  }
+
+  private GenericRow getRow(int event, String country) {
+    Map<String, Object> fields = new HashMap<String, Object>();
+    fields.put("country", country);
+    fields.put("browser", BROWSERS[event % BROWSERS.length]);
+    fields.put("clicks", event % 7);
+    fields.put("cost", 0.5);
+    fields.put("daysSinceEpoch", 16000 + (event % NUM_DAYS));
+    GenericRow row = new GenericRow();
+    row.init(fields);
+    return row;
+  }
+
+  private RealtimeSegmentImpl getRollupSegment() throws Exception {
+    // rows are only published by the test, so that all the events of a key are rolled up into one document
+    return new RealtimeSegmentImpl(getSchema(), 100000, true, Long.MAX_VALUE);
+  }
+
+  private int countMatchingDocs(IndexSegment segment, String column, Predicate predicate) {
+    BitmapBasedFilterOperator filterOperator = new BitmapBasedFilterOperator(segment.getDataSource(column));
+    filterOperator.setPredicate(predicate);
+    BlockDocIdIterator iterator = filterOperator.nextBlock().getBlockDocIdSet().iterator();
+    int numDocs = 0;
+    for (int docId = iterator.next(); docId != Constants.EOF; docId = iterator.next()) {
+      numDocs++;
+    }
+    return numDocs;
+  }
+
+  @Test
+  public void testRollup() throws Exception {
+    RealtimeSegmentImpl segment = getRollupSegment();
+    Assert.assertTrue(segment.isRollup());
+
+    Map<String, Long> expectedClicks = new HashMap<String, Long>();
+    for (int event = 0; event < NUM_EVENTS; event++) {
+      GenericRow row = getRow(event);
+      segment.index(row);
+      String key = row.getValue("country") + "|" + row.getValue("browser") + "|" + row.getValue("daysSinceEpoch");
+      Long clicks = expectedClicks.get(key);
+      expectedClicks.put(key, (clicks == null ? 0L : clicks) + (Integer) row.getValue("clicks"));
+    }
+
+    // pending documents are not visible to queries
+    Assert.assertEquals(segment.getTotalDocs(), 0);
+    segment.publish();
+
+    // 5 countries, 4 browsers and 3 days are co-prime, every combination shows up
+    Assert.assertEquals(segment.getRawDocumentCount(), NUM_EVENTS);
+    Assert.assertEquals(segment.getAggregateDocumentCount(), COUNTRIES.length * BROWSERS.length * NUM_DAYS);
+    Assert.assertEquals(segment.getTotalDocs(), segment.getAggregateDocumentCount());
+
+    double totalCost = 0;
+    for (int docId = 0; docId < segment.getTotalDocs(); docId++) {
+      GenericRow row = segment.getRawValueRowAt(docId);
+      String key = row.getValue("country") + "|" + row.getValue("browser") + "|" + row.getValue("daysSinceEpoch");
+      Assert.assertEquals(((Integer) row.getValue("clicks")).longValue(), expectedClicks.remove(key).longValue());
+      totalCost += (Double) row.getValue("cost");
+    }
+    Assert.assertTrue(expectedClicks.isEmpty());
+    Assert.assertEquals(totalCost, NUM_EVENTS * 0.5, 1e-9);
+
+    // the metric dictionary holds the aggregated values, equality and range predicates are evaluated on them
+    int numDocsWithClicks = 0;
+    int numDocsInRange = 0;
+    final long clicksToMatch = ((Integer) segment.getRawValueRowAt(0).getValue("clicks")).longValue();
+    for (int docId = 0; docId < segment.getTotalDocs(); docId++) {
+      long clicks = ((Integer) segment.getRawValueRowAt(docId).getValue("clicks")).longValue();
+      if (clicks == clicksToMatch) {
+        numDocsWithClicks++;
+      }
+      if (clicks >= 50) {
+        numDocsInRange++;
+      }
+    }
+    Assert.assertEquals(countMatchingDocs(segment, "clicks",
+        new EqPredicate("clicks", Collections.singletonList(String.valueOf(clicksToMatch)))), numDocsWithClicks);
+    Assert.assertEquals(countMatchingDocs(segment, "clicks",
+        new RangePredicate("clicks", Collections.singletonList("[50\t\t*)"))), numDocsInRange);
+    Assert.assertEquals(segment.getDictionaryFor("clicks").getMinVal().getClass(), Integer.class);
+  }
+
+  @Test
+  public void testPublishedDocsAreNotModified() throws Exception {
+    RealtimeSegmentImpl segment = getRollupSegment();
+    for (int event = 0; event < NUM_EVENTS; event++) {
+      segment.index(getRow(event));
+    }
+    segment.publish();
+    final int numDocs = segment.getTotalDocs();
+    IndexSegment snapshot = segment.getSnapshot();
+    Object[] clicks = new Object[numDocs];
+    for (int docId = 0; docId < numDocs; docId++) {
+      clicks[docId] = segment.getRawValueRowAt(docId).getValue("clicks");
+    }
+
+    // the same keys again, they start new documents instead of changing the published ones
+    for (int event = 0; event < NUM_EVENTS; event++) {
+      segment.index(getRow(event));
+    }
+    Assert.assertEquals(segment.getTotalDocs(), numDocs);
+    segment.publish();
+    Assert.assertEquals(segment.getTotalDocs(), 2 * numDocs);
+    Assert.assertEquals(snapshot.getTotalDocs(), numDocs);
+    for (int docId = 0; docId < numDocs; docId++) {
+      Assert.assertEquals(segment.getRawValueRowAt(docId).getValue("clicks"), clicks[docId]);
+      Assert.assertEquals(segment.getRawValueRowAt(numDocs + docId).getValue("clicks"), clicks[docId]);
+    }
+  }
+
+  @Test
+  public void testManyKeys() throws Exception {
+    RealtimeSegmentImpl segment = getRollupSegment();
+    // enough distinct keys to grow the rollup hash table a few times
+    for (int round = 0; round < 2; round++) {
+      for (int event = 0; event < 5000; event++) {
+        segment.index(getRow(event, "country_" + event));
+      }
+    }
+    segment.publish();
+    Assert.assertEquals(segment.getRawDocumentCount(), 10000);
+    Assert.assertEquals(segment.getAggregateDocumentCount(), 5000);
+    for (int docId = 0; docId < segment.getTotalDocs(); docId++) {
+      Assert.assertEquals(segment.getRawValueRowAt(docId).getValue("cost"), 1.0);
+    }
+  }
+
+  @Test
+  public void testNoRollup() throws Exception {
+    RealtimeSegmentImpl segment = new RealtimeSegmentImpl(getSchema(), 100000);
+    Assert.assertFalse(segment.isRollup());
+    for (int event = 0; event < NUM_EVENTS; event++) {
+      segment.index(getRow(event));
+    }
+    Assert.assertEquals(segment.getRawDocumentCount(), NUM_EVENTS);
+    Assert.assertEquals(segment.getAggregateDocumentCount(), NUM_EVENTS);
+  }
+
+  @Test
+  public void testMultiValueDimensionDisablesRollup() throws Exception {
+    Schema schema = getSchema();
+    schema.addSchema("tags", new DimensionFieldSpec("tags", DataType.STRING, false));
+    RealtimeSegmentImpl segment = new RealtimeSegmentImpl(schema, 100000, true);
+    Assert.assertFalse(segment.isRollup());
+  }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+
+
+public class TestOffHeapStarTree {
+  private File indexDir;
+  private StarTreeIndexNode root;
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    indexDir = new File(System.getProperty("java.io.tmpdir"), TestOffHeapStarTree.class.getSimpleName());
+    FileUtils.deleteQuietly(indexDir);
+    indexDir.mkdirs();
+
+    // root splits on dimension 0 (values 3, 1 and star), the node for value 3 splits on dimension 1 (values 7, 2)
+    root = node(StarTreeIndexNode.all(), StarTreeIndexNode.all(), null, 0, 100);
+    StarTreeIndexNode three = node(0, 3, root, 0, 40);
+    node(0, 1, root, 40, 20);
+    node(0, StarTreeIndexNode.all(), root, 60, 40);
+    node(1, 7, three, 0, 10);
+    node(1, 2, three, 10, 30);
+  }
+
+  @AfterClass
+  public void afterClass() throws Exception {
+    FileUtils.deleteQuietly(indexDir);
+  }
+
+  private static StarTreeIndexNode node(int dimensionName, int dimensionValue, StarTreeIndexNode parent,
+      int startDocumentId, int documentCount) {
+    StarTreeIndexNode node = new StarTreeIndexNode();
+    node.setDimensionName(dimensionName);
+    node.setDimensionValue(dimensionValue);
+    node.setStartDocumentId(startDocumentId);
+    node.setDocumentCount(documentCount);
+    if (parent != null) {
+      if (parent.getChildren() == null) {
+        parent.setChildren(new HashMap<Integer, StarTreeIndexNode>());
+        parent.setChildDimensionName(dimensionName);
+      }
+      parent.getChildren().put(dimensionValue, node);
+      node.setParent(parent);
+      node.setLevel(parent.getLevel() + 1);
+    }
+    return node;
+  }
+
+  @Test
+  public void testMmap() throws Exception {
+    OffHeapStarTree.write(root, new File(indexDir, V1Constants.STARTREE_INDEX_FILE));
+    OffHeapStarTree starTree = OffHeapStarTree.load(indexDir, true);
+    checkTree(starTree);
+    starTree.close();
+  }
+
+  @Test
+  public void testHeap() throws Exception {
+    OffHeapStarTree.write(root, new File(indexDir, V1Constants.STARTREE_INDEX_FILE));
+    OffHeapStarTree starTree = OffHeapStarTree.load(indexDir, false);
+    checkTree(starTree);
+    starTree.close();
+  }
+
+  @Test
+  public void testSerializedTree() throws Exception {
+    File legacyDir = new File(indexDir, "legacy");
+    legacyDir.mkdirs();
+    OutputStream outputStream = new FileOutputStream(new File(legacyDir, V1Constants.STARTREE_FILE));
+    root.writeTree(outputStream);
+    outputStream.close();
+
+    OffHeapStarTree starTree = OffHeapStarTree.load(legacyDir, true);
+    checkTree(starTree);
+    starTree.close();
+  }
+
+  private void checkTree(OffHeapStarTree starTree) {
+    Assert.assertEquals(starTree.getNumNodes(), 6);
+    int rootNode = OffHeapStarTree.ROOT;
+    Assert.assertFalse(starTree.isLeaf(rootNode));
+    Assert.assertEquals(starTree.getParent(rootNode), OffHeapStarTree.INVALID_NODE);
+    Assert.assertEquals(starTree.getChildDimensionName(rootNode), 0);
+    Assert.assertEquals(starTree.getDocumentCount(rootNode), 100);
+
+    // children are sorted on their value, star first
+    Assert.assertEquals(starTree.getNumChildren(rootNode), 3);
+    Assert.assertEquals(starTree.getDimensionValue(starTree.getChild(rootNode, 0)), StarTreeIndexNode.all());
+    Assert.assertEquals(starTree.getDimensionValue(starTree.getChild(rootNode, 1)), 1);
+    Assert.assertEquals(starTree.getDimensionValue(starTree.getChild(rootNode, 2)), 3);
+
+    int star = starTree.getChildForValue(rootNode, StarTreeIndexNode.all());
+    Assert.assertTrue(starTree.isLeaf(star));
+    Assert.assertEquals(starTree.getStartDocumentId(star), 60);
+    Assert.assertEquals(starTree.getChildForValue(rootNode, 2), OffHeapStarTree.INVALID_NODE);
+    Assert.assertEquals(starTree.getChildForValue(star, 1), OffHeapStarTree.INVALID_NODE);
+
+    int three = starTree.getChildForValue(rootNode, 3);
+    Assert.assertEquals(starTree.getParent(three), rootNode);
+    Assert.assertEquals(starTree.getChildDimensionName(three), 1);
+    int seven = starTree.getChildForValue(three, 7);
+    Assert.assertTrue(starTree.isLeaf(seven));
+    Assert.assertEquals(starTree.getDimensionName(seven), 1);
+    Assert.assertEquals(starTree.getStartDocumentId(seven), 0);
+    Assert.assertEquals(starTree.getDocumentCount(seven), 10);
+    Assert.assertEquals(starTree.getDocumentCount(starTree.getChildForValue(three, 2)), 30);
+
+    Map<Integer, Integer> pathValues = new HashMap<Integer, Integer>();
+    pathValues.put(0, 3);
+    pathValues.put(1, 7);
+    Assert.assertEquals(starTree.getPathValues(seven), pathValues);
+    Assert.assertTrue(starTree.getPathValues(rootNode).isEmpty());
+  }
+}
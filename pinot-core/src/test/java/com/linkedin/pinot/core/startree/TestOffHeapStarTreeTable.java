@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.core.startree;
+
+import com.google.common.collect.ImmutableList;
+import com.linkedin.pinot.common.data.FieldSpec;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.*;
+
+public class TestOffHeapStarTreeTable {
+  private List<Number> metrics;
+  private List<FieldSpec.DataType> dimensionTypes;
+  private List<FieldSpec.DataType> metricTypes;
+  private File backingDir;
+
+  @BeforeClass
+  public void beforeClass() {
+    metrics = new ArrayList<Number>();
+    metrics.add(1);
+    dimensionTypes = ImmutableList.of(FieldSpec.DataType.INT, FieldSpec.DataType.INT, FieldSpec.DataType.INT);
+    metricTypes = ImmutableList.of(FieldSpec.DataType.LONG);
+    backingDir = new File(System.getProperty("java.io.tmpdir"), TestOffHeapStarTreeTable.class.getSimpleName());
+  }
+
+  @AfterClass
+  public void afterClass() {
+    FileUtils.deleteQuietly(backingDir);
+  }
+
+  @DataProvider
+  public Object[][] tableDataProvider() {
+    return new Object[][] {
+        // Single page, sorted in memory
+        { new OffHeapStarTreeTable(dimensionTypes, metricTypes) },
+        // Several direct pages, sorted in spilled runs
+        { new OffHeapStarTreeTable(dimensionTypes, metricTypes, null, 400 /* 20 rows */, 10) },
+        // Several mapped pages, sorted in spilled runs
+        { new OffHeapStarTreeTable(dimensionTypes, metricTypes, new File(backingDir, "mmap"), 400, 10) },
+        // A single run holding the whole table
+        { new OffHeapStarTreeTable(dimensionTypes, metricTypes, new File(backingDir, "fit"), 400, 128) },
+    };
+  }
+
+  @Test(dataProvider = "tableDataProvider")
+  public void testGetUniqueCombinations(StarTreeTable table) throws Exception {
+    appendCombinations(table);
+
+    List<List<Integer>> excludedDimensionsList = new ArrayList<List<Integer>>();
+    excludedDimensionsList.add(null);
+    excludedDimensionsList.add(ImmutableList.of(1));
+    excludedDimensionsList.add(ImmutableList.of(0, 2));
+    excludedDimensionsList.add(ImmutableList.of(0, 1, 2));
+
+    for (List<Integer> excludedDimensions : excludedDimensionsList) {
+      // Expected aggregates of the combinations excluding dimensions
+      Map<List<Integer>, Integer> expected = new HashMap<List<Integer>, Integer>();
+      for (List<Integer> combination : generateCombinations()) {
+        List<Integer> withExclusions = new ArrayList<Integer>(combination);
+        for (int i = 0; i < withExclusions.size(); i++) {
+          if (excludedDimensions != null && excludedDimensions.contains(i)) {
+            withExclusions.set(i, StarTreeIndexNode.all());
+          }
+        }
+        Integer count = expected.get(withExclusions);
+        expected.put(withExclusions, count == null ? 1 : count + 1);
+      }
+
+      Map<List<Integer>, Integer> actual = new HashMap<List<Integer>, Integer>();
+      List<Integer> previous = null;
+      Iterator<StarTreeTableRow> itr = table.getUniqueCombinations(excludedDimensions);
+      while (itr.hasNext()) {
+        StarTreeTableRow row = itr.next();
+        List<Integer> dimensions = new ArrayList<Integer>(row.getDimensions());
+        Assert.assertNull(actual.put(dimensions, row.getMetrics().get(0).intValue()), "Duplicate " + dimensions);
+
+        // Combinations come in sorted order
+        if (previous != null) {
+          Assert.assertTrue(compare(previous, dimensions) < 0, previous + " >= " + dimensions);
+        }
+        previous = dimensions;
+      }
+      Assert.assertEquals(actual, expected);
+    }
+
+    // The table itself is left untouched
+    Assert.assertEquals(table.size(), 128);
+    Iterator<StarTreeTableRow> itr = table.getAllCombinations();
+    for (List<Integer> combination : generateCombinations()) {
+      Assert.assertEquals(itr.next().getDimensions(), combination);
+    }
+    table.close();
+  }
+
+  @Test(dataProvider = "tableDataProvider")
+  public void testSortAndGroupBy(StarTreeTable table) throws Exception {
+    appendCombinations(table);
+
+    // Sort based on dimensions 0, 1 -> [0, 0], [0, 2], [1, 1], [1, 3] prefix values
+    table.sort(ImmutableList.of(0, 1));
+    StarTreeTableGroupByStats result = table.groupBy(1);
+    Assert.assertEquals(result.getMinRecordId(0), Integer.valueOf(0));
+    Assert.assertEquals(result.getMinRecordId(2), Integer.valueOf(32));
+    Assert.assertEquals(result.getMinRecordId(1), Integer.valueOf(64));
+    Assert.assertEquals(result.getMinRecordId(3), Integer.valueOf(96));
+    for (int value = 0; value < 4; value++) {
+      Assert.assertEquals(result.getRawCount(value), Integer.valueOf(32));
+      Assert.assertEquals(result.getUniqueCount(value), Integer.valueOf(2));
+    }
+
+    // Metrics move with their dimensions
+    Iterator<StarTreeTableRow> itr = table.getAllCombinations();
+    int numRows = 0;
+    while (itr.hasNext()) {
+      StarTreeTableRow row = itr.next();
+      Assert.assertEquals(row.getMetrics().get(0).intValue(), 1);
+      numRows++;
+    }
+    Assert.assertEquals(numRows, 128);
+    table.close();
+  }
+
+  @Test(dataProvider = "tableDataProvider")
+  public void testView(StarTreeTable table) throws Exception {
+    appendCombinations(table);
+
+    // Sort based on 0, 1
+    table.sort(ImmutableList.of(0, 1));
+
+    // Get a view from 64 to end, all values of dimension 0 should be 1
+    StarTreeTable view = table.view(64, 64);
+    Assert.assertEquals(view.size(), 64);
+    Iterator<StarTreeTableRow> itr = view.getAllCombinations();
+    while (itr.hasNext()) {
+      Assert.assertEquals(itr.next().getDimensions().get(0), Integer.valueOf(1));
+    }
+
+    // Sorting a view only moves its own rows
+    view.sort(ImmutableList.of(2));
+    itr = view.getAllCombinations();
+    int previous = -1;
+    while (itr.hasNext()) {
+      List<Integer> dimensions = itr.next().getDimensions();
+      Assert.assertEquals(dimensions.get(0), Integer.valueOf(1));
+      Assert.assertTrue(dimensions.get(2) >= previous);
+      previous = dimensions.get(2);
+    }
+    itr = table.view(0, 64).getAllCombinations();
+    while (itr.hasNext()) {
+      Assert.assertEquals(itr.next().getDimensions().get(0), Integer.valueOf(0));
+    }
+
+    // Aggregates of a sub-view
+    view = view.view(0, 32);
+    itr = view.getUniqueCombinations(Arrays.asList(0, 1, 2));
+    Assert.assertEquals(itr.next().getMetrics().get(0).intValue(), 32);
+    Assert.assertFalse(itr.hasNext());
+
+    // Rows are only appended to the table
+    try {
+      view.append(new StarTreeTableRow(generateCombinations().get(0), metrics));
+      Assert.fail("Appended a row to a view");
+    } catch (UnsupportedOperationException e) {
+      // Expected
+    }
+    table.close();
+  }
+
+  private void appendCombinations(StarTreeTable table) {
+    for (List<Integer> combination : generateCombinations()) {
+      table.append(new StarTreeTableRow(combination, metrics));
+    }
+  }
+
+  private static int compare(List<Integer> combination1, List<Integer> combination2) {
+    for (int i = 0; i < combination1.size(); i++) {
+      int cmp = combination1.get(i).compareTo(combination2.get(i));
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  private List<List<Integer>> generateCombinations() {
+    List<List<Integer>> list = new ArrayList<List<Integer>>();
+    for (int i = 0; i < 128; i++) {
+      List<Integer> combination = ImmutableList.of(
+          i % 2,
+          i % 4,
+          i % 8
+      );
+      list.add(combination);
+    }
+    return list;
+  }
+}
@@ -48,7 +48,13 @@ public class TestStarTreeBuilder {
             new LinkedListStarTreeTable(dimensionTypes, metricTypes)) },
         // A larger max leaf records
         { createDefaultBuilder(ImmutableList.of(2, 1, 0), 16,
-            new LinkedListStarTreeTable(dimensionTypes, metricTypes)) }
+            new LinkedListStarTreeTable(dimensionTypes, metricTypes)) },
+        // Off heap table
+        { createDefaultBuilder(ImmutableList.of(0, 1, 2), 4,
+            new OffHeapStarTreeTable(dimensionTypes, metricTypes)) },
+        // Off heap table with several pages, sorted in spilled runs
+        { createDefaultBuilder(ImmutableList.of(2, 1, 0), 4,
+            new OffHeapStarTreeTable(dimensionTypes, metricTypes, null, 400 /* 20 rows */, 10)) }
     };
   }
 
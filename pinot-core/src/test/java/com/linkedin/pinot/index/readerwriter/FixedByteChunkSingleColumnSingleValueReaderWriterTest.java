@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.index.readerwriter;
+
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.core.index.readerwriter.impl.FixedByteChunkSingleColumnSingleValueReaderWriter;
+
+
+public class FixedByteChunkSingleColumnSingleValueReaderWriterTest {
+  @Test
+  public void testInt() throws IOException {
+    FixedByteChunkSingleColumnSingleValueReaderWriter readerWriter;
+    int rows = 1000;
+    int[] columnSizesInBytes = new int[] { Integer.SIZE / 8 };
+    readerWriter = new FixedByteChunkSingleColumnSingleValueReaderWriter(100, columnSizesInBytes);
+    Assert.assertEquals(0, readerWriter.getCapacity());
+    Random r = new Random();
+    int[] data = new int[rows];
+    for (int i = 0; i < rows; i++) {
+      data[i] = r.nextInt();
+      readerWriter.setInt(i, data[i]);
+    }
+    // 100 rows per chunk is rounded up to 128
+    Assert.assertEquals(1024, readerWriter.getCapacity());
+    for (int i = 0; i < rows; i++) {
+      Assert.assertEquals(data[i], readerWriter.getInt(i));
+    }
+    readerWriter.close();
+  }
+
+  @Test
+  public void testLong() throws IOException {
+    FixedByteChunkSingleColumnSingleValueReaderWriter readerWriter;
+    int rows = 1000;
+    int[] columnSizesInBytes = new int[] { Long.SIZE / 8 };
+    readerWriter = new FixedByteChunkSingleColumnSingleValueReaderWriter(64, columnSizesInBytes);
+    Random r = new Random();
+    long[] data = new long[rows];
+    for (int i = 0; i < rows; i++) {
+      data[i] = r.nextLong();
+      readerWriter.setLong(i, data[i]);
+    }
+    for (int i = 0; i < rows; i++) {
+      Assert.assertEquals(data[i], readerWriter.getLong(i));
+    }
+    readerWriter.close();
+  }
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -47,11 +48,15 @@ import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.common.utils.request.FilterQueryTree;
 import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
 import com.linkedin.pinot.core.common.DataSource;
+import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
 import com.linkedin.pinot.core.operator.BReusableFilteredDocIdSetOperator;
+import com.linkedin.pinot.core.operator.MCombineOperator;
 import com.linkedin.pinot.core.operator.MProjectionOperator;
 import com.linkedin.pinot.core.operator.UReplicatedProjectionOperator;
 import com.linkedin.pinot.core.operator.query.BAggregationFunctionOperator;
@@ -306,6 +311,91 @@ public class AggregationQueriesTest {
     LOGGER.info("Reduced Result : {}", reducedResults);
   }
 
+  @Test
+  public void testCombineWithBusyExecutor() throws Exception {
+    final int numOperators = 20;
+    final BrokerRequest brokerRequest = getAggregationWithFilterBrokerRequest();
+    final List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < numOperators; i++) {
+      operators.add(new InstancePlanMakerImplV0().makeInnerSegmentPlan(_indexSegment, brokerRequest).run());
+    }
+
+    // Only one of the three threads is left to the query, it goes through all the segments
+    final ExecutorService executorService = Executors.newFixedThreadPool(3, new NamedThreadFactory("test-combine"));
+    final CountDownLatch busyLatch = new CountDownLatch(1);
+    for (int i = 0; i < 2; i++) {
+      executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            busyLatch.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    try {
+      final MCombineOperator combineOperator = new MCombineOperator(operators, executorService, 150000, brokerRequest);
+      combineOperator.open();
+      final IntermediateResultsBlock resultBlock = (IntermediateResultsBlock) combineOperator.nextBlock();
+      Assert.assertNull(resultBlock.getExceptions());
+      Assert.assertEquals(resultBlock.getNumDocsScanned(), numOperators * 582);
+      Assert.assertEquals(resultBlock.getTotalDocs(), numOperators * 10001);
+    } finally {
+      busyLatch.countDown();
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testCombineWithFailingSegment() throws Exception {
+    final int numOperators = 10;
+    final BrokerRequest brokerRequest = getAggregationWithFilterBrokerRequest();
+    final List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < numOperators; i++) {
+      operators.add(new InstancePlanMakerImplV0().makeInnerSegmentPlan(_indexSegment, brokerRequest).run());
+    }
+    // A single worker goes through the failing segment in the middle of the others
+    operators.add(numOperators / 2, new FailingOperator());
+
+    final ExecutorService executorService = Executors.newFixedThreadPool(2, new NamedThreadFactory("test-combine"));
+    try {
+      final MCombineOperator combineOperator =
+          new MCombineOperator(operators, executorService, 150000, brokerRequest, 1);
+      combineOperator.open();
+      final IntermediateResultsBlock resultBlock = (IntermediateResultsBlock) combineOperator.nextBlock();
+      Assert.assertEquals(resultBlock.getExceptions().size(), 1);
+      Assert.assertTrue(resultBlock.getExceptions().get(0).getMessage().contains("Failing segment"));
+      Assert.assertEquals(resultBlock.getNumDocsScanned(), numOperators * 582);
+      Assert.assertEquals(resultBlock.getTotalDocs(), numOperators * 10001);
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  private static class FailingOperator implements Operator {
+    @Override
+    public boolean open() {
+      return true;
+    }
+
+    @Override
+    public Block nextBlock() {
+      throw new RuntimeException("Failing segment");
+    }
+
+    @Override
+    public Block nextBlock(BlockId blockId) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean close() {
+      return true;
+    }
+  }
+
   @Test
   public void testInterSegmentAggregationFunctionPlanMakerAndRun() throws Exception {
     final int numSegments = 20;
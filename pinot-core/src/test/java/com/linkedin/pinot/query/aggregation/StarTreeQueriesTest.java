@@ -31,6 +31,7 @@ import com.linkedin.pinot.common.utils.DataTable;
 import com.linkedin.pinot.common.utils.request.FilterQueryTree;
 import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.predicate.RangePredicate;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
 import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
@@ -79,6 +80,7 @@ public class StarTreeQueriesTest {
   private int d2Cardinality = 128;
   private int numTimeBuckets = 512;
   private int numRecords = 1024;
+  private int nextFilterId = 0;
 
   @BeforeClass
   public void beforeClass() throws Exception {
@@ -357,6 +359,153 @@ public class StarTreeQueriesTest {
     }
   }
 
+  @DataProvider
+  public Object[][] complexFilterDataProvider() {
+    int numRandom = 200;
+    Random random = new Random();
+    List<Object[]> filters = new ArrayList<>();
+
+    filters.add(new Object[] { filter(FilterOperator.IN, "D1", "1", "2", "17") });
+    filters.add(new Object[] { and(filter(FilterOperator.IN, "D1", "1", "2", "17"),
+        filter(FilterOperator.EQUALITY, "D0", "1")) });
+    filters.add(new Object[] { filter(FilterOperator.RANGE, "D2", "[10\t\t20]") });
+    filters.add(new Object[] { filter(FilterOperator.RANGE, "D1", "(*\t\t30)") });
+    filters.add(new Object[] { and(filter(FilterOperator.RANGE, "D1", "(3\t\t5]"),
+        filter(FilterOperator.IN, "D2", "3", "4", "69")) });
+    filters.add(new Object[] { or(filter(FilterOperator.EQUALITY, "D1", "3"),
+        filter(FilterOperator.EQUALITY, "D1", "5")) });
+    filters.add(new Object[] { or(filter(FilterOperator.EQUALITY, "D0", "0"),
+        filter(FilterOperator.EQUALITY, "D2", "5")) });
+    filters.add(new Object[] { and(or(filter(FilterOperator.EQUALITY, "D0", "0"),
+        filter(FilterOperator.IN, "D2", "5", "6")), filter(FilterOperator.IN, "D1", "5", "6", "7")) });
+    filters.add(new Object[] { and(filter(FilterOperator.NOT, "D0", "1"),
+        filter(FilterOperator.NOT_IN, "D1", "1", "2")) });
+
+    for (int i = 0; i < numRandom; i++) {
+      FilterQueryTree d1 = filter(FilterOperator.IN, "D1", String.valueOf(random.nextInt(d1Cardinality)),
+          String.valueOf(random.nextInt(d1Cardinality)), String.valueOf(random.nextInt(d1Cardinality)));
+      FilterQueryTree d2 = filter(FilterOperator.RANGE, "D2",
+          "[" + random.nextInt(d2Cardinality) + "\t\t" + random.nextInt(d2Cardinality) + "]");
+      FilterQueryTree d0 = filter(FilterOperator.EQUALITY, "D0", String.valueOf(random.nextInt(d0Cardinality)));
+      switch (random.nextInt(3)) {
+        case 0:
+          filters.add(new Object[] { and(d0, d1) });
+          break;
+        case 1:
+          filters.add(new Object[] { and(d1, d2) });
+          break;
+        default:
+          filters.add(new Object[] { or(d0, and(d1, d2)) });
+          break;
+      }
+    }
+
+    return filters.toArray(new Object[][]{});
+  }
+
+  @Test(dataProvider = "complexFilterDataProvider")
+  public void testComplexFilter(FilterQueryTree filterQueryTree) throws Exception {
+    // Build request
+    final BrokerRequest brokerRequest = new BrokerRequest();
+    final List<AggregationInfo> aggregationsInfo = new ArrayList<AggregationInfo>();
+    aggregationsInfo.add(getSumAggregationInfo());
+    brokerRequest.setAggregationsInfo(aggregationsInfo);
+    RequestUtils.generateFilterFromTree(filterQueryTree, brokerRequest);
+
+    // Compute plan
+    final PlanMaker instancePlanMaker = new InstancePlanMakerImplV3();
+    final FilterQueryPlan filterQueryPlan = new FilterQueryPlan(brokerRequest);
+    final PlanNode rootPlanNode = instancePlanMaker.makeInnerSegmentPlan(indexSegment, brokerRequest, filterQueryPlan);
+    // The star tree is only used for filters it supports, and when it scans fewer documents than the raw segment
+    final List<String> dimensionNames = indexSegment.getSegmentMetadata().getSchema().getDimensionNames();
+    final int numRawDocs = indexSegment.getSegmentMetadata().getTotalDocs()
+        - indexSegment.getSegmentMetadata().getTotalAggregateDocs();
+    if (StarTreeFilterPlanNode.isSupportedFilter(filterQueryTree, dimensionNames)
+        && new StarTreeFilterPlanNode(indexSegment, brokerRequest, filterQueryPlan).getNumDocsToScan() < numRawDocs) {
+      Assert.assertEquals(rootPlanNode.getClass(), StarTreeAggregationPlanNode.class);
+    } else {
+      Assert.assertEquals(rootPlanNode.getClass(), RawAggregationPlanNode.class);
+    }
+
+    // Perform aggregation
+    final MAggregationOperator operator = (MAggregationOperator) rootPlanNode.run();
+    final IntermediateResultsBlock resultBlock = (IntermediateResultsBlock) operator.nextBlock();
+
+    // Get response
+    final ReduceService reduceService = new DefaultReduceService();
+    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
+    instanceResponseMap.put(new ServerInstance("localhost:0000"), resultBlock.getAggregationResultDataTable());
+    final BrokerResponse reducedResults =
+        reduceService.reduceOnDataTable(brokerRequest, instanceResponseMap);
+
+    // Check
+    Long fromPinot = reducedResults.getAggregationResults().get(0).getLong("value");
+    long fromRawData = 0;
+    DatumReader<GenericRecord> reader = new GenericDatumReader<GenericRecord>();
+    DataFileReader<GenericRecord> fileReader = new DataFileReader<GenericRecord>(avroFile, reader);
+    GenericRecord record = null;
+    while (fileReader.hasNext()) {
+      record = fileReader.next(record);
+      if (matches(filterQueryTree, record)) {
+        fromRawData += (Long) record.get("M0");
+      }
+    }
+    fileReader.close();
+    Assert.assertEquals(fromPinot.longValue(), fromRawData);
+  }
+
+  private FilterQueryTree filter(FilterOperator operator, String column, String... values) {
+    return new FilterQueryTree(nextFilterId++, column, Arrays.asList(values), operator, null);
+  }
+
+  private FilterQueryTree and(FilterQueryTree... children) {
+    return new FilterQueryTree(nextFilterId++, null, null, FilterOperator.AND, Arrays.asList(children));
+  }
+
+  private FilterQueryTree or(FilterQueryTree... children) {
+    return new FilterQueryTree(nextFilterId++, null, null, FilterOperator.OR, Arrays.asList(children));
+  }
+
+  private static boolean matches(FilterQueryTree filterQueryTree, GenericRecord record) {
+    if (filterQueryTree.getChildren() != null) {
+      boolean isAnd = FilterOperator.AND.equals(filterQueryTree.getOperator());
+      for (FilterQueryTree child : filterQueryTree.getChildren()) {
+        if (matches(child, record) != isAnd) {
+          return !isAnd;
+        }
+      }
+      return isAnd;
+    }
+
+    String value = record.get(filterQueryTree.getColumn()).toString();
+    List<String> values = filterQueryTree.getValue();
+    switch (filterQueryTree.getOperator()) {
+      case EQUALITY:
+      case IN:
+        return values.contains(value);
+      case NOT:
+      case NOT_IN:
+        return !values.contains(value);
+      case RANGE:
+        RangePredicate range = new RangePredicate(filterQueryTree.getColumn(), values);
+        if (!range.getLowerBoundary().equals("*")) {
+          int comparison = value.compareTo(range.getLowerBoundary());
+          if (comparison < 0 || (comparison == 0 && !range.includeLowerBoundary())) {
+            return false;
+          }
+        }
+        if (!range.getUpperBoundary().equals("*")) {
+          int comparison = value.compareTo(range.getUpperBoundary());
+          if (comparison > 0 || (comparison == 0 && !range.includeUpperBoundary())) {
+            return false;
+          }
+        }
+        return true;
+      default:
+        throw new IllegalArgumentException("Unsupported operator " + filterQueryTree.getOperator());
+    }
+  }
+
   private static String[] flattenFilterQuery(Map<String, String> filterQuery) {
     List<String> keys = new ArrayList<>();
     List<String> vals = new ArrayList<>();
@@ -20,7 +20,7 @@ import static org.testng.Assert.assertEquals;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -96,7 +96,7 @@ public class QueryPlannerTest {
         }
 
         @Override
-        public StarTreeIndexNode getStarTreeRoot() {
+        public OffHeapStarTree getStarTree() {
           return null;
         }
       });
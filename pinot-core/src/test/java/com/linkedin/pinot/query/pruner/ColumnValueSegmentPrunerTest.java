@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.pruner;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
+import com.linkedin.pinot.core.query.pruner.SegmentPruner;
+import com.linkedin.pinot.core.query.pruner.SegmentPrunerProvider;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.core.segment.index.BloomFilter;
+import com.linkedin.pinot.core.segment.index.ColumnMetadata;
+import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
+import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
+import com.linkedin.pinot.core.segment.index.readers.ImmutableDictionaryReader;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Pruning of a segment on the min and max values and the bloom filters written for its columns.
+ */
+public class ColumnValueSegmentPrunerTest {
+  private static final String AVRO_DATA = "data/test_data-sv.avro";
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory() + File.separator + "ColumnValueSegmentPrunerTest");
+  private static final String BLOOM_FILTER_COLUMN = "column1";
+  private static final String NO_BLOOM_FILTER_COLUMN = "column3";
+
+  private IndexSegmentImpl _indexSegment;
+  private SegmentPruner _segmentPruner;
+  private int _min;
+  private int _max;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR,
+            "daysSinceEpoch", TimeUnit.DAYS, "test");
+    config.createBloomFilterForColumn(BLOOM_FILTER_COLUMN);
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    _indexSegment =
+        (IndexSegmentImpl) ColumnarSegmentLoader.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+    _segmentPruner = SegmentPrunerProvider.getSegmentPruner("ColumnValueSegmentPruner", null);
+
+    final ColumnMetadata columnMetadata = getColumnMetadata(BLOOM_FILTER_COLUMN);
+    Assert.assertEquals(columnMetadata.getDataType(), DataType.INT);
+    _min = (Integer) columnMetadata.getMinValue();
+    _max = (Integer) columnMetadata.getMaxValue();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _indexSegment.destroy();
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  private ColumnMetadata getColumnMetadata(String column) {
+    return ((SegmentMetadataImpl) _indexSegment.getSegmentMetadata()).getColumnMetadataFor(column);
+  }
+
+  private boolean prune(String filter) {
+    BrokerRequest brokerRequest =
+        new Pql2Compiler().compileToBrokerRequest("select count(*) from test where " + filter);
+    return _segmentPruner.prune(_indexSegment, brokerRequest, new FilterQueryPlan(brokerRequest));
+  }
+
+  @Test
+  public void testMetadata() {
+    final ImmutableDictionaryReader dictionary = _indexSegment.getDictionaryFor(BLOOM_FILTER_COLUMN);
+    Assert.assertEquals(_min, dictionary.get(0));
+    Assert.assertEquals(_max, dictionary.get(dictionary.length() - 1));
+    Assert.assertTrue(getColumnMetadata(BLOOM_FILTER_COLUMN).hasBloomFilter());
+
+    final ColumnMetadata columnMetadata = getColumnMetadata(NO_BLOOM_FILTER_COLUMN);
+    Assert.assertNotNull(columnMetadata.getMinValue());
+    Assert.assertTrue(columnMetadata.getMinValue().compareTo(columnMetadata.getMaxValue()) <= 0);
+    Assert.assertFalse(columnMetadata.hasBloomFilter());
+    Assert.assertNull(_indexSegment.getBloomFilterFor(NO_BLOOM_FILTER_COLUMN));
+  }
+
+  @Test
+  public void testMinMax() {
+    Assert.assertFalse(prune(BLOOM_FILTER_COLUMN + " = " + _min));
+    Assert.assertFalse(prune(BLOOM_FILTER_COLUMN + " = " + _max));
+    Assert.assertTrue(prune(BLOOM_FILTER_COLUMN + " = " + (_max + 1)));
+    Assert.assertTrue(prune(BLOOM_FILTER_COLUMN + " = " + (_min - 1)));
+
+    Assert.assertTrue(prune(BLOOM_FILTER_COLUMN + " in (" + (_min - 1) + ", " + (_max + 1) + ")"));
+    Assert.assertFalse(prune(BLOOM_FILTER_COLUMN + " in (" + (_min - 1) + ", " + _max + ")"));
+
+    Assert.assertTrue(prune(BLOOM_FILTER_COLUMN + " > " + _max));
+    Assert.assertFalse(prune(BLOOM_FILTER_COLUMN + " >= " + _max));
+    Assert.assertTrue(prune(BLOOM_FILTER_COLUMN + " < " + _min));
+    Assert.assertFalse(prune(BLOOM_FILTER_COLUMN + " <= " + _min));
+    Assert.assertTrue(prune(BLOOM_FILTER_COLUMN + " between " + (_max + 1) + " and " + (_max + 10)));
+    Assert.assertFalse(prune(BLOOM_FILTER_COLUMN + " between " + (_min - 10) + " and " + _min));
+
+    // Predicates which are not evaluated may match
+    Assert.assertFalse(prune(BLOOM_FILTER_COLUMN + " <> " + (_max + 1)));
+    Assert.assertFalse(prune(BLOOM_FILTER_COLUMN + " = 'notANumber'"));
+    Assert.assertFalse(prune("unknownColumn = 1"));
+  }
+
+  @Test
+  public void testAndOr() {
+    final String match = BLOOM_FILTER_COLUMN + " = " + _min;
+    final String noMatch = BLOOM_FILTER_COLUMN + " = " + (_max + 1);
+    Assert.assertTrue(prune(match + " and " + noMatch));
+    Assert.assertFalse(prune(match + " or " + noMatch));
+    Assert.assertTrue(prune(noMatch + " or " + BLOOM_FILTER_COLUMN + " > " + _max));
+    Assert.assertTrue(prune(NO_BLOOM_FILTER_COLUMN + " <> 1 and (" + noMatch + " or " + noMatch + ")"));
+  }
+
+  @Test
+  public void testBloomFilter() {
+    final ImmutableDictionaryReader dictionary = _indexSegment.getDictionaryFor(BLOOM_FILTER_COLUMN);
+    final BloomFilter bloomFilter = _indexSegment.getBloomFilterFor(BLOOM_FILTER_COLUMN);
+    Assert.assertSame(_indexSegment.getBloomFilterFor(BLOOM_FILTER_COLUMN), bloomFilter);
+
+    // No value of the segment is ever pruned
+    for (int i = 0; i < dictionary.length(); i++) {
+      Assert.assertFalse(prune(BLOOM_FILTER_COLUMN + " = " + dictionary.get(i)));
+    }
+
+    // Values between the min and the max which are not in the segment are pruned, but for false positives
+    int numAbsentValues = 0;
+    int numPruned = 0;
+    for (int value = _min; value <= _max && numAbsentValues < 1000; value++) {
+      if (dictionary.indexOf(Integer.toString(value)) < 0) {
+        numAbsentValues++;
+        if (prune(BLOOM_FILTER_COLUMN + " = " + value)) {
+          numPruned++;
+        }
+      }
+    }
+    Assert.assertTrue(numAbsentValues > 0);
+    Assert.assertTrue(numPruned >= numAbsentValues * 0.9, numPruned + " pruned out of " + numAbsentValues);
+  }
+}
@@ -17,7 +17,7 @@ package com.linkedin.pinot.query.pruner;
 
 import java.util.Map;
 
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.PropertiesConfiguration;
@@ -173,7 +173,7 @@ public class SegmentPrunerTest {
       }
 
       @Override
-      public StarTreeIndexNode getStarTreeRoot() {
+      public OffHeapStarTree getStarTree() {
         return null;
       }
 
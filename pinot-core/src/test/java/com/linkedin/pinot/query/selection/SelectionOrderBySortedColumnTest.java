@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.selection;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterOperator;
+import com.linkedin.pinot.common.request.Selection;
+import com.linkedin.pinot.common.request.SelectionSort;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.MCombineOperator;
+import com.linkedin.pinot.core.plan.PlanNode;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV0;
+import com.linkedin.pinot.core.query.selection.SelectionOperatorService;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Order by on the column the segment is sorted on, which stops once the result is known.
+ */
+public class SelectionOrderBySortedColumnTest {
+  private static final String AVRO_DATA = "data/test_data-sv.avro";
+  private static final String SORTED_COLUMN = "daysSinceEpoch";
+  private static final String FILTER_COLUMN = "column11";
+  private static final int SIZE = 10;
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory() + File.separator + "SelectionOrderBySortedColumnTest");
+
+  private IndexSegment _indexSegment;
+  private String _filterValue;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, SORTED_COLUMN,
+            TimeUnit.DAYS, "test");
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    _indexSegment = ColumnarSegmentLoader.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+    Assert.assertTrue(_indexSegment.getDataSource(SORTED_COLUMN).getDataSourceMetadata().isSorted());
+    _filterValue = _indexSegment.getDataSource(FILTER_COLUMN).getDictionary().get(0).toString();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testAscending() throws Exception {
+    assertOrderBy(true, false);
+  }
+
+  @Test
+  public void testDescending() throws Exception {
+    assertOrderBy(false, false);
+  }
+
+  @Test
+  public void testAscendingWithFilter() throws Exception {
+    assertOrderBy(true, true);
+  }
+
+  @Test
+  public void testDescendingWithFilter() throws Exception {
+    assertOrderBy(false, true);
+  }
+
+  @Test
+  public void testCombineSkipsSegments() throws Exception {
+    final BrokerRequest brokerRequest = getBrokerRequest(false, false);
+    final List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < 3; i++) {
+      operators.add(new InstancePlanMakerImplV0().makeInnerSegmentPlan(_indexSegment, brokerRequest).run());
+    }
+    final IntermediateResultsBlock firstBlock = (IntermediateResultsBlock) operators.get(0).nextBlock();
+    operators.set(0, new InstancePlanMakerImplV0().makeInnerSegmentPlan(_indexSegment, brokerRequest).run());
+
+    final IntermediateResultsBlock mergedBlock =
+        (IntermediateResultsBlock) new MCombineOperator(operators, brokerRequest).nextBlock();
+    // The segments after the first one can't beat its rows
+    Assert.assertEquals(mergedBlock.getNumDocsScanned(), firstBlock.getNumDocsScanned());
+    Assert.assertEquals(mergedBlock.getTotalDocs(), 3L * _indexSegment.getTotalDocs());
+    Assert.assertEquals(mergedBlock.getSelectionResult().size(), SIZE);
+  }
+
+  private void assertOrderBy(boolean isAsc, boolean withFilter) throws Exception {
+    final BrokerRequest brokerRequest = getBrokerRequest(isAsc, withFilter);
+    final PlanNode rootPlanNode = new InstancePlanMakerImplV0().makeInnerSegmentPlan(_indexSegment, brokerRequest);
+    final IntermediateResultsBlock resultBlock = (IntermediateResultsBlock) rootPlanNode.run().nextBlock();
+
+    final List<Comparable> expectedValues = getExpectedValues(isAsc, withFilter);
+    Assert.assertTrue(resultBlock.getNumDocsScanned() < expectedValues.size());
+
+    // Rows of the segment, then rows reduced from several servers
+    final SelectionOperatorService selectionOperatorService =
+        new SelectionOperatorService(brokerRequest.getSelections(), resultBlock.getSelectionDataSchema());
+    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
+    instanceResponseMap.put(new ServerInstance("localhost:0000"), resultBlock.getDataTable());
+    instanceResponseMap.put(new ServerInstance("localhost:1111"), resultBlock.getDataTable());
+    final List<PriorityQueue<Serializable[]>> results = new ArrayList<PriorityQueue<Serializable[]>>();
+    results.add((PriorityQueue<Serializable[]>) resultBlock.getSelectionResult());
+    results.add((PriorityQueue<Serializable[]>) selectionOperatorService.reduce(instanceResponseMap));
+    for (final PriorityQueue<Serializable[]> pq : results) {
+      final List<Serializable[]> rows = new ArrayList<Serializable[]>();
+      while (!pq.isEmpty()) {
+        rows.add(0, pq.poll());
+      }
+      Assert.assertEquals(rows.size(), SIZE);
+      for (int i = 0; i < rows.size(); i++) {
+        Assert.assertEquals(rows.get(i)[0], expectedValues.get(i));
+        if (withFilter) {
+          Assert.assertEquals(rows.get(i)[1], _filterValue);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return values of the sorted column of all the matching documents, in the order of the query
+   */
+  private List<Comparable> getExpectedValues(boolean isAsc, boolean withFilter) {
+    final List<Comparable> expectedValues = new ArrayList<Comparable>();
+    final Block sortedBlock = _indexSegment.getDataSource(SORTED_COLUMN).nextBlock(new BlockId(0));
+    final Block filterBlock = _indexSegment.getDataSource(FILTER_COLUMN).nextBlock(new BlockId(0));
+    final BlockSingleValIterator sortedIterator = (BlockSingleValIterator) sortedBlock.getBlockValueSet().iterator();
+    final BlockSingleValIterator filterIterator = (BlockSingleValIterator) filterBlock.getBlockValueSet().iterator();
+    for (int docId = 0; docId < _indexSegment.getTotalDocs(); docId++) {
+      filterIterator.skipTo(docId);
+      final Object filterValue = filterBlock.getMetadata().getDictionary().get(filterIterator.nextIntVal());
+      if (withFilter && !_filterValue.equals(filterValue.toString())) {
+        continue;
+      }
+      sortedIterator.skipTo(docId);
+      expectedValues.add((Comparable) sortedBlock.getMetadata().getDictionary().get(sortedIterator.nextIntVal()));
+    }
+    Collections.sort(expectedValues);
+    if (!isAsc) {
+      Collections.reverse(expectedValues);
+    }
+    return expectedValues;
+  }
+
+  private BrokerRequest getBrokerRequest(boolean isAsc, boolean withFilter) {
+    final Selection selection = new Selection();
+    final List<String> selectionColumns = new ArrayList<String>();
+    selectionColumns.add(SORTED_COLUMN);
+    selectionColumns.add(FILTER_COLUMN);
+    selection.setSelectionColumns(selectionColumns);
+    selection.setOffset(0);
+    selection.setSize(SIZE);
+    final SelectionSort selectionSort = new SelectionSort();
+    selectionSort.setColumn(SORTED_COLUMN);
+    selectionSort.setIsAsc(isAsc);
+    final List<SelectionSort> selectionSortSequence = new ArrayList<SelectionSort>();
+    selectionSortSequence.add(selectionSort);
+    selection.setSelectionSortSequence(selectionSortSequence);
+
+    final BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setSelections(selection);
+    if (withFilter) {
+      final List<String> values = new ArrayList<String>();
+      values.add(_filterValue);
+      RequestUtils.generateFilterFromTree(
+          new FilterQueryTree(0, FILTER_COLUMN, values, FilterOperator.EQUALITY, null), brokerRequest);
+    }
+    return brokerRequest;
+  }
+}
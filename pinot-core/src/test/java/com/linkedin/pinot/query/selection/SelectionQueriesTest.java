@@ -19,6 +19,8 @@ import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +50,9 @@ import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.common.utils.request.FilterQueryTree;
 import com.linkedin.pinot.common.utils.request.RequestUtils;
 import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
 import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
 import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
@@ -168,6 +173,59 @@ public class SelectionQueriesTest {
     }
   }
 
+  @Test
+  public void testSelectionOrderByMultipleColumns() {
+    final BReusableFilteredDocIdSetOperator docIdSetOperator =
+        new BReusableFilteredDocIdSetOperator(null, _indexSegment.getTotalDocs(), 1000);
+    final MProjectionOperator projectionOperator = new MProjectionOperator(getDataSourceMap(), docIdSetOperator);
+
+    final Selection selection = getSelectionQuery();
+    selection.setSize(50);
+    final SelectionSort selectionSort = new SelectionSort();
+    selectionSort.setColumn("met_impressionCount");
+    selectionSort.setIsAsc(true);
+    selection.getSelectionSortSequence().add(selectionSort);
+
+    final MSelectionOrderByOperator selectionOperator =
+        new MSelectionOrderByOperator(_indexSegment, selection, projectionOperator);
+    final IntermediateResultsBlock block = (IntermediateResultsBlock) selectionOperator.nextBlock();
+    final PriorityQueue<Serializable[]> pq = (PriorityQueue<Serializable[]>) block.getSelectionResult();
+    final List<Serializable[]> rows = new ArrayList<Serializable[]>();
+    while (!pq.isEmpty()) {
+      rows.add(0, pq.poll());
+    }
+
+    // Sort all the documents of the segment on column11 desc, met_impressionCount asc
+    final List<Comparable[]> expectedRows = new ArrayList<Comparable[]>();
+    final Block column11Block = _indexSegment.getDataSource("column11").nextBlock(new BlockId(0));
+    final Block metricBlock = _indexSegment.getDataSource("met_impressionCount").nextBlock(new BlockId(0));
+    final BlockSingleValIterator column11Iterator = (BlockSingleValIterator) column11Block.getBlockValueSet().iterator();
+    final BlockSingleValIterator metricIterator = (BlockSingleValIterator) metricBlock.getBlockValueSet().iterator();
+    for (int docId = 0; docId < _indexSegment.getTotalDocs(); docId++) {
+      column11Iterator.skipTo(docId);
+      metricIterator.skipTo(docId);
+      expectedRows.add(new Comparable[] {
+          (Comparable) column11Block.getMetadata().getDictionary().get(column11Iterator.nextIntVal()),
+          (Comparable) metricBlock.getMetadata().getDictionary().get(metricIterator.nextIntVal()) });
+    }
+    Collections.sort(expectedRows, new Comparator<Comparable[]>() {
+      @Override
+      public int compare(Comparable[] o1, Comparable[] o2) {
+        final int result = o2[0].compareTo(o1[0]);
+        return result != 0 ? result : o1[1].compareTo(o2[1]);
+      }
+    });
+
+    Assert.assertEquals(rows.size(), 50);
+    final DataSchema dataSchema = block.getSelectionDataSchema();
+    Assert.assertEquals(dataSchema.getColumnName(0), "column11");
+    Assert.assertEquals(dataSchema.getColumnName(1), "met_impressionCount");
+    for (int i = 0; i < rows.size(); i++) {
+      Assert.assertEquals(rows.get(i)[0], expectedRows.get(i)[0]);
+      Assert.assertEquals(rows.get(i)[1], expectedRows.get(i)[1]);
+    }
+  }
+
   @Test
   public void testInnerSegmentPlanMakerForSelectionNoFilter() throws Exception {
     final BrokerRequest brokerRequest = getSelectionNoFilterBrokerRequest();
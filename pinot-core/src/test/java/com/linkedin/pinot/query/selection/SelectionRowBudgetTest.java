@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.query.selection;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.Selection;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.block.query.IntermediateResultsBlock;
+import com.linkedin.pinot.core.common.Operator;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.operator.MCombineOperator;
+import com.linkedin.pinot.core.plan.maker.InstancePlanMakerImplV0;
+import com.linkedin.pinot.core.query.selection.SelectionRowBudget;
+import com.linkedin.pinot.core.segment.creator.SegmentIndexCreationDriver;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentCreationDriverFactory;
+import com.linkedin.pinot.segments.v1.creator.SegmentTestUtils;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Selection only queries on several segments, which stop once the instance has all the rows it needs.
+ */
+public class SelectionRowBudgetTest {
+  private static final String AVRO_DATA = "data/test_data-sv.avro";
+  private static final int SIZE = 10;
+  private static final int NUM_SEGMENTS = 4;
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory() + File.separator + "SelectionRowBudgetTest");
+
+  private IndexSegment _indexSegment;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    FileUtils.deleteQuietly(INDEX_DIR);
+
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR,
+            "daysSinceEpoch", TimeUnit.DAYS, "test");
+    final SegmentIndexCreationDriver driver = SegmentCreationDriverFactory.get(null);
+    driver.init(config);
+    driver.build();
+    _indexSegment = ColumnarSegmentLoader.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testRowBudget() {
+    final SelectionRowBudget rowBudget = new SelectionRowBudget(SIZE);
+    Assert.assertFalse(rowBudget.isExhausted());
+    rowBudget.addRows(SIZE - 1);
+    Assert.assertFalse(rowBudget.isExhausted());
+    rowBudget.addRows(0);
+    Assert.assertFalse(rowBudget.isExhausted());
+    rowBudget.addRows(1);
+    Assert.assertTrue(rowBudget.isExhausted());
+  }
+
+  @Test
+  public void testCombineSkipsSegments() throws Exception {
+    final BrokerRequest brokerRequest = getBrokerRequest();
+    final List<Operator> operators = new ArrayList<Operator>();
+    for (int i = 0; i < NUM_SEGMENTS; i++) {
+      operators.add(new InstancePlanMakerImplV0().makeInnerSegmentPlan(_indexSegment, brokerRequest).run());
+    }
+
+    final MCombineOperator combineOperator = new MCombineOperator(operators, brokerRequest);
+    combineOperator.open();
+    final IntermediateResultsBlock mergedBlock = (IntermediateResultsBlock) combineOperator.nextBlock();
+    // The first segment has all the rows, the other ones are never scanned
+    Assert.assertEquals(mergedBlock.getSelectionResult().size(), SIZE);
+    Assert.assertEquals(mergedBlock.getNumDocsScanned(), SIZE);
+    Assert.assertEquals(mergedBlock.getTotalDocs(), (long) NUM_SEGMENTS * _indexSegment.getTotalDocs());
+  }
+
+  private BrokerRequest getBrokerRequest() {
+    final Selection selection = new Selection();
+    final List<String> selectionColumns = new ArrayList<String>();
+    selectionColumns.add("column11");
+    selectionColumns.add("daysSinceEpoch");
+    selection.setSelectionColumns(selectionColumns);
+    selection.setOffset(0);
+    selection.setSize(SIZE);
+
+    final BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setSelections(selection);
+    return brokerRequest;
+  }
+}
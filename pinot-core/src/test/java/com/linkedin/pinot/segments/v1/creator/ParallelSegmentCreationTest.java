@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.segments.v1.creator;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DimensionFieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.AbstractColumnStatisticsCollector;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
+import com.linkedin.pinot.core.segment.creator.impl.stats.DoubleColumnPreIndexStatsCollector;
+import com.linkedin.pinot.core.segment.creator.impl.stats.IntColumnPreIndexStatsCollector;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Segment creation processing the columns in parallel must write the same segment as processing them one by one.
+ */
+public class ParallelSegmentCreationTest {
+  private static final String AVRO_DATA = "data/test_sample_data.avro";
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory() + File.separator + "ParallelSegmentCreationTest");
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testSameSegmentAsSequentialCreation() throws Exception {
+    FileUtils.deleteQuietly(INDEX_DIR);
+    final File sequentialSegment = buildSegment(new File(INDEX_DIR, "sequential"), 1);
+    final File parallelSegment = buildSegment(new File(INDEX_DIR, "parallel"), 8);
+
+    final File[] files = sequentialSegment.listFiles();
+    Assert.assertEquals(parallelSegment.list().length, files.length);
+    for (File file : files) {
+      // holds the creation time
+      if (file.getName().equals(V1Constants.SEGMENT_CREATION_META)) {
+        continue;
+      }
+      Assert.assertTrue(FileUtils.contentEquals(file, new File(parallelSegment, file.getName())),
+          "Content of " + file.getName());
+    }
+  }
+
+  private File buildSegment(File indexDir, int numThreads) throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), indexDir, "time_day",
+            TimeUnit.DAYS, "test");
+    config.createInvertedIndexForAllColumns();
+    config.setNumColumnThreads(numThreads);
+    final SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config);
+    driver.build();
+    return new File(indexDir, driver.getSegmentName());
+  }
+
+  @Test
+  public void testPrimitiveStatsCollectors() throws Exception {
+    final AbstractColumnStatisticsCollector sortedInts = new IntColumnPreIndexStatsCollector(spec(DataType.INT));
+    for (int value : new int[] { -3, -3, 0, 7, 7, 12 }) {
+      sortedInts.collect(value);
+    }
+    sortedInts.seal();
+    Assert.assertTrue(sortedInts.isSorted());
+    Assert.assertEquals(sortedInts.getCardinality(), 4);
+    Assert.assertEquals(sortedInts.getMinValue(), -3);
+    Assert.assertEquals(sortedInts.getMaxValue(), 12);
+
+    final AbstractColumnStatisticsCollector unsortedDoubles =
+        new DoubleColumnPreIndexStatsCollector(spec(DataType.DOUBLE));
+    for (double value : new double[] { 1.5, 2.5, 2.25, 3.0 }) {
+      unsortedDoubles.collect(value);
+    }
+    unsortedDoubles.seal();
+    Assert.assertFalse(unsortedDoubles.isSorted());
+    Assert.assertEquals(unsortedDoubles.getCardinality(), 4);
+    Assert.assertEquals(unsortedDoubles.getMinValue(), 1.5);
+    Assert.assertEquals(unsortedDoubles.getMaxValue(), 3.0);
+  }
+
+  private static FieldSpec spec(DataType dataType) {
+    return new DimensionFieldSpec("column", dataType, true);
+  }
+}
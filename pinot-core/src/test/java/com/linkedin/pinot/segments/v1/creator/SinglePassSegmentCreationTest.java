@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.segments.v1.creator;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec;
+import com.linkedin.pinot.common.data.Schema;
+import com.linkedin.pinot.common.segment.ReadMode;
+import com.linkedin.pinot.core.common.Block;
+import com.linkedin.pinot.core.common.BlockId;
+import com.linkedin.pinot.core.common.BlockMultiValIterator;
+import com.linkedin.pinot.core.common.BlockSingleValIterator;
+import com.linkedin.pinot.core.data.GenericRow;
+import com.linkedin.pinot.core.data.readers.RecordReader;
+import com.linkedin.pinot.core.data.readers.RecordReaderFactory;
+import com.linkedin.pinot.core.indexsegment.IndexSegment;
+import com.linkedin.pinot.core.indexsegment.columnar.ColumnarSegmentLoader;
+import com.linkedin.pinot.core.indexsegment.generator.SegmentGeneratorConfig;
+import com.linkedin.pinot.core.segment.creator.impl.SegmentIndexCreationDriverImpl;
+import com.linkedin.pinot.core.segment.index.readers.Dictionary;
+import com.linkedin.pinot.util.TestUtils;
+
+
+/**
+ * Segment creation reading the input once, the values being indexed from the spill of the first pass.
+ */
+public class SinglePassSegmentCreationTest {
+  private static final String AVRO_DATA = "data/test_sample_data.avro";
+  private static final File INDEX_DIR =
+      new File(FileUtils.getTempDirectory() + File.separator + "SinglePassSegmentCreationTest");
+
+  @AfterClass
+  public void tearDown() {
+    FileUtils.deleteQuietly(INDEX_DIR);
+  }
+
+  @Test
+  public void testInputReadOnce() throws Exception {
+    final String filePath = TestUtils.getFileFromResourceUrl(getClass().getClassLoader().getResource(AVRO_DATA));
+    FileUtils.deleteQuietly(INDEX_DIR);
+    final SegmentGeneratorConfig config =
+        SegmentTestUtils.getSegmentGenSpecWithSchemAndProjectedColumns(new File(filePath), INDEX_DIR, "time_day",
+            TimeUnit.DAYS, "test");
+    config.createInvertedIndexForAllColumns();
+
+    final SingleReadRecordReader recordReader = new SingleReadRecordReader(RecordReaderFactory.get(config));
+    final SegmentIndexCreationDriverImpl driver = new SegmentIndexCreationDriverImpl();
+    driver.init(config, recordReader);
+    driver.build();
+    // only the segment is left in the output directory, the spill is deleted
+    Assert.assertEquals(INDEX_DIR.list().length, 1);
+
+    // Every document has the dictIds of the values read from the input
+    final IndexSegment indexSegment =
+        ColumnarSegmentLoader.load(new File(INDEX_DIR, driver.getSegmentName()), ReadMode.heap);
+    Assert.assertEquals(indexSegment.getTotalDocs(), recordReader.numRows);
+    final RecordReader expectedReader = RecordReaderFactory.get(config);
+    final Schema schema = expectedReader.getSchema();
+    for (FieldSpec spec : schema.getAllFieldSpecs()) {
+      final String column = spec.getName();
+      final Block block = indexSegment.getDataSource(column).nextBlock(new BlockId(0));
+      final Dictionary dictionary = block.getMetadata().getDictionary();
+      expectedReader.rewind();
+      if (spec.isSingleValueField()) {
+        final BlockSingleValIterator iterator = (BlockSingleValIterator) block.getBlockValueSet().iterator();
+        for (int docId = 0; docId < recordReader.numRows; docId++) {
+          Assert.assertEquals(iterator.nextIntVal(), dictionary.indexOf(expectedReader.next().getValue(column)),
+              "Column " + column + " of document " + docId);
+        }
+      } else {
+        final BlockMultiValIterator iterator = (BlockMultiValIterator) block.getBlockValueSet().iterator();
+        final int[] dictIds = new int[block.getMetadata().getMaxNumberOfMultiValues()];
+        for (int docId = 0; docId < recordReader.numRows; docId++) {
+          final Object[] values = (Object[]) expectedReader.next().getValue(column);
+          Assert.assertEquals(iterator.nextIntVal(dictIds), values.length);
+          for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(dictIds[i], dictionary.indexOf(values[i]), "Column " + column + " of document " + docId);
+          }
+        }
+      }
+    }
+    expectedReader.close();
+  }
+
+  /**
+   * Record reader that can not be rewound.
+   */
+  private static class SingleReadRecordReader implements RecordReader {
+    private final RecordReader recordReader;
+    private int numRows = 0;
+
+    SingleReadRecordReader(RecordReader recordReader) {
+      this.recordReader = recordReader;
+    }
+
+    @Override
+    public void init() throws Exception {
+      recordReader.init();
+    }
+
+    @Override
+    public void rewind() throws Exception {
+      throw new UnsupportedOperationException("The input must be read once");
+    }
+
+    @Override
+    public boolean hasNext() {
+      return recordReader.hasNext();
+    }
+
+    @Override
+    public Schema getSchema() {
+      return recordReader.getSchema();
+    }
+
+    @Override
+    public GenericRow next() {
+      numRows++;
+      return recordReader.next();
+    }
+
+    @Override
+    public void close() throws Exception {
+      recordReader.close();
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.utils.DataTableBuilder.DataSchema;
+import com.linkedin.pinot.core.query.aggregation.groupby.AggregationGroupByJsonResults;
+import com.linkedin.pinot.core.query.selection.SelectionJsonResults;
+
+
+/**
+ * Writes broker responses in the binary format on the broker side and reads them back with the client.
+ */
+public class BinaryResponseRoundTripTest {
+  @Test
+  public void testStreamedSelectionResults() throws Exception {
+    DataSchema dataSchema = new DataSchema(
+        new String[] { "intColumn", "longColumn", "skippedColumn", "doubleColumn", "stringColumn", "intArrayColumn",
+            "stringArrayColumn" },
+        new DataType[] { DataType.INT, DataType.LONG, DataType.INT, DataType.DOUBLE, DataType.STRING,
+            DataType.INT_ARRAY, DataType.STRING_ARRAY });
+    List<Serializable[]> rows = new ArrayList<Serializable[]>();
+    rows.add(new Serializable[] { 84, 5000000000L, 0, 1.0, "first", new int[] { 1, 2 }, new String[] { "a" } });
+    rows.add(new Serializable[] { -202, -1L, 0, 2.25, "second", new int[0], new String[] { "b", "c" } });
+    List<String> selectionColumns = Arrays.asList("intColumn", "longColumn", "doubleColumn", "stringColumn",
+        "intArrayColumn", "stringArrayColumn");
+
+    com.linkedin.pinot.common.response.BrokerResponse brokerResponse =
+        new com.linkedin.pinot.common.response.BrokerResponse();
+    brokerResponse.setStreamedSelectionResults(new SelectionJsonResults(rows, selectionColumns, dataSchema));
+
+    ResultSetGroup resultSetGroup = writeAndRead(brokerResponse);
+    Assert.assertEquals(resultSetGroup.getResultSetCount(), 1);
+    ResultSet resultSet = resultSetGroup.getResultSet(0);
+    Assert.assertEquals(resultSet.getRowCount(), 2);
+    Assert.assertEquals(resultSet.getColumnCount(), 6);
+    Assert.assertEquals(resultSet.getColumnName(0), "intColumn");
+    Assert.assertEquals(resultSet.getColumnName(2), "doubleColumn");
+    Assert.assertEquals(resultSet.getColumnName(5), "stringArrayColumn");
+
+    Assert.assertEquals(resultSet.getInt(0, 0), 84);
+    Assert.assertEquals(resultSet.getInt(1, 0), -202);
+    Assert.assertEquals(resultSet.getLong(0, 1), 5000000000L);
+    Assert.assertEquals(resultSet.getLong(1, 1), -1L);
+    Assert.assertEquals(resultSet.getDouble(0, 2), 1.0);
+    Assert.assertEquals(resultSet.getDouble(1, 2), 2.25);
+    Assert.assertEquals(resultSet.getString(0, 3), "first");
+    Assert.assertEquals(resultSet.getString(1, 3), "second");
+    Assert.assertEquals(resultSet.getString(0, 4), "[\"1\",\"2\"]");
+    Assert.assertEquals(resultSet.getString(1, 4), "[]");
+    Assert.assertEquals(resultSet.getString(0, 5), "[\"a\"]");
+    Assert.assertEquals(resultSet.getString(1, 5), "[\"b\",\"c\"]");
+  }
+
+  @Test
+  public void testJsonSelectionResults() throws Exception {
+    JSONObject selectionResults = new JSONObject();
+    selectionResults.put("columns", new JSONArray(Arrays.asList("stringColumn", "stringArrayColumn")));
+    JSONArray results = new JSONArray();
+    results.put(new JSONArray(Arrays.asList("first", new JSONArray(Arrays.asList("a", "b")))));
+    results.put(new JSONArray(Arrays.asList("second", new JSONArray())));
+    selectionResults.put("results", results);
+
+    com.linkedin.pinot.common.response.BrokerResponse brokerResponse =
+        new com.linkedin.pinot.common.response.BrokerResponse();
+    brokerResponse.setSelectionResults(selectionResults);
+
+    ResultSetGroup resultSetGroup = writeAndRead(brokerResponse);
+    Assert.assertEquals(resultSetGroup.getResultSetCount(), 1);
+    ResultSet resultSet = resultSetGroup.getResultSet(0);
+    Assert.assertEquals(resultSet.getRowCount(), 2);
+    Assert.assertEquals(resultSet.getColumnCount(), 2);
+    Assert.assertEquals(resultSet.getString(0, 0), "first");
+    Assert.assertEquals(resultSet.getString(1, 0), "second");
+    Assert.assertEquals(resultSet.getString(0, 1), "[\"a\",\"b\"]");
+    Assert.assertEquals(resultSet.getString(1, 1), "[]");
+  }
+
+  @Test
+  public void testAggregationResults() throws Exception {
+    JSONObject countStar = new JSONObject();
+    countStar.put("function", "count_star");
+    countStar.put("value", "36542");
+    JSONObject sumMetric = new JSONObject();
+    sumMetric.put("function", "sum_metric");
+    sumMetric.put("value", 1804.5);
+    JSONObject groupBy = new JSONObject();
+    groupBy.put("function", "max_metric");
+    groupBy.put("groupByColumns", new JSONArray(Arrays.asList("dimension")));
+    JSONArray groupByResult = new JSONArray();
+    groupByResult.put(new JSONObject().put("group", new JSONArray(Arrays.asList("30194"))).put("value", "3604.0"));
+    groupBy.put("groupByResult", groupByResult);
+
+    com.linkedin.pinot.common.response.BrokerResponse brokerResponse =
+        new com.linkedin.pinot.common.response.BrokerResponse();
+    brokerResponse.setAggregationResults(Arrays.asList(countStar, sumMetric, groupBy));
+
+    ResultSetGroup resultSetGroup = writeAndRead(brokerResponse);
+    Assert.assertEquals(resultSetGroup.getResultSetCount(), 3);
+
+    ResultSet count = resultSetGroup.getResultSet(0);
+    Assert.assertEquals(count.getGroupKeyLength(), 0);
+    Assert.assertEquals(count.getRowCount(), 1);
+    Assert.assertEquals(count.getColumnName(0), "count_star");
+    Assert.assertEquals(count.getLong(0), 36542L);
+
+    ResultSet sum = resultSetGroup.getResultSet(1);
+    Assert.assertEquals(sum.getColumnName(0), "sum_metric");
+    Assert.assertEquals(sum.getDouble(0), 1804.5);
+
+    ResultSet max = resultSetGroup.getResultSet(2);
+    Assert.assertEquals(max.getGroupKeyLength(), 1);
+    Assert.assertEquals(max.getRowCount(), 1);
+    Assert.assertEquals(max.getGroupKeyInt(0, 0), 30194);
+    Assert.assertEquals(max.getDouble(0), 3604.0);
+  }
+
+  @Test
+  public void testStreamedGroupByResults() throws Exception {
+    AggregationGroupByJsonResults groupByResults =
+        new AggregationGroupByJsonResults(Arrays.asList("dimension1", "dimension2"));
+    groupByResults.addFunctionResults("sum_metric", new String[] { "a\t1", "b\t2" }, new Object[] { 10.5, 3.0 });
+    groupByResults.addFunctionResults("count_star", new String[] { "c\t3" }, new Object[] { 7L });
+
+    com.linkedin.pinot.common.response.BrokerResponse brokerResponse =
+        new com.linkedin.pinot.common.response.BrokerResponse();
+    brokerResponse.setStreamedAggregationResults(groupByResults);
+
+    ResultSetGroup resultSetGroup = writeAndRead(brokerResponse);
+    Assert.assertEquals(resultSetGroup.getResultSetCount(), 2);
+
+    ResultSet sum = resultSetGroup.getResultSet(0);
+    Assert.assertEquals(sum.getColumnName(0), "sum_metric");
+    Assert.assertEquals(sum.getGroupKeyLength(), 2);
+    Assert.assertEquals(sum.getRowCount(), 2);
+    Assert.assertEquals(sum.getGroupKeyString(0, 0), "a");
+    Assert.assertEquals(sum.getGroupKeyInt(0, 1), 1);
+    Assert.assertEquals(sum.getGroupKeyString(1, 0), "b");
+    Assert.assertEquals(sum.getGroupKeyInt(1, 1), 2);
+    Assert.assertEquals(sum.getDouble(0), 10.5);
+    Assert.assertEquals(sum.getDouble(1), 3.0);
+
+    ResultSet count = resultSetGroup.getResultSet(1);
+    Assert.assertEquals(count.getColumnName(0), "count_star");
+    Assert.assertEquals(count.getRowCount(), 1);
+    Assert.assertEquals(count.getGroupKeyString(0, 0), "c");
+    Assert.assertEquals(count.getGroupKeyLong(0, 1), 3L);
+    Assert.assertEquals(count.getLong(0), 7L);
+  }
+
+  private static ResultSetGroup writeAndRead(com.linkedin.pinot.common.response.BrokerResponse brokerResponse)
+      throws Exception {
+    brokerResponse.setTotalDocs(1000L);
+    brokerResponse.setNumDocsScanned(100L);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    brokerResponse.writeBinary(bytes);
+
+    BrokerResponse clientResponse = BinaryResponseReader.read(bytes.toByteArray());
+    Assert.assertFalse(clientResponse.hasExceptions());
+    return new ResultSetGroup(clientResponse);
+  }
+}
@@ -28,6 +28,7 @@ import com.linkedin.pinot.core.common.BlockDocIdIterator;
 import com.linkedin.pinot.core.common.Constants;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.plan.FilterPlanNode;
+import com.linkedin.pinot.core.plan.FilterQueryPlan;
 import com.linkedin.pinot.core.segment.index.IndexSegmentImpl;
 import com.linkedin.pinot.core.segment.index.loader.Loaders;
 import com.linkedin.pinot.pql.parsers.PQLCompiler;
@@ -49,9 +50,10 @@ public class FilterOperatorBenchmark {
       PQLCompiler compiler = new PQLCompiler(new HashMap<String, String[]>());
       JSONObject jsonObject = compiler.compile(query);
       BrokerRequest brokerRequest = RequestConverter.fromJSON(jsonObject);
+      FilterQueryPlan filterQueryPlan = new FilterQueryPlan(brokerRequest);
       int runCount = 0;
       while (runCount < 2) {
-        FilterPlanNode planNode = new FilterPlanNode(indexSegmentImpl, brokerRequest);
+        FilterPlanNode planNode = new FilterPlanNode(indexSegmentImpl, brokerRequest, filterQueryPlan);
         Operator operator = planNode.run();
         operator.open();
         Block block = operator.nextBlock();
@@ -18,12 +18,26 @@ package com.linkedin.pinot.server.conf;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 
+import com.linkedin.pinot.transport.netty.NettyServer;
+
 
 public class NettyServerConfig {
 
   // Netty server port
   private static String NETTY_SERVER_PORT = "port";
 
+  // Number of netty worker threads, which read the requests and write the responses
+  private static final String NETTY_SERVER_IO_THREADS = "ioThreads";
+
+  // Number of threads processing the queries, queries waiting in the query scheduler hold one of them
+  private static final String NETTY_SERVER_QUERY_THREADS = "queryThreads";
+  private static final int DEFAULT_QUERY_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+
+  // Whether the requests and responses carry the request id, which lets the brokers multiplex their requests on a
+  // few connections. The brokers must use the same framing (connPool.multiplexed).
+  private static final String NETTY_SERVER_REQUEST_ID_FRAMING = "requestIdFraming";
+  private static final boolean DEFAULT_REQUEST_ID_FRAMING = false;
+
   private Configuration _serverNettyConfig;
 
   public NettyServerConfig(Configuration serverNettyConfig) throws ConfigurationException {
@@ -39,4 +53,25 @@ public class NettyServerConfig {
   public int getPort() {
     return _serverNettyConfig.getInt(NETTY_SERVER_PORT);
   }
+
+  /**
+   * @return Number of netty worker threads
+   */
+  public int getNumIoThreads() {
+    return _serverNettyConfig.getInt(NETTY_SERVER_IO_THREADS, NettyServer.DEFAULT_NUM_IO_THREADS);
+  }
+
+  /**
+   * @return Number of query processing threads, 0 to process the queries on the netty worker threads
+   */
+  public int getNumQueryThreads() {
+    return _serverNettyConfig.getInt(NETTY_SERVER_QUERY_THREADS, DEFAULT_QUERY_THREADS);
+  }
+
+  /**
+   * @return true if the requests start with their request id, echoed in front of the response
+   */
+  public boolean isRequestIdFraming() {
+    return _serverNettyConfig.getBoolean(NETTY_SERVER_REQUEST_ID_FRAMING, DEFAULT_REQUEST_ID_FRAMING);
+  }
 }
@@ -0,0 +1,257 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMeter;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.metrics.ServerQueryPhase;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.yammer.metrics.core.Gauge;
+
+
+/**
+ * Admission control in front of the query executor.<br>
+ * A query runs once it holds one of the permits of its table and one of the permits of the server, and its table has
+ * processing time left in its budget. The table permit is taken first, so the queries of a table waiting for their
+ * turn never hold server permits, and a single table can never hold more than its own permits. The budget is a token
+ * bucket of milliseconds of processing time per table, refilled every second and charged with the time each query
+ * took, so that a table running expensive queries gets throttled while the other tables keep their share.<br>
+ * A query that would wait in the queue longer than the max queue wait is rejected with
+ * {@link QueryException#QUERY_SCHEDULING_TIMEOUT_ERROR}, as early as it is known that it can not be admitted in time.
+ * <br>
+ * The wait for admission blocks the calling thread, a thread of the server's query pool, for at most the max queue
+ * wait. Queued queries hold pool threads, so the query pool should have more threads than the max number of
+ * concurrent queries (the defaults are 4 and 2 per core) for the admitted queries to always find one.
+ */
+public class QueryScheduler {
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryScheduler.class);
+
+  // Keys of the scheduler config
+  public static final String MAX_CONCURRENT_QUERIES = "scheduler.maxConcurrentQueries";
+  public static final String MAX_CONCURRENT_QUERIES_PER_TABLE = "scheduler.maxConcurrentQueriesPerTable";
+  public static final String TABLE_PROCESSING_MS_PER_SECOND = "scheduler.tableProcessingMsPerSecond";
+  public static final String MAX_QUEUE_WAIT_MS = "scheduler.maxQueueWaitMs";
+
+  private static final int DEFAULT_MAX_CONCURRENT_QUERIES = 2 * Runtime.getRuntime().availableProcessors();
+  private static final long DEFAULT_MAX_QUEUE_WAIT_MS = 10000L;
+
+  private volatile QueryExecutor _queryExecutor;
+  private final ServerMetrics _serverMetrics;
+  private final int _maxConcurrentQueriesPerTable;
+  // Budget refill rate, no budget when not positive
+  private final long _tableProcessingMsPerSecond;
+  private final long _maxQueueWaitMs;
+
+  private final Semaphore _permits;
+  private final AtomicInteger _numQueuedQueries = new AtomicInteger(0);
+  private final ConcurrentMap<String, TableScheduler> _tableSchedulers = new ConcurrentHashMap<String, TableScheduler>();
+
+  public QueryScheduler(Configuration schedulerConfig, QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
+    _queryExecutor = queryExecutor;
+    _serverMetrics = serverMetrics;
+    final int maxConcurrentQueries = schedulerConfig.getInt(MAX_CONCURRENT_QUERIES, DEFAULT_MAX_CONCURRENT_QUERIES);
+    _maxConcurrentQueriesPerTable =
+        schedulerConfig.getInt(MAX_CONCURRENT_QUERIES_PER_TABLE, Math.max(1, maxConcurrentQueries / 2));
+    _tableProcessingMsPerSecond = schedulerConfig.getLong(TABLE_PROCESSING_MS_PER_SECOND, -1L);
+    _maxQueueWaitMs = schedulerConfig.getLong(MAX_QUEUE_WAIT_MS, DEFAULT_MAX_QUEUE_WAIT_MS);
+    _permits = new Semaphore(maxConcurrentQueries, true);
+    LOGGER.info("Query scheduler with {} concurrent queries, {} per table, {}ms of processing per second per table "
+        + "and {}ms of max queue wait", maxConcurrentQueries, _maxConcurrentQueriesPerTable,
+        _tableProcessingMsPerSecond, _maxQueueWaitMs);
+
+    if (_serverMetrics != null) {
+      _serverMetrics.addCallbackGauge(null, "schedulerQueueDepth", new Gauge<Integer>() {
+        @Override
+        public Integer value() {
+          return _numQueuedQueries.get();
+        }
+      });
+    }
+  }
+
+  public void setQueryExecutor(QueryExecutor queryExecutor) {
+    _queryExecutor = queryExecutor;
+  }
+
+  /**
+   * Waits for the query to be admitted and runs it on the query executor.
+   *
+   * @return the response of the query, or a response with a scheduling exception if it could not be admitted in time
+   */
+  public DataTable processQuery(InstanceRequest instanceRequest) {
+    final BrokerRequest brokerRequest = instanceRequest.getQuery();
+    final TableScheduler tableScheduler = getTableScheduler(brokerRequest.getQuerySource().getTableName());
+    final long queueStartTime = System.nanoTime();
+    final long deadlineMs = System.currentTimeMillis() + _maxQueueWaitMs;
+
+    String rejectionReason = null;
+    boolean hasTablePermit = false;
+    boolean hasPermit = false;
+    _numQueuedQueries.incrementAndGet();
+    tableScheduler._numQueuedQueries.incrementAndGet();
+    try {
+      long budgetWaitMs;
+      while ((budgetWaitMs = tableScheduler.getBudgetWaitMs()) > 0) {
+        if (System.currentTimeMillis() + budgetWaitMs > deadlineMs) {
+          rejectionReason = "table is over its processing time budget for another " + budgetWaitMs + "ms";
+          break;
+        }
+        Thread.sleep(budgetWaitMs);
+      }
+      if (rejectionReason == null) {
+        hasTablePermit =
+            tableScheduler._permits.tryAcquire(deadlineMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        if (!hasTablePermit) {
+          rejectionReason = "table already runs " + _maxConcurrentQueriesPerTable + " queries";
+        }
+      }
+      if (rejectionReason == null) {
+        hasPermit = _permits.tryAcquire(deadlineMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        if (!hasPermit) {
+          rejectionReason = "server already runs its max number of queries";
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      rejectionReason = "interrupted while waiting in the queue";
+    } finally {
+      _numQueuedQueries.decrementAndGet();
+      tableScheduler._numQueuedQueries.decrementAndGet();
+    }
+
+    try {
+      if (_serverMetrics != null) {
+        _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.SCHEDULER_WAIT,
+            System.nanoTime() - queueStartTime);
+      }
+      if (rejectionReason != null) {
+        return getRejectionResponse(instanceRequest, rejectionReason,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queueStartTime));
+      }
+
+      final long processingStartTime = System.currentTimeMillis();
+      try {
+        return _queryExecutor.processQuery(instanceRequest);
+      } finally {
+        tableScheduler.chargeBudget(System.currentTimeMillis() - processingStartTime);
+      }
+    } finally {
+      if (hasPermit) {
+        _permits.release();
+      }
+      if (hasTablePermit) {
+        tableScheduler._permits.release();
+      }
+    }
+  }
+
+  private DataTable getRejectionResponse(InstanceRequest instanceRequest, String rejectionReason, long queueWaitMs) {
+    final String tableName = instanceRequest.getQuery().getQuerySource().getTableName();
+    LOGGER.warn("Rejecting request id - {} on table {} after {}ms in the queue: {}", instanceRequest.getRequestId(),
+        tableName, queueWaitMs, rejectionReason);
+    if (_serverMetrics != null) {
+      _serverMetrics.addMeteredValue(instanceRequest.getQuery(), ServerMeter.QUERIES_REJECTED, 1);
+    }
+    final DataTable instanceResponse = new DataTable();
+    final ProcessingException exception = QueryException.QUERY_SCHEDULING_TIMEOUT_ERROR.deepCopy();
+    exception.setMessage("Query on table " + tableName + " could not be scheduled within " + _maxQueueWaitMs
+        + "ms: " + rejectionReason);
+    instanceResponse.addException(exception);
+    instanceResponse.getMetadata().put("requestId", Long.toString(instanceRequest.getRequestId()));
+    return instanceResponse;
+  }
+
+  private TableScheduler getTableScheduler(final String tableName) {
+    TableScheduler tableScheduler = _tableSchedulers.get(tableName);
+    if (tableScheduler == null) {
+      final TableScheduler newTableScheduler =
+          new TableScheduler(_maxConcurrentQueriesPerTable, _tableProcessingMsPerSecond);
+      tableScheduler = _tableSchedulers.putIfAbsent(tableName, newTableScheduler);
+      if (tableScheduler == null) {
+        tableScheduler = newTableScheduler;
+        if (_serverMetrics != null) {
+          _serverMetrics.addCallbackGauge(tableName, "schedulerQueueDepth", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+              return newTableScheduler._numQueuedQueries.get();
+            }
+          });
+        }
+      }
+    }
+    return tableScheduler;
+  }
+
+  /**
+   * Permits and processing time budget of a table.
+   */
+  private static final class TableScheduler {
+    private final Semaphore _permits;
+    private final AtomicInteger _numQueuedQueries = new AtomicInteger(0);
+    private final long _processingMsPerSecond;
+    // Processing time left, can go below zero when a query took longer than what was left
+    private long _availableMs;
+    private long _lastRefillTimeMs;
+
+    TableScheduler(int maxConcurrentQueries, long processingMsPerSecond) {
+      _permits = new Semaphore(maxConcurrentQueries, true);
+      _processingMsPerSecond = processingMsPerSecond;
+      _availableMs = processingMsPerSecond;
+      _lastRefillTimeMs = System.currentTimeMillis();
+    }
+
+    /**
+     * @return how long to wait before the budget gets positive again, 0 if a query can run now
+     */
+    synchronized long getBudgetWaitMs() {
+      if (_processingMsPerSecond <= 0) {
+        return 0;
+      }
+      final long now = System.currentTimeMillis();
+      final long refillMs = (now - _lastRefillTimeMs) * _processingMsPerSecond / 1000;
+      if (refillMs > 0) {
+        // at most one second of processing time is accumulated while the table is idle
+        _availableMs = Math.min(_processingMsPerSecond, _availableMs + refillMs);
+        _lastRefillTimeMs = now;
+      }
+      if (_availableMs > 0) {
+        return 0;
+      }
+      return (1 - _availableMs) * 1000 / _processingMsPerSecond + 1;
+    }
+
+    synchronized void chargeBudget(long processingMs) {
+      if (_processingMsPerSecond > 0) {
+        _availableMs -= processingMs;
+      }
+    }
+  }
+}
@@ -29,7 +29,6 @@ import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.metrics.ServerMeter;
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.metrics.ServerQueryPhase;
-import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.common.request.BrokerRequest;
 import com.linkedin.pinot.common.request.InstanceRequest;
 import com.linkedin.pinot.common.response.ProcessingException;
@@ -49,10 +48,10 @@ public class SimpleRequestHandler implements RequestHandler {
   private static final Logger LOGGER = LoggerFactory.getLogger(SimpleRequestHandler.class);
 
   private ServerMetrics _serverMetrics;
-  QueryExecutor _queryExecutor = null;
+  QueryScheduler _queryScheduler = null;
 
-  public SimpleRequestHandler(QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
-    _queryExecutor = queryExecutor;
+  public SimpleRequestHandler(QueryScheduler queryScheduler, ServerMetrics serverMetrics) {
+    _queryScheduler = queryScheduler;
     _serverMetrics = serverMetrics;
   }
 
@@ -79,7 +78,7 @@ public class SimpleRequestHandler implements RequestHandler {
       brokerRequest = queryRequest.getQuery();
 
       long startTime = System.nanoTime();
-      instanceResponse = _queryExecutor.processQuery(queryRequest);
+      instanceResponse = _queryScheduler.processQuery(queryRequest);
       long totalNanos = System.nanoTime() - startTime;
       _serverMetrics.addPhaseTiming(brokerRequest, ServerQueryPhase.QUERY_PROCESSING, totalNanos);
     } catch (Exception e) {
@@ -15,6 +15,9 @@
  */
 package com.linkedin.pinot.server.request;
 
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+
 import com.linkedin.pinot.common.metrics.ServerMetrics;
 import com.linkedin.pinot.common.query.QueryExecutor;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
@@ -29,26 +32,44 @@ import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
  */
 public class SimpleRequestHandlerFactory implements RequestHandlerFactory {
 
-  private QueryExecutor _queryExecutor;
+  private final Configuration _schedulerConfig;
+
+  private QueryScheduler _queryScheduler;
 
   private ServerMetrics _serverMetrics;
 
   public SimpleRequestHandlerFactory() {
-
+    _schedulerConfig = new BaseConfiguration();
   }
 
   public SimpleRequestHandlerFactory(QueryExecutor queryExecutor, ServerMetrics serverMetrics) {
-    _queryExecutor = queryExecutor;
+    this(new BaseConfiguration(), queryExecutor, serverMetrics);
+  }
+
+  /**
+   * @param schedulerConfig config of the {@link QueryScheduler} shared by all the request handlers
+   */
+  public SimpleRequestHandlerFactory(Configuration schedulerConfig, QueryExecutor queryExecutor,
+      ServerMetrics serverMetrics) {
+    _schedulerConfig = schedulerConfig;
+    _queryScheduler = new QueryScheduler(schedulerConfig, queryExecutor, serverMetrics);
     _serverMetrics = serverMetrics;
   }
 
+  /**
+   * Sets the query executor, keeping the scheduler (and its config and gauges) when there is already one.
+   */
   public void init(QueryExecutor queryExecutor) {
-    _queryExecutor = queryExecutor;
+    if (_queryScheduler == null) {
+      _queryScheduler = new QueryScheduler(_schedulerConfig, queryExecutor, _serverMetrics);
+    } else {
+      _queryScheduler.setQueryExecutor(queryExecutor);
+    }
   }
 
   @Override
   public RequestHandler createNewRequestHandler() {
-    return new SimpleRequestHandler(_queryExecutor, _serverMetrics);
+    return new SimpleRequestHandler(_queryScheduler, _serverMetrics);
   }
 
 }
@@ -166,13 +166,18 @@ public class ServerBuilder {
       IllegalAccessException, ClassNotFoundException {
     String className = _serverConf.getRequestHandlerFactoryClassName();
     LOGGER.info("Trying to Load Request Handler Factory by Class : " + className);
-    RequestHandlerFactory requestHandlerFactory = new SimpleRequestHandlerFactory(queryExecutor, _serverMetrics);
+    RequestHandlerFactory requestHandlerFactory =
+        new SimpleRequestHandlerFactory(_serverConf.getRequestConfig(), queryExecutor, _serverMetrics);
     return requestHandlerFactory;
   }
 
   public NettyServer buildNettyServer(NettyServerConfig nettyServerConfig, RequestHandlerFactory requestHandlerFactory) {
-    LOGGER.info("Trying to build NettyTCPServer with port : " + nettyServerConfig.getPort());
-    NettyServer nettyServer = new NettyTCPServer(nettyServerConfig.getPort(), requestHandlerFactory, null);
+    LOGGER.info("Trying to build NettyTCPServer with port : " + nettyServerConfig.getPort() + ", "
+        + nettyServerConfig.getNumIoThreads() + " I/O threads and " + nettyServerConfig.getNumQueryThreads()
+        + " query threads, request id framing: " + nettyServerConfig.isRequestIdFraming());
+    NettyServer nettyServer = new NettyTCPServer(nettyServerConfig.getPort(), requestHandlerFactory, null, 100,
+        nettyServerConfig.getNumIoThreads(), nettyServerConfig.getNumQueryThreads(),
+        nettyServerConfig.isRequestIdFraming());
     return nettyServer;
   }
 
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.server.request;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.data.DataManager;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.ServerMetrics;
+import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.InstanceRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+public class QuerySchedulerTest {
+  private static final String SCHEDULING_EXCEPTION_KEY =
+      "Exception" + QueryException.QUERY_SCHEDULING_TIMEOUT_ERROR.getErrorCode();
+
+  @Test
+  public void testTableConcurrency() throws Exception {
+    final Configuration config = new BaseConfiguration();
+    config.setProperty(QueryScheduler.MAX_CONCURRENT_QUERIES, 2);
+    config.setProperty(QueryScheduler.MAX_CONCURRENT_QUERIES_PER_TABLE, 1);
+    config.setProperty(QueryScheduler.MAX_QUEUE_WAIT_MS, 100);
+    final BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    final QueryScheduler queryScheduler =
+        new QueryScheduler(config, queryExecutor, new ServerMetrics(new MetricsRegistry()));
+
+    final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      final Future<DataTable> blockedResponse = executorService.submit(new Callable<DataTable>() {
+        @Override
+        public DataTable call() throws Exception {
+          return queryScheduler.processQuery(getInstanceRequest("table1"));
+        }
+      });
+      Assert.assertTrue(queryExecutor._startedLatch.await(10, TimeUnit.SECONDS));
+
+      // The table already runs its only query, the other tables still get theirs
+      final DataTable rejectedResponse = queryScheduler.processQuery(getInstanceRequest("table1"));
+      Assert.assertTrue(rejectedResponse.getMetadata().containsKey(SCHEDULING_EXCEPTION_KEY));
+      queryExecutor._releaseLatch.countDown();
+      final DataTable otherTableResponse = queryScheduler.processQuery(getInstanceRequest("table2"));
+      Assert.assertFalse(otherTableResponse.getMetadata().containsKey(SCHEDULING_EXCEPTION_KEY));
+      Assert.assertFalse(
+          blockedResponse.get(10, TimeUnit.SECONDS).getMetadata().containsKey(SCHEDULING_EXCEPTION_KEY));
+
+      // The permit is released once the query is done
+      final DataTable response = queryScheduler.processQuery(getInstanceRequest("table1"));
+      Assert.assertFalse(response.getMetadata().containsKey(SCHEDULING_EXCEPTION_KEY));
+    } finally {
+      queryExecutor._releaseLatch.countDown();
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testTableProcessingBudget() throws Exception {
+    final Configuration config = new BaseConfiguration();
+    config.setProperty(QueryScheduler.TABLE_PROCESSING_MS_PER_SECOND, 10);
+    config.setProperty(QueryScheduler.MAX_QUEUE_WAIT_MS, 100);
+    final BlockingQueryExecutor queryExecutor = new BlockingQueryExecutor();
+    queryExecutor._processingMs = 200;
+    queryExecutor._releaseLatch.countDown();
+    final QueryScheduler queryScheduler = new QueryScheduler(config, queryExecutor, null);
+
+    Assert.assertFalse(
+        queryScheduler.processQuery(getInstanceRequest("table1")).getMetadata().containsKey(SCHEDULING_EXCEPTION_KEY));
+    // 200ms of processing at 10ms per second: the table has to wait much longer than the queue allows
+    final long startTime = System.currentTimeMillis();
+    Assert.assertTrue(
+        queryScheduler.processQuery(getInstanceRequest("table1")).getMetadata().containsKey(SCHEDULING_EXCEPTION_KEY));
+    Assert.assertTrue(System.currentTimeMillis() - startTime < 100);
+    Assert.assertFalse(
+        queryScheduler.processQuery(getInstanceRequest("table2")).getMetadata().containsKey(SCHEDULING_EXCEPTION_KEY));
+  }
+
+  private static InstanceRequest getInstanceRequest(String tableName) {
+    final QuerySource querySource = new QuerySource();
+    querySource.setTableName(tableName);
+    final BrokerRequest brokerRequest = new BrokerRequest();
+    brokerRequest.setQuerySource(querySource);
+    final InstanceRequest instanceRequest = new InstanceRequest();
+    instanceRequest.setQuery(brokerRequest);
+    return instanceRequest;
+  }
+
+  /**
+   * Query executor whose queries wait until they are released.
+   */
+  private static class BlockingQueryExecutor implements QueryExecutor {
+    private final CountDownLatch _startedLatch = new CountDownLatch(1);
+    private final CountDownLatch _releaseLatch = new CountDownLatch(1);
+    private long _processingMs = 0;
+
+    @Override
+    public void init(Configuration queryExecutorConfig, DataManager dataManager, ServerMetrics serverMetrics) {
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public DataTable processQuery(InstanceRequest instanceRequest) {
+      _startedLatch.countDown();
+      try {
+        _releaseLatch.await();
+        Thread.sleep(_processingMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new DataTable();
+    }
+
+    @Override
+    public void shutDown() {
+    }
+
+    @Override
+    public boolean isStarted() {
+      return true;
+    }
+
+    @Override
+    public void updateResourceTimeOutInMs(String resource, long timeOutMs) {
+    }
+  }
+}
@@ -26,17 +26,15 @@ import com.linkedin.pinot.core.common.BlockValSet;
 import com.linkedin.pinot.core.common.DataSource;
 import com.linkedin.pinot.core.common.Operator;
 import com.linkedin.pinot.core.indexsegment.IndexSegment;
-import com.linkedin.pinot.core.segment.creator.impl.V1Constants;
 import com.linkedin.pinot.core.segment.index.SegmentMetadataImpl;
 import com.linkedin.pinot.core.segment.index.loader.Loaders;
 import com.linkedin.pinot.core.segment.index.readers.Dictionary;
-import com.linkedin.pinot.core.startree.StarTreeIndexNode;
+import com.linkedin.pinot.core.startree.OffHeapStarTree;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -107,9 +105,9 @@ public class SegmentDumpTool {
 
     if (dumpStarTree) {
       System.out.println();
-      File starTreeFile = new File(segmentDir, V1Constants.STARTREE_FILE);
-      StarTreeIndexNode tree = StarTreeIndexNode.fromBytes(new FileInputStream(starTreeFile));
-      StarTreeIndexNode.printTree(tree, 0);
+      OffHeapStarTree tree = OffHeapStarTree.load(segmentDir, false);
+      tree.printTree(OffHeapStarTree.ROOT, 0);
+      tree.close();
     }
   }
 
@@ -16,14 +16,21 @@
 package com.linkedin.pinot.requestHandler;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -32,8 +39,13 @@ import org.apache.thrift.protocol.TCompactProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.linkedin.pinot.common.Utils;
 import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.exception.QueryException;
 import com.linkedin.pinot.common.metrics.BrokerMeter;
 import com.linkedin.pinot.common.metrics.BrokerMetrics;
 import com.linkedin.pinot.common.metrics.BrokerQueryPhase;
@@ -79,12 +91,28 @@ public class BrokerRequestHandler {
   private final BrokerMetrics _brokerMetrics;
   private final TimeBoundaryService _timeBoundaryService;
   private final long _brokerTimeOut;
+  private final Executor _reduceExecutor;
+  private final Timer _timer;
 
   //TODO: Currently only using RoundRobin selection. But, this can be allowed to be configured.
   private RoundRobinReplicaSelection _replicaSelection;
 
   public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
       ScatterGather scatterGatherer, ReduceService reduceService, BrokerMetrics brokerMetrics, long brokerTimeOut) {
+    this(table, timeBoundaryService, scatterGatherer, reduceService, brokerMetrics, brokerTimeOut,
+        MoreExecutors.sameThreadExecutor(), null);
+  }
+
+  /**
+   *
+   * @param reduceExecutor Executor running the deserialization and reduce of the responses, so that they do not run
+   *                       on the netty I/O thread that receives the last response
+   * @param timer Timer completing the queries whose servers did not all respond within the broker timeout, with the
+   *              responses gathered so far. If null, only the timeouts of the requests to the servers apply.
+   */
+  public BrokerRequestHandler(RoutingTable table, TimeBoundaryService timeBoundaryService,
+      ScatterGather scatterGatherer, ReduceService reduceService, BrokerMetrics brokerMetrics, long brokerTimeOut,
+      Executor reduceExecutor, Timer timer) {
     _routingTable = table;
     _timeBoundaryService = timeBoundaryService;
     _scatterGatherer = scatterGatherer;
@@ -93,6 +121,8 @@ public class BrokerRequestHandler {
     _reduceService = reduceService;
     _brokerMetrics = brokerMetrics;
     _brokerTimeOut = brokerTimeOut;
+    _reduceExecutor = reduceExecutor;
+    _timer = timer;
   }
 
   /**
@@ -104,6 +134,9 @@ public class BrokerRequestHandler {
    * 5. Deserialize the responses and errors.
    * 6. Reduce (Merge) the responses. Create a broker response to be returned.
    *
+   * This blocks until the broker response is ready, see {@link #processBrokerRequestAsync} for the asynchronous
+   * version.
+   *
    * @param request Broker Request to be sent
    * @return Broker response
    * @throws InterruptedException
@@ -111,9 +144,29 @@ public class BrokerRequestHandler {
   //TODO: Define a broker response class and return
   public Object processBrokerRequest(final BrokerRequest request, BucketingSelection overriddenSelection)
       throws InterruptedException {
+    try {
+      return processBrokerRequestAsync(request, overriddenSelection).get();
+    } catch (ExecutionException e) {
+      LOGGER.error("Caught exception while processing broker request", e.getCause());
+      Utils.rethrowException(e.getCause());
+      throw new AssertionError("Should not reach this");
+    }
+  }
+
+  /**
+   * Asynchronous version of {@link #processBrokerRequest}. The requests are sent to the servers before returning, the
+   * responses are then deserialized and reduced on the reduce executor once the last one arrives (or the broker times
+   * out), without a thread waiting for them.
+   *
+   * @param request Broker Request to be sent
+   * @return future of the broker response
+   * @throws InterruptedException
+   */
+  public ListenableFuture<BrokerResponse> processBrokerRequestAsync(final BrokerRequest request,
+      BucketingSelection overriddenSelection) throws InterruptedException {
     if (request == null || request.getQuerySource() == null || request.getQuerySource().getTableName() == null) {
       LOGGER.info("Query contains null table.");
-      return BrokerResponse.getNullBrokerResponse();
+      return Futures.immediateFuture(BrokerResponse.getNullBrokerResponse());
     }
     List<String> matchedTables = getMatchedTables(request);
     if (matchedTables.size() > 1) {
@@ -122,7 +175,7 @@ public class BrokerRequestHandler {
     if (matchedTables.size() == 1) {
       return processSingleTableBrokerRequest(request, matchedTables.get(0), overriddenSelection);
     }
-    return BrokerResponse.getNullBrokerResponse();
+    return Futures.immediateFuture(BrokerResponse.getNullBrokerResponse());
   }
 
   /**
@@ -151,23 +204,18 @@ public class BrokerRequestHandler {
     return matchedTables;
   }
 
-  private Object processSingleTableBrokerRequest(final BrokerRequest request, String matchedTableName,
-      BucketingSelection overriddenSelection) throws InterruptedException {
+  private ListenableFuture<BrokerResponse> processSingleTableBrokerRequest(final BrokerRequest request,
+      String matchedTableName, BucketingSelection overriddenSelection) throws InterruptedException {
     request.getQuerySource().setTableName(matchedTableName);
     return getDataTableFromBrokerRequest(request, null);
   }
 
-  private Object processFederatedBrokerRequest(final BrokerRequest request, BucketingSelection overriddenSelection) {
+  private ListenableFuture<BrokerResponse> processFederatedBrokerRequest(final BrokerRequest request,
+      BucketingSelection overriddenSelection) throws InterruptedException {
     List<BrokerRequest> perTableRequests = new ArrayList<BrokerRequest>();
     perTableRequests.add(getRealtimeBrokerRequest(request));
     perTableRequests.add(getOfflineBrokerRequest(request));
-    try {
-      return getDataTableFromBrokerRequestList(request, perTableRequests, null);
-    } catch (Exception e) {
-      LOGGER.error("Caught exception while processing federated broker request", e);
-      Utils.rethrowException(e);
-      throw new AssertionError("Should not reach this");
-    }
+    return getDataTableFromBrokerRequestList(request, perTableRequests, null);
   }
 
   private BrokerRequest getOfflineBrokerRequest(BrokerRequest request) {
@@ -230,15 +278,16 @@ public class BrokerRequestHandler {
     }
   }
 
-  private Object getDataTableFromBrokerRequest(final BrokerRequest request, BucketingSelection overriddenSelection)
-      throws InterruptedException {
+  private ListenableFuture<BrokerResponse> getDataTableFromBrokerRequest(final BrokerRequest request,
+      BucketingSelection overriddenSelection) throws InterruptedException {
     // Step1
     final long routingStartTime = System.nanoTime();
-    RoutingTableLookupRequest rtRequest = new RoutingTableLookupRequest(request.getQuerySource().getTableName());
+    RoutingTableLookupRequest rtRequest =
+        new RoutingTableLookupRequest(request.getQuerySource().getTableName(), request);
     Map<ServerInstance, SegmentIdSet> segmentServices = _routingTable.findServers(rtRequest);
     if (segmentServices == null || segmentServices.isEmpty()) {
       LOGGER.warn("Not found ServerInstances to Segments Mapping:");
-      return BrokerResponse.getEmptyBrokerResponse();
+      return Futures.immediateFuture(BrokerResponse.getEmptyBrokerResponse());
     }
 
     final long queryRoutingTime = System.nanoTime() - routingStartTime;
@@ -252,79 +301,21 @@ public class BrokerRequestHandler {
             overriddenSelection, _requestIdGen.incrementAndGet(), _brokerTimeOut);
     CompositeFuture<ServerInstance, ByteBuf> response = _scatterGatherer.scatterGather(scatterRequest);
 
-    //Step 5 - Deserialize Responses and build instance response map
-    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
-    {
-      Map<ServerInstance, ByteBuf> responses = null;
-      try {
-        responses = response.get();
-      } catch (ExecutionException e) {
-        LOGGER.warn("Caught exception while fetching response", e);
-        _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-      }
-
-      final long scatterGatherTime = System.nanoTime() - scatterGatherStartTime;
-      _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
-
-      final long deserializationStartTime = System.nanoTime();
-
-      Map<ServerInstance, Throwable> errors = response.getError();
-
-      if (null != responses) {
-        for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
-          try {
-            ByteBuf b = e.getValue();
-            byte[] b2 = new byte[b.readableBytes()];
-            if (b2 == null || b2.length == 0) {
-              continue;
-            }
-            b.readBytes(b2);
-            DataTable r2 = new DataTable(b2);
-            if (errors != null && errors.containsKey(e.getKey())) {
-              Throwable throwable = errors.get(e.getKey());
-              r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
-              _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-            }
-            instanceResponseMap.put(e.getKey(), r2);
-          } catch (Exception ex) {
-            LOGGER.error("Got exceptions in collect query result for instance " + e.getKey() + ", error: "
-                + ex.getMessage(), ex);
-            _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
-          }
-        }
-      }
-      final long deserializationTime = System.nanoTime() - deserializationStartTime;
-      _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
-    }
-
-    // Step 6 : Do the reduce and return
-    try {
-      return _brokerMetrics.timePhase(request, BrokerQueryPhase.REDUCE, new Callable<BrokerResponse>() {
-        @Override
-        public BrokerResponse call() {
-          BrokerResponse returnValue = _reduceService.reduceOnDataTable(request, instanceResponseMap);
-          _brokerMetrics.addMeteredValue(request, BrokerMeter.DOCUMENTS_SCANNED, returnValue.getNumDocsScanned());
-          return returnValue;
-        }
-      });
-    } catch (Exception e) {
-      // Shouldn't happen, this is only here because timePhase() can throw a checked exception, even though the nested callable can't.
-      LOGGER.error("Caught exception while processing return", e);
-      Utils.rethrowException(e);
-      throw new AssertionError("Should not reach this");
-    }
+    // Step 5-6 once the responses are gathered
+    return reduceOnGather(request, Collections.singletonList(response), false, scatterGatherStartTime);
   }
 
-  private Object getDataTableFromBrokerRequestList(final BrokerRequest federatedBrokerRequest,
+  private ListenableFuture<BrokerResponse> getDataTableFromBrokerRequestList(final BrokerRequest federatedBrokerRequest,
       final List<BrokerRequest> requests, BucketingSelection overriddenSelection) throws InterruptedException {
     // Step1
     long scatterGatherStartTime = System.nanoTime();
     long queryRoutingTime = 0;
-    Map<BrokerRequest, CompositeFuture<ServerInstance, ByteBuf>> responseFuturesList =
-        new HashMap<BrokerRequest, CompositeFuture<ServerInstance, ByteBuf>>();
+    List<CompositeFuture<ServerInstance, ByteBuf>> responseFutures =
+        new ArrayList<CompositeFuture<ServerInstance, ByteBuf>>();
     for (BrokerRequest request : requests) {
       final long routingStartTime = System.nanoTime();
-      RoutingTableLookupRequest rtRequest = new RoutingTableLookupRequest(request.getQuerySource().getTableName());
+      RoutingTableLookupRequest rtRequest =
+          new RoutingTableLookupRequest(request.getQuerySource().getTableName(), request);
       Map<ServerInstance, SegmentIdSet> segmentServices = _routingTable.findServers(rtRequest);
       if (segmentServices == null || segmentServices.isEmpty()) {
         LOGGER.info("Not found ServerInstances to Segments Mapping for Table - " + rtRequest.getTableName());
@@ -342,81 +333,156 @@ public class BrokerRequestHandler {
           new ScatterGatherRequestImpl(request, segmentServices, _replicaSelection,
               ReplicaSelectionGranularity.SEGMENT_ID_SET, request.getBucketHashKey(), 0, //TODO: Speculative Requests not yet supported
               overriddenSelection, _requestIdGen.incrementAndGet(), _brokerTimeOut);
-      responseFuturesList.put(request, _scatterGatherer.scatterGather(scatterRequest));
+      responseFutures.add(_scatterGatherer.scatterGather(scatterRequest));
     }
     _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.QUERY_ROUTING, queryRoutingTime);
 
-    long scatterGatherTime = 0;
-    long deserializationTime = 0;
-    //Step 5 - Deserialize Responses and build instance response map
-    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
-    final AtomicInteger responseSeq = new AtomicInteger(-1);
-    {
-      for (BrokerRequest request : responseFuturesList.keySet()) {
-        CompositeFuture<ServerInstance, ByteBuf> response = responseFuturesList.get(request);
+    // Step 5-6 once the responses are gathered
+    return reduceOnGather(federatedBrokerRequest, responseFutures, true, scatterGatherStartTime);
+  }
 
-        Map<ServerInstance, ByteBuf> responses = null;
+  /**
+   * Deserializes and reduces the responses on the reduce executor once all the scatter-gathers are done. If the
+   * timer is set, the scatter-gathers still pending after the broker timeout are cancelled, which reduces the
+   * responses received so far and reports the timeout in the broker response.
+   *
+   * @param request Broker request whose metrics are recorded and that is reduced
+   * @param responseFutures One scatter-gather per table queried
+   * @param isFederated Whether a server can respond several times, once per table
+   * @param scatterGatherStartTime Start of the scatter-gather, in nanoseconds
+   * @return future of the broker response
+   */
+  private ListenableFuture<BrokerResponse> reduceOnGather(final BrokerRequest request,
+      final List<CompositeFuture<ServerInstance, ByteBuf>> responseFutures, final boolean isFederated,
+      final long scatterGatherStartTime) {
+    final SettableFuture<BrokerResponse> brokerResponse = SettableFuture.create();
+    final AtomicBoolean isTimedOut = new AtomicBoolean(false);
+    final Timeout timeout;
+    if (null != _timer && !responseFutures.isEmpty()) {
+      timeout = _timer.newTimeout(new TimerTask() {
+        @Override
+        public void run(Timeout timeout) throws Exception {
+          isTimedOut.set(true);
+          for (CompositeFuture<ServerInstance, ByteBuf> response : responseFutures) {
+            response.cancel(true);
+          }
+        }
+      }, _brokerTimeOut, TimeUnit.MILLISECONDS);
+    } else {
+      timeout = null;
+    }
+
+    final AtomicInteger numPendingResponses = new AtomicInteger(responseFutures.size());
+    final Runnable reduce = new Runnable() {
+      @Override
+      public void run() {
+        if (numPendingResponses.decrementAndGet() > 0) {
+          return;
+        }
+        if (null != timeout) {
+          timeout.cancel();
+        }
         try {
-          responses = response.get();
-        } catch (ExecutionException e) {
-          LOGGER.warn("Caught exception while fetching response", e);
-          _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
+          final long scatterGatherTime = System.nanoTime() - scatterGatherStartTime;
+          _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
+
+          BrokerResponse response = reduce(request, responseFutures, isFederated);
+          if (isTimedOut.get()) {
+            response.addToExceptions(QueryException.BROKER_TIMEOUT_ERROR.deepCopy());
+            _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
+          }
+          brokerResponse.set(response);
+        } catch (Throwable t) {
+          LOGGER.error("Caught exception while reducing the responses", t);
+          brokerResponse.setException(t);
         }
+      }
+    };
 
-        scatterGatherTime += System.nanoTime() - scatterGatherStartTime;
+    if (responseFutures.isEmpty()) {
+      numPendingResponses.incrementAndGet();
+      _reduceExecutor.execute(reduce);
+    }
+    for (CompositeFuture<ServerInstance, ByteBuf> response : responseFutures) {
+      final AtomicBoolean isGathered = new AtomicBoolean(false);
+      response.addListener(new Runnable() {
+        @Override
+        public void run() {
+          // A response racing with the cancellation on timeout can notify the listeners twice
+          if (isGathered.compareAndSet(false, true)) {
+            reduce.run();
+          }
+        }
+      }, _reduceExecutor);
+    }
+    return brokerResponse;
+  }
 
-        final long deserializationStartTime = System.nanoTime();
+  private BrokerResponse reduce(final BrokerRequest request,
+      List<CompositeFuture<ServerInstance, ByteBuf>> responseFutures, boolean isFederated) {
+    //Step 5 - Deserialize Responses and build instance response map
+    final long deserializationStartTime = System.nanoTime();
+    final Map<ServerInstance, DataTable> instanceResponseMap = new HashMap<ServerInstance, DataTable>();
+    int responseSeq = 0;
+    for (CompositeFuture<ServerInstance, ByteBuf> response : responseFutures) {
+      Map<ServerInstance, ByteBuf> responses = null;
+      try {
+        // The future is done, this does not block
+        responses = response.get();
+      } catch (Exception e) {
+        LOGGER.warn("Caught exception while fetching response", e);
+        _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
+      }
 
-        Map<ServerInstance, Throwable> errors = response.getError();
+      Map<ServerInstance, Throwable> errors = response.getError();
 
-        if (null != responses) {
-          for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
-            try {
-              ByteBuf b = e.getValue();
-              byte[] b2 = new byte[b.readableBytes()];
-              if (b2 == null || b2.length == 0) {
-                continue;
-              }
-              b.readBytes(b2);
-              DataTable r2 = new DataTable(b2);
+      if (null != responses) {
+        for (Entry<ServerInstance, ByteBuf> e : responses.entrySet()) {
+          try {
+            ByteBuf b = e.getValue();
+            byte[] b2 = new byte[b.readableBytes()];
+            if (b2 == null || b2.length == 0) {
+              continue;
+            }
+            b.readBytes(b2);
+            DataTable r2 = new DataTable(b2);
+            ServerInstance serverInstance = e.getKey();
+            if (isFederated) {
               // Hybrid requests may get response from same instance, so we need to distinguish them.
-              ServerInstance decoratedServerInstance =
-                  new ServerInstance(e.getKey().getHostname(), e.getKey().getPort(), responseSeq.incrementAndGet());
-              if (errors != null && errors.containsKey(e.getKey())) {
-                Throwable throwable = errors.get(e.getKey());
-                if (throwable != null) {
-                  r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
-                  _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
-                }
+              serverInstance = new ServerInstance(serverInstance.getHostname(), serverInstance.getPort(), responseSeq++);
+            }
+            if (errors != null && errors.containsKey(e.getKey())) {
+              Throwable throwable = errors.get(e.getKey());
+              if (throwable != null) {
+                r2.getMetadata().put("exception", new RequestProcessingException(throwable).toString());
+                _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_FETCH_EXCEPTIONS, 1);
               }
-              instanceResponseMap.put(decoratedServerInstance, r2);
-            } catch (Exception ex) {
-              LOGGER.error("Got exceptions in collect query result for instance " + e.getKey() + ", error: "
-                  + ex.getMessage(), ex);
-              _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
             }
+            instanceResponseMap.put(serverInstance, r2);
+          } catch (Exception ex) {
+            LOGGER.error("Got exceptions in collect query result for instance " + e.getKey() + ", error: "
+                + ex.getMessage(), ex);
+            _brokerMetrics.addMeteredValue(request, BrokerMeter.REQUEST_DESERIALIZATION_EXCEPTIONS, 1);
           }
         }
-        deserializationTime += System.nanoTime() - deserializationStartTime;
       }
     }
-    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.SCATTER_GATHER, scatterGatherTime);
-    _brokerMetrics.addPhaseTiming(federatedBrokerRequest, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
+    final long deserializationTime = System.nanoTime() - deserializationStartTime;
+    _brokerMetrics.addPhaseTiming(request, BrokerQueryPhase.DESERIALIZATION, deserializationTime);
 
     // Step 6 : Do the reduce and return
     try {
-      return _brokerMetrics.timePhase(federatedBrokerRequest, BrokerQueryPhase.REDUCE, new Callable<BrokerResponse>() {
+      return _brokerMetrics.timePhase(request, BrokerQueryPhase.REDUCE, new Callable<BrokerResponse>() {
         @Override
         public BrokerResponse call() {
-          BrokerResponse returnValue = _reduceService.reduceOnDataTable(federatedBrokerRequest, instanceResponseMap);
-          _brokerMetrics.addMeteredValue(federatedBrokerRequest, BrokerMeter.DOCUMENTS_SCANNED,
-              returnValue.getNumDocsScanned());
+          BrokerResponse returnValue = _reduceService.reduceOnDataTable(request, instanceResponseMap);
+          _brokerMetrics.addMeteredValue(request, BrokerMeter.DOCUMENTS_SCANNED, returnValue.getNumDocsScanned());
           return returnValue;
         }
       });
     } catch (Exception e) {
       // Shouldn't happen, this is only here because timePhase() can throw a checked exception, even though the nested callable can't.
-      LOGGER.error("Caught exception while processing query", e);
+      LOGGER.error("Caught exception while processing return", e);
       Utils.rethrowException(e);
       throw new AssertionError("Should not reach this");
     }
@@ -59,11 +59,13 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
   private final Map<String, Long> _routingTableModifiedTimeStampMap = new ConcurrentHashMap<String, Long>();
   private final Random _random = new Random(System.currentTimeMillis());
   private final HelixExternalViewBasedTimeBoundaryService _timeBoundaryService;
+  private final SegmentZKMetadataBasedPruner _segmentPruner;
 
   public HelixExternalViewBasedRouting(RoutingTableBuilder defaultOfflineRoutingTableBuilder,
       RoutingTableBuilder defaultRealtimeRoutingTableBuilder, Map<String, RoutingTableBuilder> routingTableBuilderMap,
       ZkHelixPropertyStore<ZNRecord> propertyStore) {
     _timeBoundaryService = new HelixExternalViewBasedTimeBoundaryService(propertyStore);
+    _segmentPruner = new SegmentZKMetadataBasedPruner(propertyStore);
     if (defaultOfflineRoutingTableBuilder != null) {
       _defaultOfflineRoutingTableBuilder = defaultOfflineRoutingTableBuilder;
     } else {
@@ -85,16 +87,19 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
   public Map<ServerInstance, SegmentIdSet> findServers(RoutingTableLookupRequest request) {
     String tableName = request.getTableName();
 
-    if ((_brokerRoutingTable == null) || (!_brokerRoutingTable.containsKey(tableName))) {
+    // Routing tables are replaced as a whole when the external view changes, never modified in place
+    List<ServerToSegmentSetMap> serverToSegmentSetMaps = _brokerRoutingTable.get(tableName);
+    if (serverToSegmentSetMaps == null) {
       return null;
     }
-    List<ServerToSegmentSetMap> serverToSegmentSetMaps = _brokerRoutingTable.get(tableName);
 
     // This map can be potentially empty, for example for realtime table with no segments.
     if (serverToSegmentSetMaps.isEmpty()) {
       return Collections.emptyMap();
     }
-    return serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size())).getRouting();
+    Map<ServerInstance, SegmentIdSet> routing =
+        serverToSegmentSetMaps.get(_random.nextInt(serverToSegmentSetMaps.size())).getRouting();
+    return _segmentPruner.prune(tableName, request.getBrokerRequest(), routing);
   }
 
   @Override
@@ -128,6 +133,31 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
       LOGGER.info("Adding a new data table to broker : " + tableName);
       _dataTableSet.add(tableName);
     }
+    RoutingTableBuilder routingTableBuilder = getRoutingTableBuilder(tableName);
+    LOGGER.info("Trying to compute routing table for table : " + tableName + ",by : " + routingTableBuilder);
+    try {
+      List<ServerToSegmentSetMap> serverToSegmentSetMap =
+          routingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigList);
+
+      _brokerRoutingTable.put(tableName, serverToSegmentSetMap);
+    } catch (Exception e) {
+      LOGGER.error("Failed to compute/update the routing table" + e.getCause(), e);
+    }
+    try {
+      LOGGER.info("Trying to compute time boundary service for table : " + tableName);
+      _timeBoundaryService.updateTimeBoundaryService(externalView);
+    } catch (Exception e) {
+      LOGGER.error("Failed to update the TimeBoundaryService : " + e.getCause(), e);
+    }
+    try {
+      _segmentPruner.updateTable(externalView);
+    } catch (Exception e) {
+      LOGGER.error("Failed to update the segment ZK metadata for pruning : " + e.getCause(), e);
+    }
+
+  }
+
+  private RoutingTableBuilder getRoutingTableBuilder(String tableName) {
     RoutingTableBuilder routingTableBuilder = null;
     TableType tableType = TableNameBuilder.getTableTypeFromTableName(tableName);
     if (tableType != null) {
@@ -148,22 +178,7 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
     if (_routingTableBuilderMap.containsKey(tableName) && (_routingTableBuilderMap.get(tableName) != null)) {
       routingTableBuilder = _routingTableBuilderMap.get(tableName);
     }
-    LOGGER.info("Trying to compute routing table for table : " + tableName + ",by : " + routingTableBuilder);
-    try {
-      List<ServerToSegmentSetMap> serverToSegmentSetMap =
-          routingTableBuilder.computeRoutingTableFromExternalView(tableName, externalView, instanceConfigList);
-
-      _brokerRoutingTable.put(tableName, serverToSegmentSetMap);
-    } catch (Exception e) {
-      LOGGER.error("Failed to compute/update the routing table" + e.getCause(), e);
-    }
-    try {
-      LOGGER.info("Trying to compute time boundary service for table : " + tableName);
-      _timeBoundaryService.updateTimeBoundaryService(externalView);
-    } catch (Exception e) {
-      LOGGER.error("Failed to update the TimeBoundaryService : " + e.getCause(), e);
-    }
-
+    return routingTableBuilder;
   }
 
   public void markDataResourceOffline(String tableName) {
@@ -172,7 +187,9 @@ public class HelixExternalViewBasedRouting implements RoutingTable {
       _dataTableSet.remove(tableName);
       _brokerRoutingTable.remove(tableName);
       _routingTableModifiedTimeStampMap.remove(tableName);
+      getRoutingTableBuilder(tableName).removeTable(tableName);
       _timeBoundaryService.remove(tableName);
+      _segmentPruner.removeTable(tableName);
     }
   }
 
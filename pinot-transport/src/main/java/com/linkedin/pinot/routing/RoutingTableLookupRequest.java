@@ -15,21 +15,35 @@
  */
 package com.linkedin.pinot.routing;
 
+import com.linkedin.pinot.common.request.BrokerRequest;
+
+
 /**
  * Routing table lookup request. Future filtering parameters for lookup needs to be added here.
+ * The broker request, when given, lets the routing table leave out the segments its filter cannot match.
  *
  *
  */
 public class RoutingTableLookupRequest {
 
   private final String tableName;
+  private final BrokerRequest brokerRequest;
 
   public String getTableName() {
     return tableName;
   }
 
+  public BrokerRequest getBrokerRequest() {
+    return brokerRequest;
+  }
+
   public RoutingTableLookupRequest(String tableName) {
+    this(tableName, null);
+  }
+
+  public RoutingTableLookupRequest(String tableName, BrokerRequest brokerRequest) {
     super();
     this.tableName = tableName;
+    this.brokerRequest = brokerRequest;
   }
 }
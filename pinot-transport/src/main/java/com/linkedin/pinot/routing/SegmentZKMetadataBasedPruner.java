@@ -0,0 +1,392 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.I0Itec.zkclient.IZkDataListener;
+import org.apache.helix.AccessOption;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.config.TableNameBuilder;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.FilterQuery;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.CommonConstants.Helix.TableType;
+import com.linkedin.pinot.common.utils.request.FilterQueryTree;
+import com.linkedin.pinot.common.utils.request.RequestUtils;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+
+
+/**
+ * Prunes the segments of offline tables on the broker, before the query is scattered to the servers.
+ *
+ * The time range and the range of values of the recorded columns of every segment served are read from its segment ZK
+ * metadata and cached, a data watch on the metadata of each segment keeps the cache fresh when a segment is refreshed.
+ * A segment is pruned when the filter of the query cannot match any value in these ranges, and servers left with no
+ * segment are not queried at all. Only the equality, in and range predicates are evaluated, any other predicate may
+ * match, as may any segment whose metadata is not cached.
+ */
+public class SegmentZKMetadataBasedPruner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentZKMetadataBasedPruner.class);
+
+  private static final String UNBOUNDED = "*";
+  private static final String VALUE_DELIMITER = "\t\t";
+
+  private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
+  private final Map<String, TableSegmentMetadata> _tableSegmentMetadataMap =
+      new ConcurrentHashMap<String, TableSegmentMetadata>();
+
+  public SegmentZKMetadataBasedPruner(ZkHelixPropertyStore<ZNRecord> propertyStore) {
+    _propertyStore = propertyStore;
+  }
+
+  /**
+   * Caches the segment ZK metadata of the segments added to the external view, and drops the segments removed from it.
+   */
+  public synchronized void updateTable(ExternalView externalView) {
+    if (_propertyStore == null) {
+      return;
+    }
+    String tableName = externalView.getResourceName();
+    // Realtime segments are still being consumed, their time range is not known
+    if (TableNameBuilder.getTableTypeFromTableName(tableName) == TableType.REALTIME) {
+      return;
+    }
+
+    TableSegmentMetadata tableSegmentMetadata = _tableSegmentMetadataMap.get(tableName);
+    if (tableSegmentMetadata == null) {
+      String timeColumn = null;
+      TimeUnit timeUnit = null;
+      AbstractTableConfig offlineTableConfig = ZKMetadataProvider.getOfflineTableConfig(_propertyStore, tableName);
+      if (offlineTableConfig != null) {
+        try {
+          timeColumn = offlineTableConfig.getValidationConfig().getTimeColumnName();
+          timeUnit = HelixExternalViewBasedTimeBoundaryService.getTimeUnitFromString(
+              offlineTableConfig.getValidationConfig().getTimeType());
+        } catch (Exception e) {
+          LOGGER.warn("Segments of table : " + tableName + " will not be pruned on time", e);
+        }
+      }
+      tableSegmentMetadata = new TableSegmentMetadata(timeColumn, timeUnit);
+      _tableSegmentMetadataMap.put(tableName, tableSegmentMetadata);
+    }
+
+    Set<String> segmentsServing = externalView.getPartitionSet();
+    for (String segmentName : new ArrayList<String>(tableSegmentMetadata._segmentListeners.keySet())) {
+      if (!segmentsServing.contains(segmentName)) {
+        _propertyStore.unsubscribeDataChanges(getSegmentPath(tableName, segmentName),
+            tableSegmentMetadata._segmentListeners.remove(segmentName));
+        tableSegmentMetadata._segmentMetadataMap.remove(segmentName);
+      }
+    }
+    // Watch before reading, so that no change made in between is missed
+    for (String segmentName : segmentsServing) {
+      if (!tableSegmentMetadata._segmentListeners.containsKey(segmentName)) {
+        IZkDataListener listener = new SegmentZKMetadataListener(tableName, segmentName);
+        tableSegmentMetadata._segmentListeners.put(segmentName, listener);
+        _propertyStore.subscribeDataChanges(getSegmentPath(tableName, segmentName), listener);
+        refreshSegment(tableName, segmentName);
+      }
+    }
+    LOGGER.info("Cached segment ZK metadata of " + tableSegmentMetadata._segmentMetadataMap.size()
+        + " segments for table : " + tableName);
+  }
+
+  public synchronized void removeTable(String tableName) {
+    TableSegmentMetadata tableSegmentMetadata = _tableSegmentMetadataMap.remove(tableName);
+    if (tableSegmentMetadata == null || _propertyStore == null) {
+      return;
+    }
+    for (Map.Entry<String, IZkDataListener> entry : tableSegmentMetadata._segmentListeners.entrySet()) {
+      _propertyStore.unsubscribeDataChanges(getSegmentPath(tableName, entry.getKey()), entry.getValue());
+    }
+  }
+
+  private synchronized void refreshSegment(String tableName, String segmentName) {
+    TableSegmentMetadata tableSegmentMetadata = _tableSegmentMetadataMap.get(tableName);
+    // The segment may have left the external view since the change was notified
+    if (tableSegmentMetadata == null || !tableSegmentMetadata._segmentListeners.containsKey(segmentName)) {
+      return;
+    }
+    ZNRecord znRecord = _propertyStore.get(getSegmentPath(tableName, segmentName), null, AccessOption.PERSISTENT);
+    if (znRecord == null) {
+      tableSegmentMetadata._segmentMetadataMap.remove(segmentName);
+      return;
+    }
+    try {
+      tableSegmentMetadata.putSegmentZKMetadata(segmentName, new OfflineSegmentZKMetadata(znRecord));
+    } catch (Exception e) {
+      LOGGER.error("Failed to read the segment ZK metadata of segment : " + segmentName + " of table : " + tableName,
+          e);
+      tableSegmentMetadata._segmentMetadataMap.remove(segmentName);
+    }
+  }
+
+  private static String getSegmentPath(String tableName, String segmentName) {
+    return ZKMetadataProvider.constructPropertyStorePathForSegment(
+        TableNameBuilder.OFFLINE_TABLE_NAME_BUILDER.forTable(tableName), segmentName);
+  }
+
+  /**
+   * @return the routing without the segments which cannot match the filter of the query, and without the servers left
+   *         with no segment. The routing itself is returned when nothing is pruned. When every segment is pruned, one
+   *         of them is kept so that a server still answers the query with a result of the right shape (a count of 0
+   *         rather than no aggregation result at all).
+   */
+  public Map<ServerInstance, SegmentIdSet> prune(String tableName, BrokerRequest brokerRequest,
+      Map<ServerInstance, SegmentIdSet> routing) {
+    if (routing == null || brokerRequest == null || brokerRequest.getFilterQuery() == null) {
+      return routing;
+    }
+    TableSegmentMetadata tableSegmentMetadata = _tableSegmentMetadataMap.get(tableName);
+    if (tableSegmentMetadata == null || tableSegmentMetadata._segmentMetadataMap.isEmpty()
+        || !tableSegmentMetadata.isFilteredOnPrunableColumn(brokerRequest)) {
+      return routing;
+    }
+    FilterQueryTree filterQueryTree = RequestUtils.generateFilterQueryTree(brokerRequest);
+    if (filterQueryTree == null) {
+      return routing;
+    }
+
+    Map<ServerInstance, SegmentIdSet> prunedRouting = new HashMap<ServerInstance, SegmentIdSet>();
+    boolean pruned = false;
+    ServerInstance firstPrunedServer = null;
+    SegmentId firstPrunedSegment = null;
+    for (Map.Entry<ServerInstance, SegmentIdSet> entry : routing.entrySet()) {
+      SegmentIdSet segmentIdSet = new SegmentIdSet();
+      for (SegmentId segmentId : entry.getValue().getSegments()) {
+        OfflineSegmentZKMetadata segmentZKMetadata =
+            tableSegmentMetadata._segmentMetadataMap.get(segmentId.getSegmentId());
+        if (segmentZKMetadata == null || mayMatch(tableSegmentMetadata, segmentZKMetadata, filterQueryTree)) {
+          segmentIdSet.addSegment(segmentId);
+        } else {
+          if (!pruned) {
+            firstPrunedServer = entry.getKey();
+            firstPrunedSegment = segmentId;
+          }
+          pruned = true;
+        }
+      }
+      if (!segmentIdSet.getSegments().isEmpty()) {
+        prunedRouting.put(entry.getKey(), segmentIdSet);
+      }
+    }
+    if (!pruned) {
+      return routing;
+    }
+    if (prunedRouting.isEmpty()) {
+      SegmentIdSet segmentIdSet = new SegmentIdSet();
+      segmentIdSet.addSegment(firstPrunedSegment);
+      prunedRouting.put(firstPrunedServer, segmentIdSet);
+    }
+    return prunedRouting;
+  }
+
+  private static boolean mayMatch(TableSegmentMetadata tableSegmentMetadata,
+      OfflineSegmentZKMetadata segmentZKMetadata, FilterQueryTree filterQueryTree) {
+    final List<FilterQueryTree> children = filterQueryTree.getChildren();
+    if (children != null && !children.isEmpty()) {
+      switch (filterQueryTree.getOperator()) {
+        case AND:
+          for (FilterQueryTree child : children) {
+            if (!mayMatch(tableSegmentMetadata, segmentZKMetadata, child)) {
+              return false;
+            }
+          }
+          return true;
+        case OR:
+          for (FilterQueryTree child : children) {
+            if (mayMatch(tableSegmentMetadata, segmentZKMetadata, child)) {
+              return true;
+            }
+          }
+          return false;
+        default:
+          return true;
+      }
+    }
+
+    final String column = filterQueryTree.getColumn();
+    try {
+      if (column.equals(tableSegmentMetadata._timeColumn) && tableSegmentMetadata._timeUnit != null
+          && segmentZKMetadata.getTimeUnit() != null && segmentZKMetadata.getStartTime() >= 0
+          && segmentZKMetadata.getEndTime() >= segmentZKMetadata.getStartTime()) {
+        TimeUnit tableTimeUnit = tableSegmentMetadata._timeUnit;
+        TimeUnit segmentTimeUnit = segmentZKMetadata.getTimeUnit();
+        long startTime = tableTimeUnit.convert(segmentZKMetadata.getStartTime(), segmentTimeUnit);
+        long endTime = tableTimeUnit.convert(segmentZKMetadata.getEndTime(), segmentTimeUnit);
+        if (tableTimeUnit.compareTo(segmentTimeUnit) < 0) {
+          // The end time covers the whole of its unit, up to the start of the next one
+          endTime = tableTimeUnit.convert(segmentZKMetadata.getEndTime() + 1, segmentTimeUnit) - 1;
+        }
+        if (!mayMatch(DataType.LONG, Long.toString(startTime), Long.toString(endTime), filterQueryTree)) {
+          return false;
+        }
+      }
+      if (segmentZKMetadata.getColumnsWithValueRange().contains(column)) {
+        return mayMatch(segmentZKMetadata.getColumnDataType(column), segmentZKMetadata.getColumnMinValue(column),
+            segmentZKMetadata.getColumnMaxValue(column), filterQueryTree);
+      }
+    } catch (Exception e) {
+      LOGGER.debug("Cannot evaluate the predicate on column : " + column + " against segment : "
+          + segmentZKMetadata.getSegmentName(), e);
+    }
+    return true;
+  }
+
+  /**
+   * @return false if no value between minValue and maxValue can match the predicate
+   */
+  private static boolean mayMatch(DataType dataType, String minValue, String maxValue,
+      FilterQueryTree filterQueryTree) {
+    switch (filterQueryTree.getOperator()) {
+      case EQUALITY:
+        return isInRange(dataType, minValue, maxValue, filterQueryTree.getValue().get(0));
+      case IN:
+        for (String values : filterQueryTree.getValue()) {
+          for (String value : values.split(VALUE_DELIMITER)) {
+            if (isInRange(dataType, minValue, maxValue, value)) {
+              return true;
+            }
+          }
+        }
+        return false;
+      case RANGE:
+        final String rangeString = filterQueryTree.getValue().get(0).trim();
+        final String[] boundaries = rangeString.split(VALUE_DELIMITER);
+        final String lowerBoundary = boundaries[0].substring(1);
+        final String upperBoundary = boundaries[1].substring(0, boundaries[1].length() - 1);
+        if (!lowerBoundary.equals(UNBOUNDED)) {
+          int comparison = compare(dataType, maxValue, lowerBoundary);
+          if (comparison < 0 || (comparison == 0 && rangeString.startsWith("("))) {
+            return false;
+          }
+        }
+        if (!upperBoundary.equals(UNBOUNDED)) {
+          int comparison = compare(dataType, minValue, upperBoundary);
+          if (comparison > 0 || (comparison == 0 && rangeString.endsWith(")"))) {
+            return false;
+          }
+        }
+        return true;
+      default:
+        return true;
+    }
+  }
+
+  private static boolean isInRange(DataType dataType, String minValue, String maxValue, String value) {
+    return compare(dataType, value, minValue) >= 0 && compare(dataType, value, maxValue) <= 0;
+  }
+
+  private static int compare(DataType dataType, String value1, String value2) {
+    switch (dataType) {
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        try {
+          return Long.compare(Long.parseLong(value1.trim()), Long.parseLong(value2.trim()));
+        } catch (NumberFormatException e) {
+          return Double.compare(Double.parseDouble(value1), Double.parseDouble(value2));
+        }
+      case STRING:
+      case BOOLEAN:
+        return value1.compareTo(value2);
+      default:
+        throw new UnsupportedOperationException("Unsupported data type : " + dataType);
+    }
+  }
+
+  private class SegmentZKMetadataListener implements IZkDataListener {
+    private final String _tableName;
+    private final String _segmentName;
+
+    private SegmentZKMetadataListener(String tableName, String segmentName) {
+      _tableName = tableName;
+      _segmentName = segmentName;
+    }
+
+    @Override
+    public void handleDataChange(String dataPath, Object data) throws Exception {
+      LOGGER.info("Segment ZK metadata changed for segment : " + _segmentName + " of table : " + _tableName);
+      refreshSegment(_tableName, _segmentName);
+    }
+
+    @Override
+    public void handleDataDeleted(String dataPath) throws Exception {
+      TableSegmentMetadata tableSegmentMetadata = _tableSegmentMetadataMap.get(_tableName);
+      if (tableSegmentMetadata != null) {
+        tableSegmentMetadata._segmentMetadataMap.remove(_segmentName);
+      }
+    }
+  }
+
+  private static class TableSegmentMetadata {
+    private final String _timeColumn;
+    private final TimeUnit _timeUnit;
+    private final Map<String, OfflineSegmentZKMetadata> _segmentMetadataMap =
+        new ConcurrentHashMap<String, OfflineSegmentZKMetadata>();
+    private final Map<String, IZkDataListener> _segmentListeners = new HashMap<String, IZkDataListener>();
+    // The time column and every column with a recorded range in any segment, never shrinks
+    private final Set<String> _prunableColumns = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private TableSegmentMetadata(String timeColumn, TimeUnit timeUnit) {
+      _timeColumn = timeColumn;
+      _timeUnit = timeUnit;
+      if (timeColumn != null && timeUnit != null) {
+        _prunableColumns.add(timeColumn);
+      }
+    }
+
+    private void putSegmentZKMetadata(String segmentName, OfflineSegmentZKMetadata segmentZKMetadata) {
+      _prunableColumns.addAll(segmentZKMetadata.getColumnsWithValueRange());
+      _segmentMetadataMap.put(segmentName, segmentZKMetadata);
+    }
+
+    /**
+     * Checks the columns of the filter before the filter tree is built, most filters cannot prune anything.
+     */
+    private boolean isFilteredOnPrunableColumn(BrokerRequest brokerRequest) {
+      if (brokerRequest.getFilterSubQueryMap() == null) {
+        return false;
+      }
+      for (FilterQuery filterQuery : brokerRequest.getFilterSubQueryMap().getFilterQueryMap().values()) {
+        if (filterQuery.getColumn() != null && _prunableColumns.contains(filterQuery.getColumn())) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
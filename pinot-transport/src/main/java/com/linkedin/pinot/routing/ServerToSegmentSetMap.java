@@ -48,27 +48,48 @@ public class ServerToSegmentSetMap {
   public static final String NAME_PORT_DELIMITER = "_";
 
   public ServerToSegmentSetMap(Map<String, Set<String>> serverToSegmentSetMap) {
+    this(serverToSegmentSetMap, null);
+  }
+
+  /**
+   * Builds the routing of the given servers. The segment id sets of the previous routing are reused for the servers
+   * whose segment set is the very same instance as in the previous routing, so a routing update only builds the
+   * segment id sets of the servers it changed. Segment sets must therefore not be modified once routed.
+   *
+   * @param serverToSegmentSetMap segments to query on each server
+   * @param previous previous routing, can be null
+   */
+  public ServerToSegmentSetMap(Map<String, Set<String>> serverToSegmentSetMap, ServerToSegmentSetMap previous) {
     _serverToSegmentSetMap = serverToSegmentSetMap;
     _routingTable = new HashMap<ServerInstance, SegmentIdSet>();
     for (Entry<String, Set<String>> entry : _serverToSegmentSetMap.entrySet()) {
-      String namePortStr = entry.getKey().split(CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE)[1];
-      String hostName = namePortStr.split(NAME_PORT_DELIMITER)[0];
-      int port;
-      try {
-        port = Integer.parseInt(namePortStr.split(NAME_PORT_DELIMITER)[1]);
-      } catch (Exception e) {
-        port = CommonConstants.Helix.DEFAULT_SERVER_NETTY_PORT;
+      ServerInstance serverInstance = toServerInstance(entry.getKey());
+      SegmentIdSet segmentIdSet = null;
+      if (previous != null && previous._serverToSegmentSetMap.get(entry.getKey()) == entry.getValue()) {
+        segmentIdSet = previous._routingTable.get(serverInstance);
       }
-
-      ServerInstance serverInstance = new ServerInstance(hostName, port);
-      SegmentIdSet segmentIdSet = new SegmentIdSet();
-      for (String segmentId : entry.getValue()) {
-        segmentIdSet.addSegment(new SegmentId(segmentId));
+      if (segmentIdSet == null) {
+        segmentIdSet = new SegmentIdSet();
+        for (String segmentId : entry.getValue()) {
+          segmentIdSet.addSegment(new SegmentId(segmentId));
+        }
       }
       _routingTable.put(serverInstance, segmentIdSet);
     }
   }
 
+  private static ServerInstance toServerInstance(String instanceName) {
+    String namePortStr = instanceName.split(CommonConstants.Helix.PREFIX_OF_SERVER_INSTANCE)[1];
+    String hostName = namePortStr.split(NAME_PORT_DELIMITER)[0];
+    int port;
+    try {
+      port = Integer.parseInt(namePortStr.split(NAME_PORT_DELIMITER)[1]);
+    } catch (Exception e) {
+      port = CommonConstants.Helix.DEFAULT_SERVER_NETTY_PORT;
+    }
+    return new ServerInstance(hostName, port);
+  }
+
   public Set<String> getServerSet() {
     return _serverToSegmentSetMap.keySet();
   }
@@ -19,9 +19,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.helix.model.ExternalView;
@@ -33,11 +37,17 @@ import com.linkedin.pinot.routing.ServerToSegmentSetMap;
 /**
  * Create a given number of routing tables based on random selections from ExternalView.
  *
- *
+ * The routing tables of each table are kept between two external view changes and updated incrementally: segments
+ * whose online instances did not change keep their assignment, removed segments are dropped, and new segments (or
+ * segments whose instance went away) go to their least loaded online instance, ties being broken at random so that
+ * the routing tables differ. A segment that gets a new replica moves to it only if that evens out the load. Only the
+ * servers whose segments changed get new segment sets, the others are shared with the previous routing tables.
  */
 public class BalancedRandomRoutingTableBuilder implements RoutingTableBuilder {
 
   private int _numberOfRoutingTables;
+  private final Map<String, TableRoutingState> _tableRoutingStates = new ConcurrentHashMap<String, TableRoutingState>();
+  private final Random _random = new Random();
 
   public BalancedRandomRoutingTableBuilder() {
     this._numberOfRoutingTables = 10;
@@ -53,66 +63,172 @@ public class BalancedRandomRoutingTableBuilder implements RoutingTableBuilder {
   }
 
   @Override
-  public synchronized List<ServerToSegmentSetMap> computeRoutingTableFromExternalView(String tableName,
+  public List<ServerToSegmentSetMap> computeRoutingTableFromExternalView(String tableName,
       ExternalView externalView, List<InstanceConfig> instanceConfigList) {
 
     RoutingTableInstancePruner pruner = new RoutingTableInstancePruner(instanceConfigList);
 
-    List<Map<String, Set<String>>> routingTables = new ArrayList<Map<String, Set<String>>>();
-    for (int i = 0; i < _numberOfRoutingTables; ++i) {
-      routingTables.add(new HashMap<String, Set<String>>());
+    Map<String, Set<String>> segmentToInstancesMap = new HashMap<String, Set<String>>();
+    for (String segment : externalView.getPartitionSet()) {
+      Map<String, String> instanceToStateMap = externalView.getStateMap(segment);
+      Set<String> instances = new HashSet<String>();
+      for (Entry<String, String> instanceAndState : instanceToStateMap.entrySet()) {
+        if (instanceAndState.getValue().equals("ONLINE") && !pruner.isShuttingDown(instanceAndState.getKey())) {
+          instances.add(instanceAndState.getKey());
+        }
+      }
+      if (instances.size() > 0) {
+        segmentToInstancesMap.put(segment, instances);
+      }
     }
 
-    String[] segmentSet = externalView.getPartitionSet().toArray(new String[0]);
-    for (String segment : segmentSet) {
-      Map<String, String> instanceToStateMap = externalView.getStateMap(segment);
-      for (String instance : instanceToStateMap.keySet().toArray(new String[0])) {
-        if (!instanceToStateMap.get(instance).equals("ONLINE") || pruner.isShuttingDown(instance)) {
-          instanceToStateMap.remove(instance);
+    TableRoutingState tableRoutingState = _tableRoutingStates.get(tableName);
+    if (tableRoutingState == null || tableRoutingState.getNumberOfRoutingTables() != _numberOfRoutingTables) {
+      tableRoutingState = new TableRoutingState(_numberOfRoutingTables);
+      _tableRoutingStates.put(tableName, tableRoutingState);
+    }
+    return tableRoutingState.update(segmentToInstancesMap, _random);
+  }
+
+  @Override
+  public void removeTable(String tableName) {
+    _tableRoutingStates.remove(tableName);
+  }
+
+  /**
+   * Routing tables of one table, along with the online instances of each segment they were computed from.
+   */
+  private static class TableRoutingState {
+    private final RoutingTableState[] _routingTableStates;
+    private Map<String, Set<String>> _segmentToInstancesMap = Collections.emptyMap();
+
+    TableRoutingState(int numberOfRoutingTables) {
+      _routingTableStates = new RoutingTableState[numberOfRoutingTables];
+      for (int i = 0; i < numberOfRoutingTables; ++i) {
+        _routingTableStates[i] = new RoutingTableState();
+      }
+    }
+
+    int getNumberOfRoutingTables() {
+      return _routingTableStates.length;
+    }
+
+    synchronized List<ServerToSegmentSetMap> update(Map<String, Set<String>> segmentToInstancesMap, Random random) {
+      List<String> removedSegments = new ArrayList<String>();
+      for (String segment : _segmentToInstancesMap.keySet()) {
+        if (!segmentToInstancesMap.containsKey(segment)) {
+          removedSegments.add(segment);
+        }
+      }
+      Map<String, Set<String>> changedSegments = new HashMap<String, Set<String>>();
+      for (Entry<String, Set<String>> segmentAndInstances : segmentToInstancesMap.entrySet()) {
+        if (!segmentAndInstances.getValue().equals(_segmentToInstancesMap.get(segmentAndInstances.getKey()))) {
+          changedSegments.put(segmentAndInstances.getKey(), segmentAndInstances.getValue());
+        }
+      }
+      _segmentToInstancesMap = segmentToInstancesMap;
+
+      List<ServerToSegmentSetMap> routingTables = new ArrayList<ServerToSegmentSetMap>(_routingTableStates.length);
+      for (RoutingTableState routingTableState : _routingTableStates) {
+        routingTables.add(routingTableState.update(removedSegments, changedSegments, random));
+      }
+      return Collections.unmodifiableList(routingTables);
+    }
+  }
+
+  /**
+   * Assignment of the segments to the instances for one routing table. Segment sets that were routed are never
+   * modified, an instance whose segments change gets a copy of its segment set.
+   */
+  private static class RoutingTableState {
+    private final Map<String, String> _segmentToInstanceMap = new HashMap<String, String>();
+    private final Map<String, Set<String>> _instanceToSegmentsMap = new HashMap<String, Set<String>>();
+    private final Set<String> _copiedInstances = new HashSet<String>();
+    private ServerToSegmentSetMap _routingTable = null;
+
+    ServerToSegmentSetMap update(List<String> removedSegments, Map<String, Set<String>> changedSegments,
+        Random random) {
+      if (_routingTable != null && removedSegments.isEmpty() && changedSegments.isEmpty()) {
+        return _routingTable;
+      }
+
+      for (String segment : removedSegments) {
+        unassign(segment);
+      }
+      for (Entry<String, Set<String>> segmentAndInstances : changedSegments.entrySet()) {
+        String segment = segmentAndInstances.getKey();
+        Set<String> instances = segmentAndInstances.getValue();
+        String currentInstance = _segmentToInstanceMap.get(segment);
+        if (currentInstance != null && !instances.contains(currentInstance)) {
+          unassign(segment);
+          currentInstance = null;
+        }
+        String leastLoadedInstance = getLeastLoadedInstance(instances, random);
+        if (currentInstance == null) {
+          assign(segment, leastLoadedInstance);
+        } else if (getLoad(leastLoadedInstance) + 1 < getLoad(currentInstance)) {
+          unassign(segment);
+          assign(segment, leastLoadedInstance);
         }
       }
-      if (instanceToStateMap.size() > 0) {
-        List<String> instanceList = new ArrayList<String>(instanceToStateMap.keySet());
-        for (int i = 0; i < _numberOfRoutingTables; ++i) {
-          Collections.shuffle(instanceList);
-          String[] instances = instanceList.toArray(new String[instanceList.size()]);
-
-          int minInstances = Integer.MAX_VALUE;
-          int minIdx = -1;
-          int base = 2;
-          for (int k = 0; k < instances.length; ++k) {
-            int sizeOfCurrentInstance = 0;
-            if (routingTables.get(i).containsKey(instances[k])) {
-              sizeOfCurrentInstance = routingTables.get(i).get(instances[k]).size();
-            }
-            if (sizeOfCurrentInstance < minInstances) {
-              minInstances = sizeOfCurrentInstance;
-              minIdx = k;
-              base = 2;
-            }
-            if (sizeOfCurrentInstance == minInstances && (System.currentTimeMillis() % base == 0)) {
-              minIdx = k;
-              base = 2;
-            } else {
-              base++;
-            }
-          }
-          if (routingTables.get(i).containsKey(instances[minIdx])) {
-            routingTables.get(i).get(instances[minIdx]).add(segment);
-          } else {
-            Set<String> instanceSegmentSet = new HashSet<String>();
-            instanceSegmentSet.add(segment);
-            routingTables.get(i).put(instances[minIdx], instanceSegmentSet);
-          }
+
+      Iterator<Set<String>> segmentSetIterator = _instanceToSegmentsMap.values().iterator();
+      while (segmentSetIterator.hasNext()) {
+        if (segmentSetIterator.next().isEmpty()) {
+          segmentSetIterator.remove();
         }
       }
+      _copiedInstances.clear();
+      _routingTable =
+          new ServerToSegmentSetMap(new HashMap<String, Set<String>>(_instanceToSegmentsMap), _routingTable);
+      return _routingTable;
     }
 
-    List<ServerToSegmentSetMap> resultRoutingTableList = new ArrayList<ServerToSegmentSetMap>();
-    for (int i = 0; i < _numberOfRoutingTables; ++i) {
-      resultRoutingTableList.add(new ServerToSegmentSetMap(routingTables.get(i)));
+    private String getLeastLoadedInstance(Set<String> instances, Random random) {
+      String leastLoadedInstance = null;
+      int minLoad = Integer.MAX_VALUE;
+      int numberOfTies = 0;
+      for (String instance : instances) {
+        int load = getLoad(instance);
+        if (load < minLoad) {
+          leastLoadedInstance = instance;
+          minLoad = load;
+          numberOfTies = 1;
+        } else if (load == minLoad && random.nextInt(++numberOfTies) == 0) {
+          leastLoadedInstance = instance;
+        }
+      }
+      return leastLoadedInstance;
+    }
+
+    private int getLoad(String instance) {
+      Set<String> segments = _instanceToSegmentsMap.get(instance);
+      return segments == null ? 0 : segments.size();
+    }
+
+    private void assign(String segment, String instance) {
+      _segmentToInstanceMap.put(segment, instance);
+      getSegmentsForUpdate(instance).add(segment);
     }
-    return resultRoutingTableList;
 
+    private void unassign(String segment) {
+      String instance = _segmentToInstanceMap.remove(segment);
+      if (instance != null) {
+        getSegmentsForUpdate(instance).remove(segment);
+      }
+    }
+
+    private Set<String> getSegmentsForUpdate(String instance) {
+      Set<String> segments = _instanceToSegmentsMap.get(instance);
+      if (segments == null) {
+        segments = new HashSet<String>();
+        _instanceToSegmentsMap.put(instance, segments);
+        _copiedInstances.add(instance);
+      } else if (_copiedInstances.add(instance)) {
+        segments = new HashSet<String>(segments);
+        _instanceToSegmentsMap.put(instance, segments);
+      }
+      return segments;
+    }
   }
 }
@@ -70,4 +70,7 @@ public class KafkaHighLevelConsumerBasedRoutingTableBuilder implements RoutingTa
     return routingTable;
   }
 
+  @Override
+  public void removeTable(String tableName) {
+  }
 }
@@ -94,4 +94,8 @@ public class RandomRoutingTableBuilder implements RoutingTableBuilder {
     return resultRoutingTableList;
 
   }
+
+  @Override
+  public void removeTable(String tableName) {
+  }
 }
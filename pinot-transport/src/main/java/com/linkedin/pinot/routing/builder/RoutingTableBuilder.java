@@ -43,4 +43,11 @@ public interface RoutingTableBuilder {
    */
   List<ServerToSegmentSetMap> computeRoutingTableFromExternalView(String tableName, ExternalView externalView,
       List<InstanceConfig> instanceConfigList);
+
+  /**
+   * Drops whatever was kept to update the routing table of a table that is no longer served.
+   *
+   * @param tableName
+   */
+  void removeTable(String tableName);
 }
@@ -72,6 +72,14 @@ public abstract class AbstractCompositeListenableFuture<K, T> implements KeyedFu
     return true;
   }
 
+  /**
+   * Marks the future done, without waiting for any underlying future. Used when there is no underlying future, so
+   * that the listeners still get called.
+   */
+  protected void completeWithoutUnderlyingFutures() {
+    setDone(State.DONE);
+  }
+
   @Override
   /**
    * Does best-effort cancellation of futures. If one of the underlying futures are cancelled, the others
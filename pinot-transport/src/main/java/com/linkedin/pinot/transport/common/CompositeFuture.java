@@ -102,6 +102,10 @@ public class CompositeFuture<K, V> extends AbstractCompositeListenableFuture<K,
         addResponseFutureListener(entry);
       }
     }
+
+    if (_futures.isEmpty()) {
+      completeWithoutUnderlyingFutures();
+    }
   }
 
   /**
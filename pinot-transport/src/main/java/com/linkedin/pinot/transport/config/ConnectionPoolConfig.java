@@ -35,10 +35,23 @@ public class ConnectionPoolConfig {
   // Idle Timeout (ms) for reaping idle connections
   public static final String IDLE_TIMEOUT_MS_KEY = "idleTimeoutMs";
 
+  // Whether the requests to a server share a few long lived connections instead of checking out one each. The
+  // requests then carry their request id, the servers must be configured with request id framing.
+  public static final String MULTIPLEXED_KEY = "multiplexed";
+
+  // Number of long lived connections for each server when multiplexed
+  public static final String MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY = "multiplexedConnectionsPerServer";
+
+  // Timeout (ms) for opening a long lived connection when multiplexed
+  public static final String MULTIPLEXED_CONNECT_TIMEOUT_MS_KEY = "multiplexedConnectTimeoutMs";
+
   private final int DEFAULT_MIN_CONNECTIONS_PER_SERVER = 10;
   private final int DEFAULT_MAX_CONNECTIONS_PER_SERVER = 30;
   private final int DEFAULT_MAX_BACKLOG_PER_SERVER = 30;
   private static final long DEFAULT_IDLE_TIMEOUT_MS = 6 * 60L * 60 * 1000L; // 6 hours
+  private static final boolean DEFAULT_MULTIPLEXED = false;
+  private static final int DEFAULT_MULTIPLEXED_CONNECTIONS_PER_SERVER = 4;
+  private static final long DEFAULT_MULTIPLEXED_CONNECT_TIMEOUT_MS = 10 * 1000L;
 
   // ThreadPool config for the Async Connection Pool
   private ThreadPoolConfig _threadPool;
@@ -55,12 +68,24 @@ public class ConnectionPoolConfig {
   // Idle Timeout (ms) for reaping idle connections
   private long _idleTimeoutMs;
 
+  // Whether the requests to a server share a few long lived connections
+  private boolean _multiplexed;
+
+  // Number of long lived connections for each server when multiplexed
+  private int _multiplexedConnectionsPerServer;
+
+  // Timeout (ms) for opening a long lived connection when multiplexed
+  private long _multiplexedConnectTimeoutMs;
+
   public ConnectionPoolConfig() {
     _threadPool = new ThreadPoolConfig();
     _minConnectionsPerServer = DEFAULT_MIN_CONNECTIONS_PER_SERVER;
     _maxConnectionsPerServer = DEFAULT_MAX_CONNECTIONS_PER_SERVER;
     _maxBacklogPerServer = DEFAULT_MAX_BACKLOG_PER_SERVER;
     _idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    _multiplexed = DEFAULT_MULTIPLEXED;
+    _multiplexedConnectionsPerServer = DEFAULT_MULTIPLEXED_CONNECTIONS_PER_SERVER;
+    _multiplexedConnectTimeoutMs = DEFAULT_MULTIPLEXED_CONNECT_TIMEOUT_MS;
   }
 
   public void init(Configuration cfg) {
@@ -83,6 +108,18 @@ public class ConnectionPoolConfig {
     if (cfg.containsKey(MAX_BACKLOG_PER_SERVER_KEY)) {
       _maxBacklogPerServer = cfg.getInt(MAX_BACKLOG_PER_SERVER_KEY);
     }
+
+    if (cfg.containsKey(MULTIPLEXED_KEY)) {
+      _multiplexed = cfg.getBoolean(MULTIPLEXED_KEY);
+    }
+
+    if (cfg.containsKey(MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY)) {
+      _multiplexedConnectionsPerServer = cfg.getInt(MULTIPLEXED_CONNECTIONS_PER_SERVER_KEY);
+    }
+
+    if (cfg.containsKey(MULTIPLEXED_CONNECT_TIMEOUT_MS_KEY)) {
+      _multiplexedConnectTimeoutMs = cfg.getLong(MULTIPLEXED_CONNECT_TIMEOUT_MS_KEY);
+    }
   }
 
   public ThreadPoolConfig getThreadPool() {
@@ -105,4 +142,16 @@ public class ConnectionPoolConfig {
     return _idleTimeoutMs;
   }
 
+  public boolean isMultiplexed() {
+    return _multiplexed;
+  }
+
+  public int getMultiplexedConnectionsPerServer() {
+    return _multiplexedConnectionsPerServer;
+  }
+
+  public long getMultiplexedConnectTimeoutMs() {
+    return _multiplexedConnectTimeoutMs;
+  }
+
 }
@@ -0,0 +1,287 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.linkedin.pinot.common.metrics.LatencyMetric;
+import com.linkedin.pinot.common.metrics.MetricsHelper;
+import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.AsyncResponseFuture;
+import com.linkedin.pinot.transport.common.Callback;
+import com.linkedin.pinot.transport.common.KeyedFuture;
+import com.linkedin.pinot.transport.common.NoneType;
+import com.linkedin.pinot.transport.metrics.AsyncPoolStats;
+import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import com.linkedin.pinot.transport.metrics.PoolStats;
+import com.linkedin.pinot.transport.pool.KeyedPool;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricName;
+
+
+/**
+ * A few long lived connections per server, shared by all the requests to that server.
+ *
+ * Unlike {@link com.linkedin.pinot.transport.pool.KeyedPoolImpl}, a checkout never waits for a connection to be
+ * returned: the connections of the server are handed out in round-robin and the requests are multiplexed on them,
+ * matched to their responses by request id. Checking in is a no-op. A connection found closed, or destroyed by its
+ * user, is replaced by a new one on the next checkout that lands on it. Connecting does not block the checkout, its
+ * future completes once the connection is open or the connect timeout expires.
+ *
+ * The connections use request id framing, so the servers must be configured with request id framing as well.
+ *
+ * In the pool stats, a connection is idle when it has no outstanding request, and the checked out count is the
+ * number of outstanding requests over all the connections.
+ */
+public class MultiplexedNettyClientConnectionPool implements KeyedPool<ServerInstance, NettyClientConnection> {
+
+  protected static Logger LOGGER = LoggerFactory.getLogger(MultiplexedNettyClientConnectionPool.class);
+
+  private final int _numConnectionsPerServer;
+  private final EventLoopGroup _eventLoop;
+  private final Timer _timer;
+  private final NettyClientMetrics _metrics;
+  private final long _connectTimeoutMs;
+
+  private final ConcurrentMap<ServerInstance, ServerConnections> _serverConnections =
+      new ConcurrentHashMap<ServerInstance, ServerConnections>();
+  private volatile boolean _isShutdown = false;
+
+  // Statistics, see PoolStats for details
+  private final AtomicInteger _totalCreated = new AtomicInteger(0);
+  private final AtomicInteger _totalDestroyed = new AtomicInteger(0);
+  private final AtomicInteger _totalCreateErrors = new AtomicInteger(0);
+  private final AtomicInteger _totalBadDestroyed = new AtomicInteger(0);
+  // Checkout time, which includes connecting when the connection is replaced
+  private final Histogram _waitTime =
+      MetricsHelper.newHistogram(null, new MetricName(MultiplexedNettyClientConnectionPool.class, "waitTime"), false);
+  private final Histogram _createTime =
+      MetricsHelper.newHistogram(null, new MetricName(MultiplexedNettyClientConnectionPool.class, "createTime"), false);
+
+  public MultiplexedNettyClientConnectionPool(int numConnectionsPerServer, EventLoopGroup eventLoop, Timer timer,
+      NettyClientMetrics metrics, long connectTimeoutMs) {
+    _numConnectionsPerServer = Math.max(1, numConnectionsPerServer);
+    _eventLoop = eventLoop;
+    _timer = timer;
+    _metrics = metrics;
+    _connectTimeoutMs = connectTimeoutMs;
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public KeyedFuture<ServerInstance, NettyClientConnection> checkoutObject(ServerInstance server) {
+    if (_isShutdown) {
+      return new AsyncResponseFuture<ServerInstance, NettyClientConnection>(server,
+          new IllegalStateException("Connection pool is shut down"), "Connection to server " + server);
+    }
+
+    ServerConnections connections = _serverConnections.get(server);
+    if (null == connections) {
+      ServerConnections newConnections = new ServerConnections(server);
+      connections = _serverConnections.putIfAbsent(server, newConnections);
+      if (null == connections) {
+        connections = newConnections;
+      }
+    }
+
+    AsyncResponseFuture<ServerInstance, NettyClientConnection> future =
+        new AsyncResponseFuture<ServerInstance, NettyClientConnection>(server, "Connection to server " + server);
+    connections.next(future);
+    return future;
+  }
+
+  @Override
+  public void checkinObject(ServerInstance server, NettyClientConnection connection) {
+    // The connection is still used by the other outstanding requests
+  }
+
+  @Override
+  public void destroyObject(ServerInstance server, NettyClientConnection connection) {
+    LOGGER.info("Destroying client connection to server :" + server);
+    _totalBadDestroyed.incrementAndGet();
+    ServerConnections connections = _serverConnections.get(server);
+    if ((null != connections) && connections.remove(connection)) {
+      _totalDestroyed.incrementAndGet();
+    }
+    close(connection);
+  }
+
+  @Override
+  public KeyedFuture<ServerInstance, NoneType> shutdown() {
+    _isShutdown = true;
+    for (ServerConnections connections : _serverConnections.values()) {
+      connections.closeAll();
+    }
+    AsyncResponseFuture<ServerInstance, NoneType> shutdownFuture =
+        new AsyncResponseFuture<ServerInstance, NoneType>(null, "Shutdown For Pool");
+    shutdownFuture.onSuccess(null);
+    return shutdownFuture;
+  }
+
+  @Override
+  public PoolStats<Histogram> getStats() {
+    int poolSize = 0;
+    int idleCount = 0;
+    int numOutstandingRequests = 0;
+    for (ServerConnections connections : _serverConnections.values()) {
+      synchronized (connections._connections) {
+        for (NettyTCPClientConnection connection : connections._connections) {
+          if (null != connection) {
+            poolSize++;
+            int numConnectionRequests = connection.getNumOutstandingRequests();
+            numOutstandingRequests += numConnectionRequests;
+            if (0 == numConnectionRequests) {
+              idleCount++;
+            }
+          }
+        }
+      }
+    }
+    int maxPoolSize = _serverConnections.size() * _numConnectionsPerServer;
+    // Checking out never times out, and destroying a connection only closes it
+    return new AsyncPoolStats<Histogram>(_totalCreated.get(), _totalDestroyed.get(), _totalCreateErrors.get(), 0,
+        _totalBadDestroyed.get(), 0, numOutstandingRequests, maxPoolSize, 0, poolSize, numOutstandingRequests,
+        poolSize, idleCount, new LatencyMetric<Histogram>(_waitTime),
+        new PoolStats.LifecycleStats<Histogram>(new LatencyMetric<Histogram>(_createTime)));
+  }
+
+  private static void close(NettyClientConnection connection) {
+    try {
+      connection.close();
+    } catch (InterruptedException e) {
+      LOGGER.error("Got interrupted exception when closing connection to server " + connection.getServer(), e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The connections to one server.
+   */
+  private class ServerConnections {
+    private final ServerInstance _server;
+    private final NettyTCPClientConnection[] _connections = new NettyTCPClientConnection[_numConnectionsPerServer];
+    private final AtomicInteger _nextIndex = new AtomicInteger(0);
+
+    ServerConnections(ServerInstance server) {
+      _server = server;
+    }
+
+    /**
+     * Completes the future with the next connection in round-robin. A connection which does not exist or is closed is
+     * replaced first, the future is then completed by the I/O thread once the new connection is open.
+     */
+    void next(final AsyncResponseFuture<ServerInstance, NettyClientConnection> future) {
+      final TimerContext t = MetricsHelper.startTimer();
+      final int index = (_nextIndex.getAndIncrement() & Integer.MAX_VALUE) % _connections.length;
+      synchronized (_connections) {
+        NettyTCPClientConnection connection = _connections[index];
+        if ((null != connection) && connection.validate()) {
+          future.onSuccess(connection);
+          t.stop();
+          _waitTime.update(t.getLatencyMs());
+          return;
+        }
+      }
+
+      final NettyTCPClientConnection newConnection =
+          new NettyTCPClientConnection(_server, _eventLoop, _timer, _metrics, true);
+      newConnection.connectAsync(_connectTimeoutMs, new Callback<NoneType>() {
+        @Override
+        public void onSuccess(NoneType arg0) {
+          if (_isShutdown) {
+            close(newConnection);
+            future.onError(new IllegalStateException("Connection pool is shut down"));
+            return;
+          }
+          t.stop();
+          _createTime.update(t.getLatencyMs());
+          _waitTime.update(t.getLatencyMs());
+          _totalCreated.incrementAndGet();
+          future.onSuccess(install(index, newConnection));
+        }
+
+        @Override
+        public void onError(Throwable error) {
+          _totalCreateErrors.incrementAndGet();
+          close(newConnection);
+          future.onError(new IllegalStateException("Could not connect to server " + _server, error));
+        }
+      });
+    }
+
+    /**
+     * @return the connection now at the index, which is the new connection unless another checkout replaced the
+     * connection first
+     */
+    private NettyTCPClientConnection install(int index, NettyTCPClientConnection newConnection) {
+      NettyTCPClientConnection oldConnection;
+      synchronized (_connections) {
+        oldConnection = _connections[index];
+        if ((null != oldConnection) && oldConnection.validate()) {
+          _totalDestroyed.incrementAndGet();
+          close(newConnection);
+          return oldConnection;
+        }
+        _connections[index] = newConnection;
+      }
+      if (null != oldConnection) {
+        _totalDestroyed.incrementAndGet();
+        close(oldConnection);
+      }
+      return newConnection;
+    }
+
+    /**
+     * @return true if the connection was one of the connections of the server
+     */
+    boolean remove(NettyClientConnection connection) {
+      boolean isRemoved = false;
+      synchronized (_connections) {
+        for (int i = 0; i < _connections.length; i++) {
+          if (_connections[i] == connection) {
+            _connections[i] = null;
+            isRemoved = true;
+          }
+        }
+      }
+      return isRemoved;
+    }
+
+    void closeAll() {
+      synchronized (_connections) {
+        for (int i = 0; i < _connections.length; i++) {
+          if (null != _connections[i]) {
+            _totalDestroyed.incrementAndGet();
+            close(_connections[i]);
+            _connections[i] = null;
+          }
+        }
+      }
+    }
+  }
+}
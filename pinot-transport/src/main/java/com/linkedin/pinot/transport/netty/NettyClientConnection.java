@@ -31,8 +31,9 @@ import com.linkedin.pinot.transport.common.NoneType;
 
 
 /**
- * A Netty standalone connection. This will be managed as a resource in a pool to reuse
- * connection. This is not thread-safe so multiple requests cannot be sent simultaneously.
+ * A Netty standalone connection. This can be managed as a resource in a pool to reuse
+ * connection, or shared by concurrent requests when the requests carry their request id: several requests with
+ * distinct request ids can then be outstanding at once, and their responses are matched by request id.
  * This class provides an async API to send requests and wait for response.
  */
 public abstract class NettyClientConnection {
@@ -44,10 +45,7 @@ public abstract class NettyClientConnection {
   public enum State {
     INIT,
     CONNECTED,
-    REQUEST_WRITTEN,
-    REQUEST_SENT,
-    ERROR,
-    GOT_RESPONSE;
+    ERROR;
 
     public boolean isValidTransition(State nextState) {
       switch (nextState) {
@@ -55,14 +53,8 @@ public abstract class NettyClientConnection {
           return false; // Init state happens only as the first transition
         case CONNECTED:
           return this == State.INIT; // We do not reconnect with same NettyClientConnection object. We create new one
-        case REQUEST_WRITTEN:
-          return (this == State.CONNECTED) || (this == State.GOT_RESPONSE);
-        case REQUEST_SENT:
-          return this == State.REQUEST_WRITTEN;
         case ERROR:
           return true;
-        case GOT_RESPONSE:
-          return this == State.REQUEST_SENT;
       }
       return false;
     }
@@ -79,7 +71,8 @@ public abstract class NettyClientConnection {
   // Timer for tracking read-timeouts
   protected final Timer _timer;
 
-  // Callback to notify if a response has been successfully received or error
+  // Callback to notify, for the requests sent without their own callback, if a response has been successfully
+  // received or error
   protected volatile Callback<NoneType> _requestCallback;
 
   public NettyClientConnection(ServerInstance server, EventLoopGroup eventGroup, Timer timer) {
@@ -106,7 +99,21 @@ public abstract class NettyClientConnection {
    * @param timeoutMs Timeout in milli-seconds. If timeout &lt; 0, then no timeout
    * @return Future to return the response returned from the server.
    */
-  public abstract ResponseFuture sendRequest(ByteBuf serializedRequest, long requestId, long timeoutMs);
+  public ResponseFuture sendRequest(ByteBuf serializedRequest, long requestId, long timeoutMs) {
+    return sendRequest(serializedRequest, requestId, timeoutMs, _requestCallback);
+  }
+
+  /**
+   * API to send a request asynchronously, notifying the given callback instead of the one of the connection. Several
+   * requests can be outstanding on a connection, each keeps the callback it was sent with.
+   * @param serializedRequest serialized payload to send the request
+   * @param requestId Request Id
+   * @param timeoutMs Timeout in milli-seconds. If timeout &lt; 0, then no timeout
+   * @param requestCallback Callback notified once the request is both sent and completed, may be null
+   * @return Future to return the response returned from the server.
+   */
+  public abstract ResponseFuture sendRequest(ByteBuf serializedRequest, long requestId, long timeoutMs,
+      Callback<NoneType> requestCallback);
 
   public void setRequestCallback(Callback<NoneType> callback) {
     _requestCallback = callback;
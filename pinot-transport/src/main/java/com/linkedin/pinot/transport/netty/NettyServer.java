@@ -26,15 +26,23 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.linkedin.pinot.common.metrics.AggregatedMetricsRegistry;
 import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
 import com.linkedin.pinot.common.query.QueryExecutor;
+import com.linkedin.pinot.common.utils.NamedThreadFactory;
 import com.linkedin.pinot.transport.metrics.AggregatedTransportServerMetrics;
 import com.linkedin.pinot.transport.metrics.NettyServerMetrics;
 
@@ -44,6 +52,10 @@ import com.linkedin.pinot.transport.metrics.NettyServerMetrics;
  * method to configure the server protocol and setup handlers. The Netty server will then bind to the port and
  * listens to incoming connections on the port.
  *
+ * The I/O threads only read the requests and write the responses. When the server has request threads, the requests
+ * are processed on that pool and their responses written back once processed, so that a slow request never holds the
+ * event loop shared by the other connections.
+ *
  */
 public abstract class NettyServer implements Runnable {
 
@@ -52,9 +64,13 @@ public abstract class NettyServer implements Runnable {
   // Server Metrics Group Name Prefix in Metrics Registry
   public static final String AGGREGATED_SERVER_METRICS_NAME = "Server_Global_Metric_";
 
+  public static final int DEFAULT_NUM_IO_THREADS = 20;
+
   /**
    * The request handler callback which processes the incoming request.
-   * This method is executed by the Netty worker thread.
+   * This method is executed by a request thread of the server, or by the Netty worker thread when the server has none.
+   * Request threads can process several requests of the same channel at once, and their responses are written in the
+   * order they complete.
    */
   public static interface RequestHandler {
     /**
@@ -77,8 +93,9 @@ public abstract class NettyServer implements Runnable {
   public static interface RequestHandlerFactory {
 
     /**
-     * Request Handler Factory. The RequestHandler objects are not expected to be
-     * thread-safe. Hence, we need a factory for the Channel Initializer to use for each incoming channel.
+     * Request Handler Factory. The RequestHandler objects are not expected to be shared across channels.
+     * Hence, we need a factory for the Channel Initializer to use for each incoming channel. They must be thread-safe
+     * when the server has request threads.
      * @return
      */
     public RequestHandler createNewRequestHandler();
@@ -92,9 +109,11 @@ public abstract class NettyServer implements Runnable {
   // Flag to indicate if shutdown has been completed
   protected AtomicBoolean _shutdownComplete = new AtomicBoolean(false);
 
-  //TODO: Need configs to control number of threads
   protected final EventLoopGroup _bossGroup = new NioEventLoopGroup(1);
-  protected final EventLoopGroup _workerGroup = new NioEventLoopGroup(20);
+  protected final EventLoopGroup _workerGroup;
+
+  // Pool processing the requests, null to process them on the worker threads
+  protected final ListeningExecutorService _requestExecutor;
 
   // Netty Channel
   protected Channel _channel = null;
@@ -110,12 +129,43 @@ public abstract class NettyServer implements Runnable {
 
   protected final long _defaultLargeQueryLatencyMs;
 
+  // Whether the requests and responses carry a request id, see NettyChannelInboundHandler
+  protected final boolean _requestIdFraming;
+
   public NettyServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry, long defaultLargeQueryLatencyMs) {
+    this(port, handlerFactory, registry, defaultLargeQueryLatencyMs, DEFAULT_NUM_IO_THREADS, 0);
+  }
+
+  /**
+   * @param numIoThreads number of worker threads reading requests and writing responses
+   * @param numRequestThreads number of threads processing the requests, 0 to process them on the worker threads
+   */
+  public NettyServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry,
+      long defaultLargeQueryLatencyMs, int numIoThreads, int numRequestThreads) {
+    this(port, handlerFactory, registry, defaultLargeQueryLatencyMs, numIoThreads, numRequestThreads, false);
+  }
+
+  /**
+   * @param numIoThreads number of worker threads reading requests and writing responses
+   * @param numRequestThreads number of threads processing the requests, 0 to process them on the worker threads
+   * @param requestIdFraming true if the requests start with their request id, which is echoed in front of the
+   *                         response. The brokers must frame their requests the same way.
+   */
+  public NettyServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry,
+      long defaultLargeQueryLatencyMs, int numIoThreads, int numRequestThreads, boolean requestIdFraming) {
     _port = port;
+    _workerGroup = new NioEventLoopGroup(numIoThreads);
+    if (numRequestThreads > 0) {
+      _requestExecutor = MoreExecutors.listeningDecorator(
+          Executors.newFixedThreadPool(numRequestThreads, new NamedThreadFactory("netty-server-" + port + "-request")));
+    } else {
+      _requestExecutor = null;
+    }
     _handlerFactory = handlerFactory;
     _metricsRegistry = registry;
     _metrics = new AggregatedTransportServerMetrics(_metricsRegistry, AGGREGATED_SERVER_METRICS_NAME + port + "_");
     _defaultLargeQueryLatencyMs = defaultLargeQueryLatencyMs;
+    _requestIdFraming = requestIdFraming;
   }
 
   @Override
@@ -155,14 +205,20 @@ public abstract class NettyServer implements Runnable {
       _bossGroup.shutdownGracefully();
       _workerGroup.shutdownGracefully();
     }
+    if (null != _requestExecutor) {
+      _requestExecutor.shutdown();
+    }
   }
 
   /**
-   * Request and Response have the following format
+   * Request and Response have the following format. The request id is only present with request id framing, the
+   * response then carries the request id of its request.
    *
    * 0                                                         31
    * ------------------------------------------------------------
    * |                  Length ( 32 bits)                       |
+   * |           Request Id ( 64 bits, optional)                |
+   * |                                                          |
    * |                 Payload (Request/Response)               |
    * |                    ...............                       |
    * |                    ...............                       |
@@ -170,22 +226,33 @@ public abstract class NettyServer implements Runnable {
    * |                    ...............                       |
    * ------------------------------------------------------------
    */
-  public static class NettyChannelInboundHandler extends ChannelInboundHandlerAdapter implements ChannelFutureListener {
+  public static class NettyChannelInboundHandler extends ChannelInboundHandlerAdapter {
     private final long _defaultLargeQueryLatencyMs;
     private final RequestHandler _handler;
     private final NettyServerMetrics _metric;
+    private final ListeningExecutorService _requestExecutor;
+    private final boolean _requestIdFraming;
 
-    //Metrics Related
-    private long _lastRequsetSizeInBytes;
-    private long _lastResponseSizeInBytes;
-    private TimerContext _lastSendResponseLatency;
-    private TimerContext _lastProcessingLatency;
-    private long _requestStartTime;
-
-    public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric, long defaultLargeQueryLatencyMs) {
+    /**
+     * @param requestExecutor pool processing the requests, null to process them on the worker thread of the channel
+     * @param requestIdFraming true if the requests start with their request id, echoed in front of the response
+     */
+    public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric,
+        long defaultLargeQueryLatencyMs, ListeningExecutorService requestExecutor, boolean requestIdFraming) {
       _handler = handler;
       _metric = metric;
       _defaultLargeQueryLatencyMs = defaultLargeQueryLatencyMs;
+      _requestExecutor = requestExecutor;
+      _requestIdFraming = requestIdFraming;
+    }
+
+    public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric,
+        long defaultLargeQueryLatencyMs, ListeningExecutorService requestExecutor) {
+      this(handler, metric, defaultLargeQueryLatencyMs, requestExecutor, false);
+    }
+
+    public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric, long defaultLargeQueryLatencyMs) {
+      this(handler, metric, defaultLargeQueryLatencyMs, null);
     }
 
     public NettyChannelInboundHandler(RequestHandler handler, NettyServerMetrics metric) {
@@ -201,30 +268,49 @@ public abstract class NettyServer implements Runnable {
     }
 
     /**
-     * Server Channel Handler State
+     * Server Channel Handler State, of the last request when several are in flight
      */
-    private State _state = State.INIT;
+    private volatile State _state = State.INIT;
 
     @Override
-    public void channelRead(ChannelHandlerContext ctx, Object msg) {
-      _requestStartTime = System.currentTimeMillis();
+    public void channelRead(final ChannelHandlerContext ctx, Object msg) {
       LOGGER.debug("Request received by server !!");
       _state = State.REQUEST_RECEIVED;
-      ByteBuf request = (ByteBuf) msg;
-      _lastRequsetSizeInBytes = request.readableBytes();
-
-      //Call processing handler
-      _lastProcessingLatency = MetricsHelper.startTimer();
-      byte[] response = _handler.processRequest(request);
-      _lastProcessingLatency.stop();
-
-      // Send Response
-      ByteBuf responseBuf = Unpooled.wrappedBuffer(response);
-      _lastSendResponseLatency = MetricsHelper.startTimer();
-      ChannelFuture f = ctx.writeAndFlush(responseBuf);
-      _state = State.RESPONSE_WRITTEN;
-      f.addListener(this);
+      final ByteBuf request = (ByteBuf) msg;
+      final long requestId = _requestIdFraming ? request.readLong() : 0L;
+      final ServedRequest servedRequest = new ServedRequest(requestId, request.readableBytes());
+
+      if (null == _requestExecutor) {
+        try {
+          servedRequest.sendResponse(ctx, servedRequest.process(request));
+        } finally {
+          request.release();
+        }
+        return;
+      }
+
+      // Copy the request out of the channel buffer, so that the buffer goes back to the I/O thread right away
+      final byte[] requestBytes = new byte[request.readableBytes()];
+      request.readBytes(requestBytes);
       request.release();
+
+      ListenableFuture<byte[]> response = _requestExecutor.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() {
+          return servedRequest.process(Unpooled.wrappedBuffer(requestBytes));
+        }
+      });
+      Futures.addCallback(response, new FutureCallback<byte[]>() {
+        @Override
+        public void onSuccess(byte[] result) {
+          servedRequest.sendResponse(ctx, result);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+          exceptionCaught(ctx, t);
+        }
+      });
     }
 
     @Override
@@ -236,25 +322,57 @@ public abstract class NettyServer implements Runnable {
     }
 
     @Override
-    public void operationComplete(ChannelFuture future) throws Exception {
-      LOGGER.debug("Response has been sent !!");
-      _lastSendResponseLatency.stop();
-      _metric.addServingStats(_lastRequsetSizeInBytes, _lastResponseSizeInBytes, 1L, false,
-          _lastProcessingLatency.getLatencyMs(), _lastSendResponseLatency.getLatencyMs());
-      long totalQueryTime = System.currentTimeMillis() - _requestStartTime;
-      if (totalQueryTime > _defaultLargeQueryLatencyMs) {
-        LOGGER.info("Trace Info: request handler processing time : {}, send response latency: {}, total time to handle request: {}", _lastProcessingLatency.getLatencyMs(),
-            _lastSendResponseLatency.getLatencyMs(), totalQueryTime);
-      }
-      _state = State.RESPONSE_SENT;
+    public String toString() {
+      return "NettyChannelInboundHandler [_handler=" + _handler + ", _metric=" + _metric + ", _state=" + _state + "]";
     }
 
-    @Override
-    public String toString() {
-      return "NettyChannelInboundHandler [_handler=" + _handler + ", _metric=" + _metric + ", _lastRequsetSizeInBytes="
-          + _lastRequsetSizeInBytes + ", _lastResponseSizeInBytes=" + _lastResponseSizeInBytes
-          + ", _lastSendResponseLatency=" + _lastSendResponseLatency + ", _lastProcessingLatency="
-          + _lastProcessingLatency + ", _state=" + _state + "]";
+    /**
+     * Timings of one request, from the time it is read until its response is sent.
+     */
+    private class ServedRequest implements ChannelFutureListener {
+      private final long _requestStartTime = System.currentTimeMillis();
+      private final long _requestId;
+      private final long _requestSizeInBytes;
+      private long _responseSizeInBytes;
+      private TimerContext _processingLatency;
+      private TimerContext _sendResponseLatency;
+
+      ServedRequest(long requestId, long requestSizeInBytes) {
+        _requestId = requestId;
+        _requestSizeInBytes = requestSizeInBytes;
+      }
+
+      byte[] process(ByteBuf request) {
+        _processingLatency = MetricsHelper.startTimer();
+        byte[] response = _handler.processRequest(request);
+        _processingLatency.stop();
+        return response;
+      }
+
+      void sendResponse(ChannelHandlerContext ctx, byte[] response) {
+        _responseSizeInBytes = response.length;
+        ByteBuf responseBuf = _requestIdFraming
+            ? Unpooled.wrappedBuffer(Unpooled.copyLong(_requestId), Unpooled.wrappedBuffer(response))
+            : Unpooled.wrappedBuffer(response);
+        _sendResponseLatency = MetricsHelper.startTimer();
+        ChannelFuture f = ctx.writeAndFlush(responseBuf);
+        _state = State.RESPONSE_WRITTEN;
+        f.addListener(this);
+      }
+
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        LOGGER.debug("Response has been sent !!");
+        _sendResponseLatency.stop();
+        _metric.addServingStats(_requestSizeInBytes, _responseSizeInBytes, 1L, false,
+            _processingLatency.getLatencyMs(), _sendResponseLatency.getLatencyMs());
+        long totalQueryTime = System.currentTimeMillis() - _requestStartTime;
+        if (totalQueryTime > _defaultLargeQueryLatencyMs) {
+          LOGGER.info("Trace Info: request handler processing time : {}, send response latency: {}, total time to handle request: {}", _processingLatency.getLatencyMs(),
+              _sendResponseLatency.getLatencyMs(), totalQueryTime);
+        }
+        _state = State.RESPONSE_SENT;
+      }
     }
   }
 
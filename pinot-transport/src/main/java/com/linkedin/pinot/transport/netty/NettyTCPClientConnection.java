@@ -17,6 +17,7 @@ package com.linkedin.pinot.transport.netty;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -24,6 +25,7 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
@@ -34,31 +36,41 @@ import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
 
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 
 import com.linkedin.pinot.common.metrics.MetricsHelper;
 import com.linkedin.pinot.common.metrics.MetricsHelper.TimerContext;
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.Callback;
+import com.linkedin.pinot.transport.common.NoneType;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
 
 
 /**
  * TCP based Netty Client Connection.
  *
- * Request and Response have the following format
+ * Request and Response have the following format, the request id is only present with request id framing
  *
  * 0                                                         31
  * ------------------------------------------------------------
  * |                  Length ( 32 bits)                       |
+ * |           Request Id ( 64 bits, optional)                |
+ * |                                                          |
  * |                 Payload (Request/Response)               |
  * |                    ...............                       |
  * |                    ...............                       |
  * |                    ...............                       |
- * |                    ...............                       |
  * ------------------------------------------------------------
+ *
+ * With request id framing, the server echoes the request id in the response, so several requests can be outstanding
+ * on the connection and their responses can come back in any order. The server must be configured with the same
+ * framing. Without it, which is the default, a single request can be outstanding at a time.
  */
 public class NettyTCPClientConnection extends NettyClientConnection  {
   /**
@@ -69,36 +81,38 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
   private NettyClientMetrics _clientMetric = null;
 
   /**
-   * Handle to the future corresponding to the pending request
+   * Requests waiting for their response, by request id
    */
-  private final AtomicReference<ResponseFuture> _outstandingFuture;
+  private final ConcurrentMap<Long, OutstandingRequest> _outstandingRequests;
 
   // Connection Id
   private final long _connId;
 
-  private long _lastRequsetSizeInBytes;
-  private long _lastResponseSizeInBytes;
-  private TimerContext _lastSendRequestLatency;
-  private TimerContext _lastResponseLatency;
-
-  // Timeout object corresponding to the outstanding request
-  private volatile Timeout _lastRequestTimeout;
-  private volatile long _lastRequestTimeoutMS;
-  private volatile long _lastRequestId;
-  private volatile Throwable _lastError;
-
   // COnnection Id generator
   private static final AtomicLong _connIdGen = new AtomicLong(0);
 
   // Channel Setting notification
   private final CountDownLatch _channelSet = new CountDownLatch(1);
 
+  // Whether the requests and responses carry the request id
+  private final boolean _requestIdFraming;
+
   public NettyTCPClientConnection(ServerInstance server, EventLoopGroup eventGroup, Timer timer,
       NettyClientMetrics metric) {
+    this(server, eventGroup, timer, metric, false);
+  }
+
+  /**
+   * @param requestIdFraming true to send the request id in front of the requests, which the server must echo in front
+   *                         of the responses
+   */
+  public NettyTCPClientConnection(ServerInstance server, EventLoopGroup eventGroup, Timer timer,
+      NettyClientMetrics metric, boolean requestIdFraming) {
     super(server, eventGroup, timer);
     _handler = new NettyClientConnectionHandler();
-    _outstandingFuture = new AtomicReference<ResponseFuture>();
+    _outstandingRequests = new ConcurrentHashMap<Long, OutstandingRequest>();
     _clientMetric = metric;
+    _requestIdFraming = requestIdFraming;
     _connId = _connIdGen.incrementAndGet();
     init();
   }
@@ -145,6 +159,32 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
     return false;
   }
 
+  /**
+   * Opens the connection without blocking the calling thread. The callback is notified on an I/O thread once the
+   * connection can send requests, or with the error if connecting fails or takes longer than the timeout.
+   */
+  public void connectAsync(long timeoutMs, final Callback<NoneType> callback) {
+    checkTransition(State.CONNECTED);
+    final TimerContext t = MetricsHelper.startTimer();
+    _bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) Math.min(timeoutMs, Integer.MAX_VALUE));
+    _bootstrap.connect(_server.getHostname(), _server.getPort()).addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) {
+        if (!future.isSuccess()) {
+          LOGGER.error("Got exception when connecting to server :" + _server, future.cause());
+          callback.onError(future.cause());
+          return;
+        }
+        // The connect future completes before channelActive() runs, the channel is taken from the future
+        t.stop();
+        _channel = future.channel();
+        _connState = State.CONNECTED;
+        _clientMetric.addConnectStats(t.getLatencyMs());
+        callback.onSuccess(null);
+      }
+    });
+  }
+
   /**
    * Called by the channel initializer to set the underlying channel reference.
    * @param channel
@@ -155,86 +195,130 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
     LOGGER.info("Setting channel for connection id (" + _connId + "). Is channel null ? " + (null == _channel));
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * The request id must not be outstanding on this connection already. Without request id framing, no other request
+   * can be outstanding on the connection.
+   */
   @Override
-  public ResponseFuture sendRequest(ByteBuf serializedRequest, long requestId, long timeoutMS) {
-    checkTransition(State.REQUEST_WRITTEN);
-
-    //Metrics update
-    _lastRequsetSizeInBytes = serializedRequest.readableBytes();
-    _lastSendRequestLatency = MetricsHelper.startTimer();
-    _lastResponseLatency = MetricsHelper.startTimer();
+  public ResponseFuture sendRequest(ByteBuf serializedRequest, long requestId, long timeoutMS,
+      Callback<NoneType> requestCallback) {
+    if (_connState != State.CONNECTED) {
+      throw new IllegalStateException("Cannot send request (" + requestId + ") to server " + _server
+          + " on a connection in state " + _connState);
+    }
 
-    _outstandingFuture.set(new ResponseFuture(_server, "Response Future for request " + requestId + " to server " + _server));
-    _lastRequestTimeoutMS = timeoutMS;
-    _lastRequestId = requestId;
-    _lastError = null;
+    OutstandingRequest request =
+        new OutstandingRequest(requestId, serializedRequest.readableBytes(), requestCallback);
+    if (!_requestIdFraming) {
+      synchronized (_outstandingRequests) {
+        if (!_outstandingRequests.isEmpty()) {
+          throw new IllegalStateException("Cannot send request (" + requestId + ") to server " + _server
+              + " while another request is outstanding on a connection without request id framing");
+        }
+        _outstandingRequests.put(requestId, request);
+      }
+    } else if (null != _outstandingRequests.putIfAbsent(requestId, request)) {
+      throw new IllegalStateException("Request (" + requestId + ") is already outstanding on the connection to server "
+          + _server);
+    }
 
     /**
      * Start the timer before sending the request.
      * That way, both cases of timeout (request writing to send-buffer and response timeout)
      * can be treated as single timeout condition and handled in the same way
      */
-    _lastRequestTimeout = _timer.newTimeout(new ReadTimeoutHandler(), _lastRequestTimeoutMS, TimeUnit.MILLISECONDS);
-    ChannelFuture f = null;
+    if (timeoutMS >= 0) {
+      request._timeout = _timer.newTimeout(new ReadTimeoutHandler(request), timeoutMS, TimeUnit.MILLISECONDS);
+    }
     try {
-
-      _connState = State.REQUEST_WRITTEN;
-      f = _channel.writeAndFlush(serializedRequest);
-      /**
-       * IMPORTANT:
-       * There could be 2 netty threads one running the below code and another for response/error handling.
-       * simultaneously. Netty does not provide guarantees around this. So in worst case, the thread that
-       * is flushing request could block for sometime and gets executed after the response is obtained.
-       * We should checkin the connection to the pool only after all outstanding callbacks are complete.
-       * We do this by trancking the connection state. If we detect that response/error is already obtained,
-       * we then do the process of checking back the connection to the pool or destroying (if error)
-       */
-      synchronized(_handler)
-      {
-        _lastSendRequestLatency.stop();
-
-        if ( _connState == State.REQUEST_WRITTEN)
-        {
-          _connState = State.REQUEST_SENT;
-        } else {
-          LOGGER.info("Response/Error already arrived !! Checking-in/destroying the connection");
-          if ( _connState == State.GOT_RESPONSE)
-          {
-            if (null != _requestCallback) {
-              _requestCallback.onSuccess(null);
-            }
-          } else if ( _connState == State.ERROR){
-            if (null != _requestCallback) {
-              _requestCallback.onError(_lastError);
-            }
-          } else {
-            throw new IllegalStateException("Invalid connection State (" + _connState
-                                             + ") when sending request to  server " + _server);
-          }
-        }
+      if (_requestIdFraming) {
+        _channel.writeAndFlush(Unpooled.wrappedBuffer(Unpooled.copyLong(requestId), serializedRequest));
+      } else {
+        _channel.writeAndFlush(serializedRequest);
       }
+      request._sendRequestLatency.stop();
     } catch (Exception e) {
       LOGGER.error("Got exception sending the request to server (" + _server + ") id :" + _connId, e);
+      request._sendRequestLatency.stop();
 
       /**
        * This might not be needed as if we get an exception, channelException() or channelClosed() would
        * have been called which would have set error response but defensively setting. Need to check if
        * this is needed
        */
-      _outstandingFuture.get().onError(e);
+      completeWithError(request, e);
+    }
 
-      if (null != _requestCallback) {
-        _requestCallback.onError(e);
-      }
-      _lastSendRequestLatency.stop();
+    /**
+     * IMPORTANT:
+     * There could be 2 netty threads one running the above code and another for response/error handling.
+     * simultaneously. Netty does not provide guarantees around this. So in worst case, the thread that
+     * is flushing request could block for sometime and gets executed after the response is obtained.
+     * We should checkin the connection to the pool only after all outstanding callbacks are complete, so the
+     * request callback is only called once the request is both sent and completed.
+     */
+    request.completeStep();
+    return request._responseFuture;
+  }
+
+  /**
+   * Completes the request with the error, unless it already completed.
+   */
+  private void completeWithError(OutstandingRequest request, Throwable error) {
+    if (!_outstandingRequests.remove(request._requestId, request)) {
+      return;
     }
-    return _outstandingFuture.get();
+    request.cancelTimeout();
+    request._responseLatency.stop();
+    request._error = error;
+    request._responseFuture.onError(error);
+    _clientMetric.addRequestResponseStats(request._requestSizeInBytes, 1, 0, true,
+        request._sendRequestLatency.getLatencyMs(), request._responseLatency.getLatencyMs());
+    request.completeStep();
   }
 
-  protected void cancelLastRequestTimeout() {
-    if (null != _lastRequestTimeout) {
-      _lastRequestTimeout.cancel(); //If task is already executed, no side-effect
-      _lastRequestTimeout = null;
+  /**
+   * A request sent on the connection, until its response or error is received.
+   */
+  private class OutstandingRequest {
+    private final long _requestId;
+    private final long _requestSizeInBytes;
+    private final ResponseFuture _responseFuture;
+    private final TimerContext _sendRequestLatency = MetricsHelper.startTimer();
+    private final TimerContext _responseLatency = MetricsHelper.startTimer();
+    // Callback of this request, the connection callback can change while the request is outstanding
+    private final Callback<NoneType> _requestCallback;
+    // Timeout object corresponding to the request
+    private volatile Timeout _timeout;
+    private volatile Throwable _error;
+    // Sending the request and completing it are the two steps, the last one notifies the request callback
+    private final AtomicInteger _numRemainingSteps = new AtomicInteger(2);
+
+    OutstandingRequest(long requestId, long requestSizeInBytes, Callback<NoneType> requestCallback) {
+      _requestId = requestId;
+      _requestSizeInBytes = requestSizeInBytes;
+      _requestCallback = requestCallback;
+      _responseFuture =
+          new ResponseFuture(_server, "Response Future for request " + requestId + " to server " + _server);
+    }
+
+    void cancelTimeout() {
+      Timeout timeout = _timeout;
+      if (null != timeout) {
+        timeout.cancel(); //If task is already executed, no side-effect
+      }
+    }
+
+    void completeStep() {
+      if (_numRemainingSteps.decrementAndGet() == 0 && null != _requestCallback) {
+        if (null == _error) {
+          _requestCallback.onSuccess(null);
+        } else {
+          _requestCallback.onError(_error);
+        }
+      }
     }
   }
 
@@ -258,37 +342,33 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
     }
 
     @Override
-    public synchronized void channelRead(ChannelHandlerContext ctx, Object msg) {
-
-      //Cancel outstanding timer
-      cancelLastRequestTimeout();
-
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
       ByteBuf result = (ByteBuf) msg;
-      //checkTransition(State.GOT_RESPONSE);
-      _lastResponseSizeInBytes = result.readableBytes();
-      _lastResponseLatency.stop();
-
-      State prevState = _connState;
-      _connState = State.GOT_RESPONSE;
-
-      _outstandingFuture.get().onSuccess(result);
-      _clientMetric.addRequestResponseStats(_lastRequsetSizeInBytes, 1, _lastResponseSizeInBytes, false,
-          _lastSendRequestLatency.getLatencyMs(), _lastResponseLatency.getLatencyMs());
-
-      /**
-       * IMPORTANT:
-       * There could be 2 netty threads one running the sendRequest() code (the ones after flush()
-       * and another for response/error handling (this one)
-       * simultaneously. Netty does not provide guarantees around this. So in worst case, the thread that
-       * is flushing request could block for sometime and gets executed after the response is obtained.
-       * We should checkin the connection to the pool only after all outstanding callbacks are complete.
-       * We do this by trancking the connection state. If we detect that response/error arrives before sendRequest
-       * completes, we will let the sendRequest to checkin/destroy the connection.
-       */
-      if ((null != _requestCallback) && (prevState == State.REQUEST_SENT)) {
-        _requestCallback.onSuccess(null);
+      long requestId;
+      if (_requestIdFraming) {
+        requestId = result.readLong();
+      } else {
+        // The response is the one of the single outstanding request
+        Iterator<Long> requestIds = _outstandingRequests.keySet().iterator();
+        requestId = requestIds.hasNext() ? requestIds.next() : -1L;
+      }
+      OutstandingRequest request = _outstandingRequests.get(requestId);
+      if ((null == request) || !_outstandingRequests.remove(requestId, request)) {
+        LOGGER.warn("Discarding response for request ({}) from server {}, which is no longer outstanding", requestId,
+            _server);
+        result.release();
+        return;
       }
 
+      //Cancel outstanding timer
+      request.cancelTimeout();
+      long responseSizeInBytes = result.readableBytes();
+      request._responseLatency.stop();
+
+      request._responseFuture.onSuccess(result);
+      _clientMetric.addRequestResponseStats(request._requestSizeInBytes, 1, responseSizeInBytes, false,
+          request._sendRequestLatency.getLatencyMs(), request._responseLatency.getLatencyMs());
+      request.completeStep();
     }
 
     @Override
@@ -301,43 +381,16 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
     {
       if ( _connState != State.ERROR)
       {
-        //Cancel outstanding timer
-        cancelLastRequestTimeout();
-
-        if ( null != _lastResponseLatency)
-          _lastResponseLatency.stop();
-
         //LOG.error("Got exception when processing the channel. Closing the channel", cause);
         checkTransition(State.ERROR);
+        _connState = State.ERROR;
 
-        if ( null != _outstandingFuture.get())
-        {
-          _outstandingFuture.get().onError(cause);
+        // No response can arrive anymore, fail all the outstanding requests
+        for (OutstandingRequest request : _outstandingRequests.values()) {
+          completeWithError(request, cause);
         }
-        _clientMetric.addRequestResponseStats(_lastRequsetSizeInBytes, 1, _lastResponseSizeInBytes, true,
-                (null == _lastSendRequestLatency) ? 0 : _lastSendRequestLatency.getLatencyMs(),
-                (null == _lastSendRequestLatency ) ? 0 :_lastResponseLatency.getLatencyMs());
-
-
-        /**
-         * IMPORTANT:
-         * There could be 2 netty threads one running the sendRequest() code (the ones after flush()
-         * and another for response/error handling (this one)
-         * simultaneously. Netty does not provide guarantees around this. So in worst case, the thread that
-         * is flushing request could block for sometime and gets executed after the response is obtained.
-         * We should checkin the connection to the pool only after all outstanding callbacks are complete.
-         * We do this by trancking the connection state. If we detect that response/error arrives before sendRequest
-         * completes, we will let the sendRequest to checkin/destroy the connection.
-         */
-        if ((null != _requestCallback) && (_connState == State.REQUEST_SENT)) {
-          LOGGER.info("Discarding the connection !!");
-          _requestCallback.onError(cause);
-        }
-
-        _connState = State.ERROR;
 
         ctx.close();
-
       }
     }
   }
@@ -376,20 +429,39 @@ public class NettyTCPClientConnection extends NettyClientConnection  {
   }
 
   /**
-   * Timer task responsible for closing the connection on timeout
+   * @return the number of requests waiting for their response on this connection
+   */
+  public int getNumOutstandingRequests() {
+    return _outstandingRequests.size();
+  }
+
+  /**
+   * Timer task responsible for failing a request on timeout. With request id framing the other requests of the
+   * connection are not affected, otherwise the channel is closed as its late response could not be told apart from the
+   * response of the next request.
    *
    */
   public class ReadTimeoutHandler implements TimerTask {
+    private final OutstandingRequest _request;
+
+    private ReadTimeoutHandler(OutstandingRequest request) {
+      _request = request;
+    }
 
     @Override
     public void run(Timeout timeout) throws Exception {
-      String message =
-          "Request (" + _lastRequestId + ") to server " + _server
-              + " timed-out waiting for response. Closing the channel !!";
-      LOGGER.error(message);
-      Exception e = new Exception(message);
-      _outstandingFuture.get().onError(e);
-      close();
+      if (_requestIdFraming) {
+        String message =
+            "Request (" + _request._requestId + ") to server " + _server + " timed-out waiting for response !!";
+        LOGGER.error(message);
+        completeWithError(_request, new Exception(message));
+      } else {
+        String message = "Request (" + _request._requestId + ") to server " + _server
+            + " timed-out waiting for response. Closing the channel !!";
+        LOGGER.error(message);
+        completeWithError(_request, new Exception(message));
+        close();
+      }
     }
   }
 }
@@ -23,6 +23,7 @@ import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
 
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.linkedin.pinot.common.Utils;
 import com.linkedin.pinot.common.metrics.AggregatedMetricsRegistry;
 import com.linkedin.pinot.transport.metrics.AggregatedTransportServerMetrics;
@@ -42,6 +43,17 @@ public class NettyTCPServer extends NettyServer {
     super(port, handlerFactory, registry, defaultLargeQueryLatencyMs);
   }
 
+  public NettyTCPServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry,
+      long defaultLargeQueryLatencyMs, int numIoThreads, int numRequestThreads) {
+    super(port, handlerFactory, registry, defaultLargeQueryLatencyMs, numIoThreads, numRequestThreads);
+  }
+
+  public NettyTCPServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry,
+      long defaultLargeQueryLatencyMs, int numIoThreads, int numRequestThreads, boolean requestIdFraming) {
+    super(port, handlerFactory, registry, defaultLargeQueryLatencyMs, numIoThreads, numRequestThreads,
+        requestIdFraming);
+  }
+
   public NettyTCPServer(int port, RequestHandlerFactory handlerFactory, AggregatedMetricsRegistry registry) {
     this(port, handlerFactory, registry, 100);
   }
@@ -55,7 +67,8 @@ public class NettyTCPServer extends NettyServer {
   }
 
   protected ChannelInitializer<SocketChannel> createChannelInitializer() {
-    return new ServerChannelInitializer(_handlerFactory, _metricsRegistry, _metrics, _defaultLargeQueryLatencyMs);
+    return new ServerChannelInitializer(_handlerFactory, _metricsRegistry, _metrics, _defaultLargeQueryLatencyMs,
+        _requestExecutor, _requestIdFraming);
   }
 
   /**
@@ -73,13 +86,29 @@ public class NettyTCPServer extends NettyServer {
     private final MetricsRegistry _registry;
     private final AggregatedTransportServerMetrics _globalMetrics;
     private final long _defaultLargeQueryLatencyMs;
+    private final ListeningExecutorService _requestExecutor;
+    private final boolean _requestIdFraming;
 
     public ServerChannelInitializer(RequestHandlerFactory handlerFactory, MetricsRegistry registry,
-        AggregatedTransportServerMetrics globalMetrics, long defaultLargeQueryLatencyMs) {
+        AggregatedTransportServerMetrics globalMetrics, long defaultLargeQueryLatencyMs,
+        ListeningExecutorService requestExecutor, boolean requestIdFraming) {
       _handlerFactory = handlerFactory;
       _registry = registry;
       _globalMetrics = globalMetrics;
       _defaultLargeQueryLatencyMs = defaultLargeQueryLatencyMs;
+      _requestExecutor = requestExecutor;
+      _requestIdFraming = requestIdFraming;
+    }
+
+    public ServerChannelInitializer(RequestHandlerFactory handlerFactory, MetricsRegistry registry,
+        AggregatedTransportServerMetrics globalMetrics, long defaultLargeQueryLatencyMs,
+        ListeningExecutorService requestExecutor) {
+      this(handlerFactory, registry, globalMetrics, defaultLargeQueryLatencyMs, requestExecutor, false);
+    }
+
+    public ServerChannelInitializer(RequestHandlerFactory handlerFactory, MetricsRegistry registry,
+        AggregatedTransportServerMetrics globalMetrics, long defaultLargeQueryLatencyMs) {
+      this(handlerFactory, registry, globalMetrics, defaultLargeQueryLatencyMs, null);
     }
 
     public ServerChannelInitializer(RequestHandlerFactory handlerFactory, MetricsRegistry registry,
@@ -101,8 +130,8 @@ public class NettyTCPServer extends NettyServer {
         _globalMetrics.addTransportClientMetrics(serverMetric);
       }
 
-      ch.pipeline().addLast("request_handler",
-          new NettyChannelInboundHandler(_handlerFactory.createNewRequestHandler(), serverMetric, _defaultLargeQueryLatencyMs));
+      ch.pipeline().addLast("request_handler", new NettyChannelInboundHandler(_handlerFactory.createNewRequestHandler(),
+          serverMetric, _defaultLargeQueryLatencyMs, _requestExecutor, _requestIdFraming));
     }
   }
 }
@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.requestHandler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.HashedWheelTimer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.linkedin.pinot.common.exception.QueryException;
+import com.linkedin.pinot.common.metrics.BrokerMetrics;
+import com.linkedin.pinot.common.query.ReduceService;
+import com.linkedin.pinot.common.request.BrokerRequest;
+import com.linkedin.pinot.common.request.QuerySource;
+import com.linkedin.pinot.common.response.BrokerResponse;
+import com.linkedin.pinot.common.response.InstanceResponse;
+import com.linkedin.pinot.common.response.ProcessingException;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.DataTable;
+import com.linkedin.pinot.routing.RoutingTable;
+import com.linkedin.pinot.routing.RoutingTableLookupRequest;
+import com.linkedin.pinot.transport.common.AsyncResponseFuture;
+import com.linkedin.pinot.transport.common.CompositeFuture;
+import com.linkedin.pinot.transport.common.CompositeFuture.GatherModeOnError;
+import com.linkedin.pinot.transport.common.KeyedFuture;
+import com.linkedin.pinot.transport.common.SegmentId;
+import com.linkedin.pinot.transport.common.SegmentIdSet;
+import com.linkedin.pinot.transport.scattergather.ScatterGather;
+import com.linkedin.pinot.transport.scattergather.ScatterGatherRequest;
+import com.yammer.metrics.core.MetricsRegistry;
+
+
+public class BrokerRequestHandlerTest {
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final long BROKER_TIMEOUT_MS = 500L;
+
+  private final ServerInstance _respondingServer = new ServerInstance("localhost", 9001);
+  private final ServerInstance _silentServer = new ServerInstance("localhost", 9002);
+
+  private HashedWheelTimer _timer;
+  private ExecutorService _reduceExecutor;
+
+  @BeforeClass
+  public void setUp() {
+    _timer = new HashedWheelTimer();
+    _reduceExecutor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _timer.stop();
+    _reduceExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testAllServersResponding() throws Exception {
+    TestScatterGather scatterGather = new TestScatterGather(false);
+    TestReduceService reduceService = new TestReduceService();
+    BrokerRequestHandler handler = createHandler(scatterGather, reduceService);
+
+    ListenableFuture<BrokerResponse> future = handler.processBrokerRequestAsync(createBrokerRequest(), null);
+    BrokerResponse response = future.get(BROKER_TIMEOUT_MS / 2, TimeUnit.MILLISECONDS);
+
+    Assert.assertTrue(getErrorCodes(response).isEmpty());
+    Assert.assertEquals(reduceService._reducedServers.size(), 2);
+    Assert.assertFalse(scatterGather._response.isCancelled());
+  }
+
+  @Test
+  public void testServerNotRespondingTimesOut() throws Exception {
+    TestScatterGather scatterGather = new TestScatterGather(true);
+    TestReduceService reduceService = new TestReduceService();
+    BrokerRequestHandler handler = createHandler(scatterGather, reduceService);
+
+    long startTime = System.currentTimeMillis();
+    ListenableFuture<BrokerResponse> future = handler.processBrokerRequestAsync(createBrokerRequest(), null);
+    // The timer completes the broker response, the server that does not respond is not waited for
+    BrokerResponse response = future.get(BROKER_TIMEOUT_MS * 4, TimeUnit.MILLISECONDS);
+    long elapsedTime = System.currentTimeMillis() - startTime;
+
+    Assert.assertTrue(elapsedTime >= BROKER_TIMEOUT_MS, "Responded before the broker timeout: " + elapsedTime);
+    Assert.assertTrue(getErrorCodes(response).contains(QueryException.BROKER_TIMEOUT_ERROR.getErrorCode()));
+
+    // The responses gathered before the timeout are reduced
+    Assert.assertEquals(reduceService._reducedServers.size(), 1);
+    Assert.assertEquals(reduceService._reducedServers.get(0).getHostname(), _respondingServer.getHostname());
+    Assert.assertEquals(reduceService._reducedServers.get(0).getPort(), _respondingServer.getPort());
+
+    // The pending scatter-gather and the request to the silent server are cancelled
+    Assert.assertTrue(scatterGather._response.isCancelled());
+    Assert.assertTrue(scatterGather._serverResponses.get(_silentServer).isCancelled());
+    Assert.assertFalse(scatterGather._serverResponses.get(_respondingServer).isCancelled());
+  }
+
+  private BrokerRequestHandler createHandler(ScatterGather scatterGather, ReduceService reduceService) {
+    return new BrokerRequestHandler(new TestRoutingTable(), null, scatterGather, reduceService,
+        new BrokerMetrics(new MetricsRegistry()), BROKER_TIMEOUT_MS, _reduceExecutor, _timer);
+  }
+
+  private static BrokerRequest createBrokerRequest() {
+    BrokerRequest brokerRequest = new BrokerRequest();
+    QuerySource querySource = new QuerySource();
+    querySource.setTableName(TABLE_NAME);
+    brokerRequest.setQuerySource(querySource);
+    return brokerRequest;
+  }
+
+  private static Set<Integer> getErrorCodes(BrokerResponse response) {
+    Set<Integer> errorCodes = new HashSet<Integer>();
+    if (response.getExceptions() != null) {
+      for (ProcessingException exception : response.getExceptions()) {
+        errorCodes.add(exception.getErrorCode());
+      }
+    }
+    return errorCodes;
+  }
+
+  private class TestRoutingTable implements RoutingTable {
+    @Override
+    public Map<ServerInstance, SegmentIdSet> findServers(RoutingTableLookupRequest request) {
+      if (!TABLE_NAME.equals(request.getTableName())) {
+        return null;
+      }
+      Map<ServerInstance, SegmentIdSet> segmentServices = new HashMap<ServerInstance, SegmentIdSet>();
+      segmentServices.put(_respondingServer, createSegmentIdSet("segment0"));
+      segmentServices.put(_silentServer, createSegmentIdSet("segment1"));
+      return segmentServices;
+    }
+
+    private SegmentIdSet createSegmentIdSet(String segmentName) {
+      SegmentIdSet segmentIdSet = new SegmentIdSet();
+      segmentIdSet.addSegment(new SegmentId(segmentName));
+      return segmentIdSet;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public String dumpSnapShot() throws Exception {
+      return null;
+    }
+  }
+
+  /**
+   * Answers the requests on the calling thread, except the one to the silent server when it does not respond.
+   */
+  private class TestScatterGather implements ScatterGather {
+    private final boolean _isSilentServerNotResponding;
+    private final Map<ServerInstance, AsyncResponseFuture<ServerInstance, ByteBuf>> _serverResponses =
+        new HashMap<ServerInstance, AsyncResponseFuture<ServerInstance, ByteBuf>>();
+    private volatile CompositeFuture<ServerInstance, ByteBuf> _response;
+
+    private TestScatterGather(boolean isSilentServerNotResponding) {
+      _isSilentServerNotResponding = isSilentServerNotResponding;
+    }
+
+    @Override
+    public CompositeFuture<ServerInstance, ByteBuf> scatterGather(ScatterGatherRequest scatterRequest)
+        throws InterruptedException {
+      List<KeyedFuture<ServerInstance, ByteBuf>> futures = new ArrayList<KeyedFuture<ServerInstance, ByteBuf>>();
+      for (ServerInstance server : scatterRequest.getSegmentsServicesMap().keySet()) {
+        AsyncResponseFuture<ServerInstance, ByteBuf> future =
+            new AsyncResponseFuture<ServerInstance, ByteBuf>(server, "Request to " + server);
+        _serverResponses.put(server, future);
+        futures.add(future);
+      }
+      _response = new CompositeFuture<ServerInstance, ByteBuf>("scatterGather", GatherModeOnError.AND);
+      _response.start(futures);
+
+      for (Map.Entry<ServerInstance, AsyncResponseFuture<ServerInstance, ByteBuf>> entry : _serverResponses
+          .entrySet()) {
+        if (!_isSilentServerNotResponding || !_silentServer.equals(entry.getKey())) {
+          entry.getValue().onSuccess(createDataTable());
+        }
+      }
+      return _response;
+    }
+
+    private ByteBuf createDataTable() {
+      Map<String, String> metadata = new HashMap<String, String>();
+      metadata.put("numDocsScanned", "1");
+      try {
+        return Unpooled.wrappedBuffer(new DataTable(metadata).toBytes());
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private static class TestReduceService implements ReduceService {
+    private volatile List<ServerInstance> _reducedServers;
+
+    @Override
+    public BrokerResponse reduce(BrokerRequest brokerRequest,
+        Map<ServerInstance, InstanceResponse> instanceResponseMap) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BrokerResponse reduceOnDataTable(BrokerRequest brokerRequest,
+        Map<ServerInstance, DataTable> instanceResponseMap) {
+      _reducedServers = new ArrayList<ServerInstance>(instanceResponseMap.keySet());
+      return new BrokerResponse();
+    }
+  }
+}
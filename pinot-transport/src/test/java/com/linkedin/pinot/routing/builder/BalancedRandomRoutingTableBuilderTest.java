@@ -17,8 +17,10 @@ package com.linkedin.pinot.routing.builder;
 
 import com.linkedin.pinot.routing.ServerToSegmentSetMap;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import org.apache.helix.model.ExternalView;
 import org.apache.helix.model.InstanceConfig;
 import org.testng.Assert;
@@ -64,4 +66,64 @@ public class BalancedRandomRoutingTableBuilderTest {
 
     Assert.fail("All routing tables are equal!");
   }
+
+  @Test
+  public void testIncrementalUpdate() {
+    BalancedRandomRoutingTableBuilder routingTableBuilder = new BalancedRandomRoutingTableBuilder();
+    List<InstanceConfig> instanceConfigList = new ArrayList<>();
+    ExternalView externalView = new ExternalView("dummy");
+    for (int i = 0; i < 30; i++) {
+      externalView.setState("segment_" + i, "Server_1.2.3.4_1234", "ONLINE");
+      externalView.setState("segment_" + i, "Server_1.2.3.5_2345", "ONLINE");
+    }
+    List<ServerToSegmentSetMap> routingTables =
+        routingTableBuilder.computeRoutingTableFromExternalView("dummy", externalView, instanceConfigList);
+    for (ServerToSegmentSetMap routingTable : routingTables) {
+      assertBalanced(routingTable, 30);
+    }
+
+    // Adding a segment keeps the other segments where they were
+    externalView.setState("segment_30", "Server_1.2.3.4_1234", "ONLINE");
+    externalView.setState("segment_30", "Server_1.2.3.5_2345", "ONLINE");
+    List<ServerToSegmentSetMap> updatedRoutingTables =
+        routingTableBuilder.computeRoutingTableFromExternalView("dummy", externalView, instanceConfigList);
+    for (int i = 0; i < routingTables.size(); i++) {
+      for (String server : routingTables.get(i).getServerSet()) {
+        Set<String> updatedSegments = new HashSet<>(updatedRoutingTables.get(i).getSegmentSet(server));
+        updatedSegments.remove("segment_30");
+        Assert.assertEquals(updatedSegments, routingTables.get(i).getSegmentSet(server));
+      }
+      assertBalanced(updatedRoutingTables.get(i), 31);
+    }
+
+    // Removing a segment and taking a server offline moves only the segments of that server
+    externalView.getRecord().getMapFields().remove("segment_0");
+    for (int i = 1; i <= 30; i++) {
+      externalView.setState("segment_" + i, "Server_1.2.3.5_2345", "OFFLINE");
+    }
+    updatedRoutingTables =
+        routingTableBuilder.computeRoutingTableFromExternalView("dummy", externalView, instanceConfigList);
+    for (ServerToSegmentSetMap routingTable : updatedRoutingTables) {
+      Assert.assertEquals(routingTable.getServerSet().size(), 1);
+      Assert.assertEquals(routingTable.getSegmentSet("Server_1.2.3.4_1234").size(), 30);
+    }
+
+    // Bringing the server back evens out the load again
+    for (int i = 1; i <= 30; i++) {
+      externalView.setState("segment_" + i, "Server_1.2.3.5_2345", "ONLINE");
+    }
+    updatedRoutingTables =
+        routingTableBuilder.computeRoutingTableFromExternalView("dummy", externalView, instanceConfigList);
+    for (ServerToSegmentSetMap routingTable : updatedRoutingTables) {
+      assertBalanced(routingTable, 30);
+    }
+  }
+
+  private void assertBalanced(ServerToSegmentSetMap routingTable, int numSegments) {
+    Assert.assertEquals(routingTable.getServerSet().size(), 2);
+    int numSegmentsOnFirstServer = routingTable.getSegmentSet("Server_1.2.3.4_1234").size();
+    int numSegmentsOnSecondServer = routingTable.getSegmentSet("Server_1.2.3.5_2345").size();
+    Assert.assertEquals(numSegmentsOnFirstServer + numSegmentsOnSecondServer, numSegments);
+    Assert.assertTrue(Math.abs(numSegmentsOnFirstServer - numSegmentsOnSecondServer) <= 1);
+  }
 }
@@ -584,6 +584,26 @@ public class CompositeFutureTest {
     }
   }
 
+  @Test
+  /**
+   * Composite future without any underlying future, as when no request could be sent. It completes on start.
+   * @throws Exception
+   */
+  public void testEmptyComposite() throws Exception {
+    CompositeFuture<String, String> compositeFuture =
+        new CompositeFuture<String, String>("test", GatherModeOnError.SHORTCIRCUIT_AND);
+    ResponseCompositeFutureClientRunnerListener listener =
+        new ResponseCompositeFutureClientRunnerListener(compositeFuture);
+    compositeFuture.addListener(listener, null);
+    compositeFuture.start(null);
+
+    Assert.assertTrue(compositeFuture.isDone(), "Composite Is Done ? ");
+    Assert.assertFalse(compositeFuture.isCancelled(), "Composite Cancelled ?");
+    Assert.assertTrue(compositeFuture.get().isEmpty(), "Composite Message");
+    Assert.assertTrue(listener.isDone(), "Listener Is Done ? ");
+    Assert.assertTrue(listener.getMessage().isEmpty(), "listener Message");
+  }
+
   /**
    * Same class used both as a listener and the one that blocks on get().
    */
@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2014-2015 LinkedIn Corp. (pinot-core@linkedin.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.linkedin.pinot.transport.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.helix.ZNRecord;
+import org.apache.helix.manager.zk.ZNRecordSerializer;
+import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.manager.zk.ZkClient;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.linkedin.pinot.common.config.AbstractTableConfig;
+import com.linkedin.pinot.common.data.FieldSpec.DataType;
+import com.linkedin.pinot.common.metadata.ZKMetadataProvider;
+import com.linkedin.pinot.common.metadata.segment.OfflineSegmentZKMetadata;
+import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.common.utils.CommonConstants.Segment.SegmentType;
+import com.linkedin.pinot.common.utils.StringUtil;
+import com.linkedin.pinot.common.utils.ZkStarter;
+import com.linkedin.pinot.pql.parsers.Pql2Compiler;
+import com.linkedin.pinot.routing.SegmentZKMetadataBasedPruner;
+
+
+public class SegmentZKMetadataBasedPrunerTest {
+  private static final String TABLE_NAME = "testTable_OFFLINE";
+  private static final ServerInstance SERVER_0 = new ServerInstance("localhost", 8000);
+  private static final ServerInstance SERVER_1 = new ServerInstance("localhost", 8001);
+
+  private ZkClient _zkClient;
+  private ZkHelixPropertyStore<ZNRecord> _propertyStore;
+
+  @BeforeTest
+  public void beforeTest() throws Exception {
+    ZkStarter.startLocalZkServer();
+
+    _zkClient =
+        new ZkClient(StringUtil.join("/", StringUtils.chomp(ZkStarter.DEFAULT_ZK_STR, "/")),
+            ZkClient.DEFAULT_SESSION_TIMEOUT, ZkClient.DEFAULT_CONNECTION_TIMEOUT, new ZNRecordSerializer());
+    String helixClusterName = "TestSegmentZKMetadataBasedPruner";
+    _zkClient.deleteRecursive("/" + helixClusterName + "/PROPERTYSTORE");
+    _zkClient.createPersistent("/" + helixClusterName + "/PROPERTYSTORE", true);
+    _propertyStore =
+        new ZkHelixPropertyStore<ZNRecord>(new ZkBaseDataAccessor<ZNRecord>(_zkClient), "/" + helixClusterName
+            + "/PROPERTYSTORE", null);
+
+    addTableToPropertyStore();
+    // Segment i holds the days [10 * i, 10 * i + 9] and the countries of its server, in days for the first server
+    // and in hours for the second one
+    for (int i = 0; i < 4; i++) {
+      addSegmentToPropertyStore("segment_" + i, 10 * i, 10 * i + 9, TimeUnit.DAYS, "a", "c");
+    }
+    for (int i = 4; i < 8; i++) {
+      addSegmentToPropertyStore("segment_" + i, 240 * i, 240 * i + 239, TimeUnit.HOURS, "x", "z");
+    }
+  }
+
+  @AfterTest
+  public void afterTest() {
+    _zkClient.close();
+    ZkStarter.stopLocalZkServer();
+  }
+
+  @Test
+  public void testPruning() throws Exception {
+    SegmentZKMetadataBasedPruner pruner = new SegmentZKMetadataBasedPruner(_propertyStore);
+    pruner.updateTable(constructExternalView(8));
+    Map<ServerInstance, SegmentIdSet> routing = constructRouting(8);
+
+    // No filter, or filters the metadata cannot tell anything about
+    Assert.assertSame(prune(pruner, routing, null), routing);
+    Assert.assertSame(prune(pruner, routing, "column = 'foo'"), routing);
+    Assert.assertSame(prune(pruner, routing, "timestamp <> 15"), routing);
+
+    // Time ranges, in days
+    assertSegments(prune(pruner, routing, "timestamp = 15"), 1);
+    assertSegments(prune(pruner, routing, "timestamp between 35 and 45"), 3, 4);
+    assertSegments(prune(pruner, routing, "timestamp > 39 and timestamp < 50"), 4);
+    assertSegments(prune(pruner, routing, "timestamp >= 79"), 7);
+    assertSegments(prune(pruner, routing, "timestamp in (5, 75)"), 0, 7);
+
+    // Column ranges, combined with the time ranges
+    assertSegments(prune(pruner, routing, "country = 'b'"), 0, 1, 2, 3);
+    assertSegments(prune(pruner, routing, "country = 'y' or timestamp < 10"), 0, 4, 5, 6, 7);
+    assertSegments(prune(pruner, routing, "country = 'y' and timestamp < 50"), 4);
+    Assert.assertSame(prune(pruner, routing, "country = 'b' or column = 'foo'"), routing);
+  }
+
+  @Test
+  public void testAllSegmentsPruned() throws Exception {
+    SegmentZKMetadataBasedPruner pruner = new SegmentZKMetadataBasedPruner(_propertyStore);
+    pruner.updateTable(constructExternalView(8));
+    Map<ServerInstance, SegmentIdSet> routing = constructRouting(8);
+
+    // One segment is still queried, so that the response has the shape of the query (a count of 0)
+    assertOneSegment(prune(pruner, routing, "timestamp > 79"));
+    assertOneSegment(prune(pruner, routing, "country between 'd' and 'w'"));
+    assertOneSegment(prune(pruner, routing, "timestamp < 0 or country = 'm'"));
+  }
+
+  @Test
+  public void testSegmentChanges() throws Exception {
+    SegmentZKMetadataBasedPruner pruner = new SegmentZKMetadataBasedPruner(_propertyStore);
+    pruner.updateTable(constructExternalView(8));
+    Map<ServerInstance, SegmentIdSet> routing = constructRouting(8);
+    assertOneSegment(prune(pruner, routing, "timestamp = 100"));
+
+    // A new segment is pruned as soon as it is in the external view
+    addSegmentToPropertyStore("segment_8", 100, 109, TimeUnit.DAYS, "a", "c");
+    pruner.updateTable(constructExternalView(9));
+    routing = constructRouting(9);
+    assertSegments(prune(pruner, routing, "timestamp = 100"), 8);
+
+    // A refreshed segment is pruned on its new metadata
+    addSegmentToPropertyStore("segment_0", 100, 109, TimeUnit.DAYS, "a", "c");
+    long timeout = System.currentTimeMillis() + 10000L;
+    while (prune(pruner, routing, "timestamp = 100").get(SERVER_0).getSegments().size() < 2
+        && System.currentTimeMillis() < timeout) {
+      Thread.sleep(100L);
+    }
+    assertSegments(prune(pruner, routing, "timestamp = 100"), 0, 8);
+    addSegmentToPropertyStore("segment_0", 0, 9, TimeUnit.DAYS, "a", "c");
+
+    pruner.removeTable(TABLE_NAME);
+    Assert.assertSame(prune(pruner, routing, "timestamp = 100"), routing);
+  }
+
+  private Map<ServerInstance, SegmentIdSet> prune(SegmentZKMetadataBasedPruner pruner,
+      Map<ServerInstance, SegmentIdSet> routing, String filter) {
+    String query = "select count(*) from testTable" + (filter == null ? "" : " where " + filter);
+    return pruner.prune(TABLE_NAME, new Pql2Compiler().compileToBrokerRequest(query), routing);
+  }
+
+  private void assertSegments(Map<ServerInstance, SegmentIdSet> routing, int... segments) {
+    Map<ServerInstance, SegmentIdSet> expectedRouting = new HashMap<ServerInstance, SegmentIdSet>();
+    for (int segment : segments) {
+      ServerInstance server = segment % 8 < 4 ? SERVER_0 : SERVER_1;
+      if (!expectedRouting.containsKey(server)) {
+        expectedRouting.put(server, new SegmentIdSet());
+      }
+      expectedRouting.get(server).addSegment(new SegmentId("segment_" + segment));
+    }
+    Assert.assertEquals(routing, expectedRouting);
+  }
+
+  private void assertOneSegment(Map<ServerInstance, SegmentIdSet> routing) {
+    Assert.assertEquals(routing.size(), 1);
+    Assert.assertEquals(routing.values().iterator().next().getSegments().size(), 1);
+  }
+
+  private ExternalView constructExternalView(int numSegments) {
+    ExternalView externalView = new ExternalView(TABLE_NAME);
+    for (int i = 0; i < numSegments; i++) {
+      externalView.setState("segment_" + i, "localhost", "ONLINE");
+    }
+    return externalView;
+  }
+
+  private Map<ServerInstance, SegmentIdSet> constructRouting(int numSegments) {
+    Map<ServerInstance, SegmentIdSet> routing = new HashMap<ServerInstance, SegmentIdSet>();
+    routing.put(SERVER_0, new SegmentIdSet());
+    routing.put(SERVER_1, new SegmentIdSet());
+    for (int i = 0; i < numSegments; i++) {
+      routing.get(i % 8 < 4 ? SERVER_0 : SERVER_1).addSegment(new SegmentId("segment_" + i));
+    }
+    return routing;
+  }
+
+  private void addSegmentToPropertyStore(String segmentName, long startTime, long endTime, TimeUnit timeUnit,
+      String minCountry, String maxCountry) {
+    OfflineSegmentZKMetadata offlineSegmentZKMetadata = new OfflineSegmentZKMetadata();
+    offlineSegmentZKMetadata.setSegmentName(segmentName);
+    offlineSegmentZKMetadata.setTableName(TABLE_NAME);
+    offlineSegmentZKMetadata.setSegmentType(SegmentType.OFFLINE);
+    offlineSegmentZKMetadata.setIndexVersion("0");
+    offlineSegmentZKMetadata.setTimeUnit(timeUnit);
+    offlineSegmentZKMetadata.setStartTime(startTime);
+    offlineSegmentZKMetadata.setEndTime(endTime);
+    offlineSegmentZKMetadata.setCrc(System.nanoTime());
+    offlineSegmentZKMetadata.setColumnValueRange("country", DataType.STRING, minCountry, maxCountry);
+    ZKMetadataProvider.setOfflineSegmentZKMetadata(_propertyStore, offlineSegmentZKMetadata);
+  }
+
+  private void addTableToPropertyStore() throws Exception {
+    JSONObject offlineTableConfigJson = new JSONObject();
+    offlineTableConfigJson.put("tableName", "testTable");
+
+    JSONObject segmentsConfig = new JSONObject();
+    segmentsConfig.put("retentionTimeUnit", "DAYS");
+    segmentsConfig.put("retentionTimeValue", -1);
+    segmentsConfig.put("segmentPushFrequency", "daily");
+    segmentsConfig.put("segmentPushType", "APPEND");
+    segmentsConfig.put("replication", 1);
+    segmentsConfig.put("schemaName", "tableSchema");
+    segmentsConfig.put("timeColumnName", "timestamp");
+    segmentsConfig.put("timeType", "daysSinceEpoch");
+    segmentsConfig.put("segmentAssignmentStrategy", "");
+    offlineTableConfigJson.put("segmentsConfig", segmentsConfig);
+    JSONObject tableIndexConfig = new JSONObject();
+    tableIndexConfig.put("loadMode", "HEAP");
+    tableIndexConfig.put("lazyLoad", "false");
+    offlineTableConfigJson.put("tableIndexConfig", tableIndexConfig);
+    JSONObject tenants = new JSONObject();
+    tenants.put("broker", "brokerTenant");
+    tenants.put("server", "serverTenant");
+    offlineTableConfigJson.put("tenants", tenants);
+    offlineTableConfigJson.put("tableType", "OFFLINE");
+    offlineTableConfigJson.put("metadata", new JSONObject());
+    AbstractTableConfig offlineTableConfig = AbstractTableConfig.init(offlineTableConfigJson.toString());
+    ZKMetadataProvider.setOfflineTableConfig(_propertyStore, TABLE_NAME,
+        AbstractTableConfig.toZnRecord(offlineTableConfig));
+  }
+}
@@ -23,6 +23,8 @@ import io.netty.util.HashedWheelTimer;
 import io.netty.util.Timer;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,7 +32,11 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.linkedin.pinot.common.response.ServerInstance;
+import com.linkedin.pinot.transport.common.Callback;
+import com.linkedin.pinot.transport.common.KeyedFuture;
+import com.linkedin.pinot.transport.common.NoneType;
 import com.linkedin.pinot.transport.metrics.NettyClientMetrics;
+import com.linkedin.pinot.transport.metrics.PoolStats;
 import com.linkedin.pinot.transport.netty.NettyClientConnection.ResponseFuture;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandler;
 import com.linkedin.pinot.transport.netty.NettyServer.RequestHandlerFactory;
@@ -165,6 +171,192 @@ public class NettySingleConnectionIntegrationTest {
     Assert.assertTrue(gotException, "GotException ");
   }
 
+  @Test
+  /**
+   * A request blocked in its handler must not hold the single I/O thread when the server has request threads.
+   * @throws Exception
+   */
+  public void testSlowRequestOnRequestThread() throws Exception {
+    NettyClientMetrics metric = new NettyClientMetrics(null, "abc");
+    int port = 9089;
+    CountDownLatch latch = new CountDownLatch(1);
+    final MyRequestHandler slowHandler = new MyRequestHandler("slow response", latch);
+    final MyRequestHandler fastHandler = new MyRequestHandler("fast response", null);
+    RequestHandlerFactory handlerFactory = new RequestHandlerFactory() {
+      private int _numHandlers = 0;
+
+      @Override
+      public synchronized RequestHandler createNewRequestHandler() {
+        return _numHandlers++ == 0 ? slowHandler : fastHandler;
+      }
+    };
+    NettyTCPServer serverConn = new NettyTCPServer(port, handlerFactory, null, 100, 1, 2);
+    Thread serverThread = new Thread(serverConn, "ServerMain");
+    serverThread.start();
+    Thread.sleep(1000);
+    ServerInstance server = new ServerInstance("localhost", port);
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    NettyTCPClientConnection slowClientConn =
+        new NettyTCPClientConnection(server, eventLoopGroup, new HashedWheelTimer(), metric);
+    NettyTCPClientConnection fastClientConn =
+        new NettyTCPClientConnection(server, eventLoopGroup, new HashedWheelTimer(), metric);
+    try {
+      Assert.assertTrue(slowClientConn.connect(), "connected");
+      Thread.sleep(1000);
+      Assert.assertTrue(fastClientConn.connect(), "connected");
+      Thread.sleep(1000);
+      ResponseFuture slowRespFuture =
+          slowClientConn.sendRequest(Unpooled.wrappedBuffer("slow request".getBytes()), 1L, 5000L);
+      ResponseFuture fastRespFuture =
+          fastClientConn.sendRequest(Unpooled.wrappedBuffer("fast request".getBytes()), 1L, 5000L);
+
+      // Answered while the slow request is still processed
+      ByteBuf fastResp = fastRespFuture.getOne();
+      byte[] b = new byte[fastResp.readableBytes()];
+      fastResp.readBytes(b);
+      Assert.assertEquals(new String(b), "fast response", "Response Check at client");
+      Assert.assertFalse(slowRespFuture.isDone(), "Slow request is done");
+
+      latch.countDown();
+      ByteBuf slowResp = slowRespFuture.getOne();
+      b = new byte[slowResp.readableBytes()];
+      slowResp.readBytes(b);
+      Assert.assertEquals(new String(b), "slow response", "Response Check at client");
+      Assert.assertEquals(slowHandler.getRequest(), "slow request", "Request Check at server");
+    } finally {
+      slowClientConn.close();
+      fastClientConn.close();
+      serverConn.shutdownGracefully();
+    }
+  }
+
+  @Test
+  /**
+   * Requests with distinct ids are multiplexed on one connection, and a response can overtake an earlier request.
+   * Each request notifies the callback it was sent with.
+   * @throws Exception
+   */
+  public void testMultiplexedRequestsOutOfOrder() throws Exception {
+    NettyClientMetrics metric = new NettyClientMetrics(null, "abc");
+    int port = 9089;
+    CountDownLatch latch = new CountDownLatch(1);
+    MyRequestHandlerFactory handlerFactory = new MyRequestHandlerFactory(new SlowRequestHandler(latch));
+    NettyTCPServer serverConn = new NettyTCPServer(port, handlerFactory, null, 100, 1, 2, true);
+    Thread serverThread = new Thread(serverConn, "ServerMain");
+    serverThread.start();
+    Thread.sleep(1000);
+    ServerInstance server = new ServerInstance("localhost", port);
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    NettyTCPClientConnection clientConn =
+        new NettyTCPClientConnection(server, eventLoopGroup, new HashedWheelTimer(), metric, true);
+    try {
+      Assert.assertTrue(clientConn.connect(), "connected");
+      Thread.sleep(1000);
+      RecordingCallback connectionCallback = new RecordingCallback();
+      RecordingCallback slowCallback = new RecordingCallback();
+      RecordingCallback fastCallback = new RecordingCallback();
+      clientConn.setRequestCallback(connectionCallback);
+      ResponseFuture slowRespFuture =
+          clientConn.sendRequest(Unpooled.wrappedBuffer("slow request".getBytes()), 1L, 5000L, slowCallback);
+      ResponseFuture fastRespFuture =
+          clientConn.sendRequest(Unpooled.wrappedBuffer("fast request".getBytes()), 2L, 5000L, fastCallback);
+
+      ByteBuf fastResp = fastRespFuture.getOne();
+      byte[] b = new byte[fastResp.readableBytes()];
+      fastResp.readBytes(b);
+      Assert.assertEquals(new String(b), "response to fast request", "Response Check at client");
+      Assert.assertFalse(slowRespFuture.isDone(), "Slow request is done");
+      Assert.assertEquals(clientConn.getNumOutstandingRequests(), 1);
+      Assert.assertTrue(fastCallback.awaitSuccess(), "Fast request callback notified");
+      Assert.assertEquals(slowCallback._numSuccesses.get(), 0);
+
+      latch.countDown();
+      ByteBuf slowResp = slowRespFuture.getOne();
+      b = new byte[slowResp.readableBytes()];
+      slowResp.readBytes(b);
+      Assert.assertEquals(new String(b), "response to slow request", "Response Check at client");
+      Assert.assertEquals(clientConn.getNumOutstandingRequests(), 0);
+      Assert.assertTrue(slowCallback.awaitSuccess(), "Slow request callback notified");
+      Assert.assertEquals(fastCallback._numSuccesses.get(), 1);
+      Assert.assertEquals(connectionCallback._numSuccesses.get(), 0);
+    } finally {
+      clientConn.close();
+      serverConn.shutdownGracefully();
+    }
+  }
+
+  @Test
+  /**
+   * The stats of the multiplexed pool report its connections and the requests outstanding on them.
+   * @throws Exception
+   */
+  public void testMultiplexedPoolStats() throws Exception {
+    NettyClientMetrics metric = new NettyClientMetrics(null, "abc");
+    int port = 9089;
+    CountDownLatch latch = new CountDownLatch(1);
+    MyRequestHandlerFactory handlerFactory = new MyRequestHandlerFactory(new SlowRequestHandler(latch));
+    NettyTCPServer serverConn = new NettyTCPServer(port, handlerFactory, null, 100, NettyServer.DEFAULT_NUM_IO_THREADS, 0, true);
+    Thread serverThread = new Thread(serverConn, "ServerMain");
+    serverThread.start();
+    Thread.sleep(1000);
+    ServerInstance server = new ServerInstance("localhost", port);
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    MultiplexedNettyClientConnectionPool pool =
+        new MultiplexedNettyClientConnectionPool(1, eventLoopGroup, new HashedWheelTimer(), metric, 5000L);
+    try {
+      NettyClientConnection clientConn = pool.checkoutObject(server).getOne();
+      ResponseFuture slowRespFuture =
+          clientConn.sendRequest(Unpooled.wrappedBuffer("slow request".getBytes()), 1L, 5000L);
+
+      PoolStats<?> stats = pool.getStats();
+      Assert.assertEquals(stats.getTotalCreated(), 1);
+      Assert.assertEquals(stats.getPoolSize(), 1);
+      Assert.assertEquals(stats.getMaxPoolSize(), 1);
+      Assert.assertEquals(stats.getCheckedOut(), 1);
+      Assert.assertEquals(stats.getIdleCount(), 0);
+
+      latch.countDown();
+      slowRespFuture.getOne();
+      stats = pool.getStats();
+      Assert.assertEquals(stats.getPoolSize(), 1);
+      Assert.assertEquals(stats.getCheckedOut(), 0);
+      Assert.assertEquals(stats.getIdleCount(), 1);
+
+      pool.destroyObject(server, clientConn);
+      stats = pool.getStats();
+      Assert.assertEquals(stats.getTotalDestroyed(), 1);
+      Assert.assertEquals(stats.getTotalBadDestroyed(), 1);
+      Assert.assertEquals(stats.getPoolSize(), 0);
+    } finally {
+      pool.shutdown();
+      serverConn.shutdownGracefully();
+    }
+  }
+
+  @Test
+  /**
+   * Checking out from the multiplexed pool does not wait for the connection, its future fails when connecting fails.
+   * @throws Exception
+   */
+  public void testMultiplexedPoolConnectError() throws Exception {
+    NettyClientMetrics metric = new NettyClientMetrics(null, "abc");
+    // Nothing listens on the port
+    ServerInstance server = new ServerInstance("localhost", 9090);
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+    MultiplexedNettyClientConnectionPool pool =
+        new MultiplexedNettyClientConnectionPool(1, eventLoopGroup, new HashedWheelTimer(), metric, 5000L);
+    try {
+      KeyedFuture<ServerInstance, NettyClientConnection> future = pool.checkoutObject(server);
+      Assert.assertNull(future.getOne(10, TimeUnit.SECONDS));
+      Assert.assertNotNull(future.getError());
+      Assert.assertEquals(pool.getStats().getTotalCreateErrors(), 1);
+      Assert.assertEquals(pool.getStats().getPoolSize(), 0);
+    } finally {
+      pool.shutdown();
+      eventLoopGroup.shutdownGracefully();
+    }
+  }
+
   private String generatePayload(String prefix, int numBytes) {
     StringBuilder b = new StringBuilder(prefix.length() + numBytes);
     b.append(prefix);
@@ -327,10 +519,55 @@ public class NettySingleConnectionIntegrationTest {
     }
   }
 
+  /**
+   * Echoes the requests, the ones starting with "slow" once the latch is released.
+   */
+  private static class SlowRequestHandler implements RequestHandler {
+    private final CountDownLatch _latch;
+
+    SlowRequestHandler(CountDownLatch latch) {
+      _latch = latch;
+    }
+
+    @Override
+    public byte[] processRequest(ByteBuf request) {
+      byte[] b = new byte[request.readableBytes()];
+      request.readBytes(b);
+      String requestString = new String(b);
+      if (requestString.startsWith("slow")) {
+        try {
+          _latch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return ("response to " + requestString).getBytes();
+    }
+  }
+
+  private static class RecordingCallback implements Callback<NoneType> {
+    private final AtomicInteger _numSuccesses = new AtomicInteger(0);
+    private final CountDownLatch _successLatch = new CountDownLatch(1);
+
+    @Override
+    public void onSuccess(NoneType result) {
+      _numSuccesses.incrementAndGet();
+      _successLatch.countDown();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+    }
+
+    boolean awaitSuccess() throws InterruptedException {
+      return _successLatch.await(5, TimeUnit.SECONDS);
+    }
+  }
+
   private static class MyRequestHandlerFactory implements RequestHandlerFactory {
-    private final MyRequestHandler _requestHandler;
+    private final RequestHandler _requestHandler;
 
-    public MyRequestHandlerFactory(MyRequestHandler requestHandler) {
+    public MyRequestHandlerFactory(RequestHandler requestHandler) {
       _requestHandler = requestHandler;
     }
 